@@ -10,6 +10,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.embulk.config.ConfigDiff;
@@ -29,6 +30,8 @@ import org.embulk.exec.TransactionStage;
 import org.embulk.spi.BufferAllocator;
 import org.embulk.spi.DecoderPlugin;
 import org.embulk.spi.EncoderPlugin;
+import org.embulk.spi.ExecAction;
+import org.embulk.spi.ExecInternal;
 import org.embulk.spi.ExecSessionInternal;
 import org.embulk.spi.ExecutorPlugin;
 import org.embulk.spi.FileInputPlugin;
@@ -365,6 +368,20 @@ public class EmbulkEmbed {
                 .build();
     }
 
+    /**
+     * Runs {@code action} in a new {@link ExecSessionInternal} configured by {@code execConfig}.
+     *
+     * <p>It is used by worker processes of the {@code local_process} executor to run tasks. It is not for applications.
+     */
+    public <T> T doWithExecSessionInternal(final ConfigSource execConfig, final ExecAction<T> action) throws ExecutionException {
+        final ExecSessionInternal exec = this.newExecSessionInternal(execConfig);
+        try {
+            return ExecInternal.doWith(exec, action);
+        } finally {
+            exec.cleanup();
+        }
+    }
+
     @SuppressWarnings("deprecation") // https://github.com/embulk/embulk/issues/1301
     public ResumeStateAction resumeState(final ConfigSource config, final ConfigSource resumeStateConfig) {
         logger.info("Started Embulk v" + EmbulkVersion.VERSION);
@@ -471,12 +488,29 @@ public class EmbulkEmbed {
     }
 
     private static BufferAllocator createBufferAllocatorFromSystemConfig(final EmbulkSystemProperties embulkSystemProperties) {
+        final boolean direct = isDirectBufferAllocator(embulkSystemProperties.getProperty("buffer_allocator"));
         final String byteSizeRepresentation = embulkSystemProperties.getProperty("page_size");
         if (byteSizeRepresentation == null) {
-            return PooledBufferAllocator.create();
+            return PooledBufferAllocator.create(PooledBufferAllocator.DEFAULT_PAGE_SIZE, direct);
         } else {
             final int byteSize = parseByteSizeRepresentation(byteSizeRepresentation);
-            return PooledBufferAllocator.create(byteSize);
+            return PooledBufferAllocator.create(byteSize, direct);
+        }
+    }
+
+    private static boolean isDirectBufferAllocator(final String bufferAllocatorRepresentation) {
+        if (bufferAllocatorRepresentation == null) {
+            return false;
+        }
+        switch (bufferAllocatorRepresentation.toLowerCase(Locale.ENGLISH)) {
+            case "heap":
+                return false;
+            case "direct":
+                logger.info("Pages and Buffers are allocated on off-heap (direct) memory.");
+                return true;
+            default:
+                throw new IllegalArgumentException(
+                        "Unknown buffer_allocator '" + bufferAllocatorRepresentation + "'. It must be 'heap' or 'direct'.");
         }
     }
 
@@ -0,0 +1,175 @@
+package org.embulk.cli;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ObjectOutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Properties;
+import java.util.jar.Manifest;
+import org.embulk.EmbulkDependencyClassLoader;
+import org.embulk.EmbulkEmbed;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskReport;
+import org.embulk.exec.SetCurrentThreadName;
+import org.embulk.spi.Exec;
+import org.embulk.spi.ExecInternal;
+import org.embulk.spi.ExecSessionInternal;
+import org.embulk.spi.InputPlugin;
+import org.embulk.spi.OutputPlugin;
+import org.embulk.spi.ProcessTask;
+import org.embulk.spi.util.ExecutorsInternal;
+import org.embulk.spi.util.FiltersInternal;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The main class of a worker process of the {@code local_process} executor.
+ *
+ * <p>It reads the Embulk system properties, the {@code exec:} config, and {@link ProcessTask} from the standard input
+ * at first. Then, it runs tasks whose indexes are given line by line until the standard input is closed. Events of the
+ * tasks are written into the standard output as lines of JSON. See {@code org.embulk.exec.LocalProcessExecutorPlugin}.
+ */
+public final class LocalProcessWorker {
+    private LocalProcessWorker() {}
+
+    public static void main(final String[] args) {
+        // The standard output is reserved for events. Anything else printed goes to the standard error.
+        // Loggers are not created until Logback is configured, as well as Main.
+        final PrintStream events = new PrintStream(System.out, true);
+        System.setOut(System.err);
+
+        final Manifest manifest = CliManifest.getManifest();
+        if (manifest != null) {
+            SelfContainedJarFiles.staticInitializer().addFromManifest(manifest).initialize();
+            EmbulkDependencyClassLoader.staticInitializer().useSelfContainedJarFiles().initialize();
+        }
+
+        int exitCode = 0;
+        try {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            final Properties embulkSystemProperties = decodeSystemProperties(readHeaderLine(reader));
+            CliLogbackConfigurator.configure(embulkSystemProperties);
+
+            final EmbulkEmbed embed = new EmbulkEmbed.Bootstrap().setEmbulkSystemProperties(embulkSystemProperties).initialize();
+            final ConfigSource execConfig = embed.newConfigLoader().fromJsonString(readHeaderLine(reader));
+            final String taskJson = readHeaderLine(reader);
+
+            embed.doWithExecSessionInternal(execConfig, () -> {
+                final ProcessTask task = readProcessTask(taskJson);
+                try {
+                    loadPlugins(task);
+                } catch (final RuntimeException | Error ex) {
+                    sendEvent(events, Exec.newTaskReport().set("event", "unavailable").set("error", ex.toString()));
+                    throw ex;
+                }
+                sendEvent(events, "ready", null);
+                runTasks(reader, events, task);
+                return null;
+            });
+        } catch (final Throwable ex) {
+            LoggerFactory.getLogger(LocalProcessWorker.class).error("Worker process failed.", ex);
+            exitCode = 1;
+        }
+        System.exit(exitCode);
+    }
+
+    @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1304
+    private static ProcessTask readProcessTask(final String json) {
+        return ExecInternal.getModelManager().readObject(ProcessTask.class, json);
+    }
+
+    /**
+     * Instantiates the plugins of the task before running any task so that the parent process fails early if they are
+     * not loadable in this process.
+     */
+    private static void loadPlugins(final ProcessTask task) {
+        final ExecSessionInternal exec = ExecInternal.sessionInternal();
+        exec.newPlugin(InputPlugin.class, task.getInputPluginType());
+        FiltersInternal.newFilterPlugins(exec, task.getFilterPluginTypes());
+        exec.newPlugin(OutputPlugin.class, task.getOutputPluginType());
+    }
+
+    private static void runTasks(final BufferedReader reader, final PrintStream events, final ProcessTask task)
+            throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            final int taskIndex = Integer.parseInt(line.trim());
+            try (SetCurrentThreadName dontCare = new SetCurrentThreadName(String.format("task-%04d", taskIndex))) {
+                ExecutorsInternal.process(ExecInternal.sessionInternal(), task, taskIndex, new ExecutorsInternal.ProcessStateCallback() {
+                        public void started() {
+                            sendEvent(events, "started", null);
+                        }
+
+                        public void inputCommitted(final TaskReport report) {
+                            sendEvent(events, "input_committed", report);
+                        }
+
+                        public void outputCommitted(final TaskReport report) {
+                            sendEvent(events, "output_committed", report);
+                        }
+                    });
+                sendEvent(events, Exec.newTaskReport().set("event", "finished"));
+            } catch (final Throwable ex) {
+                LoggerFactory.getLogger(LocalProcessWorker.class).error("Task {} failed.", taskIndex, ex);
+                final StringWriter stackTrace = new StringWriter();
+                ex.printStackTrace(new PrintWriter(stackTrace));
+                final TaskReport finished = Exec.newTaskReport().set("event", "finished").set("error", stackTrace.toString());
+                final String serialized = encodeException(ex);
+                if (serialized != null) {
+                    finished.set("exception", serialized);
+                }
+                sendEvent(events, finished);
+            }
+        }
+    }
+
+    private static void sendEvent(final PrintStream events, final String event, final TaskReport report) {
+        final TaskReport message = Exec.newTaskReport().set("event", event);
+        if (report != null) {
+            message.set("report", report);
+        }
+        sendEvent(events, message);
+    }
+
+    @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1304
+    private static void sendEvent(final PrintStream events, final TaskReport message) {
+        // JSON written by ModelManager does not contain line breaks.
+        events.println(ExecInternal.getModelManager().writeObject(message));
+    }
+
+    /**
+     * Serializes an exception so that the parent process restores it with its type, or returns {@code null} if it is
+     * not serializable.
+     */
+    private static String encodeException(final Throwable ex) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(ex);
+        } catch (final IOException serializationError) {
+            // Some exceptions hold objects which are not serializable.
+            return null;
+        }
+        return Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    private static String readHeaderLine(final BufferedReader reader) throws IOException {
+        final String line = reader.readLine();
+        if (line == null) {
+            throw new IOException("The standard input is closed before a task is given.");
+        }
+        return line;
+    }
+
+    private static Properties decodeSystemProperties(final String line) throws IOException {
+        final Properties properties = new Properties();
+        properties.load(new InputStreamReader(
+                new ByteArrayInputStream(Base64.getDecoder().decode(line)), StandardCharsets.UTF_8));
+        return properties;
+    }
+}
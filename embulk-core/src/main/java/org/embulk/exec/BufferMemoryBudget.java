@@ -0,0 +1,180 @@
+package org.embulk.exec;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounds the total size of {@link org.embulk.spi.Buffer}s allocated and not released yet.
+ *
+ * <p>{@link #acquire(int)} blocks while the outstanding bytes exceed the budget, so that threads producing
+ * {@link org.embulk.spi.Page}s wait for threads consuming them. It does not block forever, though. A thread may wait
+ * for {@link org.embulk.spi.Buffer}s which only the thread itself would release. The budget is overcommitted after
+ * waiting for a while, not to hang the execution. Allocations do not wait again until the outstanding bytes get back
+ * within the budget.
+ *
+ * <p>It is configured by {@code max_buffer_memory} in the {@code exec:} section, or in the system config.
+ */
+public final class BufferMemoryBudget {
+    public BufferMemoryBudget(final long maxBytes, final long maxWaitMillis) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("max_buffer_memory must be positive: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.usedBytes = 0;
+        this.highWaterMark = 0;
+        this.waitCount = 0;
+        this.waitNanos = 0;
+        this.overcommitCount = 0;
+        this.overcommitted = false;
+    }
+
+    public BufferMemoryBudget(final long maxBytes) {
+        this(maxBytes, DEFAULT_MAX_WAIT_MILLIS);
+    }
+
+    /**
+     * Creates a {@link BufferMemoryBudget} from a byte size representation, such as {@code "512MB"} and {@code "2GB"}.
+     */
+    public static BufferMemoryBudget of(final String maxBytesRepresentation) {
+        return new BufferMemoryBudget(parseByteSize(maxBytesRepresentation));
+    }
+
+    /**
+     * Reserves {@code bytes} in the budget before allocating a {@link org.embulk.spi.Buffer}.
+     *
+     * <p>It waits until other {@link org.embulk.spi.Buffer}s are released if the budget is exhausted.
+     *
+     * @param bytes  the capacity of the {@link org.embulk.spi.Buffer} to allocate
+     */
+    public synchronized void acquire(final int bytes) {
+        // A Buffer larger than the budget is allocated when no other Buffer is outstanding.
+        if (this.usedBytes > 0 && this.usedBytes + bytes > this.maxBytes && !this.overcommitted) {
+            final long startedAt = System.nanoTime();
+            long remaining = this.maxWaitNanos;
+            this.waitCount++;
+            try {
+                while (this.usedBytes > 0 && this.usedBytes + bytes > this.maxBytes && remaining > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    remaining = this.maxWaitNanos - (System.nanoTime() - startedAt);
+                }
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                this.waitNanos += System.nanoTime() - startedAt;
+            }
+            if (this.usedBytes > 0 && this.usedBytes + bytes > this.maxBytes) {
+                this.overcommitted = true;
+                if (this.overcommitCount++ == 0) {
+                    logger.warn("Buffers exceed max_buffer_memory {} bytes by allocating {} bytes over {} bytes outstanding. "
+                                + "Allocating anyway not to stall the execution.", this.maxBytes, bytes, this.usedBytes);
+                }
+            }
+        }
+        this.usedBytes += bytes;
+        if (this.usedBytes > this.highWaterMark) {
+            this.highWaterMark = this.usedBytes;
+        }
+    }
+
+    /**
+     * Returns {@code bytes} to the budget when a {@link org.embulk.spi.Buffer} is released.
+     *
+     * @param bytes  the capacity of the released {@link org.embulk.spi.Buffer}
+     */
+    public synchronized void release(final int bytes) {
+        this.usedBytes -= bytes;
+        if (this.usedBytes <= this.maxBytes) {
+            this.overcommitted = false;
+        }
+        this.notifyAll();
+    }
+
+    public long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    public synchronized long getUsedBytes() {
+        return this.usedBytes;
+    }
+
+    /**
+     * Returns the largest bytes that have been outstanding at the same time.
+     */
+    public synchronized long getHighWaterMark() {
+        return this.highWaterMark;
+    }
+
+    /**
+     * Returns the number of allocations which have waited for the budget.
+     */
+    public synchronized long getWaitCount() {
+        return this.waitCount;
+    }
+
+    /**
+     * Returns the number of allocations which have exceeded the budget after waiting.
+     */
+    public synchronized long getOvercommitCount() {
+        return this.overcommitCount;
+    }
+
+    /**
+     * Logs the high-water mark, and how often allocations have waited for the budget.
+     */
+    public synchronized void logStatistics() {
+        logger.info("Buffer memory: high-water mark {} bytes of max_buffer_memory {} bytes, "
+                    + "{} allocations waited for {} ms in total, {} allocations exceeded the budget.",
+                    this.highWaterMark, this.maxBytes,
+                    this.waitCount, TimeUnit.NANOSECONDS.toMillis(this.waitNanos), this.overcommitCount);
+    }
+
+    static long parseByteSize(final String byteSizeRepresentation) {
+        if (byteSizeRepresentation == null) {
+            throw new NullPointerException("size is null");
+        }
+        final Matcher matcher = BYTE_SIZE_PATTERN.matcher(byteSizeRepresentation.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid byte size string '" + byteSizeRepresentation + "'");
+        }
+
+        final BigDecimal number = new BigDecimal(matcher.group(1));  // NumberFormatException extends IllegalArgumentException.
+        final String unitPart = matcher.group(2);
+        switch (unitPart.toUpperCase(Locale.ENGLISH)) {
+            case "":
+            case "B":
+                return number.longValue();
+            case "KB":
+                return number.multiply(new BigDecimal(1L << 10)).longValue();
+            case "MB":
+                return number.multiply(new BigDecimal(1L << 20)).longValue();
+            case "GB":
+                return number.multiply(new BigDecimal(1L << 30)).longValue();
+            case "TB":
+                return number.multiply(new BigDecimal(1L << 40)).longValue();
+            default:
+                throw new IllegalArgumentException("Unknown unit '" + unitPart + "'");
+        }
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(BufferMemoryBudget.class);
+
+    private static final Pattern BYTE_SIZE_PATTERN = Pattern.compile("\\A(\\d+(?:\\.\\d+)?)\\s?([a-zA-Z]*)\\z");
+
+    private static final long DEFAULT_MAX_WAIT_MILLIS = 1_000L;
+
+    private final long maxBytes;
+    private final long maxWaitNanos;
+
+    private long usedBytes;
+    private long highWaterMark;
+    private long waitCount;
+    private long waitNanos;
+    private long overcommitCount;
+    private boolean overcommitted;  // whether allocations exceed the budget without waiting
+}
@@ -1,17 +1,35 @@
 package org.embulk.exec;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.IllegalFormatException;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.MissingFormatArgumentException;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import org.embulk.EmbulkSystemProperties;
+import org.embulk.config.ConfigException;
 import org.embulk.config.ConfigSource;
 import org.embulk.config.TaskReport;
 import org.embulk.config.TaskSource;
@@ -22,7 +40,9 @@ import org.embulk.spi.ExecInternal;
 import org.embulk.spi.ExecSessionInternal;
 import org.embulk.spi.ExecutorPlugin;
 import org.embulk.spi.FilterPlugin;
+import org.embulk.spi.IdempotentTaskHint;
 import org.embulk.spi.InputPlugin;
+import org.embulk.spi.InputTaskCostHint;
 import org.embulk.spi.OutputPlugin;
 import org.embulk.spi.Page;
 import org.embulk.spi.PageImpl;
@@ -30,6 +50,8 @@ import org.embulk.spi.PageOutput;
 import org.embulk.spi.ProcessState;
 import org.embulk.spi.ProcessTask;
 import org.embulk.spi.Schema;
+import org.embulk.spi.TaskProgress;
+import org.embulk.spi.TaskState;
 import org.embulk.spi.TransactionalPageOutput;
 import org.embulk.spi.util.ExecutorsInternal;
 import org.embulk.spi.util.ExecutorsInternal.ProcessStateCallback;
@@ -38,19 +60,59 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class LocalExecutorPlugin implements ExecutorPlugin {
+    private static final int DEFAULT_SCATTER_QUEUE_PAGES = 4;
+    private static final int DEFAULT_PROGRESS_LOG_INTERVAL = 60;
+    private static final int DEFAULT_TASK_RETRY_INITIAL_WAIT = 1000;
+    private static final int DEFAULT_TASK_RETRY_MAX_WAIT = 60000;
+    private static final long CANCELLED_TASK_WAIT_MILLIS = 30000;
+    private static final String ROUND_ROBIN = "round_robin";
+    private static final String LEAST_LOADED = "least_loaded";
+    private static final String DEFAULT_SPECULATION_QUANTILE = "0.75";
+    private static final String DEFAULT_SPECULATION_MULTIPLIER = "1.5";
+
     private int defaultMaxThreads;
     private int defaultMinThreads;
+    private int defaultScatterQueuePages;
+    private String defaultScatterRouting;
+    private Integer defaultMaxOutputTasks;
+    private int defaultProgressLogInterval;
+    private int defaultTaskRetryLimit;
+    private long defaultTaskRetryInitialWait;
+    private long defaultTaskRetryMaxWait;
+    private boolean defaultFailFast;
+    private boolean defaultSpeculativeExecution;
+    private double defaultSpeculationQuantile;
+    private double defaultSpeculationMultiplier;
 
     public LocalExecutorPlugin(final EmbulkSystemProperties embulkSystemProperties) {
         int cores = Runtime.getRuntime().availableProcessors();
         this.defaultMaxThreads = embulkSystemProperties.getPropertyAsInteger("max_threads", cores * 2);
         this.defaultMinThreads = embulkSystemProperties.getPropertyAsInteger("min_output_tasks", cores);
+        this.defaultScatterQueuePages = embulkSystemProperties.getPropertyAsInteger("scatter_queue_pages", DEFAULT_SCATTER_QUEUE_PAGES);
+        this.defaultScatterRouting = embulkSystemProperties.getProperty("scatter_routing", ROUND_ROBIN);
+        final String maxOutputTasks = embulkSystemProperties.getProperty("max_output_tasks");
+        this.defaultMaxOutputTasks = (maxOutputTasks == null) ? null : embulkSystemProperties.getPropertyAsInteger("max_output_tasks", 0);
+        this.defaultProgressLogInterval = embulkSystemProperties.getPropertyAsInteger("progress_log_interval", DEFAULT_PROGRESS_LOG_INTERVAL);
+        this.defaultFailFast = embulkSystemProperties.getPropertyAsBoolean("fail_fast", false);
+        this.defaultSpeculativeExecution = embulkSystemProperties.getPropertyAsBoolean("speculative_execution", false);
+        this.defaultSpeculationQuantile = Double.parseDouble(
+                embulkSystemProperties.getProperty("speculation_quantile", DEFAULT_SPECULATION_QUANTILE));
+        this.defaultSpeculationMultiplier = Double.parseDouble(
+                embulkSystemProperties.getProperty("speculation_multiplier", DEFAULT_SPECULATION_MULTIPLIER));
+        this.defaultTaskRetryLimit = embulkSystemProperties.getPropertyAsInteger("task_retry_limit", 0);
+        this.defaultTaskRetryInitialWait = embulkSystemProperties.getPropertyAsInteger("task_retry_initial_wait", DEFAULT_TASK_RETRY_INITIAL_WAIT);
+        this.defaultTaskRetryMaxWait = embulkSystemProperties.getPropertyAsInteger("task_retry_max_wait", DEFAULT_TASK_RETRY_MAX_WAIT);
     }
 
     @Override
     public void transaction(ConfigSource config, Schema outputSchema, int inputTaskCount,
             ExecutorPlugin.Control control) {
         try (AbstractLocalExecutor exec = newExecutor(config, inputTaskCount)) {
+            exec.setProgressLogInterval(config.get(Integer.class, "progress_log_interval", defaultProgressLogInterval));
+            exec.setFailFast(config.get(Boolean.class, "fail_fast", defaultFailFast));
+            exec.setTaskRetry(config.get(Integer.class, "task_retry_limit", defaultTaskRetryLimit),
+                              config.get(Long.class, "task_retry_initial_wait", defaultTaskRetryInitialWait),
+                              config.get(Long.class, "task_retry_max_wait", defaultTaskRetryMaxWait));
             control.transaction(outputSchema, exec.getOutputTaskCount(), exec);
         }
     }
@@ -60,15 +122,41 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
         int minThreads = config.get(Integer.class, "min_output_tasks", defaultMinThreads);
         if (inputTaskCount > 0 && inputTaskCount < minThreads) {
             int scatterCount = (minThreads + inputTaskCount - 1) / inputTaskCount;
+            int queuePages = config.get(Integer.class, "scatter_queue_pages", defaultScatterQueuePages);
+            boolean leastLoaded = isLeastLoadedScatterRouting(config.get(String.class, "scatter_routing", defaultScatterRouting));
             logger.info("Using local thread executor with max_threads={} / output tasks {} = input tasks {} * {}",
                         maxThreads, inputTaskCount * scatterCount, inputTaskCount, scatterCount);
-            return new ScatterExecutor(maxThreads, inputTaskCount, scatterCount);
+            return new ScatterExecutor(maxThreads, inputTaskCount, scatterCount, queuePages, leastLoaded);
+        }
+
+        final Integer maxOutputTasks = config.get(Integer.class, "max_output_tasks", defaultMaxOutputTasks);
+        if (maxOutputTasks != null && maxOutputTasks > 0 && inputTaskCount > maxOutputTasks) {
+            logger.info("Using local thread executor with max_threads={} / input tasks {} gathered into output tasks {}",
+                        maxThreads, inputTaskCount, maxOutputTasks);
+            return new GatherExecutor(maxThreads, inputTaskCount, maxOutputTasks);
         } else {
             logger.info("Using local thread executor with max_threads={} / tasks={}", maxThreads, inputTaskCount);
+            if (config.get(Boolean.class, "speculative_execution", defaultSpeculativeExecution)) {
+                return new SpeculativeExecutor(maxThreads, inputTaskCount,
+                                               config.get(Double.class, "speculation_quantile", defaultSpeculationQuantile),
+                                               config.get(Double.class, "speculation_multiplier", defaultSpeculationMultiplier));
+            }
             return new DirectExecutor(maxThreads, inputTaskCount);
         }
     }
 
+    private static boolean isLeastLoadedScatterRouting(final String scatterRoutingRepresentation) {
+        switch (scatterRoutingRepresentation.toLowerCase(Locale.ENGLISH)) {
+            case LEAST_LOADED:
+                return true;
+            case ROUND_ROBIN:
+                return false;
+            default:
+                throw new ConfigException(
+                        "scatter_routing must be 'least_loaded' or 'round_robin': " + scatterRoutingRepresentation);
+        }
+    }
+
     private static class ExecutorThreadFactory implements ThreadFactory {
         private ExecutorThreadFactory(final String nameFormat) {
             try {
@@ -97,9 +185,54 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
         protected final int inputTaskCount;
         protected final int outputTaskCount;
 
+        private final AtomicLong taskNanos;
+        private int progressLogInterval;
+        private int taskRetryLimit;
+        private long taskRetryInitialWait;
+        private long taskRetryMaxWait;
+        private boolean failFast;
+        private final BlockingQueue<Future<Throwable>> completedInputTasks;
+        private final Object activeInputTasksLock;
+        private int activeInputTasks;  // guarded by activeInputTasksLock
+        private ScheduledExecutorService retryScheduler;
+
         public AbstractLocalExecutor(int inputTaskCount, int outputTaskCount) {
             this.inputTaskCount = inputTaskCount;
             this.outputTaskCount = outputTaskCount;
+            this.taskNanos = new AtomicLong(0);
+            this.progressLogInterval = 0;
+            this.taskRetryLimit = 0;
+            this.taskRetryInitialWait = 0;
+            this.taskRetryMaxWait = 0;
+            this.failFast = false;
+            this.completedInputTasks = new LinkedBlockingQueue<>();
+            this.activeInputTasksLock = new Object();
+            this.activeInputTasks = 0;
+            this.retryScheduler = null;
+        }
+
+        /**
+         * Sets the interval in seconds to log the progress of each running task. {@code 0} disables it.
+         */
+        void setProgressLogInterval(int progressLogInterval) {
+            this.progressLogInterval = progressLogInterval;
+        }
+
+        /**
+         * Sets how many times a failed input task runs again, and the wait in milliseconds before each retry. The wait
+         * doubles from {@code initialWait} up to {@code maxWait}.
+         */
+        void setTaskRetry(int limit, long initialWait, long maxWait) {
+            this.taskRetryLimit = limit;
+            this.taskRetryInitialWait = initialWait;
+            this.taskRetryMaxWait = maxWait;
+        }
+
+        /**
+         * Sets whether to cancel all the running tasks as soon as an input task fails.
+         */
+        void setFailFast(boolean failFast) {
+            this.failFast = failFast;
         }
 
         public int getOutputTaskCount() {
@@ -110,41 +243,316 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
         public void execute(ProcessTask task, ProcessState state) {
             state.initialize(inputTaskCount, outputTaskCount);
 
-            List<Future<Throwable>> futures = new ArrayList<>(inputTaskCount);
+            final long startedAt = System.nanoTime();
+            final ScheduledExecutorService progressReporter = startProgressReporter(ExecInternal.sessionInternal());
+            if (taskRetryLimit > 0) {
+                retryScheduler = Executors.newSingleThreadScheduledExecutor(new ExecutorThreadFactory("embulk-retry-scheduler-%d"));
+            }
+            List<Future<Throwable>> futures = new ArrayList<>(Collections.<Future<Throwable>>nCopies(inputTaskCount, null));
+            completedInputTasks.clear();
             try {
-                for (int i = 0; i < inputTaskCount; i++) {
-                    futures.add(startInputTask(task, state, i));
+                for (final int i : orderInputTasks(task)) {
+                    futures.set(i, startInputTask(task, state, i, 0));
                 }
                 showProgress(state, inputTaskCount);
 
-                for (int i = 0; i < inputTaskCount; i++) {
-                    if (futures.get(i) == null) {
-                        continue;
-                    }
-                    try {
-                        state.getInputTaskState(i).setException(futures.get(i).get());
-                    } catch (ExecutionException ex) {
-                        state.getInputTaskState(i).setException(ex.getCause());
-                        // if (ex.getCause() instanceof RuntimeException) {
-                        //     throw (RuntimeException) ex.getCause();
-                        // }
-                        // if (ex.getCause() instanceof Error) {
-                        //     throw (Error) ex.getCause();
-                        // }
-                        // new RuntimeException(ex.getCause());
-                    } catch (InterruptedException ex) {
-                        state.getInputTaskState(i).setException(new ExecutionInterruptedException(ex));
+                final int[] retries = new int[inputTaskCount];
+                if (failFast) {
+                    waitForInputTasksFailFast(task, state, futures, retries);
+                } else {
+                    for (int i = 0; i < inputTaskCount; i++) {
+                        if (futures.get(i) == null) {
+                            continue;
+                        }
+                        while (completeInputTask(task, state, futures, retries, i)) {
+                            // retrying
+                        }
+                        showProgress(state, inputTaskCount);
                     }
-                    showProgress(state, inputTaskCount);
                 }
             } finally {
+                boolean cancelled = false;
                 for (Future<Throwable> future : futures) {
                     if (future != null && !future.isDone()) {
-                        future.cancel(true);
-                        // TODO join?
+                        cancelled |= future.cancel(true);
                     }
                 }
+                if (cancelled) {
+                    awaitCancelledInputTasks();
+                }
+                if (retryScheduler != null) {
+                    retryScheduler.shutdownNow();
+                    retryScheduler = null;
+                }
+                if (progressReporter != null) {
+                    progressReporter.shutdownNow();
+                }
             }
+
+            final long makespanNanos = System.nanoTime() - startedAt;
+            final long sumNanos = taskNanos.get();
+            logger.info(String.format("Input tasks took %d ms in total for %d ms of the sum of task times (parallelism %.2f)",
+                                      TimeUnit.NANOSECONDS.toMillis(makespanNanos),
+                                      TimeUnit.NANOSECONDS.toMillis(sumNanos),
+                                      makespanNanos > 0 ? (double) sumNanos / makespanNanos : 0.0));
+        }
+
+        /**
+         * Waits for input tasks in the order of completion, and cancels all the running tasks on the first failure.
+         *
+         * <p>The cancelled tasks are interrupted, and abort their transactions as they fail.
+         */
+        private void waitForInputTasksFailFast(ProcessTask task, ProcessState state, List<Future<Throwable>> futures, int[] retries) {
+            final Map<Future<Throwable>, Integer> running = new IdentityHashMap<>();
+            for (int i = 0; i < inputTaskCount; i++) {
+                if (futures.get(i) != null) {
+                    running.put(futures.get(i), i);
+                }
+            }
+
+            while (!running.isEmpty()) {
+                final Future<Throwable> completed;
+                try {
+                    completed = completedInputTasks.take();
+                } catch (InterruptedException ex) {
+                    cancelInputTasks(state, running, ex);
+                    return;
+                }
+                final Integer taskIndex = running.remove(completed);
+                if (taskIndex == null) {
+                    continue;
+                }
+                if (completeInputTask(task, state, futures, retries, taskIndex)) {
+                    running.put(futures.get(taskIndex), taskIndex);
+                    continue;
+                }
+                showProgress(state, inputTaskCount);
+
+                if (state.getInputTaskState(taskIndex).getException().isPresent()) {
+                    logger.error("Input task {} failed. Cancelling {} running tasks.", taskIndex, running.size());
+                    cancelInputTasks(state, running, new InterruptedException(
+                            String.format("Cancelled because input task %d failed.", taskIndex)));
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Cancels the input tasks in {@code running}, and waits for the cancelled tasks to stop for a limited time.
+         *
+         * <p>A task which has completed before cancelled keeps its own result even if it is not taken from the
+         * completion queue yet.
+         */
+        private void cancelInputTasks(ProcessState state, Map<Future<Throwable>, Integer> running, InterruptedException cause) {
+            boolean cancelled = false;
+            for (final Map.Entry<Future<Throwable>, Integer> entry : running.entrySet()) {
+                if (entry.getKey().cancel(true)) {
+                    cancelled = true;
+                    state.getInputTaskState(entry.getValue()).setException(new ExecutionInterruptedException(cause));
+                } else {
+                    state.getInputTaskState(entry.getValue()).setException(getInputTaskError(entry.getKey()));
+                }
+            }
+            completedInputTasks.clear();
+            if (cancelled) {
+                awaitCancelledInputTasks();
+            }
+        }
+
+        /**
+         * Waits until no input task is running so that the cancelled tasks have aborted their transactions.
+         *
+         * <p>It gives up waiting after {@code CANCELLED_TASK_WAIT_MILLIS} not to hang with a task ignoring interrupts.
+         */
+        private void awaitCancelledInputTasks() {
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CANCELLED_TASK_WAIT_MILLIS);
+            synchronized (activeInputTasksLock) {
+                while (activeInputTasks > 0) {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        logger.warn("{} cancelled input tasks are still running after {} ms.", activeInputTasks, CANCELLED_TASK_WAIT_MILLIS);
+                        return;
+                    }
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(activeInputTasksLock, remaining);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+
+        private static Throwable getInputTaskError(Future<Throwable> future) {
+            try {
+                return future.get();
+            } catch (ExecutionException ex) {
+                return ex.getCause();
+            } catch (InterruptedException ex) {
+                return new ExecutionInterruptedException(ex);
+            }
+        }
+
+        /**
+         * Completes the {@code taskIndex}-th input task after waiting for it, or starts it again if it fails within the
+         * retry limit.
+         *
+         * <p>Its output has been aborted when it fails. It is scheduled to start again after the backoff, so that the
+         * calling thread and the other tasks keep running meanwhile.
+         *
+         * @return true if the task is scheduled to start again
+         */
+        private boolean completeInputTask(
+                ProcessTask task, ProcessState state, List<Future<Throwable>> futures, int[] retries, int taskIndex) {
+            final Throwable error = getInputTaskError(futures.get(taskIndex));
+
+            if (error == null || retries[taskIndex] >= taskRetryLimit || !isRetriableError(error) || !isRetriable(state, taskIndex)) {
+                state.getInputTaskState(taskIndex).setException(error);
+                return false;
+            }
+
+            retries[taskIndex]++;
+            final long waitMillis = Math.min(taskRetryInitialWait << Math.min(retries[taskIndex] - 1, 30), taskRetryMaxWait);
+            logger.warn(String.format("Input task %d failed. Retrying %d / %d after %d ms.",
+                                      taskIndex, retries[taskIndex], taskRetryLimit, waitMillis), error);
+            state.getInputTaskState(taskIndex).resetException();
+            resetFinishedTaskStates(state, taskIndex);
+            futures.set(taskIndex, startInputTask(task, state, taskIndex, waitMillis));
+            return futures.get(taskIndex) != null;
+        }
+
+        /**
+         * Marks the states of the {@code taskIndex}-th input task and its output not finished to run it again.
+         */
+        protected void resetFinishedTaskStates(ProcessState state, int taskIndex) {
+            state.getInputTaskState(taskIndex).resetFinished();
+            state.getOutputTaskState(taskIndex).resetFinished();
+        }
+
+        private static boolean isRetriableError(Throwable error) {
+            return !(error instanceof ConfigException) && !(error instanceof ExecutionInterruptedException);
+        }
+
+        /**
+         * Returns true if the {@code taskIndex}-th input task can run again after it fails.
+         *
+         * <p>It is not retriable if any of its output has been committed.
+         */
+        protected boolean isRetriable(ProcessState state, int taskIndex) {
+            return !state.getOutputTaskState(taskIndex).isCommitted();
+        }
+
+        /**
+         * Starts a thread which logs records, pages, and bytes processed by each running task periodically.
+         */
+        private ScheduledExecutorService startProgressReporter(final ExecSessionInternal exec) {
+            if (progressLogInterval <= 0) {
+                return null;
+            }
+            final ScheduledExecutorService reporter =
+                    Executors.newSingleThreadScheduledExecutor(new ExecutorThreadFactory("embulk-progress-reporter-%d"));
+            reporter.scheduleAtFixedRate(() -> {
+                for (final TaskProgress progress : exec.getRunningTaskProgresses()) {
+                    logger.info(progress.describe());
+                }
+            }, progressLogInterval, progressLogInterval, TimeUnit.SECONDS);
+            return reporter;
+        }
+
+        /**
+         * Returns the indexes of input tasks in the order to start.
+         *
+         * <p>If the input plugin implements {@link InputTaskCostHint}, costly tasks start first so that idle threads take
+         * smaller tasks while a large task is running. Tasks of unknown costs start last in the index order.
+         */
+        private int[] orderInputTasks(ProcessTask task) {
+            final Integer[] order = new Integer[inputTaskCount];
+            for (int i = 0; i < inputTaskCount; i++) {
+                order[i] = i;
+            }
+            final int[] orderInt = new int[inputTaskCount];
+
+            final InputPlugin inputPlugin = ExecInternal.sessionInternal().newPlugin(InputPlugin.class, task.getInputPluginType());
+            if (inputPlugin instanceof InputTaskCostHint) {
+                final long[] costs = new long[inputTaskCount];
+                try {
+                    for (int i = 0; i < inputTaskCount; i++) {
+                        costs[i] = ((InputTaskCostHint) inputPlugin).estimateTaskCost(task.getInputTaskSource(), i);
+                    }
+                    // Arrays.sort is stable for objects.
+                    Arrays.sort(order, (a, b) -> Long.compare(costs[b], costs[a]));
+                    logger.debug("Starting input tasks in the order of costs: {}", Arrays.toString(order));
+                } catch (final RuntimeException ex) {
+                    logger.warn("Failed to estimate costs of input tasks. Starting them in the index order.", ex);
+                    for (int i = 0; i < inputTaskCount; i++) {
+                        order[i] = i;
+                    }
+                }
+            }
+
+            for (int i = 0; i < inputTaskCount; i++) {
+                orderInt[i] = order[i];
+            }
+            return orderInt;
+        }
+
+        /**
+         * Submits an input task to {@code executor} after {@code delayMillis}. Its {@link Future} is notified when it
+         * completes for fail-fast.
+         */
+        protected Future<Throwable> submitInputTask(ExecutorService executor, Callable<Throwable> callable, long delayMillis) {
+            final InputTaskFuture future = new InputTaskFuture(timed(callable));
+            if (delayMillis <= 0) {
+                executor.execute(future);
+            } else {
+                retryScheduler.schedule(() -> {
+                    try {
+                        executor.execute(future);  // No-op if the task is cancelled while it is waiting.
+                    } catch (RejectedExecutionException ex) {
+                        future.fail(ex);
+                    }
+                }, delayMillis, TimeUnit.MILLISECONDS);
+            }
+            return future;
+        }
+
+        /**
+         * A {@link Future} of an input task which is put into the completion queue when it completes, or is cancelled.
+         */
+        private class InputTaskFuture extends FutureTask<Throwable> {
+            InputTaskFuture(Callable<Throwable> callable) {
+                super(callable);
+            }
+
+            @Override
+            protected void done() {
+                completedInputTasks.add(this);
+            }
+
+            void fail(Throwable error) {
+                setException(error);
+            }
+        }
+
+        /**
+         * Wraps a task to add its elapsed time to the sum of task times.
+         */
+        private Callable<Throwable> timed(final Callable<Throwable> callable) {
+            return () -> {
+                synchronized (activeInputTasksLock) {
+                    activeInputTasks++;
+                }
+                final long startedAt = System.nanoTime();
+                try {
+                    return callable.call();
+                } finally {
+                    taskNanos.addAndGet(System.nanoTime() - startedAt);
+                    synchronized (activeInputTasksLock) {
+                        activeInputTasks--;
+                        activeInputTasksLock.notifyAll();
+                    }
+                }
+            };
         }
 
         @Override
@@ -154,10 +562,10 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
             int started = 0;
             int finished = 0;
             for (int i = 0; i < taskCount; i++) {
-                if (state.getOutputTaskState(i).isStarted()) {
+                if (getProgressTaskState(state, i).isStarted()) {
                     started++;
                 }
-                if (state.getOutputTaskState(i).isFinished()) {
+                if (getProgressTaskState(state, i).isFinished()) {
                     finished++;
                 }
             }
@@ -165,7 +573,17 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
             logger.info(String.format("{done:%3d / %d, running: %d}", finished, taskCount, started - finished));
         }
 
-        protected abstract Future<Throwable> startInputTask(ProcessTask task, ProcessState state, int taskIndex);
+        /**
+         * Returns the state to show the progress of the {@code taskIndex}-th input task.
+         */
+        protected TaskState getProgressTaskState(ProcessState state, int taskIndex) {
+            return state.getOutputTaskState(taskIndex);
+        }
+
+        /**
+         * Starts the {@code taskIndex}-th input task after {@code delayMillis}, or returns null if it has been resumed.
+         */
+        protected abstract Future<Throwable> startInputTask(ProcessTask task, ProcessState state, int taskIndex, long delayMillis);
     }
 
     public static class DirectExecutor extends AbstractLocalExecutor {
@@ -182,49 +600,395 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
         }
 
         @Override
-        protected Future<Throwable> startInputTask(final ProcessTask task, final ProcessState state, final int taskIndex) {
+        protected Future<Throwable> startInputTask(final ProcessTask task, final ProcessState state, final int taskIndex, final long delayMillis) {
             if (state.getOutputTaskState(taskIndex).isCommitted()) {
                 logger.warn("Skipped resumed task {}", taskIndex);
                 return null;  // resumed
             }
 
-            return executor.submit(new Callable<Throwable>() {
+            return submitInputTask(executor, new Callable<Throwable>() {
                     public Throwable call() {
                         try (SetCurrentThreadName dontCare = new SetCurrentThreadName(String.format("task-%04d", taskIndex))) {
-                            ExecutorsInternal.process(ExecInternal.sessionInternal(), task, taskIndex, new ProcessStateCallback() {
-                                    public void started() {
-                                        state.getInputTaskState(taskIndex).start();
-                                        state.getOutputTaskState(taskIndex).start();
-                                    }
-
-                                    public void inputCommitted(TaskReport report) {
-                                        state.getInputTaskState(taskIndex).setTaskReport(report);
-                                    }
-
-                                    public void outputCommitted(TaskReport report) {
-                                        state.getOutputTaskState(taskIndex).setTaskReport(report);
-                                    }
-                                });
+                            runTask(task, state, taskIndex);
                             return null;
                         } finally {
                             state.getInputTaskState(taskIndex).finish();
                             state.getOutputTaskState(taskIndex).finish();
                         }
                     }
+                }, delayMillis);
+        }
+
+        protected void runTask(final ProcessTask task, final ProcessState state, final int taskIndex) {
+            ExecutorsInternal.process(ExecInternal.sessionInternal(), task, taskIndex, new ProcessStateCallback() {
+                    public void started() {
+                        state.getInputTaskState(taskIndex).start();
+                        state.getOutputTaskState(taskIndex).start();
+                    }
+
+                    public void inputCommitted(TaskReport report) {
+                        state.getInputTaskState(taskIndex).setTaskReport(report);
+                    }
+
+                    public void outputCommitted(TaskReport report) {
+                        state.getOutputTaskState(taskIndex).setTaskReport(report);
+                    }
+                });
+        }
+    }
+
+    /**
+     * Executes tasks as {@link DirectExecutor}, and starts a speculative attempt of a straggler task.
+     *
+     * <p>After {@code quantile} of the tasks have finished, a task running longer than {@code multiplier} times the
+     * median time of the finished tasks gets a duplicate attempt in another thread. The attempt which reaches its commit
+     * first wins, and the other attempt is interrupted and aborted. It is enabled only if both the input and the output
+     * declare their tasks idempotent by {@link IdempotentTaskHint}.
+     *
+     * <p>Every running attempt takes a slot out of {@code max_threads}. A speculative attempt starts only when a slot is
+     * free, that is, when fewer tasks than {@code max_threads} are still running.
+     */
+    public static class SpeculativeExecutor extends DirectExecutor {
+        private final double quantile;
+        private final double multiplier;
+        private final ExecutorService speculationExecutor;
+        private final Semaphore slots;
+        private final ConcurrentHashMap<Integer, Attempts> runningAttempts;
+        private final List<Long> finishedNanos;
+        private volatile boolean enabled;
+
+        public SpeculativeExecutor(int maxThreads, int taskCount, double quantile, double multiplier) {
+            super(maxThreads, taskCount);
+            this.quantile = quantile;
+            this.multiplier = multiplier;
+            this.speculationExecutor = Executors.newFixedThreadPool(maxThreads, new ExecutorThreadFactory("embulk-speculation-executor-%d"));
+            this.slots = new Semaphore(maxThreads);
+            this.runningAttempts = new ConcurrentHashMap<>();
+            this.finishedNanos = Collections.synchronizedList(new ArrayList<>());
+            this.enabled = false;
+        }
+
+        /**
+         * Interrupts speculative attempts left running, as when {@code fail_fast} has given up waiting for a cancelled task.
+         */
+        @Override
+        public void close() {
+            super.close();
+            speculationExecutor.shutdownNow();
+        }
+
+        @Override
+        public void execute(ProcessTask task, ProcessState state) {
+            enabled = isIdempotent(task);
+            if (!enabled) {
+                logger.info("Speculative execution is disabled because the input or the output does not declare its tasks idempotent.");
+                super.execute(task, state);
+                return;
+            }
+
+            final ScheduledExecutorService monitor =
+                    Executors.newSingleThreadScheduledExecutor(new ExecutorThreadFactory("embulk-speculation-monitor-%d"));
+            monitor.scheduleWithFixedDelay(() -> speculate(task, state), 1, 1, TimeUnit.SECONDS);
+            try {
+                super.execute(task, state);
+            } finally {
+                monitor.shutdownNow();
+            }
+        }
+
+        private static boolean isIdempotent(ProcessTask task) {
+            final ExecSessionInternal exec = ExecInternal.sessionInternal();
+            final InputPlugin inputPlugin = exec.newPlugin(InputPlugin.class, task.getInputPluginType());
+            final OutputPlugin outputPlugin = exec.newPlugin(OutputPlugin.class, task.getOutputPluginType());
+            return inputPlugin instanceof IdempotentTaskHint
+                    && ((IdempotentTaskHint) inputPlugin).isTaskIdempotent(task.getInputTaskSource())
+                    && outputPlugin instanceof IdempotentTaskHint
+                    && ((IdempotentTaskHint) outputPlugin).isTaskIdempotent(task.getOutputTaskSource());
+        }
+
+        /**
+         * Runs the first attempt of a task, and waits for the speculative attempt if it has started.
+         */
+        @Override
+        protected void runTask(final ProcessTask task, final ProcessState state, final int taskIndex) {
+            if (!enabled) {
+                super.runTask(task, state, taskIndex);
+                return;
+            }
+
+            try {
+                slots.acquire();
+            } catch (InterruptedException ex) {
+                throw new ExecutionInterruptedException(ex);
+            }
+            try {
+                runFirstAttempt(task, state, taskIndex);
+            } finally {
+                slots.release();
+            }
+        }
+
+        private void runFirstAttempt(final ProcessTask task, final ProcessState state, final int taskIndex) {
+            final Attempts attempts = new Attempts(taskIndex);
+            runningAttempts.put(taskIndex, attempts);
+            Throwable error = null;
+            try {
+                runAttempt(task, state, attempts, 0);
+            } catch (Throwable ex) {
+                error = ex;
+            } finally {
+                runningAttempts.remove(taskIndex);
+            }
+            final Future<?> speculative = attempts.finishFirstAttempt();
+            // The task itself is cancelled, as by fail_fast, if it is still interrupted.
+            boolean cancelled = Thread.currentThread().isInterrupted();
+
+            if (speculative != null && attempts.winner.get() != 0 && !cancelled) {
+                try {
+                    speculative.get();
+                } catch (ExecutionException ex) {
+                    if (error == null || error instanceof LostAttemptException) {
+                        error = ex.getCause();
+                    } else {
+                        error.addSuppressed(ex.getCause());
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    cancelled = true;
+                }
+            }
+            if (speculative != null && (attempts.winner.get() == 0 || cancelled)) {
+                attempts.cancelSpeculativeAttempt();
+                awaitAbortedSpeculativeAttempt(taskIndex, speculative);
+            }
+
+            if (state.getOutputTaskState(taskIndex).isCommitted()) {
+                finishedNanos.add(System.nanoTime() - attempts.startedAt);
+                return;
+            }
+            if (cancelled && !(error instanceof ExecutionInterruptedException)) {
+                final InterruptedException interrupted = new InterruptedException(String.format("Task %d is cancelled.", taskIndex));
+                if (error != null) {
+                    interrupted.addSuppressed(error);
+                }
+                error = new ExecutionInterruptedException(interrupted);
+            }
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            }
+            if (error instanceof Error) {
+                throw (Error) error;
+            }
+            throw new RuntimeException(error);
+        }
+
+        /**
+         * Waits for the interrupted speculative attempt to abort its output so that it never commits after the task ends.
+         *
+         * <p>It is not interruptible. It interrupts the current thread again if it is interrupted while waiting.
+         */
+        private static void awaitAbortedSpeculativeAttempt(final int taskIndex, final Future<?> speculative) {
+            boolean interrupted = Thread.interrupted();
+            try {
+                while (true) {
+                    try {
+                        speculative.get();
+                        return;
+                    } catch (ExecutionException ex) {
+                        logger.debug("Aborted the speculative attempt of task {}.", taskIndex, ex.getCause());
+                        return;
+                    } catch (InterruptedException ex) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private void runAttempt(final ProcessTask task, final ProcessState state, final Attempts attempts, final int attempt) {
+            final int taskIndex = attempts.taskIndex;
+            ExecutorsInternal.process(ExecInternal.sessionInternal(), task, taskIndex, attempt, new ProcessStateCallback() {
+                    public void started() {
+                        state.getInputTaskState(taskIndex).start();
+                        state.getOutputTaskState(taskIndex).start();
+                    }
+
+                    public void inputCommitted(TaskReport report) {
+                        // The output is aborted if another attempt has reached its commit.
+                        if (!attempts.winner.compareAndSet(-1, attempt)) {
+                            throw new LostAttemptException(taskIndex, attempt);
+                        }
+                        state.getInputTaskState(taskIndex).setAttempt(attempt);
+                        state.getOutputTaskState(taskIndex).setAttempt(attempt);
+                        state.getInputTaskState(taskIndex).setTaskReport(report);
+                    }
+
+                    public void outputCommitted(TaskReport report) {
+                        state.getOutputTaskState(taskIndex).setTaskReport(report);
+                    }
                 });
         }
+
+        /**
+         * Starts speculative attempts of tasks running longer than the threshold. It runs periodically in a thread.
+         */
+        private void speculate(final ProcessTask task, final ProcessState state) {
+            final long[] finished;
+            synchronized (finishedNanos) {
+                finished = finishedNanos.stream().mapToLong(Long::longValue).sorted().toArray();
+            }
+            if (finished.length == 0 || finished.length < quantile * inputTaskCount) {
+                return;
+            }
+            final long thresholdNanos = (long) (finished[finished.length / 2] * multiplier);
+
+            for (final Attempts attempts : runningAttempts.values()) {
+                final long elapsedNanos = System.nanoTime() - attempts.startedAt;
+                if (elapsedNanos > thresholdNanos) {
+                    if (!slots.tryAcquire()) {
+                        return;
+                    }
+                    final boolean started = attempts.startSpeculativeAttempt(() -> speculationExecutor.submit(() -> {
+                        try {
+                            if (!attempts.enterSpeculativeAttempt()) {
+                                return null;
+                            }
+                            try (SetCurrentThreadName dontCare = new SetCurrentThreadName(
+                                         String.format("task-%04d-speculative", attempts.taskIndex))) {
+                                logger.info("Task {} has run for {} ms, longer than {} ms. Started a speculative attempt.",
+                                            attempts.taskIndex,
+                                            TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                                            TimeUnit.NANOSECONDS.toMillis(thresholdNanos));
+                                runAttempt(task, state, attempts, 1);
+                                attempts.interruptFirstAttempt();
+                                return null;
+                            } finally {
+                                attempts.exitSpeculativeAttempt();
+                            }
+                        } finally {
+                            slots.release();
+                        }
+                    }));
+                    if (!started) {
+                        slots.release();
+                    }
+                }
+            }
+        }
+
+        private static class Attempts {
+            private final int taskIndex;
+            private final long startedAt;
+            private final Thread firstAttemptThread;
+            private final AtomicInteger winner;
+            private Future<?> speculative;  // guarded by this
+            private Thread speculativeAttemptThread;  // guarded by this
+            private boolean speculativeAttemptCancelled;  // guarded by this
+            private boolean firstAttemptFinished;  // guarded by this
+            private boolean firstAttemptInterrupted;  // guarded by this
+
+            Attempts(int taskIndex) {
+                this.taskIndex = taskIndex;
+                this.startedAt = System.nanoTime();
+                this.firstAttemptThread = Thread.currentThread();
+                this.winner = new AtomicInteger(-1);
+                this.speculative = null;
+                this.speculativeAttemptThread = null;
+                this.speculativeAttemptCancelled = false;
+                this.firstAttemptFinished = false;
+                this.firstAttemptInterrupted = false;
+            }
+
+            /**
+             * Starts the speculative attempt unless it has started, or the first attempt has finished or won.
+             */
+            synchronized boolean startSpeculativeAttempt(Supplier<Future<?>> starter) {
+                if (!firstAttemptFinished && speculative == null && winner.get() < 0) {
+                    speculative = starter.get();
+                    return true;
+                }
+                return false;
+            }
+
+            synchronized boolean enterSpeculativeAttempt() {
+                if (speculativeAttemptCancelled) {
+                    return false;
+                }
+                speculativeAttemptThread = Thread.currentThread();
+                return true;
+            }
+
+            void exitSpeculativeAttempt() {
+                synchronized (this) {
+                    speculativeAttemptThread = null;
+                }
+                // Clears an interruption by the first attempt not to leak it into the pooled thread.
+                Thread.interrupted();
+            }
+
+            /**
+             * Interrupts the speculative attempt after the first attempt has won.
+             */
+            synchronized void cancelSpeculativeAttempt() {
+                speculativeAttemptCancelled = true;
+                if (speculativeAttemptThread != null) {
+                    speculativeAttemptThread.interrupt();
+                }
+            }
+
+            /**
+             * Interrupts the first attempt if it is still running after the speculative attempt has won.
+             */
+            synchronized void interruptFirstAttempt() {
+                if (!firstAttemptFinished && winner.get() == 1) {
+                    firstAttemptInterrupted = true;
+                    firstAttemptThread.interrupt();
+                }
+            }
+
+            /**
+             * Marks the first attempt finished, and returns the speculative attempt if it has started.
+             *
+             * <p>It clears the interrupt only if it is from the speculative attempt, not to leak it into the pooled
+             * thread. Any other interrupt is kept, as it cancels the task.
+             */
+            synchronized Future<?> finishFirstAttempt() {
+                firstAttemptFinished = true;
+                if (firstAttemptInterrupted) {
+                    Thread.interrupted();
+                }
+                return speculative;
+            }
+        }
+
+        private static class LostAttemptException extends RuntimeException {
+            LostAttemptException(int taskIndex, int attempt) {
+                super(String.format("Attempt %d of task %d is aborted because another attempt has won.", attempt, taskIndex));
+            }
+        }
     }
 
     public static class ScatterExecutor extends AbstractLocalExecutor {
         private final int scatterCount;
         private final int inputTaskCount;
+        private final int queuePages;
+        private final boolean leastLoaded;
         private final ExecutorService inputExecutor;
         private final ExecutorService outputExecutor;
 
         public ScatterExecutor(int maxThreads, int inputTaskCount, int scatterCount) {
+            this(maxThreads, inputTaskCount, scatterCount, DEFAULT_SCATTER_QUEUE_PAGES, false);
+        }
+
+        public ScatterExecutor(int maxThreads, int inputTaskCount, int scatterCount, int queuePages, boolean leastLoaded) {
             super(inputTaskCount, inputTaskCount * scatterCount);
             this.inputTaskCount = inputTaskCount;
             this.scatterCount = scatterCount;
+            this.queuePages = queuePages;
+            this.leastLoaded = leastLoaded;
             this.inputExecutor = Executors.newFixedThreadPool(
                     Math.max(maxThreads / scatterCount, 1), new ExecutorThreadFactory("embulk-input-executor-%d"));
             this.outputExecutor = Executors.newCachedThreadPool(new ExecutorThreadFactory("embulk-output-executor-%d"));
@@ -237,20 +1001,43 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
         }
 
         @Override
-        protected Future<Throwable> startInputTask(final ProcessTask task, final ProcessState state, final int taskIndex) {
+        protected Future<Throwable> startInputTask(final ProcessTask task, final ProcessState state, final int taskIndex, final long delayMillis) {
             if (isAllScatterOutputFinished(state, taskIndex)) {
                 logger.warn("Skipped resumed input task {}", taskIndex);
                 return null;  // resumed
             }
 
-            return inputExecutor.submit(new Callable<Throwable>() {
+            return submitInputTask(inputExecutor, new Callable<Throwable>() {
                     public Throwable call() {
                         try (SetCurrentThreadName dontCare = new SetCurrentThreadName(String.format("task-%04d", taskIndex))) {
                             runInputTask(ExecInternal.sessionInternal(), task, state, taskIndex);
                             return null;
                         }
                     }
-                });
+                }, delayMillis);
+        }
+
+        @Override
+        protected boolean isRetriable(ProcessState state, int taskIndex) {
+            for (int i = 0; i < scatterCount; i++) {
+                if (state.getOutputTaskState(taskIndex * scatterCount + i).isCommitted()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        protected void resetFinishedTaskStates(ProcessState state, int taskIndex) {
+            super.resetFinishedTaskStates(state, taskIndex);
+            for (int i = 0; i < scatterCount; i++) {
+                state.getOutputTaskState(taskIndex * scatterCount + i).resetFinished();
+            }
+        }
+
+        @Override
+        protected TaskState getProgressTaskState(ProcessState state, int taskIndex) {
+            return state.getInputTaskState(taskIndex);
         }
 
         private boolean isAllScatterOutputFinished(ProcessState state, int taskIndex) {
@@ -268,11 +1055,12 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
             List<FilterPlugin> filterPlugins = FiltersInternal.newFilterPlugins(exec, task.getFilterPluginTypes());
             OutputPlugin outputPlugin = exec.newPlugin(OutputPlugin.class, task.getOutputPluginType());
 
-            try (ScatterTransactionalPageOutput tran = new ScatterTransactionalPageOutput(state, taskIndex, scatterCount)) {
+            final TaskProgress progress = exec.startTaskProgress(taskIndex);
+            try (ScatterTransactionalPageOutput tran = new ScatterTransactionalPageOutput(state, taskIndex, scatterCount, queuePages, leastLoaded)) {
                 tran.openOutputs(outputPlugin, task.getOutputSchema(), task.getOutputTaskSource());
 
                 try (AbortTransactionResource aborter = new AbortTransactionResource(tran)) {
-                    tran.openFilters(filterPlugins, task.getFilterSchemas(), task.getFilterTaskSources());
+                    tran.openFilters(filterPlugins, task.getFilterSchemas(), task.getFilterTaskSources(), exec.isFilterPipelined());
 
                     tran.startWorkers(outputExecutor);
 
@@ -282,7 +1070,8 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
                         state.getOutputTaskState(taskIndex * scatterCount + i).start();
                     }
 
-                    TaskReport inputTaskReport = inputPlugin.run(task.getInputTaskSource(), task.getInputSchema(), taskIndex, tran);
+                    TaskReport inputTaskReport = inputPlugin.run(
+                            task.getInputTaskSource(), task.getInputSchema(), taskIndex, progress.countInput(tran));
 
                     // inputCommitted
                     if (inputTaskReport == null) {
@@ -295,8 +1084,256 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
                     aborter.dontAbort();
                 }
             } finally {
+                exec.finishTaskProgress(taskIndex);
                 state.getInputTaskState(taskIndex).finish();
-                state.getOutputTaskState(taskIndex).finish();
+                for (int i = 0; i < scatterCount; i++) {
+                    state.getOutputTaskState(taskIndex * scatterCount + i).finish();
+                }
+            }
+        }
+    }
+
+    /**
+     * Executes many input tasks with fewer output tasks.
+     *
+     * <p>Pages from the input task {@code i} are sent to the output task {@code i % outputTaskCount} through a bounded
+     * queue. Each output task runs in its own thread through all the input tasks, and commits after all the input tasks
+     * succeed. The assignment is fixed so that a resumed execution skips exactly the input tasks whose pages have been
+     * committed by an output task.
+     */
+    public static class GatherExecutor extends AbstractLocalExecutor {
+        private final ExecutorService inputExecutor;
+        private final ExecutorService outputExecutor;
+        private final GatherOutputWorker[] outputWorkers;
+
+        public GatherExecutor(int maxThreads, int inputTaskCount, int outputTaskCount) {
+            super(inputTaskCount, outputTaskCount);
+            this.inputExecutor = Executors.newFixedThreadPool(maxThreads, new ExecutorThreadFactory("embulk-input-executor-%d"));
+            this.outputExecutor = Executors.newFixedThreadPool(outputTaskCount, new ExecutorThreadFactory("embulk-output-executor-%d"));
+            this.outputWorkers = new GatherOutputWorker[outputTaskCount];
+        }
+
+        @Override
+        public void close() {
+            inputExecutor.shutdown();
+            outputExecutor.shutdown();
+        }
+
+        @Override
+        public void execute(ProcessTask task, ProcessState state) {
+            state.initialize(inputTaskCount, outputTaskCount);
+
+            final ExecSessionInternal exec = ExecInternal.sessionInternal();
+            for (int i = 0; i < outputTaskCount; i++) {
+                if (state.getOutputTaskState(i).isCommitted()) {
+                    logger.warn("Skipped resumed output task {}", i);
+                } else {
+                    outputWorkers[i] = new GatherOutputWorker(exec, task, state, i, outputExecutor);
+                }
+            }
+
+            try {
+                super.execute(task, state);
+            } finally {
+                completeOutputWorkers(state);
+            }
+        }
+
+        @Override
+        protected TaskState getProgressTaskState(ProcessState state, int taskIndex) {
+            return state.getInputTaskState(taskIndex);
+        }
+
+        /**
+         * Returns false because {@link Page}s of a failed input task may have been already passed to its output task.
+         */
+        @Override
+        protected boolean isRetriable(ProcessState state, int taskIndex) {
+            return false;
+        }
+
+        @Override
+        protected Future<Throwable> startInputTask(final ProcessTask task, final ProcessState state, final int taskIndex, final long delayMillis) {
+            final GatherOutputWorker outputWorker = outputWorkers[taskIndex % outputTaskCount];
+            if (outputWorker == null) {
+                logger.warn("Skipped resumed input task {}", taskIndex);
+                return null;  // resumed
+            }
+
+            return submitInputTask(inputExecutor, new Callable<Throwable>() {
+                    public Throwable call() {
+                        try (SetCurrentThreadName dontCare = new SetCurrentThreadName(String.format("task-%04d", taskIndex))) {
+                            runInputTask(ExecInternal.sessionInternal(), task, state, taskIndex, outputWorker);
+                            return null;
+                        }
+                    }
+                }, delayMillis);
+        }
+
+        private void runInputTask(
+                ExecSessionInternal exec, ProcessTask task, ProcessState state, int taskIndex, GatherOutputWorker outputWorker) {
+            InputPlugin inputPlugin = exec.newPlugin(InputPlugin.class, task.getInputPluginType());
+            List<FilterPlugin> filterPlugins = FiltersInternal.newFilterPlugins(exec, task.getFilterPluginTypes());
+
+            final TaskProgress progress = exec.startTaskProgress(taskIndex);
+            state.getInputTaskState(taskIndex).start();
+            try {
+                PageOutput filtered = FiltersInternal.open(filterPlugins, task.getFilterTaskSources(), task.getFilterSchemas(),
+                                                           progress.countOutput(outputWorker.newPageOutput()), exec.isFilterPipelined());
+                try (CloseResource closer = new CloseResource(filtered)) {
+                    TaskReport inputTaskReport = inputPlugin.run(
+                            task.getInputTaskSource(), task.getInputSchema(), taskIndex, progress.countInput(filtered));
+                    if (inputTaskReport == null) {
+                        inputTaskReport = exec.newTaskReport();
+                    }
+                    state.getInputTaskState(taskIndex).setTaskReport(inputTaskReport);
+                }
+            } finally {
+                exec.finishTaskProgress(taskIndex);
+                state.getInputTaskState(taskIndex).finish();
+            }
+        }
+
+        private void completeOutputWorkers(ProcessState state) {
+            for (int i = 0; i < outputTaskCount; i++) {
+                GatherOutputWorker worker = outputWorkers[i];
+                if (worker != null) {
+                    final Throwable error = worker.complete(isAllGatheredInputCommitted(state, i));
+                    if (error != null) {
+                        state.getOutputTaskState(i).setException(error);
+                    }
+                    outputWorkers[i] = null;
+                }
+            }
+        }
+
+        private boolean isAllGatheredInputCommitted(ProcessState state, int outputTaskIndex) {
+            for (int i = outputTaskIndex; i < inputTaskCount; i += outputTaskCount) {
+                if (!state.getInputTaskState(i).isCommitted() || state.getInputTaskState(i).getException().isPresent()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class GatherOutputWorker implements Callable<Throwable> {
+        private static final Page END_PAGE = PageImpl.allocate(0);
+        private static final int QUEUE_PAGES = 16;
+
+        private final ExecSessionInternal exec;
+        private final ProcessTask task;
+        private final ProcessState state;
+        private final int outputTaskIndex;
+        private final BlockingQueue<Page> queue;
+        private final Future<Throwable> future;
+        private volatile boolean stopped;
+        private volatile boolean commit;
+
+        public GatherOutputWorker(ExecSessionInternal exec, ProcessTask task, ProcessState state, int outputTaskIndex,
+                ExecutorService executor) {
+            this.exec = exec;
+            this.task = task;
+            this.state = state;
+            this.outputTaskIndex = outputTaskIndex;
+            this.queue = new ArrayBlockingQueue<>(QUEUE_PAGES);
+            this.stopped = false;
+            this.commit = false;
+            this.future = executor.submit(this);
+        }
+
+        /**
+         * Returns a {@link PageOutput} for an input task. Its {@code finish} and {@code close} do not finish the output task.
+         */
+        public PageOutput newPageOutput() {
+            return new PageOutput() {
+                @Override
+                public void add(Page page) {
+                    try {
+                        put(page);
+                    } catch (InterruptedException ex) {
+                        page.release();
+                        throw new RuntimeException(ex);
+                    }
+                }
+
+                @Override
+                public void finish() {}
+
+                @Override
+                public void close() {}
+            };
+        }
+
+        private void put(Page page) throws InterruptedException {
+            while (!queue.offer(page, 100, TimeUnit.MILLISECONDS)) {
+                if (stopped) {
+                    page.release();
+                    throw new IllegalStateException(String.format("Output task %d has already stopped.", outputTaskIndex));
+                }
+            }
+        }
+
+        /**
+         * Lets the output task commit, or abort if {@code commit} is false, and waits for the output task.
+         */
+        public Throwable complete(boolean commit) {
+            this.commit = commit;
+            try {
+                try {
+                    while (!queue.offer(END_PAGE, 100, TimeUnit.MILLISECONDS)) {
+                        if (stopped) {
+                            break;
+                        }
+                    }
+                    return future.get();
+                } catch (ExecutionException ex) {
+                    return ex.getCause();
+                } catch (InterruptedException ex) {
+                    future.cancel(true);
+                    return new ExecutionInterruptedException(ex);
+                }
+            } finally {
+                Page page;
+                while ((page = queue.poll()) != null) {
+                    if (page != END_PAGE) {
+                        page.release();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public Throwable call() throws InterruptedException {
+            try (SetCurrentThreadName dontCare = new SetCurrentThreadName(String.format("output-%04d", outputTaskIndex))) {
+                OutputPlugin outputPlugin = exec.newPlugin(OutputPlugin.class, task.getOutputPluginType());
+                TransactionalPageOutput tran = outputPlugin.open(task.getOutputTaskSource(), task.getOutputSchema(), outputTaskIndex);
+                state.getOutputTaskState(outputTaskIndex).start();
+                try (CloseResource closer = new CloseResource(tran)) {
+                    try (AbortTransactionResource aborter = new AbortTransactionResource(tran)) {
+                        while (true) {
+                            Page page = queue.take();
+                            if (page == END_PAGE) {
+                                break;
+                            }
+                            tran.add(page);
+                        }
+                        if (!commit) {
+                            return null;  // aborted
+                        }
+                        tran.finish();
+                        TaskReport outputTaskReport = tran.commit();
+                        aborter.dontAbort();
+                        if (outputTaskReport == null) {
+                            outputTaskReport = exec.newTaskReport();
+                        }
+                        state.getOutputTaskState(outputTaskIndex).setTaskReport(outputTaskReport);
+                    }
+                }
+                return null;
+            } finally {
+                stopped = true;
+                state.getOutputTaskState(outputTaskIndex).finish();
             }
         }
     }
@@ -306,80 +1343,77 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
 
         private static class OutputWorker implements Callable<Throwable> {
             private final PageOutput output;
+            private final SpscPageQueue queue;
             private final Future<Throwable> future;
-            private volatile int addWaiting;
-            private volatile Page queued;
+            private long addedPages;  // accessed only by the input thread
+            private volatile long outputPages;  // written only by the worker thread
+            private volatile boolean discarding;
 
-            public OutputWorker(PageOutput output, ExecutorService executor) {
+            public OutputWorker(PageOutput output, int queuePages, ExecutorService executor) {
                 this.output = output;
-                this.addWaiting = 0;
+                this.queue = new SpscPageQueue(queuePages);
                 this.future = executor.submit(this);
             }
 
-            public synchronized void done() throws InterruptedException {
-                while (true) {
-                    if (queued == null && addWaiting == 0) {
-                        queued = DONE_PAGE;
-                        notifyAll();
-                        return;
-                    } else if (queued == DONE_PAGE) {
-                        return;
-                    }
-                    wait();
-                }
+            public void done() throws InterruptedException {
+                queue.put(DONE_PAGE);
             }
 
-            public synchronized void add(Page page) throws InterruptedException {
-                addWaiting++;
-                try {
-                    while (true) {
-                        if (queued == null) {
-                            queued = page;
-                            notifyAll();
-                            return;
-                        } else if (queued == DONE_PAGE) {
-                            page.release();
-                            return;
-                        }
-                        wait();
-                    }
-                } finally {
-                    addWaiting--;
+            /**
+             * Lets the worker release queued pages without passing them to the output, so that it stops soon.
+             */
+            public void discard() {
+                discarding = true;
+            }
+
+            public void add(Page page) throws InterruptedException {
+                addedPages++;
+                if (!queue.put(page)) {
+                    // The worker has already stopped.
+                    page.release();
                 }
             }
 
+            /**
+             * Returns the number of pages queued or being processed by the worker.
+             */
+            public long getLoad() {
+                return addedPages - outputPages;
+            }
+
             public Throwable join() throws InterruptedException {
                 try {
                     return future.get();
                 } catch (ExecutionException ex) {
                     return ex.getCause();
+                } finally {
+                    // The worker has stopped. Release the pages left in the queue instead of the worker.
+                    Page page;
+                    while ((page = queue.poll()) != null) {
+                        if (page != DONE_PAGE) {
+                            page.release();
+                        }
+                    }
                 }
             }
 
             @Override
-            public synchronized Throwable call() throws InterruptedException {
+            public Throwable call() throws InterruptedException {
                 try {
                     while (true) {
-                        if (queued != null) {
-                            if (queued == DONE_PAGE) {
-                                return null;
-                            }
-                            output.add(queued);
-                            queued = null;
-                            notifyAll();
+                        final Page page = queue.take();
+                        if (page == DONE_PAGE) {
+                            return null;
                         }
-                        wait();
-                    }
-                } finally {
-                    try {
-                        if (queued != null && queued != DONE_PAGE) {
-                            queued.release();
-                            queued = null;
+                        if (discarding) {
+                            page.release();
+                            continue;
                         }
-                    } finally {
-                        queued = DONE_PAGE;
+                        output.add(page);
+                        outputPages++;
                     }
-                    notifyAll();
+                } finally {
+                    queue.close();
                 }
             }
         }
@@ -393,13 +1427,22 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
         private final CloseResource[] closeThese;
 
         private final OutputWorker[] outputWorkers;
+        private final int queuePages;
+        private final boolean leastLoaded;
 
         private long pageCount;
+        private final long[] scatteredPages;
+        private final long[] scatteredBytes;
 
-        public ScatterTransactionalPageOutput(ProcessState state, int taskIndex, int scatterCount) {
+        public ScatterTransactionalPageOutput(
+                ProcessState state, int taskIndex, int scatterCount, int queuePages, boolean leastLoaded) {
             this.state = state;
             this.taskIndex = taskIndex;
             this.scatterCount = scatterCount;
+            this.queuePages = queuePages;
+            this.leastLoaded = leastLoaded;
+            this.scatteredPages = new long[scatterCount];
+            this.scatteredBytes = new long[scatterCount];
 
             this.trans = new TransactionalPageOutput[scatterCount];
             this.filtereds = new PageOutput[scatterCount];
@@ -421,11 +1464,12 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
             }
         }
 
-        public void openFilters(List<FilterPlugin> filterPlugins, List<Schema> filterSchemas, List<TaskSource> filterTaskSources) {
+        public void openFilters(List<FilterPlugin> filterPlugins, List<Schema> filterSchemas, List<TaskSource> filterTaskSources,
+                boolean pipelined) {
             for (int i = 0; i < scatterCount; i++) {
                 TransactionalPageOutput tran = trans[i];
                 if (tran != null) {
-                    PageOutput filtered = FiltersInternal.open(filterPlugins, filterTaskSources, filterSchemas, trans[i]);
+                    PageOutput filtered = FiltersInternal.open(filterPlugins, filterTaskSources, filterSchemas, trans[i], pipelined);
                     filtereds[i] = filtered;
                     closeThese[i].closeThis(filtered);
                 }
@@ -436,14 +1480,40 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
             for (int i = 0; i < scatterCount; i++) {
                 PageOutput filtered = filtereds[i];
                 if (filtered != null) {
-                    outputWorkers[i] = new OutputWorker(filtered, outputExecutor);
+                    outputWorkers[i] = new OutputWorker(filtered, queuePages, outputExecutor);
+                } else {
+                    checkResumable(i);
                 }
             }
         }
 
+        /**
+         * Checks that the committed output task is resumed by the same routing.
+         *
+         * <p>A resumed input task must send the same pages to the same output tasks as the previous attempt so that the
+         * committed output tasks do not lose or duplicate records. It is possible only when both attempts scatter in
+         * round robin. A task report without {@code scatter_routing} is from a version which scattered only in round robin.
+         */
+        private void checkResumable(final int workerIndex) {
+            final int outputTaskIndex = taskIndex * scatterCount + workerIndex;
+            final Optional<TaskReport> report = state.getOutputTaskState(outputTaskIndex).getTaskReport();
+            final String previousRouting = report.isPresent()
+                    ? report.get().get(String.class, "scatter_routing", ROUND_ROBIN) : ROUND_ROBIN;
+            if (leastLoaded || !ROUND_ROBIN.equals(previousRouting)) {
+                throw new ConfigException(String.format(
+                        "Input task %d cannot be resumed because its output task %d was committed with scatter_routing '%s', "
+                                + "and the pages cannot be sent to the same output tasks again. Resume it with scatter_routing "
+                                + "'round_robin' if the previous attempt also used 'round_robin', or run it from the beginning.",
+                        taskIndex, outputTaskIndex, previousRouting));
+            }
+        }
+
         public void add(Page page) {
-            OutputWorker worker = outputWorkers[(int) (pageCount % scatterCount)];
+            final int workerIndex = leastLoaded ? selectLeastLoadedWorker() : (int) (pageCount % scatterCount);
+            OutputWorker worker = outputWorkers[workerIndex];
             if (worker != null) {
+                scatteredPages[workerIndex]++;
+                scatteredBytes[workerIndex] += page.buffer().limit();
                 try {
                     worker.add(page);
                 } catch (InterruptedException ex) {
@@ -453,6 +1523,28 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
             pageCount++;
         }
 
+        private int selectLeastLoadedWorker() {
+            // Starts from the round-robin position so that idle workers are chosen in turn.
+            int selected = (int) (pageCount % scatterCount);
+            long minLoad = Long.MAX_VALUE;
+            for (int i = 0; i < scatterCount; i++) {
+                final int workerIndex = (int) ((pageCount + i) % scatterCount);
+                final OutputWorker worker = outputWorkers[workerIndex];
+                if (worker == null) {
+                    continue;
+                }
+                final long load = worker.getLoad();
+                if (load < minLoad) {
+                    selected = workerIndex;
+                    minLoad = load;
+                    if (load == 0) {
+                        break;
+                    }
+                }
+            }
+            return selected;
+        }
+
         public void finish() {
             completeWorkers();
             for (int i = 0; i < scatterCount; i++) {
@@ -463,19 +1555,106 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
         }
 
         public void close() {
-            completeWorkers();
+            boolean interrupted = Thread.interrupted();
+            Throwable error = stopWorkers();
+            interrupted |= Thread.interrupted();
             for (int i = 0; i < scatterCount; i++) {
-                closeThese[i].close();
+                try {
+                    closeThese[i].close();
+                } catch (RuntimeException | Error ex) {
+                    error = addSuppressed(error, ex);
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
             }
+            throwIfError(error);
         }
 
+        /**
+         * Aborts all the scattered outputs after stopping the workers even if the input thread is interrupted, as by
+         * {@code fail_fast}. The interrupt is restored after all.
+         */
         public void abort() {
-            completeWorkers();
+            boolean interrupted = Thread.interrupted();
+            Throwable error = stopWorkers();
+            interrupted |= Thread.interrupted();
             for (int i = 0; i < scatterCount; i++) {
                 if (trans[i] != null) {
-                    trans[i].abort();
+                    try {
+                        FiltersInternal.stopPipeline(filtereds[i]);
+                        trans[i].abort();
+                    } catch (RuntimeException | Error ex) {
+                        error = addSuppressed(error, ex);
+                    }
                 }
             }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            throwIfError(error);
+        }
+
+        /**
+         * Stops all the workers without passing their queued pages to the outputs, and returns their errors.
+         *
+         * <p>It is not interruptible so that no worker calls the outputs after it returns. It interrupts the current
+         * thread again if it is interrupted while waiting.
+         */
+        private Throwable stopWorkers() {
+            boolean interrupted = false;
+            Throwable error = null;
+            for (int i = 0; i < scatterCount; i++) {
+                final OutputWorker worker = outputWorkers[i];
+                if (worker == null) {
+                    continue;
+                }
+                worker.discard();
+                while (true) {
+                    try {
+                        worker.done();
+                        break;
+                    } catch (InterruptedException ex) {
+                        interrupted = true;
+                    }
+                }
+                while (true) {
+                    try {
+                        error = addSuppressed(error, worker.join());
+                        break;
+                    } catch (InterruptedException ex) {
+                        interrupted = true;
+                    }
+                }
+                outputWorkers[i] = null;
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return error;
+        }
+
+        private static Throwable addSuppressed(Throwable error, Throwable another) {
+            if (error == null) {
+                return another;
+            }
+            if (another != null && another != error) {
+                error.addSuppressed(another);
+            }
+            return error;
+        }
+
+        private static void throwIfError(Throwable error) {
+            if (error == null) {
+                return;
+            }
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            }
+            if (error instanceof Error) {
+                throw (Error) error;
+            }
+            throw new RuntimeException(error);
         }
 
         public TaskReport commit() {
@@ -488,6 +1667,11 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
                     if (outputTaskReport == null) {
                         outputTaskReport = Exec.newTaskReport();
                     }
+                    outputTaskReport.set("scattered_pages", scatteredPages[i]);
+                    outputTaskReport.set("scattered_bytes", scatteredBytes[i]);
+                    outputTaskReport.set("scatter_routing", leastLoaded ? LEAST_LOADED : ROUND_ROBIN);
+                    logger.debug("Output task {} received {} pages ({} bytes) from input task {}.",
+                                 outputTaskIndex, scatteredPages[i], scatteredBytes[i], taskIndex);
                     state.getOutputTaskState(outputTaskIndex).setTaskReport(outputTaskReport);
                 }
             }
@@ -0,0 +1,399 @@
+package org.embulk.exec;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.embulk.EmbulkSystemProperties;
+import org.embulk.config.ConfigException;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskReport;
+import org.embulk.plugin.PluginType;
+import org.embulk.spi.ExecInternal;
+import org.embulk.spi.ExecSessionInternal;
+import org.embulk.spi.ExecutorPlugin;
+import org.embulk.spi.FilterPlugin;
+import org.embulk.spi.InputPlugin;
+import org.embulk.spi.OutputPlugin;
+import org.embulk.spi.ProcessState;
+import org.embulk.spi.ProcessTask;
+import org.embulk.spi.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An executor which runs tasks in worker JVM processes forked on the same host.
+ *
+ * <p>Each worker process runs a task through the input, the filters, and the output, as {@link LocalExecutorPlugin}
+ * runs it in a thread. The worker processes receive the Embulk system properties, the {@code exec:} config, and
+ * {@link ProcessTask} through their standard input at first, and then indexes of tasks to run one by one. They send
+ * back events of the tasks, including {@link TaskReport}s, through their standard output as lines of JSON, so that
+ * {@link ProcessState} is recorded for resuming as well as {@link LocalExecutorPlugin}. Logs of the worker processes
+ * go to the standard error inherited from this process.
+ *
+ * <p>The worker processes start with the same Java runtime and class path as this process, and {@code jvm_options}.
+ * They find plugins only through the Embulk system properties and the class path. Plugins registered only in this
+ * process, such as through {@code EmbulkEmbed.Bootstrap}, are rejected before starting the worker processes. A worker
+ * process loads the plugins of the task before it is given any task, and reports if it cannot.
+ */
+public class LocalProcessExecutorPlugin implements ExecutorPlugin {
+    public LocalProcessExecutorPlugin(final EmbulkSystemProperties embulkSystemProperties) {
+        this.embulkSystemProperties = embulkSystemProperties;
+        this.defaultProcesses = embulkSystemProperties.getPropertyAsInteger(
+                "max_processes", Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public void transaction(final ConfigSource config, final Schema outputSchema, final int inputTaskCount,
+            final ExecutorPlugin.Control control) {
+        final int processes = Math.max(Math.min(config.get(Integer.class, "max_processes", this.defaultProcesses), inputTaskCount), 1);
+        final List<String> jvmOptions = config.has("jvm_options")
+                ? config.getListOf(String.class, "jvm_options") : Collections.<String>emptyList();
+        logger.info("Using local process executor with max_processes={} / tasks={}", processes, inputTaskCount);
+        control.transaction(outputSchema, inputTaskCount, new ProcessExecutor(config, processes, jvmOptions, inputTaskCount));
+    }
+
+    /**
+     * The name of the main class of worker processes.
+     */
+    private static final String WORKER_MAIN_CLASS = "org.embulk.cli.LocalProcessWorker";
+
+    // Events sent from org.embulk.cli.LocalProcessWorker.
+    private static final String EVENT_READY = "ready";
+    private static final String EVENT_UNAVAILABLE = "unavailable";
+    private static final String EVENT_STARTED = "started";
+    private static final String EVENT_INPUT_COMMITTED = "input_committed";
+    private static final String EVENT_OUTPUT_COMMITTED = "output_committed";
+    private static final String EVENT_FINISHED = "finished";
+
+    private static final long DESTROY_WAIT_SECONDS = 10;
+
+    private class ProcessExecutor implements ExecutorPlugin.Executor {
+        ProcessExecutor(final ConfigSource execConfig, final int processes, final List<String> jvmOptions, final int taskCount) {
+            this.execConfig = execConfig;
+            this.processes = processes;
+            this.jvmOptions = jvmOptions;
+            this.taskCount = taskCount;
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1304
+        public void execute(final ProcessTask task, final ProcessState state) {
+            state.initialize(this.taskCount, this.taskCount);
+
+            final ExecSessionInternal exec = ExecInternal.sessionInternal();
+            checkPluginsNotBuiltin(exec, task);
+            final org.embulk.config.ModelManager model = exec.getModelManager();
+            final List<String> header = new ArrayList<>();
+            header.add(encodeSystemProperties(embulkSystemProperties));
+            header.add(model.writeObject(this.execConfig.deepCopy().set("transaction_time", exec.getTransactionTimeString())));
+            header.add(model.writeObject(task));
+
+            final Queue<Integer> pending = new ConcurrentLinkedQueue<>();
+            for (int i = 0; i < this.taskCount; i++) {
+                if (state.getOutputTaskState(i).isCommitted()) {
+                    logger.warn("Skipped resumed task {}", i);
+                } else {
+                    pending.add(i);
+                }
+            }
+
+            final ExecutorService executor = Executors.newFixedThreadPool(this.processes);
+            Throwable workerError = null;
+            try {
+                final List<Future<Void>> futures = new ArrayList<>();
+                for (int i = 0; i < this.processes; i++) {
+                    final int workerIndex = i;
+                    futures.add(executor.submit(() -> {
+                        try (SetCurrentThreadName dontCare = new SetCurrentThreadName(String.format("worker-%04d", workerIndex))) {
+                            runWorker(workerIndex, header, pending, state, model);
+                        }
+                        return null;
+                    }));
+                }
+                for (final Future<Void> future : futures) {
+                    try {
+                        future.get();
+                    } catch (final ExecutionException ex) {
+                        logger.error("Worker process failed.", ex.getCause());
+                        if (workerError == null) {
+                            workerError = ex.getCause();
+                        }
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            // Tasks are left if all the worker processes have failed to start, or to load the plugins.
+            Integer taskIndex;
+            while ((taskIndex = pending.poll()) != null) {
+                if (workerError instanceof ConfigException) {
+                    state.getInputTaskState(taskIndex).setException(workerError);
+                } else {
+                    state.getInputTaskState(taskIndex).setException(
+                            new IllegalStateException(String.format("No worker process ran task %d.", taskIndex), workerError));
+                }
+            }
+        }
+
+        @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1304
+        private void runWorker(final int workerIndex, final List<String> header, final Queue<Integer> pending,
+                final ProcessState state, final org.embulk.config.ModelManager model)
+                throws IOException, InterruptedException {
+            final ArrayList<String> command = new ArrayList<>();
+            command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+            command.addAll(this.jvmOptions);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(WORKER_MAIN_CLASS);
+
+            final Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            logger.info("Started worker process {}.", workerIndex);
+            boolean completed = false;
+            try {
+                try (final BufferedWriter writer = new BufferedWriter(
+                             new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+                         final BufferedReader reader = new BufferedReader(
+                             new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                    for (final String line : header) {
+                        writeLine(writer, line);
+                    }
+                    awaitWorkerReady(reader, workerIndex, model);
+                    runTasks(writer, reader, pending, state, model);
+                }
+                completed = true;
+            } finally {
+                if (!completed) {
+                    // The worker process may be still running a task, or blocked in writing events.
+                    destroyWorker(process, workerIndex);
+                }
+            }
+
+            // Closing the standard input lets the worker process exit.
+            final int exitCode;
+            try {
+                exitCode = process.waitFor();
+            } catch (final InterruptedException ex) {
+                destroyWorker(process, workerIndex);
+                throw ex;
+            }
+            if (exitCode != 0) {
+                logger.warn("Worker process {} exited with {}.", workerIndex, exitCode);
+            }
+        }
+
+        private final ConfigSource execConfig;
+        private final int processes;
+        private final List<String> jvmOptions;
+        private final int taskCount;
+    }
+
+    /**
+     * Fails if a plugin of the task is registered only in this process, such as through {@code EmbulkEmbed.Bootstrap},
+     * as worker processes cannot load it.
+     */
+    static void checkPluginsNotBuiltin(final ExecSessionInternal exec, final ProcessTask task) {
+        final List<String> builtinPlugins = new ArrayList<>();
+        if (exec.isBuiltinPlugin(InputPlugin.class, task.getInputPluginType())) {
+            builtinPlugins.add("input '" + task.getInputPluginType().getName() + "'");
+        }
+        for (final PluginType filterType : task.getFilterPluginTypes()) {
+            if (exec.isBuiltinPlugin(FilterPlugin.class, filterType)) {
+                builtinPlugins.add("filter '" + filterType.getName() + "'");
+            }
+        }
+        if (exec.isBuiltinPlugin(OutputPlugin.class, task.getOutputPluginType())) {
+            builtinPlugins.add("output '" + task.getOutputPluginType().getName() + "'");
+        }
+        if (!builtinPlugins.isEmpty()) {
+            throw new ConfigException(String.format(
+                    "The local_process executor cannot run plugins registered only in this process: %s. Worker processes "
+                            + "load plugins only through the Embulk system properties and the class path. Install the plugins, "
+                            + "or use the local executor.",
+                    String.join(", ", builtinPlugins)));
+        }
+    }
+
+    /**
+     * Waits for a worker process to load the plugins of the task.
+     *
+     * <p>It throws {@link ConfigException} if the worker process cannot load them, so that no task runs.
+     */
+    @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1304
+    static void awaitWorkerReady(final BufferedReader reader, final int workerIndex, final org.embulk.config.ModelManager model)
+            throws IOException {
+        final String line = reader.readLine();
+        if (line == null) {
+            throw new IOException(String.format("Worker process %d exited before it got ready.", workerIndex));
+        }
+        final TaskReport event = model.readObject(TaskReport.class, line);
+        switch (event.get(String.class, "event")) {
+            case EVENT_READY:
+                return;
+            case EVENT_UNAVAILABLE:
+                throw new ConfigException(String.format(
+                        "Worker process %d cannot load the plugins of the task: %s", workerIndex, event.get(String.class, "error")));
+            default:
+                throw new IOException("Unexpected event from a worker process: " + line);
+        }
+    }
+
+    /**
+     * Gives pending tasks to a worker process one by one, and records their events into {@link ProcessState}.
+     *
+     * <p>If the worker process dies while running a task, the task fails with {@link IOException}, and it is thrown.
+     */
+    @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1304
+    static void runTasks(final Writer writer, final BufferedReader reader, final Queue<Integer> pending,
+            final ProcessState state, final org.embulk.config.ModelManager model) throws IOException {
+        Integer taskIndex;
+        while ((taskIndex = pending.poll()) != null) {
+            try {
+                writeLine(writer, Integer.toString(taskIndex));
+                receiveTaskEvents(reader, taskIndex, state, model);
+            } catch (final IOException ex) {
+                state.getInputTaskState(taskIndex).setException(ex);
+                state.getInputTaskState(taskIndex).finish();
+                state.getOutputTaskState(taskIndex).finish();
+                throw ex;
+            }
+        }
+    }
+
+    @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1304
+    private static void receiveTaskEvents(final BufferedReader reader, final int taskIndex, final ProcessState state,
+            final org.embulk.config.ModelManager model) throws IOException {
+        while (true) {
+            final String line = reader.readLine();
+            if (line == null) {
+                throw new IOException(String.format("Worker process exited while running task %d.", taskIndex));
+            }
+            final TaskReport event = model.readObject(TaskReport.class, line);
+            switch (event.get(String.class, "event")) {
+                case EVENT_STARTED:
+                    state.getInputTaskState(taskIndex).start();
+                    state.getOutputTaskState(taskIndex).start();
+                    break;
+                case EVENT_INPUT_COMMITTED:
+                    state.getInputTaskState(taskIndex).setTaskReport(event.getNested("report"));
+                    break;
+                case EVENT_OUTPUT_COMMITTED:
+                    state.getOutputTaskState(taskIndex).setTaskReport(event.getNested("report"));
+                    break;
+                case EVENT_FINISHED:
+                    if (event.has("error")) {
+                        state.getInputTaskState(taskIndex).setException(decodeTaskError(event, taskIndex));
+                    }
+                    state.getInputTaskState(taskIndex).finish();
+                    state.getOutputTaskState(taskIndex).finish();
+                    return;
+                default:
+                    throw new IOException("Unexpected event from a worker process: " + line);
+            }
+        }
+    }
+
+    /**
+     * Restores the exception of a failed task from its serialized form, so that its type is kept as if the task ran in
+     * this process. The stack trace in text is wrapped instead if the exception cannot be restored.
+     */
+    private static Throwable decodeTaskError(final TaskReport event, final int taskIndex) {
+        final String serialized = event.get(String.class, "exception", null);
+        if (serialized != null) {
+            try (final ObjectInputStream input = new ContextClassLoaderObjectInputStream(
+                         new ByteArrayInputStream(Base64.getDecoder().decode(serialized)))) {
+                return (Throwable) input.readObject();
+            } catch (final IOException | ClassNotFoundException | ClassCastException | IllegalArgumentException ex) {
+                logger.debug("Failed to restore the exception of task {} from a worker process.", taskIndex, ex);
+            }
+        }
+        return new RuntimeException(
+                String.format("Task %d failed in a worker process: %s", taskIndex, event.get(String.class, "error")));
+    }
+
+    /**
+     * Destroys a worker process, and forcibly if it does not exit in {@link #DESTROY_WAIT_SECONDS}.
+     */
+    private static void destroyWorker(final Process process, final int workerIndex) {
+        logger.warn("Destroying worker process {}.", workerIndex);
+        process.destroy();
+        try {
+            if (!process.waitFor(DESTROY_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (final InterruptedException ex) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void writeLine(final Writer writer, final String line) throws IOException {
+        writer.write(line);
+        writer.write('\n');
+        writer.flush();
+    }
+
+    /**
+     * Encodes properties in a line so that a worker process reads them before it can parse JSON.
+     */
+    private static String encodeSystemProperties(final EmbulkSystemProperties embulkSystemProperties) {
+        final StringWriter writer = new StringWriter();
+        try {
+            embulkSystemProperties.store(writer, null);
+        } catch (final IOException ex) {
+            throw new IllegalStateException(ex);  // Never happens with StringWriter.
+        }
+        return Base64.getEncoder().encodeToString(writer.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Resolves classes also by the context class loader, which may see classes of plugins.
+     */
+    private static class ContextClassLoaderObjectInputStream extends ObjectInputStream {
+        ContextClassLoaderObjectInputStream(final InputStream input) throws IOException {
+            super(input);
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            try {
+                return super.resolveClass(desc);
+            } catch (final ClassNotFoundException ex) {
+                final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+                if (contextClassLoader == null) {
+                    throw ex;
+                }
+                return Class.forName(desc.getName(), false, contextClassLoader);
+            }
+        }
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalProcessExecutorPlugin.class);
+
+    private final EmbulkSystemProperties embulkSystemProperties;
+    private final int defaultProcesses;
+}
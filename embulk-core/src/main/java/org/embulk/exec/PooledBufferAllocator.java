@@ -8,8 +8,19 @@ import org.embulk.spi.BufferAllocator;
 
 public abstract class PooledBufferAllocator implements BufferAllocator {
     public static PooledBufferAllocator create(final int pageSize) {
+        return create(pageSize, false);
+    }
+
+    /**
+     * Creates a {@link PooledBufferAllocator}.
+     *
+     * @param pageSize  the default size of {@link Buffer}s to allocate
+     * @param direct  {@code true} to allocate {@link Buffer}s on off-heap (direct) memory, or {@code false} on Java heap
+     * @return the {@link PooledBufferAllocator} created
+     */
+    public static PooledBufferAllocator create(final int pageSize, final boolean direct) {
         try {
-            return CONSTRUCTOR.newInstance(pageSize);
+            return CONSTRUCTOR.newInstance(pageSize, direct);
         } catch (final IllegalAccessException | IllegalArgumentException | InstantiationException ex) {
             throw new LinkageError("Dependencies for Buffer are not loaded correctly: " + CLASS_NAME, ex);
         } catch (final InvocationTargetException ex) {
@@ -34,6 +45,17 @@ public abstract class PooledBufferAllocator implements BufferAllocator {
     @Override
     public abstract Buffer allocate(final int minimumCapacity);
 
+    /**
+     * Returns a {@link PooledBufferAllocator} which allocates {@link Buffer}s from the same pool within a memory budget.
+     *
+     * <p>Each allocation reserves the capacity of the {@link Buffer} in {@code budget} before allocating, and
+     * {@link Buffer#release()} returns it to {@code budget}.
+     *
+     * @param budget  the memory budget
+     * @return the {@link PooledBufferAllocator} bounded by {@code budget}
+     */
+    public abstract PooledBufferAllocator withMemoryBudget(final BufferMemoryBudget budget);
+
     @SuppressWarnings("unchecked")
     private static Class<PooledBufferAllocator> loadImplClass() {
         try {
@@ -43,7 +65,7 @@ public abstract class PooledBufferAllocator implements BufferAllocator {
         }
     }
 
-    private static final int DEFAULT_PAGE_SIZE = 32 * 1024;
+    public static final int DEFAULT_PAGE_SIZE = 32 * 1024;
 
     private static final ClassLoader CLASS_LOADER = EmbulkDependencyClassLoader.get();
     private static final String CLASS_NAME = "org.embulk.deps.buffer.PooledBufferAllocatorImpl";
@@ -51,7 +73,7 @@ public abstract class PooledBufferAllocator implements BufferAllocator {
     static {
         final Class<PooledBufferAllocator> clazz = loadImplClass();
         try {
-            CONSTRUCTOR = clazz.getConstructor(int.class);
+            CONSTRUCTOR = clazz.getConstructor(int.class, boolean.class);
         } catch (final NoSuchMethodException ex) {
             throw new LinkageError("Dependencies for Buffer are not loaded correctly: " + CLASS_NAME, ex);
         }
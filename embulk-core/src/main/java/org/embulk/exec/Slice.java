@@ -35,6 +35,8 @@ package org.embulk.exec;
 
 import java.lang.reflect.Field;
 import java.util.Objects;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.DirectBufferImpl;
 import sun.misc.Unsafe;
 
 @SuppressWarnings("sunapi")
@@ -74,6 +76,41 @@ public final class Slice {
         return new Slice(array, offset, length);
     }
 
+    /**
+     * Creates a slice over the specified absolute memory range out of the Java heap.
+     *
+     * <p>The caller is responsible to keep the memory range allocated while the slice is in use.
+     *
+     * @param address the absolute memory address at which the slice begins
+     * @param length the number of bytes to include in the slice
+     */
+    public static Slice wrappedMemory(final long address, final int length) {
+        if (length == 0) {
+            return EMPTY_SLICE;
+        }
+        if (address == 0) {
+            throw new IllegalArgumentException("address is zero");
+        }
+        if (length < 0) {
+            throw new IllegalArgumentException("negative length: " + length);
+        }
+        return new Slice(null, address, length);
+    }
+
+    /**
+     * Creates a slice over the capacity of the specified {@link Buffer}, beginning at its offset.
+     *
+     * <p>A slice over a {@link DirectBufferImpl} addresses its off-heap memory directly without
+     * calling the deprecated {@link Buffer#array()}.
+     */
+    @SuppressWarnings("deprecation")  // Calling Buffer#array().
+    public static Slice wrappedBuffer(final Buffer buffer) {
+        if (buffer instanceof DirectBufferImpl) {
+            return ((DirectBufferImpl) buffer).toSlice();
+        }
+        return wrappedBuffer(buffer.array(), buffer.offset(), buffer.capacity());
+    }
+
     /**
      * Creates an empty slice.
      */
@@ -98,6 +135,15 @@ public final class Slice {
         this.size = length;
     }
 
+    /**
+     * Creates a slice for directly accessing the base object.
+     */
+    private Slice(final Object base, final long address, final int size) {
+        this.base = base;
+        this.address = address;
+        this.size = size;
+    }
+
     /**
      * Length of this slice.
      */
@@ -105,6 +151,23 @@ public final class Slice {
         return this.size;
     }
 
+    /**
+     * Returns a slice of this slice's sub-region.  The returned slice shares the same memory.
+     *
+     * @throws IndexOutOfBoundsException if the specified {@code index} is less than {@code 0} or
+     * {@code index + length} is greater than {@code this.length()}
+     */
+    public Slice slice(final int index, final int length) {
+        if ((index == 0) && (length == this.length())) {
+            return this;
+        }
+        this.checkIndexLength(index, length);
+        if (length == 0) {
+            return EMPTY_SLICE;
+        }
+        return new Slice(this.base, this.address + index, length);
+    }
+
     /**
      * Gets a byte at the specified absolute {@code index} in this buffer.
      *
@@ -184,6 +247,42 @@ public final class Slice {
         copyMemory(this.base, this.address + index, destination, (long) Unsafe.ARRAY_BYTE_BASE_OFFSET + destinationIndex, length);
     }
 
+    /**
+     * Transfers {@code length} 64-bit long integers from this slice, starting at the specified absolute
+     * {@code index}, into the specified destination array starting at {@code destinationIndex}.
+     *
+     * @throws IndexOutOfBoundsException if the specified {@code index} is less than {@code 0},
+     * if the specified {@code destinationIndex} is less than {@code 0},
+     * if {@code index + length * 8} is greater than {@code this.length()}, or
+     * if {@code destinationIndex + length} is greater than {@code destination.length}
+     */
+    public void getLongs(final int index, final long[] destination, final int destinationIndex, final int length) {
+        this.checkIndexLength(index, length * SIZE_OF_LONG);
+        checkPositionIndexes(destinationIndex, destinationIndex + length, destination.length);
+
+        copyMemory(this.base, this.address + index,
+                   destination, (long) Unsafe.ARRAY_LONG_BASE_OFFSET + (long) destinationIndex * SIZE_OF_LONG,
+                   length * SIZE_OF_LONG);
+    }
+
+    /**
+     * Transfers {@code length} 64-bit doubles from this slice, starting at the specified absolute
+     * {@code index}, into the specified destination array starting at {@code destinationIndex}.
+     *
+     * @throws IndexOutOfBoundsException if the specified {@code index} is less than {@code 0},
+     * if the specified {@code destinationIndex} is less than {@code 0},
+     * if {@code index + length * 8} is greater than {@code this.length()}, or
+     * if {@code destinationIndex + length} is greater than {@code destination.length}
+     */
+    public void getDoubles(final int index, final double[] destination, final int destinationIndex, final int length) {
+        this.checkIndexLength(index, length * SIZE_OF_DOUBLE);
+        checkPositionIndexes(destinationIndex, destinationIndex + length, destination.length);
+
+        copyMemory(this.base, this.address + index,
+                   destination, (long) Unsafe.ARRAY_DOUBLE_BASE_OFFSET + (long) destinationIndex * SIZE_OF_DOUBLE,
+                   length * SIZE_OF_DOUBLE);
+    }
+
     /**
      * Sets the specified byte at the specified absolute {@code index} in this
      * buffer.  The 24 high-order bits of the specified value are ignored.
@@ -271,6 +370,22 @@ public final class Slice {
         copyMemory(source, (long) Unsafe.ARRAY_BYTE_BASE_OFFSET + sourceIndex, this.base, this.address + index, length);
     }
 
+    /**
+     * Transfers data from the specified slice into this buffer starting at
+     * the specified absolute {@code index}.
+     *
+     * @throws IndexOutOfBoundsException if the specified {@code index} is less than {@code 0},
+     * if the specified {@code sourceIndex} is less than {@code 0},
+     * if {@code index + length} is greater than
+     * {@code this.length()}, or
+     * if {@code sourceIndex + length} is greater than {@code source.length()}
+     */
+    public void setBytes(final int index, final Slice source, final int sourceIndex, final int length) {
+        this.checkIndexLength(index, length);
+        checkPositionIndexes(sourceIndex, sourceIndex + length, source.length());
+        copyMemory(source.base, source.address + sourceIndex, this.base, this.address + index, length);
+    }
+
     private static class Holder {  // Initialization-on-demand holder idiom.
         private static final Unsafe unsafe;
 
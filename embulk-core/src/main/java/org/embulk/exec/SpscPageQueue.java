@@ -0,0 +1,161 @@
+package org.embulk.exec;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import org.embulk.spi.Page;
+
+/**
+ * A bounded single-producer single-consumer ring buffer of {@link Page}s.
+ *
+ * <p>It is designed after JCTools' {@code SpscArrayQueue}. The producer and the consumer do not share indexes. They
+ * find an empty or a filled slot by checking the slot itself, so that they do not contend on the same cache line
+ * while the queue is neither empty nor full.
+ *
+ * <p>{@link #put(Page)} and {@link #take()} wait by spinning for a while, then yielding, and then parking. The waiting
+ * thread is unparked by the other side when it makes progress.
+ *
+ * <p>Only one thread may call {@link #put(Page)}, and only one thread may call {@link #take()} at the same time.
+ */
+final class SpscPageQueue {
+    SpscPageQueue(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("scatter_queue_pages must be positive: " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.capacity = capacity;
+        this.producerIndex = 0;
+        this.consumerIndex = 0;
+        this.closed = false;
+        this.waitingProducer = null;
+        this.waitingConsumer = null;
+    }
+
+    /**
+     * Puts a {@link Page} at the tail, waiting while the queue is full.
+     *
+     * @return {@code false} if the queue is closed by the consumer, and {@code page} is not put
+     */
+    boolean put(final Page page) throws InterruptedException {
+        int idle = 0;
+        while (!this.offer(page)) {
+            if (this.closed) {
+                return false;
+            }
+            if (idle < SPIN_TRIES + YIELD_TRIES) {
+                idle = idle(idle);
+                continue;
+            }
+            this.waitingProducer = Thread.currentThread();
+            try {
+                // Check again after publishing the waiting thread not to miss an unpark.
+                if (this.offer(page)) {
+                    break;
+                }
+                if (this.closed) {
+                    return false;
+                }
+                park();
+            } finally {
+                this.waitingProducer = null;
+            }
+        }
+        unpark(this.waitingConsumer);
+        return true;
+    }
+
+    /**
+     * Takes a {@link Page} from the head, waiting while the queue is empty.
+     */
+    Page take() throws InterruptedException {
+        int idle = 0;
+        Page page;
+        while ((page = this.poll()) == null) {
+            if (idle < SPIN_TRIES + YIELD_TRIES) {
+                idle = idle(idle);
+                continue;
+            }
+            this.waitingConsumer = Thread.currentThread();
+            try {
+                if ((page = this.poll()) != null) {
+                    break;
+                }
+                park();
+            } finally {
+                this.waitingConsumer = null;
+            }
+        }
+        unpark(this.waitingProducer);
+        return page;
+    }
+
+    /**
+     * Takes a {@link Page} from the head without waiting.
+     *
+     * @return the {@link Page}, or {@code null} if the queue is empty
+     */
+    Page poll() {
+        final int index = (int) (this.consumerIndex % this.capacity);
+        final Page page = this.slots.get(index);
+        if (page == null) {
+            return null;
+        }
+        // A volatile write, not lazySet, so that it is ordered before reading waitingProducer.
+        this.slots.set(index, null);
+        this.consumerIndex++;
+        return page;
+    }
+
+    /**
+     * Lets the producer stop waiting. {@link #put(Page)} fails after the queue is closed if the queue is full.
+     *
+     * <p>It is called by the consumer when it stops taking {@link Page}s.
+     */
+    void close() {
+        this.closed = true;
+        unpark(this.waitingProducer);
+    }
+
+    private boolean offer(final Page page) {
+        final int index = (int) (this.producerIndex % this.capacity);
+        if (this.slots.get(index) != null) {
+            return false;
+        }
+        // A volatile write, not lazySet, so that it is ordered before reading waitingConsumer.
+        this.slots.set(index, page);
+        this.producerIndex++;
+        return true;
+    }
+
+    private static int idle(final int idle) {
+        if (idle >= SPIN_TRIES) {
+            Thread.yield();
+        }
+        return idle + 1;
+    }
+
+    private static void park() throws InterruptedException {
+        LockSupport.park();
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    private static void unpark(final Thread thread) {
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 10;
+
+    private final AtomicReferenceArray<Page> slots;
+    private final int capacity;
+
+    private long producerIndex;  // accessed only by the producer
+    private long consumerIndex;  // accessed only by the consumer
+
+    private volatile boolean closed;
+    private volatile Thread waitingProducer;
+    private volatile Thread waitingConsumer;
+}
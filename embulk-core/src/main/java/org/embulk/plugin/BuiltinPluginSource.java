@@ -186,6 +186,37 @@ public class BuiltinPluginSource implements PluginSource {
         return new Builder();
     }
 
+    /**
+     * Returns true if a plugin of {@code type} is registered for {@code pluginInterface} in this process.
+     */
+    public boolean contains(final Class<?> pluginInterface, final PluginType type) {
+        if (type.getSourceType() != PluginSource.Type.DEFAULT) {
+            return false;
+        }
+        final String name = type.getName();
+
+        if (InputPlugin.class.isAssignableFrom(pluginInterface)) {
+            return this.inputPlugins.containsKey(name) || this.fileInputPlugins.containsKey(name);
+        } else if (OutputPlugin.class.isAssignableFrom(pluginInterface)) {
+            return this.outputPlugins.containsKey(name) || this.fileOutputPlugins.containsKey(name);
+        } else if (DecoderPlugin.class.isAssignableFrom(pluginInterface)) {
+            return this.decoderPlugins.containsKey(name);
+        } else if (EncoderPlugin.class.isAssignableFrom(pluginInterface)) {
+            return this.encoderPlugins.containsKey(name);
+        } else if (ExecutorPlugin.class.isAssignableFrom(pluginInterface)) {
+            return this.executorPlugins.containsKey(name);
+        } else if (FilterPlugin.class.isAssignableFrom(pluginInterface)) {
+            return this.filterPlugins.containsKey(name);
+        } else if (FormatterPlugin.class.isAssignableFrom(pluginInterface)) {
+            return this.formatterPlugins.containsKey(name);
+        } else if (GuessPlugin.class.isAssignableFrom(pluginInterface)) {
+            return this.guessPlugins.containsKey(name);
+        } else if (ParserPlugin.class.isAssignableFrom(pluginInterface)) {
+            return this.parserPlugins.containsKey(name);
+        }
+        return false;
+    }
+
     @Override
     public <T> T newPlugin(final Class<T> pluginInterface, final PluginType type) throws PluginSourceNotMatchException {
         if (type.getSourceType() != PluginSource.Type.DEFAULT) {
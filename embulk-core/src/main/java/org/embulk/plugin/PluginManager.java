@@ -9,6 +9,7 @@ import org.embulk.EmbulkSystemProperties;
 import org.embulk.config.ConfigException;
 import org.embulk.exec.GuessExecutor;
 import org.embulk.exec.LocalExecutorPlugin;
+import org.embulk.exec.LocalProcessExecutorPlugin;
 import org.embulk.exec.SamplingParserPlugin;
 import org.embulk.jruby.JRubyPluginSource;
 import org.embulk.plugin.maven.MavenPluginSource;
@@ -67,6 +68,11 @@ public class PluginManager {
             return iface.cast(new LocalExecutorPlugin(this.embulkSystemProperties));
         }
 
+        // LocalProcessExecutorPlugin
+        if (ExecutorPlugin.class.equals(iface) && "local_process".equals(type.getName())) {
+            return iface.cast(new LocalProcessExecutorPlugin(this.embulkSystemProperties));
+        }
+
         // The order is intentional.
         // * BuiltinPluginSource comes first because "built-in" ones are there always much intentionally (e.g. for testing).
         // * MavenPluginSource comes second so that newly-installed Maven-based plugins can override self-contained ones.
@@ -99,6 +105,13 @@ public class PluginManager {
         throw buildPluginNotFoundException(iface, type, exceptions);
     }
 
+    /**
+     * Returns true if the plugin is registered as built-in, such as through {@code EmbulkEmbed.Bootstrap}, in this process.
+     */
+    public boolean isBuiltinPlugin(final Class<?> iface, final PluginType type) {
+        return type != null && this.builtinSource.contains(iface, type);
+    }
+
     public static Object newPluginInstance(
             final Class<?> clazz,
             final EmbulkSystemProperties embulkSystemProperties)
@@ -92,6 +92,11 @@ public class BufferImpl extends Buffer {
     @SuppressWarnings("deprecation")  // Calling Buffer#array().
     @Override
     public void setBytes(int index, Buffer source, int sourceIndex, int length) {
+        if (source instanceof DirectBufferImpl) {
+            // Not to call array() of an off-heap Buffer, which falls back to a Java heap copy.
+            source.getBytes(sourceIndex, array, offset + index, length);
+            return;
+        }
         setBytes(index, source.array(), source.offset() + sourceIndex, length);
     }
 
@@ -103,6 +108,11 @@ public class BufferImpl extends Buffer {
     @SuppressWarnings("deprecation")  // Calling Buffer#array().
     @Override
     public void getBytes(int index, Buffer dest, int destIndex, int length) {
+        if (dest instanceof DirectBufferImpl) {
+            // Not to call array() of an off-heap Buffer, which falls back to a Java heap copy.
+            dest.setBytes(destIndex, array, offset + index, length);
+            return;
+        }
         getBytes(index, dest.array(), dest.offset() + destIndex, length);
     }
 
@@ -0,0 +1,182 @@
+package org.embulk.spi;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.embulk.exec.Slice;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Buffer} backed by off-heap (direct) memory.
+ *
+ * <p>Its memory is accessed with absolute addresses through {@link org.embulk.exec.Slice}. The deprecated
+ * {@link #array()} is still available for legacy plugins as a fallback. It copies the content into a Java heap
+ * array at its first call, and then this {@link Buffer} is backed by the heap array until it is released.
+ * A {@link org.embulk.exec.Slice} created before the first call of {@link #array()} keeps addressing the off-heap
+ * memory. Core components create their {@link org.embulk.exec.Slice} per {@link Page}, so that plugins which call
+ * {@link #array()} on a {@link Page}'s {@link Buffer} are expected only to read from it.
+ *
+ * <p>Subclasses are responsible to free the off-heap memory in {@link #release()}, and to call
+ * {@link #detachMemory()} before freeing it.
+ */
+public abstract class DirectBufferImpl extends Buffer {
+    protected DirectBufferImpl(final long memoryAddress, final int capacity) {
+        this.memory = Slice.wrappedMemory(memoryAddress, capacity);
+        this.heapArray = null;
+        this.offset = 0;
+        this.filled = 0;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns a Java heap copy of this {@link Buffer}, and switches this {@link Buffer} to be backed by the copy.
+     *
+     * @deprecated Accessing the internal {@code byte} array is not safe, and it loses the benefit of off-heap memory.
+     */
+    @Deprecated
+    @Override
+    public byte[] array() {
+        if (this.heapArray == null) {
+            if (!hasLoggedArray.getAndSet(true)) {
+                logger.warn("Buffer#array() is called for an off-heap Buffer. It falls back to a Java heap copy. "
+                                    + "Plugins should use Buffer#getBytes / Buffer#setBytes instead.",
+                            new UnsupportedOperationException("Buffer#array() is called for an off-heap Buffer."));
+            }
+            final byte[] copied = new byte[this.capacity];
+            this.memory.getBytes(0, copied, 0, this.memory.length());
+            this.heapArray = copied;
+            this.memory = Slice.wrappedBuffer(copied, 0, this.capacity);
+        }
+        return this.heapArray;
+    }
+
+    @Override
+    public int offset() {
+        return this.offset;
+    }
+
+    @Override
+    public Buffer offset(final int offset) {
+        this.offset = offset;
+        return this;
+    }
+
+    @Override
+    public int limit() {
+        return this.filled - this.offset;
+    }
+
+    @Override
+    public Buffer limit(final int limit) {
+        if (this.capacity < limit) {
+            throw new IllegalStateException("limit index out of bound: capacity=" + this.capacity + " limit=" + limit);
+        }
+        this.filled = this.offset + limit;
+        return this;
+    }
+
+    @Override
+    public int capacity() {
+        return this.capacity;
+    }
+
+    @Override
+    public void setBytes(final int index, final byte[] source, final int sourceIndex, final int length) {
+        this.memory.setBytes(this.offset + index, source, sourceIndex, length);
+    }
+
+    @Override
+    public void setBytes(final int index, final Buffer source, final int sourceIndex, final int length) {
+        this.memory.setBytes(this.offset + index, Slice.wrappedBuffer(source), sourceIndex, length);
+    }
+
+    @Override
+    public void getBytes(final int index, final byte[] dest, final int destIndex, final int length) {
+        this.memory.getBytes(this.offset + index, dest, destIndex, length);
+    }
+
+    @Override
+    public void getBytes(final int index, final Buffer dest, final int destIndex, final int length) {
+        dest.setBytes(destIndex, this, index, length);
+    }
+
+    /**
+     * Returns a {@link org.embulk.exec.Slice} over the capacity of this {@link Buffer}, beginning at its offset.
+     *
+     * <p>It addresses the off-heap memory directly unless {@link #array()} has been called.
+     *
+     * @return the {@link org.embulk.exec.Slice}
+     */
+    public final Slice toSlice() {
+        return this.memory.slice(this.offset, this.memory.length() - this.offset);
+    }
+
+    /**
+     * Detaches the off-heap memory from this {@link Buffer} so that it is no longer accessed after freed.
+     */
+    protected final void detachMemory() {
+        this.memory = Slice.wrappedBuffer(new byte[0], 0, 0);
+        this.heapArray = null;
+    }
+
+    /**
+     * Compares the content from the offset to the limit, eight bytes at a time on the off-heap memory.
+     */
+    @Override
+    public boolean equals(final Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof DirectBufferImpl)) {
+            return false;
+        }
+        final DirectBufferImpl o = (DirectBufferImpl) other;
+
+        final int length = this.limit();
+        if (length != o.limit()) {
+            return false;
+        }
+        final int longsEnd = length & ~7;
+        for (int i = 0; i < longsEnd; i += 8) {
+            if (this.memory.getLong(this.offset + i) != o.memory.getLong(o.offset + i)) {
+                return false;
+            }
+        }
+        for (int i = longsEnd; i < length; i++) {
+            if (this.memory.getByte(this.offset + i) != o.memory.getByte(o.offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hashes the content from the offset to the limit, eight bytes at a time on the off-heap memory.
+     *
+     * <p>It differs from {@link BufferImpl#hashCode()}, which is fine as a {@link DirectBufferImpl} never equals a
+     * {@link BufferImpl}.
+     */
+    @Override
+    public int hashCode() {
+        final int length = this.limit();
+        final int longsEnd = length & ~7;
+        int result = 1;
+        for (int i = 0; i < longsEnd; i += 8) {
+            final long value = this.memory.getLong(this.offset + i);
+            result = 31 * result + (int) (value ^ (value >>> 32));
+        }
+        for (int i = longsEnd; i < length; i++) {
+            result = 31 * result + this.memory.getByte(this.offset + i);
+        }
+        return result;
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(DirectBufferImpl.class);
+
+    private static final AtomicBoolean hasLoggedArray = new AtomicBoolean(false);
+
+    private Slice memory;
+    private byte[] heapArray;
+    private int offset;
+    private int filled;
+    private final int capacity;
+}
@@ -3,12 +3,16 @@ package org.embulk.spi;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.embulk.EmbulkSystemProperties;
 import org.embulk.config.Config;
 import org.embulk.config.ConfigDefault;
@@ -17,7 +21,9 @@ import org.embulk.config.ConfigSource;
 import org.embulk.config.Task;
 import org.embulk.config.TaskReport;
 import org.embulk.config.TaskSource;
+import org.embulk.exec.BufferMemoryBudget;
 import org.embulk.exec.GuessExecutor;
+import org.embulk.exec.PooledBufferAllocator;
 import org.embulk.jruby.JRubyPluginSource;
 import org.embulk.jruby.LazyScriptingContainerDelegate;
 import org.embulk.jruby.ScriptingContainerDelegate;
@@ -58,6 +64,15 @@ public class ExecSessionInternal extends ExecSession {
     private final PluginClassLoaderFactory pluginClassLoaderFactory;
     private final PluginManager pluginManager;
     private final BufferAllocator bufferAllocator;
+    private final BufferMemoryBudget bufferMemoryBudget;  // null if unbounded
+    private final boolean pipelineFilters;
+    private final boolean pipelineDecoders;
+    private final int fileInputPrefetchBuffers;
+    private final int fileOutputWriteBehindBuffers;
+    private final ConcurrentHashMap<Long, TaskProgress> taskProgresses;
+    private final ThreadLocal<TaskProgress> currentTaskProgress;
+    private final boolean columnarPages;
+    private final boolean adaptivePageSize;
 
     private final Instant transactionTime;
     private final TempFileSpace tempFileSpace;
@@ -81,6 +96,11 @@ public class ExecSessionInternal extends ExecSession {
         private Set<String> parentFirstPackages;
         private Set<String> parentFirstResources;
         private Instant transactionTime;
+        private String maxBufferMemory;
+        private Boolean pipelineFilters;
+        private Boolean pipelineDecoders;
+        private Integer fileInputPrefetchBuffers;
+        private Integer fileOutputWriteBehindBuffers;
 
         @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1304
         private org.embulk.config.ModelManager modelManager;
@@ -95,6 +115,11 @@ public class ExecSessionInternal extends ExecSession {
             this.parentFirstPackages = null;
             this.parentFirstResources = null;
             this.transactionTime = null;
+            this.maxBufferMemory = null;
+            this.pipelineFilters = null;
+            this.pipelineDecoders = null;
+            this.fileInputPrefetchBuffers = null;
+            this.fileOutputWriteBehindBuffers = null;
             this.modelManager = null;
         }
 
@@ -104,6 +129,11 @@ public class ExecSessionInternal extends ExecSession {
             if (transactionTime.isPresent()) {
                 this.transactionTime = transactionTime.get();
             }
+            this.maxBufferMemory = configSource.get(String.class, "max_buffer_memory", null);
+            this.pipelineFilters = configSource.get(Boolean.class, "pipeline_filters", null);
+            this.pipelineDecoders = configSource.get(Boolean.class, "pipeline_decoders", null);
+            this.fileInputPrefetchBuffers = configSource.get(Integer.class, "file_input_prefetch_buffers", null);
+            this.fileOutputWriteBehindBuffers = configSource.get(Integer.class, "file_output_write_behind_buffers", null);
             return this;
         }
 
@@ -209,10 +239,39 @@ public class ExecSessionInternal extends ExecSession {
             if (this.modelManager == null) {
                 throw new IllegalStateException("ModelManager is not set in ExecSessionInternal.");
             }
+
+            final String maxBufferMemory = (this.maxBufferMemory != null)
+                    ? this.maxBufferMemory : this.embulkSystemProperties.getProperty("max_buffer_memory");
+            final BufferMemoryBudget bufferMemoryBudget;
+            final BufferAllocator bufferAllocator;
+            if (maxBufferMemory == null) {
+                bufferMemoryBudget = null;
+                bufferAllocator = this.bufferAllocator;
+            } else if (this.bufferAllocator instanceof PooledBufferAllocator) {
+                bufferMemoryBudget = BufferMemoryBudget.of(maxBufferMemory);
+                bufferAllocator = ((PooledBufferAllocator) this.bufferAllocator).withMemoryBudget(bufferMemoryBudget);
+                logger.info("Buffers are allocated within max_buffer_memory {} bytes.", bufferMemoryBudget.getMaxBytes());
+            } else {
+                logger.warn("max_buffer_memory is ignored for BufferAllocator {}.", this.bufferAllocator.getClass().getName());
+                bufferMemoryBudget = null;
+                bufferAllocator = this.bufferAllocator;
+            }
+
             return new ExecSessionInternal(
                     this.transactionTime,
                     this.embulkSystemProperties,
-                    this.bufferAllocator,
+                    bufferAllocator,
+                    bufferMemoryBudget,
+                    (this.pipelineFilters != null)
+                            ? this.pipelineFilters : this.embulkSystemProperties.getPropertyAsBoolean("pipeline_filters", false),
+                    (this.pipelineDecoders != null)
+                            ? this.pipelineDecoders : this.embulkSystemProperties.getPropertyAsBoolean("pipeline_decoders", false),
+                    (this.fileInputPrefetchBuffers != null)
+                            ? this.fileInputPrefetchBuffers
+                            : this.embulkSystemProperties.getPropertyAsInteger("file_input_prefetch_buffers", 0),
+                    (this.fileOutputWriteBehindBuffers != null)
+                            ? this.fileOutputWriteBehindBuffers
+                            : this.embulkSystemProperties.getPropertyAsInteger("file_output_write_behind_buffers", 0),
                     this.tempFileSpaceAllocator,
                     this.guessExecutor,
                     this.builtinPluginSourceBuilder.build(),
@@ -233,6 +292,11 @@ public class ExecSessionInternal extends ExecSession {
             final Instant transactionTime,
             final EmbulkSystemProperties embulkSystemProperties,
             final BufferAllocator bufferAllocator,
+            final BufferMemoryBudget bufferMemoryBudget,
+            final boolean pipelineFilters,
+            final boolean pipelineDecoders,
+            final int fileInputPrefetchBuffers,
+            final int fileOutputWriteBehindBuffers,
             final TempFileSpaceAllocator tempFileSpaceAllocator,
             final GuessExecutor guessExecutor,
             final BuiltinPluginSource builtinPluginSource,
@@ -266,6 +330,15 @@ public class ExecSessionInternal extends ExecSession {
                 new JRubyPluginSource(this.jrubyScriptingContainerDelegate, pluginClassLoaderFactory));
 
         this.bufferAllocator = bufferAllocator;
+        this.bufferMemoryBudget = bufferMemoryBudget;
+        this.pipelineFilters = pipelineFilters;
+        this.pipelineDecoders = pipelineDecoders;
+        this.fileInputPrefetchBuffers = Math.max(fileInputPrefetchBuffers, 0);
+        this.fileOutputWriteBehindBuffers = Math.max(fileOutputWriteBehindBuffers, 0);
+        this.taskProgresses = new ConcurrentHashMap<>();
+        this.currentTaskProgress = new ThreadLocal<>();
+        this.columnarPages = isColumnarPageFormat(embulkSystemProperties.getProperty("page_format"));
+        this.adaptivePageSize = isAdaptivePageSizing(embulkSystemProperties.getProperty("page_sizing"));
 
         this.transactionTime = transactionTime;
 
@@ -282,6 +355,15 @@ public class ExecSessionInternal extends ExecSession {
         this.pluginClassLoaderFactory = copy.pluginClassLoaderFactory;
         this.pluginManager = copy.pluginManager;
         this.bufferAllocator = copy.bufferAllocator;
+        this.bufferMemoryBudget = copy.bufferMemoryBudget;
+        this.pipelineFilters = copy.pipelineFilters;
+        this.pipelineDecoders = copy.pipelineDecoders;
+        this.fileInputPrefetchBuffers = copy.fileInputPrefetchBuffers;
+        this.fileOutputWriteBehindBuffers = copy.fileOutputWriteBehindBuffers;
+        this.taskProgresses = new ConcurrentHashMap<>();
+        this.currentTaskProgress = new ThreadLocal<>();
+        this.columnarPages = copy.columnarPages;
+        this.adaptivePageSize = copy.adaptivePageSize;
 
         this.transactionTime = copy.transactionTime;
         this.tempFileSpace = copy.tempFileSpace;
@@ -340,7 +422,13 @@ public class ExecSessionInternal extends ExecSession {
 
     @Override
     public PageBuilder getPageBuilder(final BufferAllocator allocator, final Schema schema, final PageOutput output) {
-        return new PageBuilderImpl(allocator, schema, output);
+        return new PageBuilderImpl(allocator, schema, output, this.columnarPages, false, this.adaptivePageSize);
+    }
+
+    @Override
+    public PageBuilder getPageBuilder(
+            final BufferAllocator allocator, final Schema schema, final PageOutput output, final boolean strict) {
+        return new PageBuilderImpl(allocator, schema, output, this.columnarPages, strict, this.adaptivePageSize);
     }
 
     @Override
@@ -348,6 +436,11 @@ public class ExecSessionInternal extends ExecSession {
         return new PageReaderImpl(schema);
     }
 
+    @Override
+    public Page projectPage(final Page page, final Schema sourceSchema, final int[] columnIndexes) {
+        return ProjectedPage.of(page, sourceSchema, columnIndexes);
+    }
+
     @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1304
     public org.embulk.config.ModelManager getModelManager() {
         return modelManager;
@@ -358,6 +451,10 @@ public class ExecSessionInternal extends ExecSession {
         return pluginManager.newPlugin(iface, type);
     }
 
+    public boolean isBuiltinPlugin(Class<?> iface, PluginType type) {
+        return pluginManager.isBuiltinPlugin(iface, type);
+    }
+
     @Override
     public TaskReport newTaskReport() {
         return this.modelManager.newTaskReport();
@@ -392,12 +489,141 @@ public class ExecSessionInternal extends ExecSession {
     public void cleanup() {
         this.pluginClassLoaderFactory.clear();
         tempFileSpace.cleanup();
+        if (this.bufferMemoryBudget != null && !this.preview) {
+            this.bufferMemoryBudget.logStatistics();
+        }
+    }
+
+    /**
+     * Returns the memory budget of {@link Buffer}s allocated in this session, if {@code max_buffer_memory} is configured.
+     */
+    public Optional<BufferMemoryBudget> getBufferMemoryBudget() {
+        return Optional.ofNullable(this.bufferMemoryBudget);
+    }
+
+    /**
+     * Returns true if filters run in their own threads, configured by {@code pipeline_filters}.
+     */
+    public boolean isFilterPipelined() {
+        return this.pipelineFilters;
+    }
+
+    /**
+     * Returns true if decoders run in their own thread, configured by {@code pipeline_decoders}.
+     */
+    public boolean isDecoderPipelined() {
+        return this.pipelineDecoders;
+    }
+
+    /**
+     * Returns the number of {@link Buffer}s read ahead from {@link FileInput}, configured by
+     * {@code file_input_prefetch_buffers}. {@code 0} if it is disabled.
+     */
+    public int getFileInputPrefetchBuffers() {
+        return this.fileInputPrefetchBuffers;
+    }
+
+    /**
+     * Returns the number of {@link Buffer}s queued to be written behind into {@link FileOutput}, configured by
+     * {@code file_output_write_behind_buffers}. {@code 0} if it is disabled.
+     */
+    public int getFileOutputWriteBehindBuffers() {
+        return this.fileOutputWriteBehindBuffers;
+    }
+
+    /**
+     * Starts counting the progress of a task running in this process.
+     */
+    public TaskProgress startTaskProgress(final int taskIndex) {
+        return this.startTaskProgress(taskIndex, 0);
+    }
+
+    /**
+     * Starts counting the progress of an attempt of a task running in the current thread.
+     *
+     * <p>Speculative attempts of the same task are counted separately by their attempts.
+     */
+    public TaskProgress startTaskProgress(final int taskIndex, final int attempt) {
+        final TaskProgress progress = new TaskProgress(taskIndex, attempt);
+        this.taskProgresses.put(taskProgressKey(taskIndex, attempt), progress);
+        this.currentTaskProgress.set(progress);
+        return progress;
+    }
+
+    public void finishTaskProgress(final int taskIndex) {
+        this.finishTaskProgress(taskIndex, 0);
+    }
+
+    public void finishTaskProgress(final int taskIndex, final int attempt) {
+        final TaskProgress progress = this.taskProgresses.remove(taskProgressKey(taskIndex, attempt));
+        if (progress != null && this.currentTaskProgress.get() == progress) {
+            this.currentTaskProgress.remove();
+        }
+    }
+
+    /**
+     * Returns the progress of the task which the current thread is running, or its first attempt if the current thread
+     * does not run the task.
+     */
+    public Optional<TaskProgress> getTaskProgress(final int taskIndex) {
+        final TaskProgress current = this.currentTaskProgress.get();
+        if (current != null && current.getTaskIndex() == taskIndex) {
+            return Optional.of(current);
+        }
+        return this.getTaskProgress(taskIndex, 0);
+    }
+
+    public Optional<TaskProgress> getTaskProgress(final int taskIndex, final int attempt) {
+        return Optional.ofNullable(this.taskProgresses.get(taskProgressKey(taskIndex, attempt)));
+    }
+
+    /**
+     * Returns the progress of tasks running in this process, in the order of task indexes and attempts.
+     */
+    public List<TaskProgress> getRunningTaskProgresses() {
+        final ArrayList<TaskProgress> progresses = new ArrayList<>(this.taskProgresses.values());
+        progresses.sort(Comparator.comparingInt(TaskProgress::getTaskIndex).thenComparingInt(TaskProgress::getAttempt));
+        return progresses;
+    }
+
+    private static long taskProgressKey(final int taskIndex, final int attempt) {
+        return ((long) taskIndex << 32) | (attempt & 0xffffffffL);
     }
 
     GuessExecutor getGuessExecutor() {
         return this.guessExecutor;
     }
 
+    private static boolean isColumnarPageFormat(final String pageFormatRepresentation) {
+        if (pageFormatRepresentation == null) {
+            return false;
+        }
+        switch (pageFormatRepresentation.toLowerCase(Locale.ENGLISH)) {
+            case "row":
+                return false;
+            case "columnar":
+                return true;
+            default:
+                throw new IllegalArgumentException(
+                        "Unknown page_format '" + pageFormatRepresentation + "'. It must be 'row' or 'columnar'.");
+        }
+    }
+
+    private static boolean isAdaptivePageSizing(final String pageSizingRepresentation) {
+        if (pageSizingRepresentation == null) {
+            return true;
+        }
+        switch (pageSizingRepresentation.toLowerCase(Locale.ENGLISH)) {
+            case "adaptive":
+                return true;
+            case "fixed":
+                return false;
+            default:
+                throw new IllegalArgumentException(
+                        "Unknown page_sizing '" + pageSizingRepresentation + "'. It must be 'adaptive' or 'fixed'.");
+        }
+    }
+
     private static Optional<Instant> toInstantFromString(final String string) {
         if (string == null) {
             return Optional.empty();
@@ -4,6 +4,7 @@ import static org.embulk.exec.GuessExecutor.createSampleBufferConfigFromExecConf
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import org.embulk.EmbulkSystemProperties;
 import org.embulk.config.Config;
 import org.embulk.config.ConfigDefault;
@@ -17,8 +18,10 @@ import org.embulk.exec.GuessExecutor;
 import org.embulk.exec.SamplingParserPlugin;
 import org.embulk.plugin.PluginType;
 import org.embulk.spi.util.DecodersInternal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-public class FileInputRunner implements InputPlugin, ConfigurableGuessInputPlugin {
+public class FileInputRunner implements InputPlugin, ConfigurableGuessInputPlugin, InputTaskCostHint, IdempotentTaskHint {
     public FileInputRunner(final FileInputPlugin fileInputPlugin, final EmbulkSystemProperties embulkSystemProperties) {
         this.fileInputPlugin = fileInputPlugin;
         this.embulkSystemProperties = embulkSystemProperties;
@@ -130,12 +133,17 @@ public class FileInputRunner implements InputPlugin, ConfigurableGuessInputPlugi
         List<DecoderPlugin> decoderPlugins = newDecoderPlugins(task);
         ParserPlugin parserPlugin = newParserPlugin(task);
 
-        final TransactionalFileInput tran = fileInputPlugin.open(task.getFileInputTaskSource(), taskIndex);
+        final TransactionalFileInput tran = prefetch(fileInputPlugin.open(task.getFileInputTaskSource(), taskIndex));
         try (CloseResource closer = new CloseResource(tran)) {
             try (AbortTransactionResource aborter = new AbortTransactionResource(tran)) {
-                FileInput fileInput = DecodersInternal.open(decoderPlugins, task.getDecoderTaskSources(), tran);
+                FileInput fileInput = DecodersInternal.open(decoderPlugins, task.getDecoderTaskSources(), countProgress(tran, task, taskIndex),
+                                                            ExecInternal.sessionInternal().isDecoderPipelined());
                 closer.closeThis(fileInput);
-                parserPlugin.run(task.getParserTaskSource(), schema, fileInput, output);
+                try {
+                    parserPlugin.run(task.getParserTaskSource(), schema, fileInput, output);
+                } finally {
+                    DecodersInternal.stopPipeline(fileInput);
+                }
 
                 TaskReport report = tran.commit();  // TODO check output.finish() is called. wrap
                 aborter.dontAbort();
@@ -144,6 +152,49 @@ public class FileInputRunner implements InputPlugin, ConfigurableGuessInputPlugi
         }
     }
 
+    private static TransactionalFileInput prefetch(final TransactionalFileInput input) {
+        final int prefetchBuffers = ExecInternal.sessionInternal().getFileInputPrefetchBuffers();
+        if (prefetchBuffers <= 0) {
+            return input;
+        }
+        return new PrefetchingFileInput(input, prefetchBuffers, Thread.currentThread().getName() + "-prefetch");
+    }
+
+    private FileInput countProgress(final FileInput input, final RunnerTask task, final int taskIndex) {
+        final Optional<TaskProgress> progress = ExecInternal.sessionInternal().getTaskProgress(taskIndex);
+        if (!progress.isPresent()) {
+            return input;
+        }
+        if (fileInputPlugin instanceof InputTaskCostHint) {
+            try {
+                progress.get().setTotalInputBytes(
+                        ((InputTaskCostHint) fileInputPlugin).estimateTaskCost(task.getFileInputTaskSource(), taskIndex));
+            } catch (final RuntimeException ex) {
+                // The hint is optional for the progress.
+                logger.warn("Failed to estimate the cost of input task {}. Showing its progress without the total.", taskIndex, ex);
+            }
+        }
+        return progress.get().countFileInput(input);
+    }
+
+    @Override
+    public long estimateTaskCost(final TaskSource taskSource, final int taskIndex) {
+        if (!(fileInputPlugin instanceof InputTaskCostHint)) {
+            return -1;
+        }
+        final RunnerTask task = loadRunnerTaskFromTaskSource(taskSource);
+        return ((InputTaskCostHint) fileInputPlugin).estimateTaskCost(task.getFileInputTaskSource(), taskIndex);
+    }
+
+    @Override
+    public boolean isTaskIdempotent(final TaskSource taskSource) {
+        if (!(fileInputPlugin instanceof IdempotentTaskHint)) {
+            return false;
+        }
+        final RunnerTask task = loadRunnerTaskFromTaskSource(taskSource);
+        return ((IdempotentTaskHint) fileInputPlugin).isTaskIdempotent(task.getFileInputTaskSource());
+    }
+
     @SuppressWarnings("deprecation") // https://github.com/embulk/embulk/issues/1301
     public static TaskSource getFileInputTaskSource(TaskSource runnerTaskSource) {
         return runnerTaskSource.loadTask(RunnerTask.class).getFileInputTaskSource();
@@ -159,6 +210,8 @@ public class FileInputRunner implements InputPlugin, ConfigurableGuessInputPlugi
         return taskSource.loadTask(RunnerTask.class);
     }
 
+    private static final Logger logger = LoggerFactory.getLogger(FileInputRunner.class);
+
     private final FileInputPlugin fileInputPlugin;
     private final EmbulkSystemProperties embulkSystemProperties;
 }
@@ -12,7 +12,7 @@ import org.embulk.config.TaskSource;
 import org.embulk.plugin.PluginType;
 import org.embulk.spi.util.EncodersInternal;
 
-public class FileOutputRunner implements OutputPlugin {
+public class FileOutputRunner implements OutputPlugin, IdempotentTaskHint {
     private final FileOutputPlugin fileOutputPlugin;
 
     public FileOutputRunner(FileOutputPlugin fileOutputPlugin) {
@@ -115,7 +115,7 @@ public class FileOutputRunner implements OutputPlugin {
 
         try (AbortTransactionResource aborter = new AbortTransactionResource()) {
             try (CloseResource closer = new CloseResource()) {
-                final TransactionalFileOutput finalOutput = fileOutputPlugin.open(task.getFileOutputTaskSource(), taskIndex);
+                final TransactionalFileOutput finalOutput = writeBehind(fileOutputPlugin.open(task.getFileOutputTaskSource(), taskIndex));
                 aborter.abortThis(finalOutput);
                 closer.closeThis(finalOutput);
 
@@ -133,6 +133,14 @@ public class FileOutputRunner implements OutputPlugin {
         }
     }
 
+    private static TransactionalFileOutput writeBehind(final TransactionalFileOutput output) {
+        final int writeBehindBuffers = ExecInternal.sessionInternal().getFileOutputWriteBehindBuffers();
+        if (writeBehindBuffers <= 0) {
+            return output;
+        }
+        return new WriteBehindFileOutput(output, writeBehindBuffers, Thread.currentThread().getName() + "-write-behind");
+    }
+
     private static class DelegateTransactionalPageOutput implements TransactionalPageOutput {
         private final Transactional tran;
         private final PageOutput output;
@@ -169,6 +177,15 @@ public class FileOutputRunner implements OutputPlugin {
         }
     }
 
+    @Override
+    public boolean isTaskIdempotent(final TaskSource taskSource) {
+        if (!(fileOutputPlugin instanceof IdempotentTaskHint)) {
+            return false;
+        }
+        final RunnerTask task = loadRunnerTaskFromTaskSource(taskSource);
+        return ((IdempotentTaskHint) fileOutputPlugin).isTaskIdempotent(task.getFileOutputTaskSource());
+    }
+
     @SuppressWarnings("deprecation") // https://github.com/embulk/embulk/issues/1301
     public static TaskSource getFileOutputTaskSource(TaskSource runnerTaskSource) {
         return runnerTaskSource.loadTask(RunnerTask.class).getFileOutputTaskSource();
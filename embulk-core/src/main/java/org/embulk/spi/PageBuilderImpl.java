@@ -3,12 +3,18 @@ package org.embulk.spi;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import org.embulk.exec.Slice;
 import org.embulk.spi.json.JsonValue;
 import org.embulk.spi.type.Type;
 import org.embulk.spi.type.Types;
 import org.msgpack.value.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class PageBuilderImpl extends PageBuilder {
     private final BufferAllocator allocator;
@@ -16,6 +22,10 @@ public class PageBuilderImpl extends PageBuilder {
     private final Schema schema;
     private final int[] columnOffsets;
     private final int fixedRecordSize;
+    private final boolean columnar;
+    private final boolean strict;
+    private final int[] columnStorageSizes;
+    private final int columnarVariableLengthDataSizePerRecord;
 
     private Buffer buffer;
     private Slice bufferSlice;
@@ -24,12 +34,129 @@ public class PageBuilderImpl extends PageBuilder {
     private int position;
     private final byte[] nullBitSet;
     private final Row row;
-    private List<String> stringReferences = new ArrayList<>();
     private List<JsonValue> jsonValueReferences = new ArrayList<>();
     private int referenceSize;
+    private int pendingReferenceSize;  // reference size of the JSON values of the current record
     private int nextVariableLengthDataOffset;
 
+    // Presumed reference sizes of the last JSON values per column, not to walk the same value again
+    private final JsonValue[] presumedJsonValues;
+    private final int[] presumedJsonSizes;
+
+    // STRING values of the current record encoded in UTF-8 before written into the variable-length data area
+    private byte[] encodedStrings = new byte[256];
+    private int encodedStringsSize;
+    private final int[] encodedStringIndexes;
+    private final int[] encodedStringSizes;
+    private final int[] stringDictionaryOffsets;
+
+    // Offsets of distinct STRING values in the variable-length data area of the current page
+    private final HashMap<String, Integer> dictionary = new HashMap<>();
+    private final boolean[] dictionaryEncoding;  // whether each column is still dictionary-encoded in the current page
+    private final int[] dictionaryLookups;
+    private final int[] dictionaryEntries;
+    private final int dictionaryBitmapSize;
+    // New STRING values of dictionary-encoded columns in the current record, which are written only once in the record
+    private final HashSet<String> newDictionaryValues = new HashSet<>();
+
+    // A column stops dictionary encoding in a page if more than 3/4 of its first values are distinct.
+    private static final int DICTIONARY_PROBE_SIZE = 128;
+
+    // stringDictionaryOffsets of a value written by a preceding column in the same record
+    private static final int WRITTEN_IN_RECORD = -2;
+
+    private static final Logger logger = LoggerFactory.getLogger(PageBuilderImpl.class);
+
+    // Range of TIMESTAMP values, which are read as Instant
+    private static final long MIN_EPOCH_SECOND = Instant.MIN.getEpochSecond();
+    private static final long MAX_EPOCH_SECOND = Instant.MAX.getEpochSecond();
+
+    // Values of the current record in the strict mode. They are used only when |strict| is true.
+    // Fixed-size values are written into the page directly. STRING and JSON values are staged until |addRecord|.
+    private final long[] strictSetColumns;
+    private final String[] strictStrings;
+    private final JsonValue[] strictJsons;
+    private final byte[] strictRecord;
+
+    // Values of the record copied from a PageReader by |setRecordFrom|. Fixed-size values are in the row-oriented
+    // record layout. STRING values are in UTF-8.
+    private final byte[] copiedValues;
+    private final byte[] copiedNullBitSet;
+    private byte[] copiedStrings = new byte[256];
+    private int copiedStringsSize;
+    private final int[] copiedStringIndexes;
+    private final int[] copiedStringSizes;
+    private Schema compatibleSchema;  // the last Schema of PageReaders which is checked to be compatible
+
+    // Adaptive page sizing. Buffers requested for the next pages grow so that a page holds at least
+    // |MIN_RECORDS_PER_PAGE| records of the average size observed so far, up to |MAX_ADAPTIVE_PAGE_SIZE|. They
+    // shrink back to the default size of the allocator as records get smaller. It is used only when
+    // |adaptivePageSize| is true.
+    private final boolean adaptivePageSize;
+    private int defaultPageCapacity;
+    private int requestedPageSize;  // 0 to request the default size of the allocator
+    private int averageRecordSize;  // exponential moving average of bytes per record
+
+    private static final int MIN_RECORDS_PER_PAGE = 64;
+    private static final int MAX_ADAPTIVE_PAGE_SIZE = 1024 * 1024;
+
+    // Statistics of the pages built, which are logged at |close|
+    private long builtPageCount;
+    private long builtRecordCount;
+    private long builtPageBytes;
+    private int minBuiltPageCapacity = Integer.MAX_VALUE;
+    private int maxBuiltPageCapacity;
+
+    // Layout of the current columnar page. They are used only when |columnar| is true.
+    private int columnarPageCapacity;
+    private int columnarRowCapacity;
+    private int[] columnarNullBitmapOffsets;
+    private int[] columnarValueOffsets;
+    private int columnarVariableLengthDataOffset;
+
     public PageBuilderImpl(BufferAllocator allocator, Schema schema, PageOutput output) {
+        this(allocator, schema, output, false, false);
+    }
+
+    public PageBuilderImpl(final BufferAllocator allocator, final Schema schema, final PageOutput output, final boolean columnar) {
+        this(allocator, schema, output, columnar, false);
+    }
+
+    /**
+     * Creates a {@link PageBuilderImpl} which builds pages in the row-oriented format, or the columnar format.
+     *
+     * <p>{@link PageReaderImpl} reads pages in both formats transparently.
+     *
+     * <p>In the strict mode, fixed-size values are written into the page directly without staging, and each column
+     * accepts only one value per record. Columns which are not set are null.
+     *
+     * @param columnar  {@code true} to build pages in the columnar format
+     * @param strict  {@code true} to build pages in the strict mode
+     */
+    public PageBuilderImpl(
+            final BufferAllocator allocator,
+            final Schema schema,
+            final PageOutput output,
+            final boolean columnar,
+            final boolean strict) {
+        this(allocator, schema, output, columnar, strict, false);
+    }
+
+    /**
+     * Creates a {@link PageBuilderImpl}, optionally with adaptive page sizing.
+     *
+     * <p>With adaptive page sizing, buffers larger than the default of {@code allocator} are requested for pages when
+     * records are so large that only a few of them fit in a page by default.
+     *
+     * @param adaptivePageSize  {@code true} to size pages adaptively to the records
+     */
+    public PageBuilderImpl(
+            final BufferAllocator allocator,
+            final Schema schema,
+            final PageOutput output,
+            final boolean columnar,
+            final boolean strict,
+            final boolean adaptivePageSize) {
         this.allocator = allocator;
         this.output = output;
         this.schema = schema;
@@ -39,17 +166,86 @@ public class PageBuilderImpl extends PageBuilder {
         this.row = Row.newRow(schema);
         this.fixedRecordSize = PageFormat.recordHeaderSize(schema) + PageFormat.totalColumnSize(schema);
         this.nextVariableLengthDataOffset = fixedRecordSize;
-        newBuffer();
+        this.columnar = columnar;
+        this.strict = strict;
+        this.columnStorageSizes = new int[schema.getColumnCount()];
+        for (int i = 0; i < schema.getColumnCount(); i++) {
+            this.columnStorageSizes[i] = schema.getColumnType(i).getFixedStorageSize();
+        }
+        this.columnarVariableLengthDataSizePerRecord =
+                PageFormat.variableLengthColumnCount(schema) * PageFormat.ESTIMATED_VARIABLE_LENGTH_DATA_SIZE;
+        this.encodedStringIndexes = new int[schema.getColumnCount()];
+        this.encodedStringSizes = new int[schema.getColumnCount()];
+        this.stringDictionaryOffsets = new int[schema.getColumnCount()];
+        this.strictSetColumns = new long[(schema.getColumnCount() + 63) / 64];
+        this.strictStrings = new String[schema.getColumnCount()];
+        this.strictJsons = new JsonValue[schema.getColumnCount()];
+        this.strictRecord = new byte[columnar ? schema.getFixedStorageSize() : fixedRecordSize];
+        this.copiedValues = new byte[fixedRecordSize];
+        this.copiedNullBitSet = new byte[PageFormat.nullBitSetSize(schema)];
+        this.copiedStringIndexes = new int[schema.getColumnCount()];
+        this.copiedStringSizes = new int[schema.getColumnCount()];
+        this.compatibleSchema = schema;
+        this.presumedJsonValues = new JsonValue[schema.getColumnCount()];
+        this.presumedJsonSizes = new int[schema.getColumnCount()];
+        this.adaptivePageSize = adaptivePageSize;
+        this.requestedPageSize = 0;
+        this.dictionaryEncoding = new boolean[schema.getColumnCount()];
+        this.dictionaryLookups = new int[schema.getColumnCount()];
+        this.dictionaryEntries = new int[schema.getColumnCount()];
+        if (PageFormat.variableLengthColumnCount(schema) > 0) {
+            this.dictionaryBitmapSize = PageFormat.dictionaryBitmapSize(schema);
+        } else {
+            this.dictionaryBitmapSize = 0;
+        }
+        newBuffer(0);
+        this.defaultPageCapacity = buffer.capacity();
     }
 
-    private void newBuffer() {
-        this.buffer = allocator.allocate(PageFormat.PAGE_HEADER_SIZE + fixedRecordSize);
-        this.bufferSlice = Slice.wrappedBuffer(buffer.array(), buffer.offset(), buffer.capacity());
+    /**
+     * Allocates a new buffer for the next page.
+     *
+     * @param minimumVariableLengthDataSize  the size of variable-length data of the first record to fit in the page
+     */
+    private void newBuffer(final int minimumVariableLengthDataSize) {
+        if (columnar) {
+            this.buffer = allocator.allocate(Math.max(requestedPageSize,
+                    PageFormat.columnarPageSize(schema, 1) + minimumVariableLengthDataSize + dictionaryBitmapSize));
+            this.bufferSlice = Slice.wrappedBuffer(buffer);
+            final int capacity = buffer.capacity() - dictionaryBitmapSize;
+            if (minimumVariableLengthDataSize > 0) {
+                // Fewer records fit in the page to reserve the variable-length data of the first record.
+                this.columnarPageCapacity = -1;
+                layOutColumnarPage(Math.min(
+                        PageFormat.columnarRowCapacity(schema, capacity, columnarVariableLengthDataSizePerRecord),
+                        PageFormat.columnarRowCapacity(schema, capacity - minimumVariableLengthDataSize, 0)));
+            } else if (buffer.capacity() != columnarPageCapacity) {
+                this.columnarPageCapacity = buffer.capacity();
+                layOutColumnarPage(PageFormat.columnarRowCapacity(schema, capacity, columnarVariableLengthDataSizePerRecord));
+            }
+            this.columnarVariableLengthDataOffset = PageFormat.columnarPageSize(schema, columnarRowCapacity);
+        } else {
+            this.buffer = allocator.allocate(Math.max(requestedPageSize,
+                    PageFormat.PAGE_HEADER_SIZE + fixedRecordSize + minimumVariableLengthDataSize + dictionaryBitmapSize));
+            this.bufferSlice = Slice.wrappedBuffer(buffer);
+        }
         this.count = 0;
         this.position = PageFormat.PAGE_HEADER_SIZE;
-        this.stringReferences = new ArrayList<>();
         this.jsonValueReferences = new ArrayList<>();
         this.referenceSize = 0;
+
+        this.dictionary.clear();
+        for (int i = 0; i < schema.getColumnCount(); i++) {
+            this.dictionaryEncoding[i] = schema.getColumnType(i).equals(Types.STRING);
+            this.dictionaryLookups[i] = 0;
+            this.dictionaryEntries[i] = 0;
+        }
+    }
+
+    private void layOutColumnarPage(final int rowCapacity) {
+        this.columnarRowCapacity = rowCapacity;
+        this.columnarNullBitmapOffsets = PageFormat.columnarNullBitmapOffsets(schema, rowCapacity);
+        this.columnarValueOffsets = PageFormat.columnarValueOffsets(schema, rowCapacity);
     }
 
     public Schema getSchema() {
@@ -61,6 +257,11 @@ public class PageBuilderImpl extends PageBuilder {
     }
 
     public void setNull(int columnIndex) {
+        if (strict) {
+            setStrictColumn(columnIndex, null);
+            writeNull(columnIndex);
+            return;
+        }
         row.setNull(columnIndex);
     }
 
@@ -70,6 +271,11 @@ public class PageBuilderImpl extends PageBuilder {
     }
 
     public void setBoolean(int columnIndex, boolean value) {
+        if (strict) {
+            setStrictColumn(columnIndex, Types.BOOLEAN);
+            writeBoolean(columnIndex, value);
+            return;
+        }
         row.setBoolean(columnIndex, value);
     }
 
@@ -79,6 +285,11 @@ public class PageBuilderImpl extends PageBuilder {
     }
 
     public void setLong(int columnIndex, long value) {
+        if (strict) {
+            setStrictColumn(columnIndex, Types.LONG);
+            writeLong(columnIndex, value);
+            return;
+        }
         row.setLong(columnIndex, value);
     }
 
@@ -88,6 +299,11 @@ public class PageBuilderImpl extends PageBuilder {
     }
 
     public void setDouble(int columnIndex, double value) {
+        if (strict) {
+            setStrictColumn(columnIndex, Types.DOUBLE);
+            writeDouble(columnIndex, value);
+            return;
+        }
         row.setDouble(columnIndex, value);
     }
 
@@ -99,6 +315,9 @@ public class PageBuilderImpl extends PageBuilder {
     public void setString(int columnIndex, String value) {
         if (value == null) {
             setNull(columnIndex);
+        } else if (strict) {
+            setStrictColumn(columnIndex, Types.STRING);
+            strictStrings[columnIndex] = value;
         } else {
             row.setString(columnIndex, value);
         }
@@ -128,6 +347,9 @@ public class PageBuilderImpl extends PageBuilder {
     public void setJson(final int columnIndex, final JsonValue value) {
         if (value == null) {
             setNull(columnIndex);
+        } else if (strict) {
+            setStrictColumn(columnIndex, Types.JSON);
+            strictJsons[columnIndex] = value;
         } else {
             row.setJson(columnIndex, value);
         }
@@ -155,15 +377,71 @@ public class PageBuilderImpl extends PageBuilder {
         if (value == null) {
             setNull(columnIndex);
         } else {
-            row.setTimestamp(columnIndex, value);
+            setTimestamp(columnIndex, value.getEpochSecond(), value.getNano());
+        }
+    }
+
+    public void setTimestamp(final Column column, final long epochSecond, final int nano) {
+        // TODO check type?
+        this.setTimestamp(column.getIndex(), epochSecond, nano);
+    }
+
+    public void setTimestamp(final int columnIndex, final long epochSecond, final int nano) {
+        if (nano < 0 || 999_999_999 < nano) {
+            throw new IllegalArgumentException("Nanosecond adjustment out of range: " + nano);
+        }
+        if (epochSecond < MIN_EPOCH_SECOND || MAX_EPOCH_SECOND < epochSecond) {
+            throw new IllegalArgumentException("Epoch second out of the range of Instant: " + epochSecond);
+        }
+        if (strict) {
+            setStrictColumn(columnIndex, Types.TIMESTAMP);
+            writeTimestamp(columnIndex, epochSecond, nano);
+        } else {
+            row.setTimestamp(columnIndex, epochSecond, nano);
         }
     }
 
+    /**
+     * Marks a column as set in the current record in the strict mode.
+     *
+     * @param type  the type of the value, or {@code null} for a null value
+     * @throws IllegalStateException  if the column is already set in the current record, or the type does not match
+     */
+    private void setStrictColumn(final int columnIndex, final Type type) {
+        if (type != null && !schema.getColumnType(columnIndex).equals(type)) {
+            final Column column = schema.getColumn(columnIndex);
+            throw new IllegalStateException(
+                    "Setting a " + type.getName().toUpperCase(Locale.ENGLISH) + " value to a "
+                            + column.getType().getName().toUpperCase(Locale.ENGLISH) + " column: "
+                            + column.getName() + ", " + column.getType());
+        }
+        final long bit = 1L << (columnIndex & 63);
+        if ((strictSetColumns[columnIndex >>> 6] & bit) != 0) {
+            throw new IllegalStateException(
+                    "Setting a value twice to a column in a record: " + schema.getColumn(columnIndex).getName());
+        }
+        strictSetColumns[columnIndex >>> 6] |= bit;
+    }
+
+    private boolean isStrictColumnSet(final int columnIndex) {
+        return (strictSetColumns[columnIndex >>> 6] & (1L << (columnIndex & 63))) != 0;
+    }
+
     private void writeNull(int columnIndex) {
+        if (columnar) {
+            final int bitmapIndex = columnarNullBitmapOffsets[columnIndex] + (count >>> 3);
+            bufferSlice.setByte(bitmapIndex, bufferSlice.getByte(bitmapIndex) | (1 << (count & 7)));
+            return;
+        }
         nullBitSet[columnIndex >>> 3] |= (1 << (columnIndex & 7));
     }
 
     private void clearNull(int columnIndex) {
+        if (columnar) {
+            final int bitmapIndex = columnarNullBitmapOffsets[columnIndex] + (count >>> 3);
+            bufferSlice.setByte(bitmapIndex, bufferSlice.getByte(bitmapIndex) & ~(1 << (count & 7)));
+            return;
+        }
         nullBitSet[columnIndex >>> 3] &= ~(1 << (columnIndex & 7));
     }
 
@@ -182,37 +460,331 @@ public class PageBuilderImpl extends PageBuilder {
         clearNull(columnIndex);
     }
 
-    private void writeString(int columnIndex, String value) {
-        int index = stringReferences.size();
-        stringReferences.add(value);
-        bufferSlice.setInt(getOffset(columnIndex), index);
-        referenceSize += value.length() * 2 + 4;  // assuming size of char = size of byte * 2 + length
+    /**
+     * Prepares a STRING value of the current record to be written by {@link #writeString(int, String)}.
+     *
+     * <p>The value is looked up in the dictionary of the current page, or encoded in UTF-8. A new value of a
+     * dictionary-encoded column is encoded only once in a record, so that the other dictionary-encoded columns with the
+     * same value share the variable-length data written by the first column.
+     *
+     * @return the size of variable-length data to be written for the value
+     */
+    private int encodeString(final int columnIndex, final String value) {
+        stringDictionaryOffsets[columnIndex] = lookUpDictionary(columnIndex, value);
+        if (stringDictionaryOffsets[columnIndex] >= 0) {
+            return 0;
+        }
+        if (dictionaryEncoding[columnIndex] && !newDictionaryValues.add(value)) {
+            stringDictionaryOffsets[columnIndex] = WRITTEN_IN_RECORD;
+            return 0;
+        }
+        encodedStringIndexes[columnIndex] = encodedStringsSize;
+        encodedStringSizes[columnIndex] = encodeUtf8(value);
+        return PageFormat.VARIABLE_LENGTH_DATA_HEADER_SIZE + encodedStringSizes[columnIndex];
+    }
+
+    private int encodeUtf8(final String value) {
+        final int required = encodedStringsSize + value.length() * 3;  // UTF-8 takes 3 bytes per char at most
+        if (encodedStrings.length < required) {
+            encodedStrings = Arrays.copyOf(encodedStrings, Math.max(required, encodedStrings.length * 2));
+        }
+        final int size = PageUtf8.encode(value, encodedStrings, encodedStringsSize);
+        encodedStringsSize += size;
+        return size;
+    }
+
+    /**
+     * Looks up a STRING value in the dictionary of the current page.
+     *
+     * @return the offset of the same value already written in the current page, or {@code -1}
+     */
+    private int lookUpDictionary(final int columnIndex, final String value) {
+        if (!dictionaryEncoding[columnIndex]) {
+            return -1;
+        }
+        dictionaryLookups[columnIndex]++;
+        final Integer offset = dictionary.get(value);
+        if (offset == null) {
+            return -1;
+        }
+        return offset;
+    }
+
+    private void addToDictionary(final int columnIndex, final String value, final int variableLengthDataOffset) {
+        if (!dictionaryEncoding[columnIndex]) {
+            return;
+        }
+        dictionary.put(value, variableLengthDataOffset);
+        dictionaryEntries[columnIndex]++;
+        if (DICTIONARY_PROBE_SIZE <= dictionaryLookups[columnIndex]
+                && dictionaryLookups[columnIndex] * 3 < dictionaryEntries[columnIndex] * 4) {
+            // Most values are distinct. The column gives up dictionary encoding for the rest of the page.
+            dictionaryEncoding[columnIndex] = false;
+        }
+    }
+
+    private void writeStringOffset(final int columnIndex, final int variableLengthDataOffset) {
+        bufferSlice.setInt(getOffset(columnIndex), variableLengthDataOffset);
         clearNull(columnIndex);
     }
 
+    private void writeString(int columnIndex, String value) {
+        if (stringDictionaryOffsets[columnIndex] >= 0) {
+            writeStringOffset(columnIndex, stringDictionaryOffsets[columnIndex]);
+            return;
+        }
+        if (stringDictionaryOffsets[columnIndex] == WRITTEN_IN_RECORD) {
+            // A preceding column has written the same value, and added it to the dictionary.
+            writeStringOffset(columnIndex, dictionary.get(value));
+            return;
+        }
+        final int variableLengthDataOffset = writeVariableLengthData(
+                encodedStrings, encodedStringIndexes[columnIndex], encodedStringSizes[columnIndex]);
+        addToDictionary(columnIndex, value, variableLengthDataOffset);
+        writeStringOffset(columnIndex, variableLengthDataOffset);
+    }
+
+    /**
+     * Writes variable-length data of the current record.
+     *
+     * @return the offset of the variable-length data from the beginning of the page
+     */
+    private int writeVariableLengthData(final byte[] source, final int sourceIndex, final int length) {
+        final int variableLengthDataOffset;
+        if (columnar) {
+            variableLengthDataOffset = columnarVariableLengthDataOffset;
+            columnarVariableLengthDataOffset += PageFormat.VARIABLE_LENGTH_DATA_HEADER_SIZE + length;
+        } else {
+            variableLengthDataOffset = position + nextVariableLengthDataOffset;
+            nextVariableLengthDataOffset += PageFormat.VARIABLE_LENGTH_DATA_HEADER_SIZE + length;
+        }
+        bufferSlice.setInt(variableLengthDataOffset, length);
+        bufferSlice.setBytes(variableLengthDataOffset + PageFormat.VARIABLE_LENGTH_DATA_HEADER_SIZE, source, sourceIndex, length);
+        return variableLengthDataOffset;
+    }
+
     private void writeJson(final int columnIndex, final JsonValue value) {
         final int index = this.jsonValueReferences.size();
         this.jsonValueReferences.add(value);
         this.bufferSlice.setInt(this.getOffset(columnIndex), index);
-        this.referenceSize += value.presumeReferenceSizeInBytes();
+        this.referenceSize += presumeJsonReferenceSize(columnIndex, value);
         this.clearNull(columnIndex);
     }
 
-    @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1292
-    private void writeTimestamp(int columnIndex, Instant value) {
+    private void writeTimestamp(final int columnIndex, final long epochSecond, final int nano) {
         int offset = getOffset(columnIndex);
-        bufferSlice.setLong(offset, value.getEpochSecond());
-        bufferSlice.setInt(offset + 8, value.getNano());
+        bufferSlice.setLong(offset, epochSecond);
+        bufferSlice.setInt(offset + 8, nano);
         clearNull(columnIndex);
     }
 
     private int getOffset(int columnIndex) {
+        if (columnar) {
+            return columnarValueOffsets[columnIndex] + count * columnStorageSizes[columnIndex];
+        }
         return position + columnOffsets[columnIndex];
     }
 
+    @Override
+    public void setRecordFrom(final PageReader reader) {
+        final PageReader source = reader.unwrapDelegate();
+        checkCompatibleSchema(source.getSchema());
+        if (strict || !(source instanceof PageReaderImpl)) {
+            setValuesFrom(source);
+            return;
+        }
+
+        final PageReaderImpl sourceImpl = (PageReaderImpl) source;
+        sourceImpl.copyFixedSizeValues(copiedValues);
+        Arrays.fill(copiedNullBitSet, (byte) 0);
+        copiedStringsSize = 0;
+        for (int i = 0; i < copiedStringSizes.length; i++) {
+            copiedStringSizes[i] = -1;
+            if (sourceImpl.isNull(i)) {
+                copiedNullBitSet[i >>> 3] |= (1 << (i & 7));
+                row.setCopied(i);
+                continue;
+            }
+            final Type type = schema.getColumnType(i);
+            if (type.equals(Types.STRING)) {
+                if (!sourceImpl.hasUtf8Strings()) {
+                    row.setString(i, sourceImpl.getString(i));
+                    continue;
+                }
+                final int length = sourceImpl.getStringUtf8Length(i);
+                if (copiedStrings.length < copiedStringsSize + length) {
+                    copiedStrings = Arrays.copyOf(copiedStrings, Math.max(copiedStringsSize + length, copiedStrings.length * 2));
+                }
+                copiedStringIndexes[i] = copiedStringsSize;
+                copiedStringSizes[i] = sourceImpl.getStringUtf8(i, copiedStrings, copiedStringsSize);
+                copiedStringsSize += length;
+            } else if (type.equals(Types.JSON)) {
+                // JSON values are references to immutable objects
+                row.setJson(i, sourceImpl.getJsonValue(i));
+                continue;
+            }
+            row.setCopied(i);
+        }
+    }
+
+    @Override
+    public void addRecordFrom(final PageReader reader) {
+        setRecordFrom(reader);
+        addRecord();
+    }
+
+    private void checkCompatibleSchema(final Schema sourceSchema) {
+        if (sourceSchema == compatibleSchema) {
+            return;
+        }
+        if (sourceSchema.getColumnCount() != schema.getColumnCount()) {
+            throw new IllegalArgumentException(
+                    "PageReader has " + sourceSchema.getColumnCount() + " columns while PageBuilder has " + schema.getColumnCount());
+        }
+        for (int i = 0; i < schema.getColumnCount(); i++) {
+            if (!sourceSchema.getColumnType(i).equals(schema.getColumnType(i))) {
+                throw new IllegalArgumentException(
+                        "Column " + i + " of PageReader is " + sourceSchema.getColumnType(i)
+                                + " while PageBuilder's is " + schema.getColumnType(i));
+            }
+        }
+        compatibleSchema = sourceSchema;
+    }
+
+    /**
+     * Sets the values of the current record of a {@link PageReader} one by one.
+     */
+    private void setValuesFrom(final PageReader source) {
+        for (int i = 0; i < schema.getColumnCount(); i++) {
+            final Type type = schema.getColumnType(i);
+            if (source.isNull(i)) {
+                setNull(i);
+            } else if (type.equals(Types.BOOLEAN)) {
+                setBoolean(i, source.getBoolean(i));
+            } else if (type.equals(Types.LONG)) {
+                setLong(i, source.getLong(i));
+            } else if (type.equals(Types.DOUBLE)) {
+                setDouble(i, source.getDouble(i));
+            } else if (type.equals(Types.STRING)) {
+                setString(i, source.getString(i));
+            } else if (type.equals(Types.TIMESTAMP)) {
+                setTimestamp(i, source.getTimestampEpochSecond(i), source.getTimestampNano(i));
+            } else if (type.equals(Types.JSON)) {
+                setJson(i, source.getJsonValue(i));
+            } else {
+                throw new IllegalStateException("Unsupported type " + type.getName());
+            }
+        }
+    }
+
+    private int copiedVariableLengthDataSize(final int columnIndex) {
+        if (copiedStringSizes[columnIndex] < 0) {
+            return 0;
+        }
+        return PageFormat.VARIABLE_LENGTH_DATA_HEADER_SIZE + copiedStringSizes[columnIndex];
+    }
+
+    private void writeCopiedFixedSizeValues() {
+        if (!columnar) {
+            // header and null bitset of the record are overwritten in |addRecord|
+            bufferSlice.setBytes(position, copiedValues, 0, fixedRecordSize);
+        }
+    }
+
+    private void writeCopiedValue(final int columnIndex) {
+        if ((copiedNullBitSet[columnIndex >>> 3] & (1 << (columnIndex & 7))) != 0) {
+            writeNull(columnIndex);
+        } else if (copiedStringSizes[columnIndex] >= 0) {
+            // copied UTF-8 bytes are not looked up in the dictionary
+            dictionaryEncoding[columnIndex] = false;
+            writeStringOffset(columnIndex, writeVariableLengthData(
+                    copiedStrings, copiedStringIndexes[columnIndex], copiedStringSizes[columnIndex]));
+        } else {
+            if (columnar) {
+                bufferSlice.setBytes(getOffset(columnIndex), copiedValues, columnOffsets[columnIndex], columnStorageSizes[columnIndex]);
+            }
+            clearNull(columnIndex);
+        }
+    }
+
+    private int encodeVariableLengthData() {
+        encodedStringsSize = 0;
+        newDictionaryValues.clear();
+        pendingReferenceSize = 0;
+        if (!strict) {
+            return row.encodeVariableLengthData(this);
+        }
+        int size = 0;
+        for (int i = 0; i < strictStrings.length; i++) {
+            if (strictStrings[i] != null) {
+                size += encodeString(i, strictStrings[i]);
+            } else if (strictJsons[i] != null) {
+                pendingReferenceSize += presumeJsonReferenceSize(i, strictJsons[i]);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the presumed reference size of a JSON value, which is walked only once while the value is set repeatedly.
+     */
+    private int presumeJsonReferenceSize(final int columnIndex, final JsonValue value) {
+        if (presumedJsonValues[columnIndex] != value) {
+            presumedJsonValues[columnIndex] = value;
+            presumedJsonSizes[columnIndex] = value.presumeReferenceSizeInBytes();
+        }
+        return presumedJsonSizes[columnIndex];
+    }
+
+    private boolean fitsInBuffer(final int variableLengthDataSize, final int referenceSize) {
+        final int end;
+        if (columnar) {
+            end = columnarVariableLengthDataOffset + variableLengthDataSize;
+        } else {
+            end = position + fixedRecordSize + variableLengthDataSize;
+        }
+        return end + referenceSize + dictionaryBitmapSize <= buffer.capacity();
+    }
+
     public void addRecord() {
+        int variableLengthDataSize = encodeVariableLengthData();
+
+        // flush if this record will not fit in this buffer
+        if (!fitsInBuffer(variableLengthDataSize, referenceSize + pendingReferenceSize)) {
+            if (strict) {
+                // fixed-size values of this record are already written in the buffer
+                saveStrictRecord();
+            }
+            flushPage();
+            // values found in the dictionary of the last page are encoded again for the new page
+            variableLengthDataSize = encodeVariableLengthData();
+            if (!fitsInBuffer(variableLengthDataSize, 0)) {
+                // this record does not fit even in an empty buffer
+                buffer.release();
+                newBuffer(variableLengthDataSize);
+            }
+            if (strict) {
+                restoreStrictRecord();
+            }
+        }
+
         // record
-        row.write(this);
+        if (strict) {
+            writeStrictRecord();
+        } else {
+            row.write(this);
+        }
+
+        if (columnar) {
+            // values, null bitmaps, and variable-length data are already in the buffer
+            count++;
+
+            // flush if next record will not fit in this buffer
+            if (columnarRowCapacity <= count || !fitsInBuffer(0, referenceSize)) {
+                flushPage();
+            }
+            return;
+        }
 
         // record header
         bufferSlice.setInt(position, nextVariableLengthDataOffset);  // nextVariableLengthDataOffset means record size
@@ -224,20 +796,95 @@ public class PageBuilderImpl extends PageBuilder {
         Arrays.fill(nullBitSet, (byte) -1);
 
         // flush if next record will not fit in this buffer
-        if (buffer.capacity() < position + nextVariableLengthDataOffset + referenceSize) {
-            flush();
+        if (!fitsInBuffer(0, referenceSize)) {
+            flushPage();
+        }
+    }
+
+    private void writeStrictRecord() {
+        for (int i = 0; i < strictStrings.length; i++) {
+            if (!isStrictColumnSet(i)) {
+                writeNull(i);
+            } else if (strictStrings[i] != null) {
+                writeString(i, strictStrings[i]);
+                strictStrings[i] = null;
+            } else if (strictJsons[i] != null) {
+                writeJson(i, strictJsons[i]);
+                strictJsons[i] = null;
+            }
+        }
+        Arrays.fill(strictSetColumns, 0L);
+    }
+
+    /**
+     * Saves fixed-size values of the current record in the strict mode before the buffer is flushed.
+     */
+    private void saveStrictRecord() {
+        if (columnar) {
+            int index = 0;
+            Arrays.fill(nullBitSet, (byte) 0);
+            for (int i = 0; i < columnStorageSizes.length; i++) {
+                bufferSlice.getBytes(getOffset(i), strictRecord, index, columnStorageSizes[i]);
+                index += columnStorageSizes[i];
+                if ((bufferSlice.getByte(columnarNullBitmapOffsets[i] + (count >>> 3)) & (1 << (count & 7))) != 0) {
+                    nullBitSet[i >>> 3] |= (1 << (i & 7));
+                }
+            }
+        } else {
+            bufferSlice.getBytes(position, strictRecord, 0, fixedRecordSize);
+        }
+    }
+
+    /**
+     * Restores fixed-size values of the current record in the strict mode into a new buffer.
+     */
+    private void restoreStrictRecord() {
+        if (columnar) {
+            int index = 0;
+            for (int i = 0; i < columnStorageSizes.length; i++) {
+                bufferSlice.setBytes(getOffset(i), strictRecord, index, columnStorageSizes[i]);
+                index += columnStorageSizes[i];
+                if ((nullBitSet[i >>> 3] & (1 << (i & 7))) != 0) {
+                    writeNull(i);
+                } else {
+                    clearNull(i);
+                }
+            }
+        } else {
+            bufferSlice.setBytes(position, strictRecord, 0, fixedRecordSize);
         }
     }
 
     private void doFlush() {
         if (buffer != null && count > 0) {
-            // write page header
-            bufferSlice.setInt(0, count);
-            buffer.limit(position);
+            // write page header and the dictionary bitmap at the end of the page
+            int flags = PageFormat.VARIABLE_LENGTH_STRING_FLAG;
+            int end = columnar ? columnarVariableLengthDataOffset : position;
+            if (dictionaryBitmapSize > 0) {
+                flags |= PageFormat.DICTIONARY_ENCODED_FLAG;
+                for (int i = 0; i < dictionaryBitmapSize; i++) {
+                    bufferSlice.setByte(end + i, 0);
+                }
+                for (int i = 0; i < dictionaryEncoding.length; i++) {
+                    if (dictionaryEncoding[i]) {
+                        final int bitmapIndex = end + (i >>> 3);
+                        bufferSlice.setByte(bitmapIndex, bufferSlice.getByte(bitmapIndex) | (1 << (i & 7)));
+                    }
+                }
+                end += dictionaryBitmapSize;
+            }
+            if (columnar) {
+                bufferSlice.setInt(0, count | PageFormat.COLUMNAR_PAGE_FLAG | flags);
+                bufferSlice.setInt(4, columnarRowCapacity);
+            } else {
+                bufferSlice.setInt(0, count | flags);
+            }
+            buffer.limit(end);
+            adaptPageSize(end);
 
             // flush page
             final PageImpl page = PageImpl.wrap(buffer)
-                    .setStringReferencesInternal(this.stringReferences)
+                    .setStringReferencesInternal(Collections.<String>emptyList())
                     .setJsonValueReferencesInternal(this.jsonValueReferences);
             buffer = null;
             bufferSlice = null;
@@ -246,9 +893,26 @@ public class PageBuilderImpl extends PageBuilder {
     }
 
     public void flush() {
+        boolean inRecord = false;
+        if (strict) {
+            for (final long bits : strictSetColumns) {
+                inRecord |= bits != 0;
+            }
+        }
+        if (inRecord) {
+            // keep the values of the current record in the strict mode
+            saveStrictRecord();
+            flushPage();
+            restoreStrictRecord();
+        } else {
+            flushPage();
+        }
+    }
+
+    private void flushPage() {
         doFlush();
         if (buffer == null) {
-            newBuffer();
+            newBuffer(0);
         }
     }
 
@@ -264,11 +928,61 @@ public class PageBuilderImpl extends PageBuilder {
             buffer = null;
             bufferSlice = null;
         }
+        if (builtPageCount > 0 && logger.isDebugEnabled()) {
+            logger.debug("Built {} pages of {} records: {} bytes per page on average, buffers of {}-{} bytes",
+                         builtPageCount, builtRecordCount, builtPageBytes / builtPageCount, minBuiltPageCapacity, maxBuiltPageCapacity);
+            builtPageCount = 0;
+        }
         output.close();
     }
 
     /**
-     * Row is a container to stage values before adding into reference lists such as |stringReferences|.
+     * Records the statistics of the current page to flush, and chooses the size of buffers for the next pages.
+     *
+     * @param pageSize  the size of the current page
+     */
+    private void adaptPageSize(final int pageSize) {
+        builtPageCount++;
+        builtRecordCount += count;
+        builtPageBytes += pageSize;
+        minBuiltPageCapacity = Math.min(minBuiltPageCapacity, buffer.capacity());
+        maxBuiltPageCapacity = Math.max(maxBuiltPageCapacity, buffer.capacity());
+        if (!adaptivePageSize) {
+            return;
+        }
+
+        // Unused slots of a columnar page are not counted in its records.
+        final int recordsSize;
+        if (columnar) {
+            recordsSize = PageFormat.columnarPageSize(schema, count)
+                    + columnarVariableLengthDataOffset - PageFormat.columnarPageSize(schema, columnarRowCapacity);
+        } else {
+            recordsSize = position - PageFormat.PAGE_HEADER_SIZE;
+        }
+        final int recordSize = (recordsSize + referenceSize) / count;
+        if (averageRecordSize == 0) {
+            averageRecordSize = recordSize;
+        } else {
+            averageRecordSize = (int) ((averageRecordSize * 3L + recordSize) / 4);
+        }
+
+        final long desiredPageSize = (long) averageRecordSize * MIN_RECORDS_PER_PAGE
+                + PageFormat.PAGE_HEADER_SIZE + dictionaryBitmapSize;
+        final int nextPageSize;
+        if (desiredPageSize <= defaultPageCapacity) {
+            nextPageSize = 0;
+        } else {
+            nextPageSize = (int) Math.min(desiredPageSize, MAX_ADAPTIVE_PAGE_SIZE);
+        }
+        if (nextPageSize != requestedPageSize) {
+            logger.debug("Requesting {} bytes for a page as records are {} bytes on average.",
+                         nextPageSize == 0 ? "the default" : nextPageSize, averageRecordSize);
+            requestedPageSize = nextPageSize;
+        }
+    }
+
+    /**
+     * Row is a container to stage values before adding into the page or reference lists such as |jsonValueReferences|.
      *
      * |Row| works as a buffer against plugins that may add values incorrectly without |PageBuilderImpl#addRecord|.
      * It accepts just one value per column while |PageBuilderImpl| can double-store values regardless of columns.
@@ -303,42 +1017,78 @@ public class PageBuilderImpl extends PageBuilder {
         }
 
         private final ColumnValue[] values;
+        private final boolean[] copied;  // whether each column takes the value copied by |setRecordFrom|
+        private boolean hasCopied;
 
         private Row(ColumnValue[] values) {
             this.values = values;
+            this.copied = new boolean[values.length];
+            this.hasCopied = false;
+        }
+
+        private void setCopied(int columnIndex) {
+            copied[columnIndex] = true;
+            hasCopied = true;
         }
 
         private void setNull(int columnIndex) {
             values[columnIndex].setNull();
+            copied[columnIndex] = false;
         }
 
         private void setBoolean(int columnIndex, boolean value) {
             values[columnIndex].setBoolean(value);
+            copied[columnIndex] = false;
         }
 
         private void setLong(int columnIndex, long value) {
             values[columnIndex].setLong(value);
+            copied[columnIndex] = false;
         }
 
         private void setDouble(int columnIndex, double value) {
             values[columnIndex].setDouble(value);
+            copied[columnIndex] = false;
         }
 
         private void setString(int columnIndex, String value) {
             values[columnIndex].setString(value);
+            copied[columnIndex] = false;
         }
 
         private void setJson(int columnIndex, final JsonValue value) {
             values[columnIndex].setJson(value);
+            copied[columnIndex] = false;
+        }
+
+        private void setTimestamp(final int columnIndex, final long epochSecond, final int nano) {
+            values[columnIndex].setTimestamp(epochSecond, nano);
+            copied[columnIndex] = false;
         }
 
-        private void setTimestamp(int columnIndex, Instant value) {
-            values[columnIndex].setTimestamp(value);
+        private int encodeVariableLengthData(PageBuilderImpl pageBuilder) {
+            int size = 0;
+            for (int i = 0; i < values.length; i++) {
+                if (copied[i]) {
+                    size += pageBuilder.copiedVariableLengthDataSize(i);
+                } else {
+                    size += values[i].encodeVariableLengthData(pageBuilder);
+                }
+            }
+            return size;
         }
 
         private void write(PageBuilderImpl pageBuilder) {
-            for (ColumnValue v : values) {
-                v.write(pageBuilder);
+            if (hasCopied) {
+                // copied values are written at once, and then overwritten by values set after |setRecordFrom|
+                pageBuilder.writeCopiedFixedSizeValues();
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (copied[i]) {
+                    pageBuilder.writeCopiedValue(i);
+                } else {
+                    values[i].write(pageBuilder);
+                }
             }
         }
     }
@@ -354,10 +1104,12 @@ public class PageBuilderImpl extends PageBuilder {
 
         void setJson(JsonValue value);
 
-        void setTimestamp(Instant value);
+        void setTimestamp(long epochSecond, int nano);
 
         void setNull();
 
+        int encodeVariableLengthData(PageBuilderImpl pageBuilder);
+
         void write(PageBuilderImpl pageBuilder);
     }
 
@@ -389,7 +1141,7 @@ public class PageBuilderImpl extends PageBuilder {
             throw new IllegalStateException("Not reach here");
         }
 
-        public void setTimestamp(Instant value) {
+        public void setTimestamp(final long epochSecond, final int nano) {
             throw new IllegalStateException("Not reach here");
         }
 
@@ -397,6 +1149,10 @@ public class PageBuilderImpl extends PageBuilder {
             isNull = true;
         }
 
+        public int encodeVariableLengthData(PageBuilderImpl pageBuilder) {
+            return 0;
+        }
+
         public void write(PageBuilderImpl pageBuilder) {
             if (!isNull) {
                 writeNotNull(pageBuilder);
@@ -442,7 +1198,7 @@ public class PageBuilderImpl extends PageBuilder {
         }
 
         @Override
-        public void setTimestamp(final Instant value) {
+        public void setTimestamp(final long epochSecond, final int nano) {
             throw new IllegalStateException("Setting a TIMESTAMP value to a BOOLEAN column: " + this.column.getName() + ", " + this.column.getType());
         }
 
@@ -486,7 +1242,7 @@ public class PageBuilderImpl extends PageBuilder {
         }
 
         @Override
-        public void setTimestamp(final Instant value) {
+        public void setTimestamp(final long epochSecond, final int nano) {
             throw new IllegalStateException("Setting a TIMESTAMP value to a LONG column: " + this.column.getName() + ", " + this.column.getType());
         }
 
@@ -530,7 +1286,7 @@ public class PageBuilderImpl extends PageBuilder {
         }
 
         @Override
-        public void setTimestamp(final Instant value) {
+        public void setTimestamp(final long epochSecond, final int nano) {
             throw new IllegalStateException("Setting a TIMESTAMP value to a DOUBLE column: " + this.column.getName() + ", " + this.column.getType());
         }
 
@@ -574,10 +1330,18 @@ public class PageBuilderImpl extends PageBuilder {
         }
 
         @Override
-        public void setTimestamp(final Instant value) {
+        public void setTimestamp(final long epochSecond, final int nano) {
             throw new IllegalStateException("Setting a TIMESTAMP value to a STRING column: " + this.column.getName() + ", " + this.column.getType());
         }
 
+        @Override
+        public int encodeVariableLengthData(PageBuilderImpl pageBuilder) {
+            if (isNull) {
+                return 0;
+            }
+            return pageBuilder.encodeString(column.getIndex(), value);
+        }
+
         @Override
         public void writeNotNull(PageBuilderImpl pageBuilder) {
             pageBuilder.writeString(column.getIndex(), value);
@@ -618,7 +1382,16 @@ public class PageBuilderImpl extends PageBuilder {
         }
 
         @Override
-        public void setTimestamp(final Instant value) {
+        public int encodeVariableLengthData(PageBuilderImpl pageBuilder) {
+            if (!isNull) {
+                // JSON values are not in the page, but their references are counted in the page size.
+                pageBuilder.pendingReferenceSize += pageBuilder.presumeJsonReferenceSize(column.getIndex(), value);
+            }
+            return 0;
+        }
+
+        @Override
+        public void setTimestamp(final long epochSecond, final int nano) {
             throw new IllegalStateException("Setting a TIMESTAMP value to a JSON column: " + this.column.getName() + ", " + this.column.getType());
         }
 
@@ -629,7 +1402,8 @@ public class PageBuilderImpl extends PageBuilder {
     }
 
     private static class TimestampColumnValue extends AbstractColumnValue {
-        private Instant value;
+        private long epochSecond;
+        private int nano;
 
         TimestampColumnValue(Column column) {
             super(column);
@@ -661,14 +1435,15 @@ public class PageBuilderImpl extends PageBuilder {
         }
 
         @Override
-        public void setTimestamp(Instant value) {
-            this.value = value;
+        public void setTimestamp(final long epochSecond, final int nano) {
+            this.epochSecond = epochSecond;
+            this.nano = nano;
             this.isNull = false;
         }
 
         @Override
         public void writeNotNull(PageBuilderImpl pageBuilder) {
-            pageBuilder.writeTimestamp(column.getIndex(), value);
+            pageBuilder.writeTimestamp(column.getIndex(), epochSecond, nano);
         }
     }
 
@@ -1,5 +1,7 @@
 package org.embulk.spi;
 
+import org.embulk.spi.type.Types;
+
 abstract class PageFormat {
     // PageHeader
     // +---+
@@ -15,6 +17,52 @@ abstract class PageFormat {
     // uses 4 bytes integer
     static final int VARIABLE_LENGTH_COLUMN_SIZE = 4;
 
+    // Variable-length data
+    // +---+---------+
+    // | 4 | length  |
+    // +---+---------+
+    // length, UTF-8 bytes
+    //
+    // The column slot of a STRING column stores the offset of its variable-length data from the beginning of
+    // the page if VARIABLE_LENGTH_STRING_FLAG is set in the page header. Otherwise, it stores the index of
+    // the page's string references, as pages built by legacy plugins with Page#setStringReferences do.
+    //
+    // Variable-length data of a row-oriented record follows the fixed-size slots of the record, and is included
+    // in the record size. Variable-length data of a columnar page follows the values of the last column.
+
+    static final int VARIABLE_LENGTH_STRING_FLAG = 0x40000000;
+
+    static final int VARIABLE_LENGTH_DATA_HEADER_SIZE = 4;
+
+    /**
+     * The estimated average size of variable-length data per STRING value to lay out a columnar page.
+     */
+    static final int ESTIMATED_VARIABLE_LENGTH_DATA_SIZE = VARIABLE_LENGTH_DATA_HEADER_SIZE + 16;
+
+    static boolean hasVariableLengthStrings(final int pageHeader) {
+        return (pageHeader & VARIABLE_LENGTH_STRING_FLAG) != 0;
+    }
+
+    // Dictionary bitmap
+    // +------------------+
+    // | nullBitSetSize   |
+    // +------------------+
+    //
+    // Identical STRING values in a page share one variable-length data if DICTIONARY_ENCODED_FLAG is set in the page
+    // header. A page with the flag ends with a bitmap which has a bit for each column. The bit is set if all the
+    // STRING values of the column in the page share the variable-length data, which means that the offsets are
+    // equal if and only if the values are equal.
+
+    static final int DICTIONARY_ENCODED_FLAG = 0x20000000;
+
+    static boolean hasDictionaryBitmap(final int pageHeader) {
+        return (pageHeader & DICTIONARY_ENCODED_FLAG) != 0;
+    }
+
+    static int dictionaryBitmapSize(final Schema schema) {
+        return nullBitSetSize(schema);
+    }
+
     static int nullBitSetSize(Schema schema) {
         return (schema.getColumnCount() + 7) / 8;
     }
@@ -39,4 +87,94 @@ abstract class PageFormat {
 
         return offsets;
     }
+
+    // Columnar PageHeader
+    // +---------------------------------+---+
+    // | 4                               | 4 |
+    // +---------------------------------+---+
+    // count (number of records) | COLUMNAR_PAGE_FLAG, rowCapacity
+    //
+    // Columnar Page
+    // +-------------+-----+--------------------+-----+---------------------+-----+
+    // | null bitmap | ... | null bitmap        | pad | values              | ... |
+    // | of column 0 |     | of column (n - 1)  |     | of column 0         |     |
+    // +-------------+-----+--------------------+-----+---------------------+-----+
+    // (rowCapacity + 7) / 8 bytes each                  rowCapacity * fixed storage size each, aligned to 8 bytes
+
+    static final int COLUMNAR_PAGE_FLAG = 0x80000000;
+
+    static final int COLUMNAR_PAGE_HEADER_SIZE = 8;
+
+    static boolean isColumnar(final int pageHeader) {
+        return (pageHeader & COLUMNAR_PAGE_FLAG) != 0;
+    }
+
+    static int recordCount(final int pageHeader) {
+        return pageHeader & ~(COLUMNAR_PAGE_FLAG | VARIABLE_LENGTH_STRING_FLAG | DICTIONARY_ENCODED_FLAG);
+    }
+
+    static int columnarNullBitmapSize(final int rowCapacity) {
+        return (rowCapacity + 7) / 8;
+    }
+
+    static int[] columnarNullBitmapOffsets(final Schema schema, final int rowCapacity) {
+        final int[] offsets = new int[schema.getColumnCount()];
+        int offset = COLUMNAR_PAGE_HEADER_SIZE;
+        for (int i = 0; i < schema.getColumnCount(); i++) {
+            offsets[i] = offset;
+            offset += columnarNullBitmapSize(rowCapacity);
+        }
+        return offsets;
+    }
+
+    static int[] columnarValueOffsets(final Schema schema, final int rowCapacity) {
+        final int[] offsets = new int[schema.getColumnCount()];
+        int offset = alignColumnar(COLUMNAR_PAGE_HEADER_SIZE + schema.getColumnCount() * columnarNullBitmapSize(rowCapacity));
+        for (int i = 0; i < schema.getColumnCount(); i++) {
+            offsets[i] = offset;
+            offset = alignColumnar(offset + rowCapacity * schema.getColumnType(i).getFixedStorageSize());
+        }
+        return offsets;
+    }
+
+    static int columnarPageSize(final Schema schema, final int rowCapacity) {
+        int size = alignColumnar(COLUMNAR_PAGE_HEADER_SIZE + schema.getColumnCount() * columnarNullBitmapSize(rowCapacity));
+        for (int i = 0; i < schema.getColumnCount(); i++) {
+            size = alignColumnar(size + rowCapacity * schema.getColumnType(i).getFixedStorageSize());
+        }
+        return size;
+    }
+
+    static int variableLengthColumnCount(final Schema schema) {
+        int count = 0;
+        for (final Column column : schema.getColumns()) {
+            if (column.getType().equals(Types.STRING)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of records which a columnar page fits in {@code capacity} bytes.
+     *
+     * @param variableLengthDataSizePerRecord  the size of variable-length data to reserve per record
+     */
+    static int columnarRowCapacity(final Schema schema, final int capacity, final int variableLengthDataSizePerRecord) {
+        final long bitsPerRecord = 8L * (schema.getFixedStorageSize() + variableLengthDataSizePerRecord) + schema.getColumnCount();
+        if (bitsPerRecord == 0) {
+            return Math.max(1, capacity);
+        }
+        final long overhead = COLUMNAR_PAGE_HEADER_SIZE + 8L * (schema.getColumnCount() + 1);
+        int rowCapacity = (int) Math.max(1L, (capacity - overhead) * 8 / bitsPerRecord);
+        while (rowCapacity > 1
+                && columnarPageSize(schema, rowCapacity) + (long) rowCapacity * variableLengthDataSizePerRecord > capacity) {
+            rowCapacity--;
+        }
+        return rowCapacity;
+    }
+
+    private static int alignColumnar(final int offset) {
+        return (offset + 7) & ~7;
+    }
 }
@@ -1,13 +1,18 @@
 package org.embulk.spi;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.Arrays;
 import org.embulk.exec.Slice;
 import org.embulk.spi.json.JsonValue;
+import org.embulk.spi.type.Type;
+import org.embulk.spi.type.Types;
 import org.msgpack.value.Value;
 
 public class PageReaderImpl extends PageReader {
     private final Schema schema;
-    private final int[] columnOffsets;
+    private final int[] recordColumnOffsets;
+    private final int[] identityColumnIndexes;
 
     private Page page = SENTINEL;
     private Slice pageSlice = null;
@@ -15,20 +20,60 @@ public class PageReaderImpl extends PageReader {
 
     private int readCount = 0;
     private int position;
-    private final byte[] nullBitSet;
+
+    // Layout of the current page, which is laid out with the source schema if the page is a ProjectedPage.
+    private Schema pageSchema = null;
+    private int[] columnOffsets;
+    private byte[] nullBitSet;
+    private int[] columnStorageSizes;
+    private int fixedRecordSize;
+
+    // Columns of the current page for the columns of |schema|
+    private int[] sourceColumnIndexes;
+
+    // Layout of the current page if it is in the columnar format.
+    private boolean columnar = false;
+    private int columnarRowCapacity = -1;
+    private int[] columnarNullBitmapOffsets;
+    private int[] columnarValueOffsets;
+
+    // STRING values of the current page are stored in UTF-8 in the page, not in its string references.
+    private boolean variableLengthStrings = false;
+    private byte[] stringBytes = new byte[256];
+
+    // Columns whose STRING values are dictionary-encoded in the current page
+    private byte[] dictionaryBitmap;
 
     private static final Page SENTINEL = PageImpl.wrap(BufferImpl.wrap(new byte[4]));  // buffer().release() does nothing
 
     public PageReaderImpl(Schema schema) {
         this.schema = schema;
-        this.columnOffsets = PageFormat.columnOffsets(schema);
-        this.nullBitSet = new byte[PageFormat.nullBitSetSize(schema)];
+        this.recordColumnOffsets = PageFormat.columnOffsets(schema);
+        this.identityColumnIndexes = new int[schema.getColumnCount()];
+        for (int i = 0; i < schema.getColumnCount(); i++) {
+            this.identityColumnIndexes[i] = i;
+        }
+        this.sourceColumnIndexes = this.identityColumnIndexes;
+        layOut(schema);
+    }
+
+    private void layOut(final Schema pageSchema) {
+        this.pageSchema = pageSchema;
+        this.columnOffsets = PageFormat.columnOffsets(pageSchema);
+        this.nullBitSet = new byte[PageFormat.nullBitSetSize(pageSchema)];
+        this.dictionaryBitmap = new byte[PageFormat.dictionaryBitmapSize(pageSchema)];
+        this.columnStorageSizes = new int[pageSchema.getColumnCount()];
+        for (int i = 0; i < pageSchema.getColumnCount(); i++) {
+            this.columnStorageSizes[i] = pageSchema.getColumnType(i).getFixedStorageSize();
+        }
+        this.fixedRecordSize = PageFormat.recordHeaderSize(pageSchema) + PageFormat.totalColumnSize(pageSchema);
+        this.columnarRowCapacity = -1;
     }
 
     public static int getRecordCount(Page page) {
         Buffer pageBuffer = page.buffer();
-        final Slice pageSlice = Slice.wrappedBuffer(pageBuffer.array(), pageBuffer.offset(), pageBuffer.capacity());
-        return pageSlice.getInt(0);  // see page format
+        final Slice pageSlice = Slice.wrappedBuffer(pageBuffer);
+        return PageFormat.recordCount(pageSlice.getInt(0));  // see page format
     }
 
     @Override
@@ -36,17 +81,64 @@ public class PageReaderImpl extends PageReader {
         this.page.buffer().release();
         this.page = SENTINEL;
 
+        final Schema pageSchema;
+        if (page instanceof ProjectedPage) {
+            final ProjectedPage projected = (ProjectedPage) page;
+            if (projected.getSourceColumnIndexes() != sourceColumnIndexes) {
+                checkProjection(projected.getSourceSchema(), projected.getSourceColumnIndexes());
+                sourceColumnIndexes = projected.getSourceColumnIndexes();
+            }
+            pageSchema = projected.getSourceSchema();
+        } else {
+            sourceColumnIndexes = identityColumnIndexes;
+            pageSchema = schema;
+        }
+        if (pageSchema != this.pageSchema) {
+            layOut(pageSchema);
+        }
+
         Buffer pageBuffer = page.buffer();
-        final Slice pageSlice = Slice.wrappedBuffer(pageBuffer.array(), pageBuffer.offset(), pageBuffer.capacity());
+        final Slice pageSlice = Slice.wrappedBuffer(pageBuffer);
 
-        pageRecordCount = pageSlice.getInt(0);  // see page format
+        final int pageHeader = pageSlice.getInt(0);  // see page format
+        pageRecordCount = PageFormat.recordCount(pageHeader);
         readCount = 0;
         position = PageFormat.PAGE_HEADER_SIZE;
 
+        columnar = PageFormat.isColumnar(pageHeader);
+        variableLengthStrings = PageFormat.hasVariableLengthStrings(pageHeader);
+        if (PageFormat.hasDictionaryBitmap(pageHeader)) {
+            pageSlice.getBytes(pageBuffer.limit() - dictionaryBitmap.length, dictionaryBitmap, 0, dictionaryBitmap.length);
+        } else {
+            Arrays.fill(dictionaryBitmap, (byte) 0);
+        }
+        if (columnar) {
+            final int rowCapacity = pageSlice.getInt(4);
+            if (rowCapacity != columnarRowCapacity) {
+                columnarRowCapacity = rowCapacity;
+                columnarNullBitmapOffsets = PageFormat.columnarNullBitmapOffsets(pageSchema, rowCapacity);
+                columnarValueOffsets = PageFormat.columnarValueOffsets(pageSchema, rowCapacity);
+            }
+        }
+
         this.page = page;
         this.pageSlice = pageSlice;
     }
 
+    private void checkProjection(final Schema sourceSchema, final int[] sourceColumnIndexes) {
+        if (sourceColumnIndexes.length != schema.getColumnCount()) {
+            throw new IllegalArgumentException(
+                    "Projected page has " + sourceColumnIndexes.length + " columns while PageReader has " + schema.getColumnCount());
+        }
+        for (int i = 0; i < sourceColumnIndexes.length; i++) {
+            final Type sourceType = sourceSchema.getColumnType(sourceColumnIndexes[i]);
+            if (!sourceType.equals(schema.getColumnType(i))) {
+                throw new IllegalArgumentException(
+                        "Column " + i + " of projected page is " + sourceType + " while PageReader's is " + schema.getColumnType(i));
+            }
+        }
+    }
+
     @Override
     public Schema getSchema() {
         return schema;
@@ -59,7 +151,8 @@ public class PageReaderImpl extends PageReader {
 
     @Override
     public boolean isNull(int columnIndex) {
-        return (nullBitSet[columnIndex >>> 3] & (1 << (columnIndex & 7))) != 0;
+        final int sourceIndex = sourceColumnIndexes[columnIndex];
+        return (nullBitSet[sourceIndex >>> 3] & (1 << (sourceIndex & 7))) != 0;
     }
 
     @Override
@@ -106,8 +199,106 @@ public class PageReaderImpl extends PageReader {
         if (isNull(columnIndex)) {
             return null;
         }
-        int index = pageSlice.getInt(getOffset(columnIndex));
-        return page.getStringReference(index);
+        final int index = pageSlice.getInt(getOffset(columnIndex));
+        if (!variableLengthStrings) {
+            return page.getStringReference(index);
+        }
+        final int length = pageSlice.getInt(index);
+        if (stringBytes.length < length) {
+            stringBytes = new byte[Math.max(length, stringBytes.length * 2)];
+        }
+        pageSlice.getBytes(index + PageFormat.VARIABLE_LENGTH_DATA_HEADER_SIZE, stringBytes, 0, length);
+        return new String(stringBytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean isDictionaryEncoded(final Column column) {
+        return this.isDictionaryEncoded(column.getIndex());
+    }
+
+    @Override
+    public boolean isDictionaryEncoded(final int columnIndex) {
+        final int sourceIndex = sourceColumnIndexes[columnIndex];
+        return (dictionaryBitmap[sourceIndex >>> 3] & (1 << (sourceIndex & 7))) != 0;
+    }
+
+    @Override
+    public int getStringDictionaryId(final Column column) {
+        return this.getStringDictionaryId(column.getIndex());
+    }
+
+    @Override
+    public int getStringDictionaryId(final int columnIndex) {
+        if (isNull(columnIndex)) {
+            return -1;
+        }
+        // The offset of the variable-length data, or the index of the string references
+        return pageSlice.getInt(getOffset(columnIndex));
+    }
+
+    @Override
+    public int getStringUtf8Length(final Column column) {
+        return this.getStringUtf8Length(column.getIndex());
+    }
+
+    @Override
+    public int getStringUtf8Length(final int columnIndex) {
+        if (isNull(columnIndex)) {
+            return -1;
+        }
+        final int index = pageSlice.getInt(getOffset(columnIndex));
+        if (!variableLengthStrings) {
+            return PageUtf8.encodedLength(page.getStringReference(index));
+        }
+        return pageSlice.getInt(index);
+    }
+
+    @Override
+    public int getStringUtf8(final Column column, final byte[] destination, final int destinationIndex) {
+        return this.getStringUtf8(column.getIndex(), destination, destinationIndex);
+    }
+
+    @Override
+    public int getStringUtf8(final int columnIndex, final byte[] destination, final int destinationIndex) {
+        if (isNull(columnIndex)) {
+            return -1;
+        }
+        final int index = pageSlice.getInt(getOffset(columnIndex));
+        if (!variableLengthStrings) {
+            final String value = page.getStringReference(index);
+            if (destination.length - destinationIndex < PageUtf8.encodedLength(value)) {
+                throw new IndexOutOfBoundsException("Destination array is too short for the string.");
+            }
+            return PageUtf8.encode(value, destination, destinationIndex);
+        }
+        final int length = pageSlice.getInt(index);
+        pageSlice.getBytes(index + PageFormat.VARIABLE_LENGTH_DATA_HEADER_SIZE, destination, destinationIndex, length);
+        return length;
+    }
+
+    @Override
+    public CharSequence getStringCharSequence(final Column column) {
+        return this.getStringCharSequence(column.getIndex());
+    }
+
+    @Override
+    public CharSequence getStringCharSequence(final int columnIndex) {
+        if (isNull(columnIndex)) {
+            return null;
+        }
+        final int index = pageSlice.getInt(getOffset(columnIndex));
+        if (!variableLengthStrings) {
+            return page.getStringReference(index);
+        }
+        final int length = pageSlice.getInt(index);
+        final int start = index + PageFormat.VARIABLE_LENGTH_DATA_HEADER_SIZE;
+        for (int i = 0; i < length; i++) {
+            if (pageSlice.getByte(start + i) < 0) {
+                // Non-ASCII bytes need to be decoded.
+                return getString(columnIndex);
+            }
+        }
+        return new AsciiCharSequence(pageSlice, start, length);
     }
 
     /**
@@ -152,6 +343,30 @@ public class PageReaderImpl extends PageReader {
         return Instant.ofEpochSecond(sec, nsec);
     }
 
+    @Override
+    public long getTimestampEpochSecond(final Column column) {
+        // TODO check type?
+        return this.getTimestampEpochSecond(column.getIndex());
+    }
+
+    @Override
+    public long getTimestampEpochSecond(final int columnIndex) {
+        checkNotNull(columnIndex);
+        return pageSlice.getLong(getOffset(columnIndex));
+    }
+
+    @Override
+    public int getTimestampNano(final Column column) {
+        // TODO check type?
+        return this.getTimestampNano(column.getIndex());
+    }
+
+    @Override
+    public int getTimestampNano(final int columnIndex) {
+        checkNotNull(columnIndex);
+        return pageSlice.getInt(getOffset(columnIndex) + 8);
+    }
+
     /**
      * Returns a JSON value at the specified column in the {@code msgpack-java} representation.
      *
@@ -207,7 +422,149 @@ public class PageReaderImpl extends PageReader {
         return this.page.getJsonValueReference(index);
     }
 
-    private int getOffset(int columnIndex) {
+    @Override
+    public int readBooleanColumn(final Column column, final boolean[] destination) {
+        return this.readBooleanColumn(column.getIndex(), destination);
+    }
+
+    @Override
+    public int readBooleanColumn(final int projectedColumnIndex, final boolean[] destination) {
+        checkColumnType(projectedColumnIndex, Types.BOOLEAN);
+        checkColumnDestination(destination.length);
+        final int columnIndex = sourceColumnIndexes[projectedColumnIndex];
+        if (columnar) {
+            final int valueOffset = columnarValueOffsets[columnIndex];
+            for (int i = 0; i < pageRecordCount; i++) {
+                destination[i] = pageSlice.getByte(valueOffset + i) != (byte) 0;
+            }
+        } else {
+            int recordPosition = PageFormat.PAGE_HEADER_SIZE;
+            for (int i = 0; i < pageRecordCount; i++) {
+                destination[i] = pageSlice.getByte(recordPosition + columnOffsets[columnIndex]) != (byte) 0;
+                recordPosition += pageSlice.getInt(recordPosition);
+            }
+        }
+        return pageRecordCount;
+    }
+
+    @Override
+    public int readLongColumn(final Column column, final long[] destination) {
+        return this.readLongColumn(column.getIndex(), destination);
+    }
+
+    @Override
+    public int readLongColumn(final int projectedColumnIndex, final long[] destination) {
+        checkColumnType(projectedColumnIndex, Types.LONG);
+        checkColumnDestination(destination.length);
+        final int columnIndex = sourceColumnIndexes[projectedColumnIndex];
+        if (columnar) {
+            pageSlice.getLongs(columnarValueOffsets[columnIndex], destination, 0, pageRecordCount);
+        } else {
+            int recordPosition = PageFormat.PAGE_HEADER_SIZE;
+            for (int i = 0; i < pageRecordCount; i++) {
+                destination[i] = pageSlice.getLong(recordPosition + columnOffsets[columnIndex]);
+                recordPosition += pageSlice.getInt(recordPosition);
+            }
+        }
+        return pageRecordCount;
+    }
+
+    @Override
+    public int readDoubleColumn(final Column column, final double[] destination) {
+        return this.readDoubleColumn(column.getIndex(), destination);
+    }
+
+    @Override
+    public int readDoubleColumn(final int projectedColumnIndex, final double[] destination) {
+        checkColumnType(projectedColumnIndex, Types.DOUBLE);
+        checkColumnDestination(destination.length);
+        final int columnIndex = sourceColumnIndexes[projectedColumnIndex];
+        if (columnar) {
+            pageSlice.getDoubles(columnarValueOffsets[columnIndex], destination, 0, pageRecordCount);
+        } else {
+            int recordPosition = PageFormat.PAGE_HEADER_SIZE;
+            for (int i = 0; i < pageRecordCount; i++) {
+                destination[i] = pageSlice.getDouble(recordPosition + columnOffsets[columnIndex]);
+                recordPosition += pageSlice.getInt(recordPosition);
+            }
+        }
+        return pageRecordCount;
+    }
+
+    @Override
+    public int readNullColumn(final Column column, final boolean[] destination) {
+        return this.readNullColumn(column.getIndex(), destination);
+    }
+
+    @Override
+    public int readNullColumn(final int projectedColumnIndex, final boolean[] destination) {
+        checkColumnDestination(destination.length);
+        final int columnIndex = sourceColumnIndexes[projectedColumnIndex];
+        final int bit = 1 << (columnIndex & 7);
+        if (columnar) {
+            final int bitmapOffset = columnarNullBitmapOffsets[columnIndex];
+            for (int i = 0; i < pageRecordCount; i++) {
+                destination[i] = (pageSlice.getByte(bitmapOffset + (i >>> 3)) & (1 << (i & 7))) != 0;
+            }
+        } else {
+            int recordPosition = PageFormat.PAGE_HEADER_SIZE;
+            for (int i = 0; i < pageRecordCount; i++) {
+                destination[i] = (pageSlice.getByte(recordPosition + 4 + (columnIndex >>> 3)) & bit) != 0;
+                recordPosition += pageSlice.getInt(recordPosition);
+            }
+        }
+        return pageRecordCount;
+    }
+
+    /**
+     * Returns {@code true} if STRING values of the current page are stored in UTF-8 in the page.
+     */
+    boolean hasUtf8Strings() {
+        return variableLengthStrings;
+    }
+
+    /**
+     * Copies the fixed-size part of the current record into {@code destination} in the row-oriented record layout.
+     *
+     * <p>Slots of STRING and JSON columns are copied as they are, which are meaningful only in the current page.
+     */
+    void copyFixedSizeValues(final byte[] destination) {
+        if (columnar || pageSchema != schema) {
+            for (int i = 0; i < recordColumnOffsets.length; i++) {
+                final int sourceIndex = sourceColumnIndexes[i];
+                pageSlice.getBytes(getOffset(i), destination, recordColumnOffsets[i], columnStorageSizes[sourceIndex]);
+            }
+        } else {
+            pageSlice.getBytes(position, destination, 0, fixedRecordSize);
+        }
+    }
+
+    private void checkColumnType(final int projectedColumnIndex, final Type expectedType) {
+        final Type type = schema.getColumnType(projectedColumnIndex);
+        if (!type.equals(expectedType)) {
+            throw new ClassCastException(
+                    "Column " + projectedColumnIndex + " is " + type + ", which cannot be read as " + expectedType + ".");
+        }
+    }
+
+    private void checkNotNull(final int columnIndex) {
+        if (isNull(columnIndex)) {
+            throw new NullPointerException("Column " + columnIndex + " is null. Check isNull before reading it.");
+        }
+    }
+
+    private void checkColumnDestination(final int destinationLength) {
+        if (destinationLength < pageRecordCount) {
+            throw new IndexOutOfBoundsException(
+                    "Destination array is too short for the page: length=" + destinationLength + " records=" + pageRecordCount);
+        }
+    }
+
+    private int getOffset(final int projectedColumnIndex) {
+        final int columnIndex = sourceColumnIndexes[projectedColumnIndex];
+        if (columnar) {
+            return columnarValueOffsets[columnIndex] + (readCount - 1) * columnStorageSizes[columnIndex];
+        }
         return position + columnOffsets[columnIndex];
     }
 
@@ -217,6 +574,12 @@ public class PageReaderImpl extends PageReader {
             return false;
         }
 
+        if (columnar) {
+            readCount++;
+            readColumnarNullBitSet(readCount - 1);
+            return true;
+        }
+
         if (readCount > 0) {
             // advance position excepting the first record
             int lastRecordSize = pageSlice.getInt(position);
@@ -229,12 +592,65 @@ public class PageReaderImpl extends PageReader {
         return true;
     }
 
+    private void readColumnarNullBitSet(final int rowIndex) {
+        final int rowBit = 1 << (rowIndex & 7);
+        Arrays.fill(nullBitSet, (byte) 0);
+        for (int i = 0; i < columnarNullBitmapOffsets.length; i++) {
+            if ((pageSlice.getByte(columnarNullBitmapOffsets[i] + (rowIndex >>> 3)) & rowBit) != 0) {
+                nullBitSet[i >>> 3] |= (1 << (i & 7));
+            }
+        }
+    }
+
     @Override
     public void close() {
         page.buffer().release();
         page = SENTINEL;
     }
 
+    /**
+     * A view of an ASCII-only string in the variable-length data area of a page, which is valid until the page is released.
+     */
+    private static final class AsciiCharSequence implements CharSequence {
+        private AsciiCharSequence(final Slice slice, final int start, final int length) {
+            this.slice = slice;
+            this.start = start;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return this.length;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            if (index < 0 || this.length <= index) {
+                throw new IndexOutOfBoundsException("index: " + index + ", length: " + this.length);
+            }
+            return (char) this.slice.getByte(this.start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            if (start < 0 || end < start || this.length < end) {
+                throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + this.length);
+            }
+            return new AsciiCharSequence(this.slice, this.start + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            final byte[] bytes = new byte[this.length];
+            this.slice.getBytes(this.start, bytes, 0, this.length);
+            return new String(bytes, StandardCharsets.US_ASCII);
+        }
+
+        private final Slice slice;
+        private final int start;
+        private final int length;
+    }
+
     /* TODO for variable-length types
     public VariableLengthDataReader getVariableLengthData(int columnIndex, int variableLengthDataOffset)
     {
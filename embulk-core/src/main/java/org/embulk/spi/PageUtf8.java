@@ -0,0 +1,70 @@
+package org.embulk.spi;
+
+/**
+ * Encodes strings into UTF-8 for the variable-length data area of pages.
+ *
+ * <p>It encodes just like {@link String#getBytes(java.nio.charset.Charset)} with UTF-8, which replaces unpaired
+ * surrogates with {@code '?'}, but without allocating a new {@code byte} array per string.
+ */
+final class PageUtf8 {
+    private PageUtf8() {
+        // No instantiation.
+    }
+
+    /**
+     * Returns the number of bytes of {@code value} encoded in UTF-8.
+     */
+    static int encodedLength(final CharSequence value) {
+        final int length = value.length();
+        int encoded = length;
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                continue;
+            } else if (c < 0x800) {
+                encoded += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                encoded += 2;  // 4 bytes for 2 chars
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                continue;  // An unpaired surrogate is replaced with '?'.
+            } else {
+                encoded += 2;
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * Encodes {@code value} in UTF-8 into {@code destination} at {@code destinationIndex}.
+     *
+     * @return the number of bytes written, which is the same as {@link #encodedLength(CharSequence)}
+     */
+    static int encode(final CharSequence value, final byte[] destination, final int destinationIndex) {
+        final int length = value.length();
+        int index = destinationIndex;
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                destination[index++] = (byte) c;
+            } else if (c < 0x800) {
+                destination[index++] = (byte) (0xc0 | (c >> 6));
+                destination[index++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, value.charAt(i + 1));
+                destination[index++] = (byte) (0xf0 | (codePoint >> 18));
+                destination[index++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                destination[index++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                destination[index++] = (byte) (0x80 | (codePoint & 0x3f));
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                destination[index++] = (byte) '?';
+            } else {
+                destination[index++] = (byte) (0xe0 | (c >> 12));
+                destination[index++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                destination[index++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return index - destinationIndex;
+    }
+}
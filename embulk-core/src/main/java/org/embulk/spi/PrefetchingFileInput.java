@@ -0,0 +1,54 @@
+package org.embulk.spi;
+
+import java.util.Optional;
+import org.embulk.config.TaskReport;
+import org.embulk.spi.util.PipelinedFileInput;
+
+/**
+ * A {@link TransactionalFileInput} which reads {@link Buffer}s ahead from the underlying input in its own worker thread.
+ *
+ * <p>It reads through {@link PipelinedFileInput}. {@link #commit()}, {@link #abort()}, and {@link #close()} stop the
+ * worker thread before calling the underlying input, so that the underlying input is never called by two threads at
+ * the same time.
+ */
+class PrefetchingFileInput implements TransactionalFileInput {
+    PrefetchingFileInput(final TransactionalFileInput input, final int prefetchBuffers, final String threadName) {
+        this.input = input;
+        this.pipeline = new PipelinedFileInput(input, prefetchBuffers, threadName);
+    }
+
+    @Override
+    public boolean nextFile() {
+        return this.pipeline.nextFile();
+    }
+
+    @Override
+    public Buffer poll() {
+        return this.pipeline.poll();
+    }
+
+    @Override
+    public Optional<String> hintOfCurrentInputFileNameForLogging() {
+        return this.pipeline.hintOfCurrentInputFileNameForLogging();
+    }
+
+    @Override
+    public TaskReport commit() {
+        this.pipeline.stop();
+        return this.input.commit();
+    }
+
+    @Override
+    public void abort() {
+        this.pipeline.stop();
+        this.input.abort();
+    }
+
+    @Override
+    public void close() {
+        this.pipeline.close();
+    }
+
+    private final TransactionalFileInput input;
+    private final PipelinedFileInput pipeline;
+}
@@ -0,0 +1,130 @@
+package org.embulk.spi;
+
+import java.util.List;
+import org.embulk.spi.json.JsonValue;
+import org.msgpack.value.ImmutableValue;
+
+/**
+ * A view of a {@link Page} whose columns are a subset or a permutation of the columns of the underlying page.
+ *
+ * <p>It shares the {@link Buffer} and the references of the underlying page without copying. Column {@code i} of the
+ * view is column {@code sourceColumnIndexes[i]} of the underlying page, which is laid out with {@code sourceSchema}.
+ * {@link PageReaderImpl} reads it with the projected {@link Schema} transparently.
+ *
+ * <p>Releasing the view releases the underlying page.
+ */
+public final class ProjectedPage extends Page {
+    private ProjectedPage(final Page source, final Schema sourceSchema, final int[] sourceColumnIndexes) {
+        this.source = source;
+        this.sourceSchema = sourceSchema;
+        this.sourceColumnIndexes = sourceColumnIndexes;
+    }
+
+    /**
+     * Creates a view of {@code page} which consists of the columns at {@code columnIndexes} of {@code sourceSchema}.
+     *
+     * <p>If {@code page} is already a view, the new view is made over its underlying page.
+     *
+     * @param page  the page to project
+     * @param sourceSchema  the schema of {@code page}
+     * @param columnIndexes  indexes of the columns of {@code sourceSchema} in the order of the projected schema
+     * @return the projected page
+     * @throws IllegalArgumentException  if an index is out of the columns of {@code sourceSchema}
+     */
+    public static ProjectedPage of(final Page page, final Schema sourceSchema, final int[] columnIndexes) {
+        for (final int columnIndex : columnIndexes) {
+            if (columnIndex < 0 || sourceSchema.getColumnCount() <= columnIndex) {
+                throw new IllegalArgumentException(
+                        "Column index " + columnIndex + " is out of the source schema with " + sourceSchema.getColumnCount() + " columns.");
+            }
+        }
+
+        if (page instanceof ProjectedPage) {
+            final ProjectedPage projected = (ProjectedPage) page;
+            if (sourceSchema.getColumnCount() != projected.sourceColumnIndexes.length) {
+                throw new IllegalArgumentException(
+                        "The source schema has " + sourceSchema.getColumnCount() + " columns while the page has "
+                                + projected.sourceColumnIndexes.length);
+            }
+            final int[] composed = new int[columnIndexes.length];
+            for (int i = 0; i < columnIndexes.length; i++) {
+                composed[i] = projected.sourceColumnIndexes[columnIndexes[i]];
+            }
+            return new ProjectedPage(projected.source, projected.sourceSchema, composed);
+        }
+        return new ProjectedPage(page, sourceSchema, columnIndexes.clone());
+    }
+
+    @Deprecated
+    @Override
+    @SuppressWarnings("deprecation")
+    public Page setStringReferences(final List<String> values) {
+        this.source.setStringReferences(values);
+        return this;
+    }
+
+    @Deprecated
+    @Override
+    @SuppressWarnings("deprecation")
+    public Page setValueReferences(final List<ImmutableValue> values) {
+        this.source.setValueReferences(values);
+        return this;
+    }
+
+    @Deprecated
+    @Override
+    @SuppressWarnings("deprecation")
+    public List<String> getStringReferences() {
+        return this.source.getStringReferences();
+    }
+
+    @Deprecated
+    @Override
+    @SuppressWarnings("deprecation")
+    public List<ImmutableValue> getValueReferences() {
+        return this.source.getValueReferences();
+    }
+
+    @Override
+    public String getStringReference(final int index) {
+        return this.source.getStringReference(index);
+    }
+
+    @Deprecated
+    @Override
+    @SuppressWarnings("deprecation")
+    public ImmutableValue getValueReference(final int index) {
+        return this.source.getValueReference(index);
+    }
+
+    @Override
+    public JsonValue getJsonValueReference(final int index) {
+        return this.source.getJsonValueReference(index);
+    }
+
+    @Override
+    public void release() {
+        this.source.release();
+    }
+
+    @Override
+    public Buffer buffer() {
+        return this.source.buffer();
+    }
+
+    Page getSourcePage() {
+        return this.source;
+    }
+
+    Schema getSourceSchema() {
+        return this.sourceSchema;
+    }
+
+    int[] getSourceColumnIndexes() {
+        return this.sourceColumnIndexes;
+    }
+
+    private final Page source;
+    private final Schema sourceSchema;
+    private final int[] sourceColumnIndexes;
+}
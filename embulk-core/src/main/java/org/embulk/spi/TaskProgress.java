@@ -0,0 +1,211 @@
+package org.embulk.spi;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts records, pages, and bytes that a running task has processed so far, for logging its progress.
+ *
+ * <p>The counters are updated by wrappers of {@link PageOutput} and {@link FileInput} at the boundaries of a task:
+ * between the input and the filters, between the filters and the output, and between the File Input Plugin and the
+ * decoders. Each counter is written by only one thread, and read by another thread which reports the progress.
+ */
+public class TaskProgress {
+    TaskProgress(final int taskIndex) {
+        this(taskIndex, 0);
+    }
+
+    TaskProgress(final int taskIndex, final int attempt) {
+        this.taskIndex = taskIndex;
+        this.attempt = attempt;
+        this.startedAt = System.nanoTime();
+        this.totalInputBytes = -1;
+        this.lastReportedAt = this.startedAt;
+        this.lastReportedRecords = 0;
+    }
+
+    public int getTaskIndex() {
+        return this.taskIndex;
+    }
+
+    /**
+     * Returns the attempt of the task, which is {@code 0} except for speculative attempts.
+     */
+    public int getAttempt() {
+        return this.attempt;
+    }
+
+    /**
+     * Wraps {@link PageOutput} which receives {@link Page}s from the input to count them.
+     */
+    public PageOutput countInput(final PageOutput output) {
+        return new CountingPageOutput(output, true);
+    }
+
+    /**
+     * Wraps {@link PageOutput} of the output to count {@link Page}s it receives.
+     */
+    public PageOutput countOutput(final PageOutput output) {
+        return new CountingPageOutput(output, false);
+    }
+
+    /**
+     * Wraps {@link FileInput} from a File Input Plugin to count bytes read from it.
+     */
+    public FileInput countFileInput(final FileInput input) {
+        return new CountingFileInput(input);
+    }
+
+    /**
+     * Sets the total bytes which the File Input Plugin is expected to read, to estimate the remaining time.
+     */
+    public void setTotalInputBytes(final long totalInputBytes) {
+        this.totalInputBytes = totalInputBytes;
+    }
+
+    public long getInputRecords() {
+        return this.inputRecords;
+    }
+
+    public long getInputPages() {
+        return this.inputPages;
+    }
+
+    public long getInputBytes() {
+        return this.inputBytes;
+    }
+
+    public long getOutputRecords() {
+        return this.outputRecords;
+    }
+
+    public long getOutputPages() {
+        return this.outputPages;
+    }
+
+    /**
+     * Returns the estimated remaining time in seconds if the total bytes to read are known.
+     */
+    public Optional<Long> estimateRemainingSeconds() {
+        final long total = this.totalInputBytes;
+        final long read = this.inputBytes;
+        if (total <= 0 || read <= 0) {
+            return Optional.empty();
+        }
+        final long elapsedNanos = System.nanoTime() - this.startedAt;
+        final double remainingRatio = (double) Math.max(total - read, 0) / read;
+        return Optional.of(TimeUnit.NANOSECONDS.toSeconds((long) (elapsedNanos * remainingRatio)));
+    }
+
+    /**
+     * Describes the progress in a line, with the rate of input records since the last call.
+     *
+     * <p>It is expected to be called only from one thread which reports the progress.
+     */
+    public String describe() {
+        final long now = System.nanoTime();
+        final long inputRecords = this.inputRecords;
+        final double seconds = (double) (now - this.lastReportedAt) / TimeUnit.SECONDS.toNanos(1);
+        final double recordsPerSecond = seconds > 0 ? (inputRecords - this.lastReportedRecords) / seconds : 0.0;
+        this.lastReportedAt = now;
+        this.lastReportedRecords = inputRecords;
+
+        final StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.ENGLISH, "task %d", this.taskIndex));
+        if (this.attempt > 0) {
+            builder.append(String.format(Locale.ENGLISH, " (attempt %d)", this.attempt));
+        }
+        builder.append(String.format(Locale.ENGLISH,
+                ": in %,d records / %,d pages / %,d bytes, out %,d records / %,d pages, %,.0f records/s",
+                inputRecords, this.inputPages, this.inputBytes,
+                this.outputRecords, this.outputPages, recordsPerSecond));
+        final Optional<Long> remainingSeconds = this.estimateRemainingSeconds();
+        if (remainingSeconds.isPresent()) {
+            final long eta = remainingSeconds.get();
+            builder.append(String.format(Locale.ENGLISH, ", ETA %d:%02d:%02d", eta / 3600, (eta / 60) % 60, eta % 60));
+        }
+        return builder.toString();
+    }
+
+    private class CountingPageOutput implements PageOutput {
+        CountingPageOutput(final PageOutput next, final boolean input) {
+            this.next = next;
+            this.input = input;
+        }
+
+        @Override
+        public void add(final Page page) {
+            final int records = PageReaderImpl.getRecordCount(page);
+            if (this.input) {
+                inputRecords += records;
+                inputPages++;
+            } else {
+                outputRecords += records;
+                outputPages++;
+            }
+            this.next.add(page);
+        }
+
+        @Override
+        public void finish() {
+            this.next.finish();
+        }
+
+        @Override
+        public void close() {
+            this.next.close();
+        }
+
+        private final PageOutput next;
+        private final boolean input;
+    }
+
+    private class CountingFileInput implements FileInput {
+        CountingFileInput(final FileInput next) {
+            this.next = next;
+        }
+
+        @Override
+        public boolean nextFile() {
+            return this.next.nextFile();
+        }
+
+        @Override
+        public Buffer poll() {
+            final Buffer buffer = this.next.poll();
+            if (buffer != null) {
+                inputBytes += buffer.limit();
+            }
+            return buffer;
+        }
+
+        @Override
+        public void close() {
+            this.next.close();
+        }
+
+        @Override
+        public Optional<String> hintOfCurrentInputFileNameForLogging() {
+            return this.next.hintOfCurrentInputFileNameForLogging();
+        }
+
+        private final FileInput next;
+    }
+
+    private final int taskIndex;
+    private final int attempt;
+    private final long startedAt;
+
+    // Each of them is written by only one thread.
+    private volatile long inputRecords;
+    private volatile long inputPages;
+    private volatile long inputBytes;
+    private volatile long outputRecords;
+    private volatile long outputPages;
+    private volatile long totalInputBytes;
+
+    // Accessed only by the thread calling describe().
+    private long lastReportedAt;
+    private long lastReportedRecords;
+}
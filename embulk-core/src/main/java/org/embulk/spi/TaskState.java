@@ -8,6 +8,7 @@ public class TaskState {
     private volatile boolean finished = false;
     private volatile Optional<TaskReport> taskReport = Optional.empty();
     private volatile Optional<Throwable> exception = Optional.empty();
+    private volatile int attempt = 0;
 
     public void start() {
         this.started = true;
@@ -33,6 +34,20 @@ public class TaskState {
         this.exception = Optional.empty();
     }
 
+    /**
+     * Marks the task not finished so that it runs again after it has failed.
+     */
+    public void resetFinished() {
+        this.finished = false;
+    }
+
+    /**
+     * Records the attempt which has committed the task when the task has run in multiple attempts.
+     */
+    public void setAttempt(int attempt) {
+        this.attempt = attempt;
+    }
+
     public boolean isStarted() {
         return started;
     }
@@ -52,4 +67,11 @@ public class TaskState {
     public Optional<Throwable> getException() {
         return exception;
     }
+
+    /**
+     * Returns the attempt which has committed the task. It is {@code 0} unless a speculative attempt has won.
+     */
+    public int getAttempt() {
+        return attempt;
+    }
 }
@@ -0,0 +1,214 @@
+package org.embulk.spi;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.embulk.config.TaskReport;
+
+/**
+ * A {@link TransactionalFileOutput} which writes {@link Buffer}s to the underlying output in its own worker thread.
+ *
+ * <p>{@link #add(Buffer)} returns as soon as the {@link Buffer} is queued unless the queue is full. The worker thread
+ * calls {@code nextFile}, {@code add}, and {@code finish} of the underlying output in the same order as they are called.
+ * {@link #finish()} and {@link #commit()} wait until the worker thread writes all queued {@link Buffer}s, so that the
+ * underlying output sees the same state as a synchronous {@link FileOutput} when it is committed.
+ *
+ * <p>An exception thrown in the worker thread is rethrown from the next call of {@link #nextFile()},
+ * {@link #add(Buffer)}, {@link #finish()}, or {@link #commit()}. The worker thread releases {@link Buffer}s without
+ * writing them after an exception.
+ *
+ * <p>{@link #commit()}, {@link #abort()}, and {@link #close()} call the underlying output in the caller thread while the
+ * worker thread is idle. {@link #abort()} and {@link #close()} stop the worker thread, and release {@link Buffer}s not
+ * written yet.
+ */
+class WriteBehindFileOutput implements TransactionalFileOutput {
+    WriteBehindFileOutput(final TransactionalFileOutput output, final int writeBehindBuffers, final String threadName) {
+        this.output = output;
+        this.queue = new ArrayBlockingQueue<>(Math.max(writeBehindBuffers, 1));
+        this.completed = new Semaphore(0);
+        this.error = null;
+        this.discarding = false;
+        this.stopped = false;
+
+        // A new thread, not a pooled thread, so that it inherits the ExecSession of the current thread.
+        this.worker = new Thread(this::runWorker, threadName);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    @Override
+    public void nextFile() {
+        this.throwErrorIfAny();
+        this.put(NEXT_FILE);
+    }
+
+    @Override
+    public void add(final Buffer buffer) {
+        if (this.error != null) {
+            buffer.release();
+            throwError(this.error);
+        }
+        this.put(buffer);
+    }
+
+    @Override
+    public void finish() {
+        this.put(FINISH);
+        this.awaitCompleted();
+        this.throwErrorIfAny();
+    }
+
+    @Override
+    public TaskReport commit() {
+        this.put(SYNC);
+        this.awaitCompleted();
+        this.throwErrorIfAny();
+        return this.output.commit();
+    }
+
+    @Override
+    public void abort() {
+        this.stopWorker();
+        this.output.abort();
+    }
+
+    @Override
+    public void close() {
+        this.stopWorker();
+        this.output.close();
+    }
+
+    private void put(final Buffer buffer) {
+        if (this.stopped) {
+            throw new IllegalStateException("WriteBehindFileOutput is already closed.");
+        }
+        if (!this.offer(buffer)) {
+            throw new IllegalStateException("The write-behind worker thread has stopped unexpectedly.");
+        }
+    }
+
+    private boolean offer(final Buffer buffer) {
+        try {
+            while (!this.queue.offer(buffer, 100, TimeUnit.MILLISECONDS)) {
+                if (!this.worker.isAlive()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (final InterruptedException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private void awaitCompleted() {
+        try {
+            this.completed.acquire();
+        } catch (final InterruptedException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private void stopWorker() {
+        if (this.stopped) {
+            return;
+        }
+        this.stopped = true;
+        this.discarding = true;
+        if (this.offer(STOP)) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    this.worker.join();
+                    break;
+                } catch (final InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        Buffer buffer;
+        while ((buffer = this.queue.poll()) != null) {
+            if (!isMarker(buffer)) {
+                buffer.release();
+            }
+        }
+    }
+
+    private void runWorker() {
+        while (true) {
+            final Buffer buffer;
+            try {
+                buffer = this.queue.take();
+            } catch (final InterruptedException ex) {
+                if (this.error == null) {
+                    this.error = ex;
+                }
+                continue;
+            }
+
+            if (buffer == STOP) {
+                return;
+            } else if (buffer == FINISH || buffer == SYNC) {
+                if (buffer == FINISH && this.error == null && !this.discarding) {
+                    try {
+                        this.output.finish();
+                    } catch (final Throwable ex) {
+                        this.error = ex;
+                    }
+                }
+                this.completed.release();
+            } else if (this.error != null || this.discarding) {
+                if (buffer != NEXT_FILE) {
+                    buffer.release();
+                }
+            } else {
+                try {
+                    if (buffer == NEXT_FILE) {
+                        this.output.nextFile();
+                    } else {
+                        this.output.add(buffer);
+                    }
+                } catch (final Throwable ex) {
+                    this.error = ex;
+                }
+            }
+        }
+    }
+
+    private void throwErrorIfAny() {
+        if (this.error != null) {
+            throwError(this.error);
+        }
+    }
+
+    private static boolean isMarker(final Buffer buffer) {
+        return buffer == NEXT_FILE || buffer == FINISH || buffer == SYNC || buffer == STOP;
+    }
+
+    private static void throwError(final Throwable error) {
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        throw new RuntimeException(error);
+    }
+
+    private static final Buffer NEXT_FILE = BufferImpl.wrap(new byte[0]);
+    private static final Buffer FINISH = BufferImpl.wrap(new byte[0]);
+    private static final Buffer SYNC = BufferImpl.wrap(new byte[0]);
+    private static final Buffer STOP = BufferImpl.wrap(new byte[0]);
+
+    private final TransactionalFileOutput output;
+    private final BlockingQueue<Buffer> queue;
+    private final Semaphore completed;
+    private final Thread worker;
+
+    private volatile Throwable error;
+    private volatile boolean discarding;
+    private boolean stopped;  // accessed only by the caller thread
+}
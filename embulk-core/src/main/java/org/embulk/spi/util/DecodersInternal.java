@@ -30,15 +30,41 @@ public abstract class DecodersInternal {
     }
 
     public static FileInput open(List<DecoderPlugin> plugins, List<TaskSource> taskSources, FileInput input) {
+        return open(plugins, taskSources, input, false);
+    }
+
+    /**
+     * Opens the decoders on {@code input}.
+     *
+     * <p>If {@code pipelined} is true, the decoders run in their own thread, and pass decoded {@link org.embulk.spi.Buffer}s
+     * through a bounded queue, so that decoding does not run sequentially with parsing in the caller thread. Call
+     * {@link #stopPipeline(FileInput)} before committing or aborting {@code input} so that it is not read anymore.
+     */
+    public static FileInput open(List<DecoderPlugin> plugins, List<TaskSource> taskSources, FileInput input,
+            boolean pipelined) {
         FileInput in = input;
         int pos = 0;
         while (pos < plugins.size()) {
             in = plugins.get(pos).open(taskSources.get(pos), in);
             pos++;
         }
+        if (pipelined && !plugins.isEmpty()) {
+            in = new PipelinedFileInput(in, PIPELINE_BUFFERS, Thread.currentThread().getName() + "-decoders");
+        }
         return in;
     }
 
+    /**
+     * Stops the thread of the decoders opened with {@code pipelined}. It does nothing for other {@link FileInput}s.
+     */
+    public static void stopPipeline(FileInput decoded) {
+        if (decoded instanceof PipelinedFileInput) {
+            ((PipelinedFileInput) decoded).stop();
+        }
+    }
+
+    private static final int PIPELINE_BUFFERS = 4;
+
     private static class RecursiveControl {
         private final List<DecoderPlugin> plugins;
         private final List<ConfigSource> configs;
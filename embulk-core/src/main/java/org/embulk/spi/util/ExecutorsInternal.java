@@ -12,6 +12,7 @@ import org.embulk.spi.OutputPlugin;
 import org.embulk.spi.PageOutput;
 import org.embulk.spi.ProcessTask;
 import org.embulk.spi.Schema;
+import org.embulk.spi.TaskProgress;
 import org.embulk.spi.TransactionalPageOutput;
 
 public abstract class ExecutorsInternal {
@@ -28,13 +29,22 @@ public abstract class ExecutorsInternal {
     public static void process(ExecSessionInternal exec,
             ProcessTask task, int taskIndex,
             ProcessStateCallback callback) {
+        process(exec, task, taskIndex, 0, callback);
+    }
+
+    /**
+     * Processes an attempt of a task. Attempts other than {@code 0} are speculative attempts of the same task.
+     */
+    public static void process(ExecSessionInternal exec,
+            ProcessTask task, int taskIndex, int attempt,
+            ProcessStateCallback callback) {
         InputPlugin inputPlugin = exec.newPlugin(InputPlugin.class, task.getInputPluginType());
         List<FilterPlugin> filterPlugins = FiltersInternal.newFilterPlugins(exec, task.getFilterPluginTypes());
         OutputPlugin outputPlugin = exec.newPlugin(OutputPlugin.class, task.getOutputPluginType());
 
         // TODO assert task.getExecutorSchema().equals task.getOutputSchema()
 
-        process(exec, taskIndex,
+        process(exec, taskIndex, attempt,
                 inputPlugin, task.getInputSchema(), task.getInputTaskSource(),
                 filterPlugins, task.getFilterSchemas(), task.getFilterTaskSources(),
                 outputPlugin, task.getOutputSchema(), task.getOutputTaskSource(),
@@ -46,7 +56,20 @@ public abstract class ExecutorsInternal {
             List<FilterPlugin> filterPlugins, List<Schema> filterSchemas, List<TaskSource> filterTaskSources,
             OutputPlugin outputPlugin, Schema outputSchema, TaskSource outputTaskSource,
             ProcessStateCallback callback) {
+        process(exec, taskIndex, 0,
+                inputPlugin, inputSchema, inputTaskSource,
+                filterPlugins, filterSchemas, filterTaskSources,
+                outputPlugin, outputSchema, outputTaskSource,
+                callback);
+    }
+
+    private static void process(ExecSessionInternal exec, int taskIndex, int attempt,
+            InputPlugin inputPlugin, Schema inputSchema, TaskSource inputTaskSource,
+            List<FilterPlugin> filterPlugins, List<Schema> filterSchemas, List<TaskSource> filterTaskSources,
+            OutputPlugin outputPlugin, Schema outputSchema, TaskSource outputTaskSource,
+            ProcessStateCallback callback) {
         final TransactionalPageOutput tran = outputPlugin.open(outputTaskSource, outputSchema, taskIndex);
+        final TaskProgress progress = exec.startTaskProgress(taskIndex, attempt);
 
         callback.started();
         // here needs to use try-with-resource to add exception happend at close() or abort()
@@ -54,10 +77,17 @@ public abstract class ExecutorsInternal {
         // essential exception.
         try (CloseResource closer = new CloseResource(tran)) {
             try (AbortTransactionResource aborter = new AbortTransactionResource(tran)) {
-                PageOutput filtered = FiltersInternal.open(filterPlugins, filterTaskSources, filterSchemas, tran);
+                PageOutput filtered = FiltersInternal.open(
+                        filterPlugins, filterTaskSources, filterSchemas, progress.countOutput(tran), exec.isFilterPipelined());
                 closer.closeThis(filtered);
 
-                TaskReport inputTaskReport = inputPlugin.run(inputTaskSource, inputSchema, taskIndex, filtered);
+                TaskReport inputTaskReport;
+                try {
+                    inputTaskReport = inputPlugin.run(inputTaskSource, inputSchema, taskIndex, progress.countInput(filtered));
+                } finally {
+                    // Pipelined filters must not call the output anymore when it is committed or aborted.
+                    FiltersInternal.stopPipeline(filtered);
+                }
 
                 if (inputTaskReport == null) {
                     inputTaskReport = exec.newTaskReport();
@@ -71,6 +101,8 @@ public abstract class ExecutorsInternal {
                 }
                 callback.outputCommitted(outputTaskReport);  // TODO check output.finish() is called. wrap or abstract
             }
+        } finally {
+            exec.finishTaskProgress(taskIndex, attempt);
         }
     }
 
@@ -10,6 +10,7 @@ public class FileInputInputStream extends InputStream {
     private final FileInput in;
     private int pos;
     private Buffer buffer = BufferImpl.EMPTY;
+    private final byte[] singleByte = new byte[1];
 
     public FileInputInputStream(FileInput in) {
         this.in = in;
@@ -37,7 +38,14 @@ public class FileInputInputStream extends InputStream {
                 return -1;
             }
         }
-        byte b = buffer.array()[buffer.offset() + pos];
+        final byte b;
+        if (buffer instanceof BufferImpl) {
+            b = buffer.array()[buffer.offset() + pos];
+        } else {
+            // An off-heap Buffer is read through getBytes not to fall back to Buffer#array().
+            buffer.getBytes(pos, singleByte, 0, 1);
+            b = singleByte[0];
+        }
         pos++;
         if (pos >= buffer.limit()) {
             releaseBuffer();
@@ -13,6 +13,7 @@ public class FileOutputOutputStream extends OutputStream {
     private final CloseMode closeMode;
     private int pos;
     private Buffer buffer;
+    private final byte[] singleByte = new byte[1];
 
     public static enum CloseMode {
         FLUSH,
@@ -40,7 +41,13 @@ public class FileOutputOutputStream extends OutputStream {
     @SuppressWarnings("deprecation")  // Calling Buffer#array().
     @Override
     public void write(int b) {
-        buffer.array()[buffer.offset() + pos] = (byte) b;
+        if (buffer instanceof BufferImpl) {
+            buffer.array()[buffer.offset() + pos] = (byte) b;
+        } else {
+            // An off-heap Buffer is written through setBytes not to fall back to Buffer#array().
+            singleByte[0] = (byte) b;
+            buffer.setBytes(pos, singleByte, 0, 1);
+        }
         pos++;
         if (pos >= buffer.capacity()) {
             flush();
@@ -45,15 +45,48 @@ public abstract class FiltersInternal {
 
     public static PageOutput open(List<FilterPlugin> plugins, List<TaskSource> taskSources,
             List<Schema> filterSchemas, PageOutput output) {
+        return open(plugins, taskSources, filterSchemas, output, false);
+    }
+
+    /**
+     * Opens the filters in front of {@code output}.
+     *
+     * <p>If {@code pipelined} is true, each filter and {@code output} run in their own threads, connected through
+     * bounded queues of {@link org.embulk.spi.Page}s, so that the filters do not run sequentially in the caller thread.
+     * Call {@link #stopPipeline(PageOutput)} before committing or aborting {@code output} so that it is not called anymore.
+     */
+    public static PageOutput open(List<FilterPlugin> plugins, List<TaskSource> taskSources,
+            List<Schema> filterSchemas, PageOutput output, boolean pipelined) {
+        final boolean pipelining = pipelined && !plugins.isEmpty();
+        final String threadName = Thread.currentThread().getName();
         PageOutput out = output;
+        PipelinedPageOutput downstream = null;
+        if (pipelining) {
+            downstream = new PipelinedPageOutput(out, threadName + "-output");
+            out = downstream;
+        }
         int pos = plugins.size() - 1;
         while (pos >= 0) {
             out = plugins.get(pos).open(taskSources.get(pos), filterSchemas.get(pos), filterSchemas.get(pos + 1), out);
+            if (pipelining) {
+                downstream = new PipelinedPageOutput(out, threadName + "-filter-" + pos, downstream);
+                out = downstream;
+            }
             pos--;
         }
         return out;
     }
 
+    /**
+     * Stops the threads of the filters opened with {@code pipelined}, releasing the pages queued between them. It does
+     * nothing for other {@link PageOutput}s. The filters and the output are closed later by closing {@code filtered}.
+     */
+    public static void stopPipeline(PageOutput filtered) {
+        if (filtered instanceof PipelinedPageOutput) {
+            ((PipelinedPageOutput) filtered).stop();
+        }
+    }
+
     private static class RecursiveControl {
         private final List<FilterPlugin> plugins;
         private final List<ConfigSource> configs;
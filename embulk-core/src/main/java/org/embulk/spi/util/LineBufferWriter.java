@@ -0,0 +1,252 @@
+package org.embulk.spi.util;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.BufferImpl;
+import org.embulk.spi.FileOutput;
+
+/**
+ * Writes lines into {@link Buffer}s allocated from {@link BufferAllocator}, and passes the {@link Buffer}s to
+ * {@link FileOutput} as they get full.
+ *
+ * <p>It works only for charsets supported by {@link LineSplitter#isSupportedCharset(Charset)}. Characters are encoded
+ * straight into the {@link Buffer} without a {@link java.io.Writer} nor an intermediate {@code char[]}. UTF-8,
+ * US-ASCII, and ISO-8859-1 are encoded by itself. The other charsets are encoded by {@link CharsetEncoder} into the
+ * {@link Buffer}. Unmappable characters are replaced.
+ *
+ * <p>A {@link Buffer} on the Java heap is written directly. An off-heap {@link Buffer} is written through a
+ * {@code byte[]} of the same size, which is copied at once when the {@link Buffer} is passed.
+ *
+ * <p>This class is not thread-safe.
+ */
+public class LineBufferWriter implements AutoCloseable {
+    public LineBufferWriter(final FileOutput out, final BufferAllocator allocator, final Charset charset, final String newline) {
+        if (!LineSplitter.isSupportedCharset(charset)) {
+            throw new IllegalArgumentException("LineBufferWriter does not support charset: " + charset);
+        }
+        this.out = out;
+        this.allocator = allocator;
+        this.newline = newline;
+        switch (charset.name()) {
+            case "UTF-8":
+                this.maxChar = -1;
+                this.encoder = null;
+                break;
+            case "US-ASCII":
+                this.maxChar = 0x7f;
+                this.encoder = null;
+                break;
+            case "ISO-8859-1":
+                this.maxChar = 0xff;
+                this.encoder = null;
+                break;
+            default:
+                this.maxChar = 0;
+                this.encoder = charset.newEncoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+                break;
+        }
+        this.buffer = null;
+        this.finished = false;
+    }
+
+    public void addText(final CharSequence text) {
+        if (this.encoder != null) {
+            this.encodeWithEncoder(text);
+        } else if (this.maxChar < 0) {
+            this.encodeUtf8(text);
+        } else {
+            this.encodeSingleByte(text);
+        }
+    }
+
+    public void addLine(final CharSequence line) {
+        this.addText(line);
+        this.addNewLine();
+    }
+
+    public void addNewLine() {
+        this.addText(this.newline);
+    }
+
+    /**
+     * Writes bytes already encoded in the charset.
+     */
+    public void addBytes(final byte[] bytes, final int offset, final int length) {
+        int written = 0;
+        while (written < length) {
+            this.reserve(1);
+            final int size = Math.min(length - written, this.capacity - this.position);
+            System.arraycopy(bytes, offset + written, this.bytes, this.base + this.position, size);
+            this.position += size;
+            written += size;
+        }
+    }
+
+    public void nextFile() {
+        this.flush();
+        this.out.nextFile();
+    }
+
+    public void finish() {
+        if (this.finished) {
+            return;
+        }
+        this.finished = true;
+        this.flush();
+        this.out.finish();
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.finish();
+        } finally {
+            if (this.buffer != null) {
+                this.buffer.release();
+                this.buffer = null;
+            }
+            this.out.close();
+        }
+    }
+
+    private void encodeUtf8(final CharSequence text) {
+        final int length = text.length();
+        int i = 0;
+        while (i < length) {
+            this.reserve(4);
+            final byte[] bytes = this.bytes;
+            int index = this.base + this.position;
+            // Leaves 4 bytes at the end for any character so that the loop does not check the space for each byte.
+            final int limit = this.base + this.capacity - 4;
+            while (i < length && index <= limit) {
+                final char c = text.charAt(i++);
+                if (c < 0x80) {
+                    bytes[index++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[index++] = (byte) (0xc0 | (c >> 6));
+                    bytes[index++] = (byte) (0x80 | (c & 0x3f));
+                } else if (!Character.isSurrogate(c)) {
+                    bytes[index++] = (byte) (0xe0 | (c >> 12));
+                    bytes[index++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    bytes[index++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i < length && Character.isLowSurrogate(text.charAt(i))) {
+                    final int codePoint = Character.toCodePoint(c, text.charAt(i++));
+                    bytes[index++] = (byte) (0xf0 | (codePoint >> 18));
+                    bytes[index++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                    bytes[index++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                    bytes[index++] = (byte) (0x80 | (codePoint & 0x3f));
+                } else {
+                    bytes[index++] = REPLACEMENT;  // An unpaired surrogate
+                }
+            }
+            this.position = index - this.base;
+        }
+    }
+
+    private void encodeSingleByte(final CharSequence text) {
+        final int length = text.length();
+        int i = 0;
+        while (i < length) {
+            this.reserve(1);
+            final byte[] bytes = this.bytes;
+            int index = this.base + this.position;
+            final int limit = this.base + this.capacity;
+            while (i < length && index < limit) {
+                final char c = text.charAt(i++);
+                bytes[index++] = (c <= this.maxChar) ? (byte) c : REPLACEMENT;
+            }
+            this.position = index - this.base;
+        }
+    }
+
+    private void encodeWithEncoder(final CharSequence text) {
+        final CharBuffer chars = CharBuffer.wrap(text);
+        this.encoder.reset();
+        boolean flushing = false;
+        while (true) {
+            this.reserve(1);
+            final ByteBuffer target = ByteBuffer.wrap(this.bytes, this.base + this.position, this.capacity - this.position);
+            final CoderResult result = flushing ? this.encoder.flush(target) : this.encoder.encode(chars, target, true);
+            this.position = target.position() - this.base;
+            if (result.isOverflow()) {
+                this.flush();
+            } else if (flushing) {
+                return;
+            } else {
+                flushing = true;
+            }
+        }
+    }
+
+    /**
+     * Makes sure that at least {@code size} bytes can be written at {@code position}, passing the current
+     * {@link Buffer} if it does not have the space.
+     */
+    @SuppressWarnings("deprecation")  // Calling Buffer#array().
+    private void reserve(final int size) {
+        if (this.buffer != null && this.position + size <= this.capacity) {
+            return;
+        }
+        this.flush();
+        if (this.buffer != null) {
+            // An empty buffer smaller than size
+            this.buffer.release();
+        }
+        this.buffer = this.allocator.allocate();
+        this.capacity = this.buffer.capacity();
+        this.position = 0;
+        if (this.buffer instanceof BufferImpl) {
+            this.bytes = this.buffer.array();
+            this.base = this.buffer.offset();
+        } else {
+            if (this.staging == null || this.staging.length < this.capacity) {
+                this.staging = new byte[this.capacity];
+            }
+            this.bytes = this.staging;
+            this.base = 0;
+        }
+    }
+
+    private void flush() {
+        if (this.buffer == null) {
+            return;
+        }
+        if (this.position == 0) {
+            return;  // Keeps the empty buffer for the next write.
+        }
+        if (this.bytes == this.staging) {
+            this.buffer.setBytes(0, this.staging, 0, this.position);
+        }
+        this.buffer.limit(this.position);
+        final Buffer full = this.buffer;
+        this.buffer = null;
+        this.bytes = null;
+        this.position = 0;
+        this.capacity = 0;
+        this.out.add(full);
+    }
+
+    private static final byte REPLACEMENT = (byte) '?';
+
+    private final FileOutput out;
+    private final BufferAllocator allocator;
+    private final String newline;
+    private final int maxChar;  // -1 for UTF-8, 0 if encoded by encoder
+    private final CharsetEncoder encoder;
+
+    private Buffer buffer;
+    private byte[] bytes;  // the array of buffer if it is on the Java heap, or staging
+    private int base;  // the offset of buffer in bytes
+    private int position;  // the number of bytes written in buffer
+    private int capacity;
+    private byte[] staging;
+    private boolean finished;
+}
@@ -18,8 +18,6 @@ import org.embulk.spi.FileInput;
 
 @Deprecated  // Externalized to embulk-util-text
 public class LineDecoder implements AutoCloseable, Iterable<String> {
-    // TODO optimize
-
     public static interface DecoderTask extends Task {
         @Config("charset")
         @ConfigDefault("\"utf-8\"")
@@ -34,12 +32,22 @@ public class LineDecoder implements AutoCloseable, Iterable<String> {
         public Optional<LineDelimiter> getLineDelimiterRecognized();
     }
 
+    // Lines are split in bytes by splitter if the charset allows. Otherwise, they are read through reader.
+    private final LineSplitter splitter;
     private final FileInputInputStream inputStream;
     private final BufferedReader reader;
     private final Charset charset;
 
     public LineDecoder(FileInput in, DecoderTask task) {
         this.charset = task.getCharset();
+        if (LineSplitter.isSupportedCharset(charset)) {
+            this.splitter = new LineSplitter(in, charset, task.getLineDelimiterRecognized().orElse(null));
+            this.inputStream = null;
+            this.reader = null;
+            return;
+        }
+
+        this.splitter = null;
         CharsetDecoder decoder = charset
                 .newDecoder()
                 .onMalformedInput(CodingErrorAction.REPLACE)  // TODO configurable?
@@ -51,6 +59,9 @@ public class LineDecoder implements AutoCloseable, Iterable<String> {
     }
 
     public boolean nextFile() {
+        if (splitter != null) {
+            return splitter.nextFile();
+        }
         boolean has = inputStream.nextFile();
         if (has && charset.equals(UTF_8)) {
             skipBom();
@@ -87,6 +98,9 @@ public class LineDecoder implements AutoCloseable, Iterable<String> {
     }
 
     public String poll() {
+        if (splitter != null) {
+            return splitter.poll();
+        }
         try {
             return reader.readLine();
         } catch (IOException ex) {
@@ -96,6 +110,10 @@ public class LineDecoder implements AutoCloseable, Iterable<String> {
     }
 
     public void close() {
+        if (splitter != null) {
+            splitter.close();
+            return;
+        }
         try {
             reader.close();
         } catch (IOException ex) {
@@ -17,8 +17,6 @@ import org.slf4j.LoggerFactory;
 
 @Deprecated  // Externalized to embulk-util-text
 public class LineEncoder implements AutoCloseable {
-    // TODO optimize
-
     public interface EncoderTask extends Task {
         @Config("charset")
         @ConfigDefault("\"utf-8\"")
@@ -31,12 +29,22 @@ public class LineEncoder implements AutoCloseable {
 
     private final String newline;
     private final FileOutput underlyingFileOutput;
+    // Lines are written into Buffers by bufferWriter if the charset allows. Otherwise, they are written through writer.
+    private final LineBufferWriter bufferWriter;
     private final FileOutputOutputStream outputStream;
     private Writer writer;
 
     public LineEncoder(FileOutput out, EncoderTask task) {
         this.newline = task.getNewline().getString();
         this.underlyingFileOutput = out;
+        if (LineSplitter.isSupportedCharset(task.getCharset())) {
+            this.bufferWriter = new LineBufferWriter(out, Exec.getBufferAllocator(), task.getCharset(), newline);
+            this.outputStream = null;
+            this.writer = null;
+            return;
+        }
+
+        this.bufferWriter = null;
         this.outputStream = new FileOutputOutputStream(underlyingFileOutput, Exec.getBufferAllocator(), FileOutputOutputStream.CloseMode.FLUSH_FINISH);
         CharsetEncoder encoder = task.getCharset()
                 .newEncoder()
@@ -46,6 +54,10 @@ public class LineEncoder implements AutoCloseable {
     }
 
     public void addNewLine() {
+        if (bufferWriter != null) {
+            bufferWriter.addNewLine();
+            return;
+        }
         try {
             writer.append(newline);
         } catch (IOException ex) {
@@ -55,6 +67,10 @@ public class LineEncoder implements AutoCloseable {
     }
 
     public void addLine(String line) {
+        if (bufferWriter != null) {
+            bufferWriter.addLine(line);
+            return;
+        }
         try {
             writer.append(line);
         } catch (IOException ex) {
@@ -65,6 +81,10 @@ public class LineEncoder implements AutoCloseable {
     }
 
     public void addText(String text) {
+        if (bufferWriter != null) {
+            bufferWriter.addText(text);
+            return;
+        }
         try {
             writer.append(text);
         } catch (IOException ex) {
@@ -74,6 +94,10 @@ public class LineEncoder implements AutoCloseable {
     }
 
     public void nextFile() {
+        if (bufferWriter != null) {
+            bufferWriter.nextFile();
+            return;
+        }
         try {
             writer.flush();
         } catch (IOException ex) {
@@ -84,6 +108,10 @@ public class LineEncoder implements AutoCloseable {
     }
 
     public void finish() {
+        if (bufferWriter != null) {
+            bufferWriter.finish();
+            return;
+        }
         try {
             if (writer != null) {
                 writer.close();  // FLUSH_FINISH
@@ -97,6 +125,10 @@ public class LineEncoder implements AutoCloseable {
 
     @Override
     public void close() {
+        if (bufferWriter != null) {
+            bufferWriter.close();
+            return;
+        }
         try {
             if (writer != null) {
                 writer.close();  // FLUSH_FINISH
@@ -0,0 +1,268 @@
+package org.embulk.spi.util;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.FileInput;
+
+/**
+ * Splits bytes from {@link FileInput} into lines without decoding them into characters first.
+ *
+ * <p>It works only for charsets in which the bytes of CR and LF never appear as a part of another character, such as
+ * UTF-8 and ASCII-compatible charsets. See {@link #isSupportedCharset(Charset)}. It searches line delimiters directly
+ * in the bytes of {@link Buffer}s, and a line is decoded into a {@link String} at most once. A line may straddle
+ * {@link Buffer}s.
+ *
+ * <p>Lines are delimited by any of CR, LF, and CRLF if {@code lineDelimiter} is {@code null}, as well as
+ * {@link java.io.BufferedReader#readLine()}. Otherwise, lines are delimited only by {@code lineDelimiter}. The
+ * delimiters are not included in lines. A UTF-8 BOM at the beginning of each file is skipped.
+ *
+ * <p>This class is not thread-safe.
+ */
+@SuppressWarnings("deprecation")  // Using LineDelimiter
+public class LineSplitter implements AutoCloseable {
+    /**
+     * Receives bytes of a line.
+     */
+    public interface LineCallback {
+        /**
+         * Receives bytes of a line, excluding its delimiter.
+         *
+         * <p>{@code bytes} is valid only during the call. It must be copied to be kept.
+         */
+        void onLine(byte[] bytes, int offset, int length);
+    }
+
+    public LineSplitter(final FileInput input, final Charset charset, final LineDelimiter lineDelimiter) {
+        if (!isSupportedCharset(charset)) {
+            throw new IllegalArgumentException("LineSplitter does not support charset: " + charset);
+        }
+        this.input = input;
+        this.charset = charset;
+        this.lineDelimiter = lineDelimiter;
+        this.skipsBom = charset.name().equals("UTF-8");
+        this.window = new byte[INITIAL_WINDOW_SIZE];
+        this.start = 0;
+        this.end = 0;
+        this.scan = 0;
+        this.endOfFile = true;
+        this.atBeginningOfFile = false;
+        this.decodingCallback = (bytes, offset, length) -> {
+            this.polled = new String(bytes, offset, length, charset);
+        };
+    }
+
+    /**
+     * Returns true if bytes of CR and LF never appear as a part of another character in {@code charset}.
+     */
+    public static boolean isSupportedCharset(final Charset charset) {
+        return SUPPORTED_CHARSETS.contains(charset.name());
+    }
+
+    public boolean nextFile() {
+        this.start = 0;
+        this.end = 0;
+        this.scan = 0;
+        this.endOfFile = !this.input.nextFile();
+        this.atBeginningOfFile = !this.endOfFile;
+        return !this.endOfFile;
+    }
+
+    /**
+     * Passes bytes of the next line in the current file to {@code callback}.
+     *
+     * @return {@code false} if no more lines are in the current file
+     */
+    public boolean nextLine(final LineCallback callback) {
+        if (this.atBeginningOfFile) {
+            this.atBeginningOfFile = false;
+            this.skipBom();
+        }
+
+        while (true) {
+            final int found = this.findDelimiter();
+            if (found >= 0) {
+                callback.onLine(this.window, this.start, found - this.start);
+                this.start = found + this.delimiterLength;
+                this.scan = this.start;
+                return true;
+            }
+            if (this.endOfFile) {
+                if (this.start >= this.end) {
+                    return false;
+                }
+                callback.onLine(this.window, this.start, this.end - this.start);
+                this.start = this.end;
+                this.scan = this.end;
+                return true;
+            }
+            this.fill();
+        }
+    }
+
+    /**
+     * Returns the next line in the current file decoded in the charset.
+     *
+     * @return the line, or {@code null} if no more lines are in the current file
+     */
+    public String poll() {
+        this.polled = null;
+        if (!this.nextLine(this.decodingCallback)) {
+            return null;
+        }
+        final String line = this.polled;
+        this.polled = null;
+        return line;
+    }
+
+    @Override
+    public void close() {
+        this.input.close();
+    }
+
+    /**
+     * Finds a line delimiter from {@code scan}, and sets {@code delimiterLength}.
+     *
+     * @return the index of the delimiter, or {@code -1} if not found in the bytes read so far
+     */
+    private int findDelimiter() {
+        final byte[] bytes = this.window;
+        final int end = this.end;
+        int i = this.scan;
+        if (this.lineDelimiter == null) {
+            for (; i < end; i++) {
+                final byte b = bytes[i];
+                if (b == '\n') {
+                    this.delimiterLength = 1;
+                    return i;
+                }
+                if (b == '\r') {
+                    if (i + 1 < end) {
+                        this.delimiterLength = (bytes[i + 1] == '\n') ? 2 : 1;
+                        return i;
+                    }
+                    if (this.endOfFile) {
+                        this.delimiterLength = 1;
+                        return i;
+                    }
+                    break;  // Waits for the next byte.
+                }
+            }
+        } else {
+            switch (this.lineDelimiter) {
+                case LF:
+                    for (; i < end; i++) {
+                        if (bytes[i] == '\n' && (i == this.start || bytes[i - 1] != '\r')) {
+                            this.delimiterLength = 1;
+                            return i;
+                        }
+                    }
+                    break;
+                case CRLF:
+                    for (; i < end; i++) {
+                        if (bytes[i] == '\n' && i > this.start && bytes[i - 1] == '\r') {
+                            this.delimiterLength = 2;
+                            return i - 1;
+                        }
+                    }
+                    break;
+                case CR:
+                    for (; i < end; i++) {
+                        if (bytes[i] == '\r') {
+                            if (i + 1 < end) {
+                                if (bytes[i + 1] != '\n') {
+                                    this.delimiterLength = 1;
+                                    return i;
+                                }
+                            } else if (this.endOfFile) {
+                                this.delimiterLength = 1;
+                                return i;
+                            } else {
+                                break;  // Waits for the next byte.
+                            }
+                        }
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unsupported line delimiter " + this.lineDelimiter);
+            }
+        }
+        this.scan = i;
+        return -1;
+    }
+
+    /**
+     * Reads the next {@link Buffer} into the window after the bytes not consumed yet.
+     */
+    private void fill() {
+        final Buffer buffer = this.input.poll();
+        if (buffer == null) {
+            this.endOfFile = true;
+            return;
+        }
+        try {
+            final int length = buffer.limit();
+            this.reserve(length);
+            buffer.getBytes(0, this.window, this.end, length);
+            this.end += length;
+        } finally {
+            buffer.release();
+        }
+    }
+
+    private void reserve(final int length) {
+        if (this.start > 0) {
+            // Moves the bytes not consumed yet to the beginning.
+            System.arraycopy(this.window, this.start, this.window, 0, this.end - this.start);
+            this.end -= this.start;
+            this.scan -= this.start;
+            this.start = 0;
+        }
+        if (this.end + length > this.window.length) {
+            int size = this.window.length;
+            while (size < this.end + length) {
+                size *= 2;
+            }
+            this.window = Arrays.copyOf(this.window, size);
+        }
+    }
+
+    private void skipBom() {
+        if (!this.skipsBom) {
+            return;
+        }
+        while (this.end - this.start < 3 && !this.endOfFile) {
+            this.fill();
+        }
+        if (this.end - this.start >= 3
+                && this.window[this.start] == (byte) 0xEF
+                && this.window[this.start + 1] == (byte) 0xBB
+                && this.window[this.start + 2] == (byte) 0xBF) {
+            this.start += 3;
+            this.scan = this.start;
+        }
+    }
+
+    private static final int INITIAL_WINDOW_SIZE = 32 * 1024;
+
+    private static final Set<String> SUPPORTED_CHARSETS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "UTF-8", "US-ASCII", "ISO-8859-1", "windows-1252", "Shift_JIS", "windows-31j", "EUC-JP")));
+
+    private final FileInput input;
+    private final Charset charset;
+    private final LineDelimiter lineDelimiter;
+    private final boolean skipsBom;
+    private final LineCallback decodingCallback;
+
+    private byte[] window;
+    private int start;  // the beginning of the bytes not consumed yet
+    private int end;  // the end of the bytes read
+    private int scan;  // the index to resume searching a delimiter
+    private int delimiterLength;
+    private boolean endOfFile;
+    private boolean atBeginningOfFile;
+    private String polled;
+}
@@ -4,6 +4,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
 import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferImpl;
 import org.embulk.spi.FileOutput;
 
 @Deprecated  // Externalized to embulk-util-file
@@ -18,6 +19,7 @@ public class OutputStreamFileOutput implements FileOutput {
 
     private final Provider provider;
     private OutputStream current;
+    private byte[] staging;
 
     public OutputStreamFileOutput(Provider provider) {
         this.provider = provider;
@@ -39,7 +41,17 @@ public class OutputStreamFileOutput implements FileOutput {
             throw new IllegalStateException("nextFile() must be called before poll()");
         }
         try {
-            current.write(buffer.array(), buffer.offset(), buffer.limit());
+            if (buffer instanceof BufferImpl) {
+                current.write(buffer.array(), buffer.offset(), buffer.limit());
+            } else {
+                // An off-heap Buffer is written through a Java heap array not to fall back to Buffer#array().
+                final int length = buffer.limit();
+                if (staging == null || staging.length < length) {
+                    staging = new byte[length];
+                }
+                buffer.getBytes(0, staging, 0, length);
+                current.write(staging, 0, length);
+            }
         } catch (IOException ex) {
             throw new RuntimeException(ex);
         } finally {
@@ -1,5 +1,6 @@
 package org.embulk.spi.util;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -134,10 +135,12 @@ public class Pages {
             if (record.isNull(column)) {
                 visit(column, null);
             } else {
+                final long epochSecond = record.getTimestampEpochSecond(column);
+                final int nano = record.getTimestampNano(column);
                 if (this.useInstant) {
-                    visit(column, record.getTimestampInstant(column));
+                    visit(column, Instant.ofEpochSecond(epochSecond, nano));
                 } else {
-                    visit(column, record.getTimestamp(column));
+                    visit(column, org.embulk.spi.time.Timestamp.ofEpochSecond(epochSecond, nano));
                 }
             }
         }
@@ -0,0 +1,216 @@
+package org.embulk.spi.util;
+
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.FileInput;
+
+/**
+ * A {@link FileInput} which reads {@link Buffer}s ahead from the underlying input in its own worker thread.
+ *
+ * <p>The worker thread calls {@code nextFile} and {@code poll} of the underlying input, and queues the {@link Buffer}s
+ * with markers of the file boundaries into a bounded queue. {@link #poll()} returns {@link Buffer}s from the queue.
+ * {@link #nextFile()} releases {@link Buffer}s left in the current file, and moves to the next file in the queue.
+ *
+ * <p>An exception thrown in the worker thread is rethrown from the next call of {@link #nextFile()} or {@link #poll()}
+ * after the {@link Buffer}s queued before the exception. The worker thread stops after an exception.
+ *
+ * <p>{@link #stop()} stops the worker thread, so that the underlying input is not called anymore. The worker thread is
+ * interrupted if it has not finished reading yet. {@link #close()} stops the worker thread before closing the
+ * underlying input.
+ */
+public class PipelinedFileInput implements FileInput {
+    public PipelinedFileInput(final FileInput input, final int queueBuffers, final String threadName) {
+        this.input = input;
+        this.queue = new ArrayBlockingQueue<>(Math.max(queueBuffers, 1));
+        this.stopping = false;
+        this.stopped = false;
+        this.inFile = false;
+        this.endOfInput = false;
+        this.currentFileName = Optional.empty();
+
+        // A new thread, not a pooled thread, so that it inherits the ExecSession of the current thread.
+        this.worker = new Thread(this::runWorker, threadName);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    @Override
+    public boolean nextFile() {
+        if (this.endOfInput) {
+            return false;
+        }
+        while (this.inFile) {
+            final Entry entry = this.take();
+            if (entry == END_OF_FILE) {
+                this.inFile = false;
+            } else {
+                entry.buffer.release();
+            }
+        }
+        final Entry entry = this.take();
+        if (entry == END_OF_INPUT) {
+            this.endOfInput = true;
+            this.currentFileName = Optional.empty();
+            return false;
+        }
+        this.inFile = true;
+        this.currentFileName = entry.fileName;
+        return true;
+    }
+
+    @Override
+    public Buffer poll() {
+        if (!this.inFile) {
+            return null;
+        }
+        final Entry entry = this.take();
+        if (entry == END_OF_FILE) {
+            this.inFile = false;
+            return null;
+        }
+        return entry.buffer;
+    }
+
+    @Override
+    public Optional<String> hintOfCurrentInputFileNameForLogging() {
+        return this.currentFileName;
+    }
+
+    @Override
+    public void close() {
+        this.stop();
+        this.input.close();
+    }
+
+    private Entry take() {
+        while (true) {
+            final Entry entry;
+            try {
+                entry = this.queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+            if (entry != null) {
+                if (entry.error != null) {
+                    this.endOfInput = true;
+                    throwError(entry.error);
+                }
+                return entry;
+            }
+            if (!this.worker.isAlive() && this.queue.isEmpty()) {
+                throw new IllegalStateException("The pipeline worker thread has stopped unexpectedly.");
+            }
+        }
+    }
+
+    /**
+     * Stops the worker thread, and releases {@link Buffer}s not polled yet. It does nothing if already stopped.
+     */
+    public void stop() {
+        if (this.stopped) {
+            return;
+        }
+        this.stopped = true;
+        this.stopping = true;
+        if (this.worker.isAlive()) {
+            this.worker.interrupt();
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                this.worker.join();
+                break;
+            } catch (final InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        Entry entry;
+        while ((entry = this.queue.poll()) != null) {
+            if (entry.buffer != null) {
+                entry.buffer.release();
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runWorker() {
+        try {
+            while (!this.stopping && this.input.nextFile()) {
+                if (!this.put(new Entry(null, this.input.hintOfCurrentInputFileNameForLogging(), null))) {
+                    return;
+                }
+                Buffer buffer;
+                while ((buffer = this.input.poll()) != null) {
+                    if (!this.put(new Entry(buffer, Optional.empty(), null))) {
+                        buffer.release();
+                        return;
+                    }
+                }
+                if (!this.put(END_OF_FILE)) {
+                    return;
+                }
+            }
+            this.put(END_OF_INPUT);
+        } catch (final Throwable ex) {
+            this.put(new Entry(null, Optional.empty(), ex));
+        }
+    }
+
+    /**
+     * Queues {@code entry}, waiting for a space unless the worker thread is being stopped.
+     *
+     * @return {@code false} if the worker thread is being stopped
+     */
+    private boolean put(final Entry entry) {
+        while (!this.stopping) {
+            try {
+                if (this.queue.offer(entry, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            } catch (final InterruptedException ex) {
+                // Interrupted by stop. Checks stopping again.
+            }
+        }
+        return false;
+    }
+
+    private static void throwError(final Throwable error) {
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        throw new RuntimeException(error);
+    }
+
+    private static class Entry {
+        Entry(final Buffer buffer, final Optional<String> fileName, final Throwable error) {
+            this.buffer = buffer;
+            this.fileName = fileName;
+            this.error = error;
+        }
+
+        final Buffer buffer;  // null for markers
+        final Optional<String> fileName;  // the name of the file beginning at this entry
+        final Throwable error;
+    }
+
+    private static final Entry END_OF_FILE = new Entry(null, Optional.empty(), null);
+    private static final Entry END_OF_INPUT = new Entry(null, Optional.empty(), null);
+
+    private final FileInput input;
+    private final BlockingQueue<Entry> queue;
+    private final Thread worker;
+
+    private volatile boolean stopping;
+    private boolean stopped;  // accessed only by the caller thread
+    private boolean inFile;
+    private boolean endOfInput;
+    private Optional<String> currentFileName;
+}
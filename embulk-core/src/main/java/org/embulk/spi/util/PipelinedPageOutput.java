@@ -0,0 +1,239 @@
+package org.embulk.spi.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageImpl;
+import org.embulk.spi.PageOutput;
+
+/**
+ * A {@link PageOutput} which passes {@link Page}s to the next {@link PageOutput} in its own worker thread.
+ *
+ * <p>{@link #add(Page)} returns as soon as the {@link Page} is queued unless the queue is full. The worker thread calls
+ * {@code add}, {@code finish}, and {@code close} of the next {@link PageOutput} in the same order as they are called.
+ * {@link #finish()} and {@link #close()} wait until the worker thread completes them, so that the caller sees the same
+ * state as a synchronous {@link PageOutput} after they return.
+ *
+ * <p>An exception thrown in the worker thread is rethrown from the next call of {@link #add(Page)} or {@link #finish()}.
+ * The worker thread releases {@link Page}s without passing them after an exception, but it still calls {@code close}.
+ *
+ * <p>{@link #stop()} stops the worker thread, and the worker threads of the pipeline after it, without closing the next
+ * {@link PageOutput}. It is to abort the transaction at the end of the pipeline after no thread calls it anymore.
+ */
+class PipelinedPageOutput implements PageOutput {
+    PipelinedPageOutput(final PageOutput next, final String threadName) {
+        this(next, threadName, null);
+    }
+
+    /**
+     * @param downstream  the next pipelined output in the pipeline, which is stopped together, or {@code null}
+     */
+    PipelinedPageOutput(final PageOutput next, final String threadName, final PipelinedPageOutput downstream) {
+        this.next = next;
+        this.downstream = downstream;
+        this.queue = new ArrayBlockingQueue<>(QUEUE_PAGES);
+        this.completed = new Semaphore(0);
+        this.error = null;
+        this.closeError = null;
+        this.closed = false;
+        this.stopping = false;
+        this.stopped = false;
+
+        // A new thread, not a pooled thread, so that it inherits the ExecSession of the current thread.
+        this.worker = new Thread(this::runWorker, threadName);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    @Override
+    public void add(final Page page) {
+        if (this.error != null) {
+            page.release();
+            throwError(this.error);
+        }
+        this.put(page);
+    }
+
+    @Override
+    public void finish() {
+        this.put(FINISH_PAGE);
+        this.awaitCompleted();
+        if (this.error != null) {
+            throwError(this.error);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        if (this.stopped) {
+            // The worker thread has exited. Nobody else calls the next output.
+            this.next.close();
+            return;
+        }
+        this.put(CLOSE_PAGE);
+        this.awaitCompleted();
+        if (this.closeError != null) {
+            throwError(this.closeError);
+        }
+    }
+
+    /**
+     * Stops the worker thread, and the worker threads after it, after releasing the queued {@link Page}s.
+     *
+     * <p>It interrupts the worker thread, and waits until it returns from the next output. The next output is closed by
+     * {@link #close()} later in the caller thread.
+     */
+    void stop() {
+        if (this.closed || this.stopped) {
+            if (this.downstream != null) {
+                this.downstream.stop();
+            }
+            return;
+        }
+        this.stopped = true;
+        this.stopping = true;
+        this.worker.interrupt();
+
+        boolean interrupted = false;
+        Page page;
+        while ((page = this.queue.poll()) != null) {
+            releaseIfData(page);
+        }
+        try {
+            // The queue has a room because the caller thread is the only producer.
+            while (!this.queue.offer(STOP_PAGE)) {
+                while ((page = this.queue.poll()) != null) {
+                    releaseIfData(page);
+                }
+            }
+            while (true) {
+                try {
+                    this.worker.join();
+                    break;
+                } catch (final InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        while ((page = this.queue.poll()) != null) {
+            releaseIfData(page);
+        }
+
+        if (this.downstream != null) {
+            this.downstream.stop();
+        }
+    }
+
+    private static void releaseIfData(final Page page) {
+        if (page != FINISH_PAGE && page != CLOSE_PAGE && page != STOP_PAGE) {
+            page.release();
+        }
+    }
+
+    private void put(final Page page) {
+        try {
+            while (!this.queue.offer(page, 100, TimeUnit.MILLISECONDS)) {
+                if (!this.worker.isAlive()) {
+                    throw new IllegalStateException("The pipeline worker thread has stopped unexpectedly.");
+                }
+            }
+        } catch (final InterruptedException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private void awaitCompleted() {
+        try {
+            this.completed.acquire();
+        } catch (final InterruptedException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private void runWorker() {
+        while (true) {
+            final Page page;
+            try {
+                page = this.queue.take();
+            } catch (final InterruptedException ex) {
+                if (!this.stopping && this.error == null) {
+                    this.error = ex;
+                }
+                continue;
+            }
+
+            if (page == STOP_PAGE) {
+                return;
+            } else if (this.stopping) {
+                if (page == FINISH_PAGE) {
+                    this.completed.release();
+                } else if (page != CLOSE_PAGE) {
+                    page.release();
+                }
+            } else if (page == FINISH_PAGE) {
+                if (this.error == null) {
+                    try {
+                        this.next.finish();
+                    } catch (final Throwable ex) {
+                        this.error = ex;
+                    }
+                }
+                this.completed.release();
+            } else if (page == CLOSE_PAGE) {
+                try {
+                    this.next.close();
+                } catch (final Throwable ex) {
+                    this.closeError = ex;
+                }
+                this.completed.release();
+                return;
+            } else if (this.error != null) {
+                page.release();
+            } else {
+                try {
+                    this.next.add(page);
+                } catch (final Throwable ex) {
+                    this.error = ex;
+                }
+            }
+        }
+    }
+
+    private static void throwError(final Throwable error) {
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        throw new RuntimeException(error);
+    }
+
+    private static final int QUEUE_PAGES = 4;
+
+    private static final Page FINISH_PAGE = PageImpl.allocate(0);
+    private static final Page CLOSE_PAGE = PageImpl.allocate(0);
+    private static final Page STOP_PAGE = PageImpl.allocate(0);
+
+    private final PageOutput next;
+    private final PipelinedPageOutput downstream;
+    private final BlockingQueue<Page> queue;
+    private final Semaphore completed;
+    private final Thread worker;
+
+    private volatile Throwable error;
+    private volatile Throwable closeError;
+    private volatile boolean stopping;
+    private boolean closed;  // accessed only by the caller thread
+    private boolean stopped;  // accessed only by the caller thread
+}
@@ -29,17 +29,16 @@ public class TimestampColumnSetter extends AbstractDynamicColumnSetter {
     }
 
     @Override
-    @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1292
     public void set(long v) {
-        pageBuilder.setTimestamp(column, org.embulk.spi.time.Timestamp.ofEpochSecond(v));
+        pageBuilder.setTimestamp(column, v, 0);
     }
 
     @Override
-    @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1292
     public void set(double v) {
-        long sec = (long) v;
+        // The nanoseconds are non-negative, e.g. -1.5 is -2 seconds and 500,000,000 nanoseconds.
+        long sec = (long) Math.floor(v);
         int nsec = (int) ((v - (double) sec) * 1000000000);
-        pageBuilder.setTimestamp(column, org.embulk.spi.time.Timestamp.ofEpochSecond(sec, nsec));
+        pageBuilder.setTimestamp(column, sec, nsec);
         defaultValue.setTimestamp(pageBuilder, column);
     }
 
@@ -0,0 +1,76 @@
+package org.embulk.exec;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TestBufferMemoryBudget {
+    @Test
+    public void testParseByteSize() {
+        assertEquals(1024L, BufferMemoryBudget.parseByteSize("1024"));
+        assertEquals(512L * 1024 * 1024, BufferMemoryBudget.parseByteSize("512MB"));
+        assertEquals(3L * 1024 * 1024 * 1024 / 2, BufferMemoryBudget.parseByteSize("1.5 GB"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseInvalidByteSize() {
+        BufferMemoryBudget.parseByteSize("many bytes");
+    }
+
+    @Test
+    public void testAcquireAndRelease() {
+        final BufferMemoryBudget budget = new BufferMemoryBudget(100, 10);
+        budget.acquire(60);
+        budget.acquire(30);
+        assertEquals(90L, budget.getUsedBytes());
+        budget.release(60);
+        budget.acquire(50);
+        assertEquals(80L, budget.getUsedBytes());
+        assertEquals(90L, budget.getHighWaterMark());
+        assertEquals(0L, budget.getWaitCount());
+    }
+
+    @Test
+    public void testWaitUntilReleased() throws InterruptedException {
+        final BufferMemoryBudget budget = new BufferMemoryBudget(100, 60_000);
+        budget.acquire(80);
+        final Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (final InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+            budget.release(80);
+        });
+        releaser.start();
+        budget.acquire(80);
+        releaser.join();
+        assertEquals(80L, budget.getUsedBytes());
+        assertEquals(1L, budget.getWaitCount());
+        assertEquals(0L, budget.getOvercommitCount());
+    }
+
+    @Test
+    public void testOvercommitAfterWaiting() {
+        final BufferMemoryBudget budget = new BufferMemoryBudget(100, 10);
+        budget.acquire(80);
+        budget.acquire(80);  // Nobody releases. It gives up waiting.
+        budget.acquire(80);  // It does not wait again while overcommitted.
+        assertEquals(240L, budget.getUsedBytes());
+        assertEquals(1L, budget.getWaitCount());
+        assertEquals(1L, budget.getOvercommitCount());
+
+        budget.release(80);
+        budget.release(80);
+        assertEquals(80L, budget.getUsedBytes());
+        assertEquals(240L, budget.getHighWaterMark());
+    }
+
+    @Test
+    public void testAllocateLargerThanBudget() {
+        final BufferMemoryBudget budget = new BufferMemoryBudget(100, 10);
+        budget.acquire(200);
+        assertEquals(200L, budget.getUsedBytes());
+        assertEquals(0L, budget.getWaitCount());
+    }
+}
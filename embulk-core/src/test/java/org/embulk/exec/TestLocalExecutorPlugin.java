@@ -0,0 +1,630 @@
+package org.embulk.exec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.embulk.config.ConfigDiff;
+import org.embulk.config.ConfigException;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskReport;
+import org.embulk.config.TaskSource;
+import org.embulk.plugin.DefaultPluginType;
+import org.embulk.spi.Exec;
+import org.embulk.spi.ExecAction;
+import org.embulk.spi.ExecInternal;
+import org.embulk.spi.ExecSessionInternal;
+import org.embulk.spi.IdempotentTaskHint;
+import org.embulk.spi.InputPlugin;
+import org.embulk.spi.OutputPlugin;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageImpl;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.ProcessState;
+import org.embulk.spi.ProcessTask;
+import org.embulk.spi.Schema;
+import org.embulk.spi.TaskState;
+import org.embulk.spi.TransactionalPageOutput;
+import org.embulk.spi.type.Types;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the executors of {@link LocalExecutorPlugin} with stub plugins which fail, hang, or run slowly at chosen tasks.
+ */
+public class TestLocalExecutorPlugin {
+    @Before
+    @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1304
+    public void setUp() {
+        scenario = new Scenario();
+        this.exec = ExecSessionInternal
+                .builderInternal(PooledBufferAllocator.create(), new SimpleTempFileSpaceAllocator())
+                .setModelManager(new org.embulk.config.ModelManager())
+                .registerInputPlugin("stub", StubInputPlugin.class)
+                .registerOutputPlugin("stub", StubOutputPlugin.class)
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        this.exec.cleanup();
+    }
+
+    @Test
+    public void testRetryWithBackoff() throws Exception {
+        scenario.failing(1, 2);
+        final SimpleProcessState state = new SimpleProcessState();
+        final long startedAt = System.nanoTime();
+        run(() -> {
+            try (final LocalExecutorPlugin.DirectExecutor executor = new LocalExecutorPlugin.DirectExecutor(4, 3)) {
+                executor.setTaskRetry(3, 50, 1000);
+                executor.execute(newProcessTask(), state);
+            }
+        });
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+
+        for (int i = 0; i < 3; i++) {
+            assertFalse(state.getInputTaskState(i).getException().isPresent());
+            assertTrue(state.getInputTaskState(i).isFinished());
+            assertTrue(state.getOutputTaskState(i).isCommitted());
+        }
+        assertEquals(3, scenario.attempts.get(1).get());
+        assertEquals(1, scenario.attempts.get(0).get());
+        // Waits 50 ms, and then 100 ms.
+        assertTrue(elapsedMillis >= 150);
+        assertEquals(setOf(1), scenario.abortedOutputs);
+        assertEquals(Arrays.asList(0, 1, 2), sorted(scenario.committedOutputs));
+    }
+
+    @Test
+    public void testRetryLimitExceeded() throws Exception {
+        scenario.failing(1, Integer.MAX_VALUE);
+        final SimpleProcessState state = new SimpleProcessState();
+        run(() -> {
+            try (final LocalExecutorPlugin.DirectExecutor executor = new LocalExecutorPlugin.DirectExecutor(4, 3)) {
+                executor.setTaskRetry(2, 10, 10);
+                executor.execute(newProcessTask(), state);
+            }
+        });
+
+        assertTrue(state.getInputTaskState(1).getException().get() instanceof StubException);
+        assertTrue(state.getInputTaskState(1).isFinished());
+        assertFalse(state.getOutputTaskState(1).isCommitted());
+        assertEquals(3, scenario.attempts.get(1).get());
+        assertEquals(Arrays.asList(0, 2), sorted(scenario.committedOutputs));
+    }
+
+    @Test
+    public void testRetryScatteredTask() throws Exception {
+        scenario.failing(0, 1).pages(4);
+        final SimpleProcessState state = new SimpleProcessState();
+        run(() -> {
+            try (final LocalExecutorPlugin.ScatterExecutor executor = new LocalExecutorPlugin.ScatterExecutor(4, 2, 2)) {
+                executor.setTaskRetry(1, 10, 10);
+                executor.execute(newProcessTask(), state);
+            }
+        });
+
+        assertFalse(state.getInputTaskState(0).getException().isPresent());
+        assertEquals(2, scenario.attempts.get(0).get());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(state.getOutputTaskState(i).isFinished());
+            assertTrue(state.getOutputTaskState(i).isCommitted());
+        }
+        assertEquals(setOf(0, 1), scenario.abortedOutputs);
+        assertEquals(Arrays.asList(0, 1, 2, 3), sorted(scenario.committedOutputs));
+    }
+
+    @Test
+    public void testFailFastCancelsRunningTasks() throws Exception {
+        scenario.failing(0, 1).hanging(1).hanging(2).failingAfterHanging(2);
+        final SimpleProcessState state = new SimpleProcessState();
+        run(() -> {
+            try (final LocalExecutorPlugin.DirectExecutor executor = new LocalExecutorPlugin.DirectExecutor(4, 3)) {
+                executor.setFailFast(true);
+                executor.execute(newProcessTask(), state);
+            }
+        });
+
+        assertTrue(state.getInputTaskState(0).getException().get() instanceof StubException);
+        for (int i = 1; i < 3; i++) {
+            assertTrue(state.getInputTaskState(i).getException().get() instanceof ExecutionInterruptedException);
+            assertFalse(state.getOutputTaskState(i).isCommitted());
+        }
+        assertEquals(setOf(0, 1, 2), scenario.abortedOutputs);
+        assertTrue(scenario.committedOutputs.isEmpty());
+        assertTrue(scenario.abortedWhileAdding.isEmpty());
+        assertEquals(0, scenario.running.get());
+    }
+
+    @Test
+    public void testFailFastAbortsScatteredOutputs() throws Exception {
+        // The cancelled tasks keep the interrupt when they abort, while their workers are still busy with queued pages.
+        scenario.failing(0, 1).hanging(1).hanging(2).failingAfterHanging(2).pages(3).slowOutput(200);
+        final SimpleProcessState state = new SimpleProcessState();
+        run(() -> {
+            try (final LocalExecutorPlugin.ScatterExecutor executor = new LocalExecutorPlugin.ScatterExecutor(6, 3, 2, 1, false)) {
+                executor.setFailFast(true);
+                executor.execute(newProcessTask(), state);
+            }
+        });
+
+        assertTrue(state.getInputTaskState(0).getException().get() instanceof StubException);
+        for (int i = 1; i < 3; i++) {
+            assertTrue(state.getInputTaskState(i).getException().get() instanceof ExecutionInterruptedException);
+        }
+        for (int i = 0; i < 6; i++) {
+            assertFalse(state.getOutputTaskState(i).isCommitted());
+        }
+        assertEquals(setOf(0, 1, 2, 3, 4, 5), scenario.abortedOutputs);
+        assertEquals(setOf(0, 1, 2, 3, 4, 5), scenario.closedOutputs);
+        assertTrue(scenario.committedOutputs.isEmpty());
+        assertTrue(scenario.abortedWhileAdding.isEmpty());
+    }
+
+    @Test
+    public void testSpeculativeAttemptWins() throws Exception {
+        // The first attempt of task 3 hangs until the speculative attempt wins.
+        scenario.hanging(3, 1);
+        final SimpleProcessState state = new SimpleProcessState();
+        run(() -> {
+            try (final LocalExecutorPlugin.SpeculativeExecutor executor = new LocalExecutorPlugin.SpeculativeExecutor(4, 4, 0.5, 1.5)) {
+                executor.execute(newProcessTask(), state);
+            }
+        });
+
+        for (int i = 0; i < 4; i++) {
+            assertFalse(state.getInputTaskState(i).getException().isPresent());
+            assertTrue(state.getOutputTaskState(i).isCommitted());
+        }
+        assertEquals(1, state.getInputTaskState(3).getAttempt());
+        assertEquals(1, state.getOutputTaskState(3).getAttempt());
+        assertEquals(1, (int) state.getInputTaskState(3).getTaskReport().get().get(Integer.class, "attempt"));
+        assertEquals(0, state.getOutputTaskState(0).getAttempt());
+        assertEquals(1, Collections.frequency(scenario.committedOutputs, 3));
+        assertEquals(setOf(3), scenario.abortedOutputs);
+        assertEquals(0, scenario.running.get());
+    }
+
+    @Test
+    public void testFailFastCancelsSpeculativeAttempt() throws Exception {
+        // Task 0 fails after task 3 hangs in both of its attempts. Speculative attempts of task 0 fail as well.
+        scenario.failing(0, Integer.MAX_VALUE).hanging(3).failingAfterHanging(2);
+        final SimpleProcessState state = new SimpleProcessState();
+        run(() -> {
+            try (final LocalExecutorPlugin.SpeculativeExecutor executor = new LocalExecutorPlugin.SpeculativeExecutor(4, 4, 0.5, 1.5)) {
+                executor.setFailFast(true);
+                executor.execute(newProcessTask(), state);
+            }
+        });
+        assertEquals(0, scenario.running.get());
+        Thread.sleep(100);
+
+        assertTrue(state.getInputTaskState(0).getException().get() instanceof StubException);
+        assertTrue(state.getInputTaskState(3).getException().get() instanceof ExecutionInterruptedException);
+        assertFalse(state.getOutputTaskState(3).isCommitted());
+        assertEquals(2, scenario.attempts.get(3).get());
+        assertTrue(scenario.abortedOutputs.contains(0));
+        assertTrue(scenario.abortedOutputs.contains(3));
+        assertTrue(scenario.abortedWhileAdding.isEmpty());
+        // No attempt commits after the cancel.
+        assertEquals(setOf(1, 2), new HashSet<>(scenario.committedOutputs));
+        assertEquals(2, scenario.committedOutputs.size());
+        assertEquals(0, scenario.running.get());
+    }
+
+    @Test
+    public void testScatterLeastLoaded() throws Exception {
+        scenario.pages(10);
+        final SimpleProcessState state = new SimpleProcessState();
+        run(() -> {
+            try (final LocalExecutorPlugin.ScatterExecutor executor = new LocalExecutorPlugin.ScatterExecutor(4, 2, 2, 16, true)) {
+                executor.execute(newProcessTask(), state);
+            }
+        });
+
+        for (int i = 0; i < 2; i++) {
+            assertFalse(state.getInputTaskState(i).getException().isPresent());
+            long scatteredPages = 0;
+            for (int j = 0; j < 2; j++) {
+                final TaskReport report = state.getOutputTaskState(i * 2 + j).getTaskReport().get();
+                assertEquals("least_loaded", report.get(String.class, "scatter_routing"));
+                scatteredPages += report.get(Long.class, "scattered_pages");
+            }
+            assertEquals(10, scatteredPages);
+        }
+        assertEquals(setOf(0, 1, 2, 3), new HashSet<>(scenario.committedOutputs));
+    }
+
+    @Test
+    public void testScatterResumesRoundRobin() throws Exception {
+        final SimpleProcessState state = new SimpleProcessState();
+        run(() -> {
+            state.initialize(2, 4);
+            state.getOutputTaskState(0).setTaskReport(Exec.newTaskReport().set("scatter_routing", "round_robin"));
+            // Scatters in round robin by default.
+            try (final LocalExecutorPlugin.ScatterExecutor executor = new LocalExecutorPlugin.ScatterExecutor(4, 2, 2)) {
+                executor.execute(newProcessTask(), state);
+            }
+        });
+
+        assertFalse(state.getInputTaskState(0).getException().isPresent());
+        assertEquals(setOf(1, 2, 3), new HashSet<>(scenario.committedOutputs));
+    }
+
+    @Test
+    public void testScatterLeastLoadedRefusesToResume() throws Exception {
+        final SimpleProcessState state = new SimpleProcessState();
+        run(() -> {
+            state.initialize(2, 4);
+            state.getOutputTaskState(0).setTaskReport(Exec.newTaskReport().set("scatter_routing", "round_robin"));
+            try (final LocalExecutorPlugin.ScatterExecutor executor = new LocalExecutorPlugin.ScatterExecutor(4, 2, 2, 16, true)) {
+                executor.setTaskRetry(3, 10, 10);
+                executor.execute(newProcessTask(), state);
+            }
+        });
+
+        assertTrue(state.getInputTaskState(0).getException().get() instanceof ConfigException);
+        assertFalse(state.getOutputTaskState(1).isCommitted());
+        assertEquals(setOf(1), scenario.abortedOutputs);
+        // The input task is not retried for the ConfigException.
+        assertEquals(1, Collections.frequency(scenario.openedOutputs, 1));
+        assertEquals(setOf(2, 3), new HashSet<>(scenario.committedOutputs));
+    }
+
+    @Test
+    public void testGather() throws Exception {
+        scenario.pages(3);
+        final SimpleProcessState state = new SimpleProcessState();
+        run(() -> {
+            try (final LocalExecutorPlugin.GatherExecutor executor = new LocalExecutorPlugin.GatherExecutor(4, 4, 2)) {
+                executor.execute(newProcessTask(), state);
+            }
+        });
+
+        for (int i = 0; i < 4; i++) {
+            assertFalse(state.getInputTaskState(i).getException().isPresent());
+            assertTrue(state.getInputTaskState(i).isCommitted());
+        }
+        for (int i = 0; i < 2; i++) {
+            assertFalse(state.getOutputTaskState(i).getException().isPresent());
+            assertTrue(state.getOutputTaskState(i).isCommitted());
+            // Each output task receives the pages of 2 input tasks.
+            assertEquals(6, scenario.addedPages.get(i).get());
+        }
+        assertEquals(Arrays.asList(0, 1), sorted(scenario.openedOutputs));
+        assertEquals(Arrays.asList(0, 1), sorted(scenario.committedOutputs));
+        assertTrue(scenario.abortedOutputs.isEmpty());
+    }
+
+    @Test
+    public void testGatherAbortsOutputOfFailedInput() throws Exception {
+        scenario.failing(1, 1);
+        final SimpleProcessState state = new SimpleProcessState();
+        run(() -> {
+            try (final LocalExecutorPlugin.GatherExecutor executor = new LocalExecutorPlugin.GatherExecutor(4, 4, 2)) {
+                // Not retried because its pages may have been passed to the output task.
+                executor.setTaskRetry(3, 10, 10);
+                executor.execute(newProcessTask(), state);
+            }
+        });
+
+        assertTrue(state.getInputTaskState(1).getException().get() instanceof StubException);
+        assertEquals(1, scenario.attempts.get(1).get());
+        assertTrue(state.getOutputTaskState(0).isCommitted());
+        assertFalse(state.getOutputTaskState(1).isCommitted());
+        assertEquals(Arrays.asList(0), scenario.committedOutputs);
+        assertEquals(setOf(1), scenario.abortedOutputs);
+    }
+
+    @Test
+    public void testGatherResumes() throws Exception {
+        final SimpleProcessState state = new SimpleProcessState();
+        run(() -> {
+            state.initialize(4, 2);
+            state.getOutputTaskState(0).setTaskReport(Exec.newTaskReport());
+            try (final LocalExecutorPlugin.GatherExecutor executor = new LocalExecutorPlugin.GatherExecutor(4, 4, 2)) {
+                executor.execute(newProcessTask(), state);
+            }
+        });
+
+        // The input tasks gathered into the committed output task are skipped.
+        assertEquals(setOf(1, 3), scenario.attempts.keySet());
+        assertEquals(Arrays.asList(1), scenario.openedOutputs);
+        assertEquals(Arrays.asList(1), scenario.committedOutputs);
+    }
+
+    private void run(final Action action) throws Exception {
+        ExecInternal.doWith(this.exec, new ExecAction<Void>() {
+                public Void run() throws Exception {
+                    action.run();
+                    return null;
+                }
+            });
+    }
+
+    private static ProcessTask newProcessTask() {
+        final Schema schema = Schema.builder().add("c0", Types.LONG).build();
+        return new ProcessTask(
+                DefaultPluginType.create("stub"),
+                DefaultPluginType.create("stub"),
+                Collections.emptyList(),
+                Exec.newTaskSource(),
+                Exec.newTaskSource(),
+                Collections.emptyList(),
+                Collections.singletonList(schema),
+                schema,
+                Exec.newTaskSource());
+    }
+
+    private static List<Integer> sorted(final List<Integer> values) {
+        final List<Integer> copy = new ArrayList<>(values);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    private static Set<Integer> setOf(final Integer... values) {
+        final Set<Integer> set = ConcurrentHashMap.newKeySet();
+        Collections.addAll(set, values);
+        return set;
+    }
+
+    private interface Action {
+        void run() throws Exception;
+    }
+
+    private static class StubException extends RuntimeException {
+        StubException(final int taskIndex) {
+            super("Task " + taskIndex + " failed.");
+        }
+    }
+
+    /**
+     * How the stub plugins behave at each task. The plugins are instantiated by the plugin manager, so it is static.
+     */
+    private static class Scenario {
+        Scenario failing(final int taskIndex, final int times) {
+            this.failures.put(taskIndex, new AtomicInteger(times));
+            return this;
+        }
+
+        Scenario hanging(final int taskIndex) {
+            return this.hanging(taskIndex, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Lets the first {@code attempts} attempts of the task hang until they are interrupted.
+         */
+        Scenario hanging(final int taskIndex, final int attempts) {
+            this.hangingAttempts.put(taskIndex, attempts);
+            return this;
+        }
+
+        /**
+         * Lets the failing tasks wait until {@code attempts} attempts hang so that they are cancelled while running.
+         */
+        Scenario failingAfterHanging(final int attempts) {
+            this.failingAfterHanging = attempts;
+            return this;
+        }
+
+        Scenario pages(final int pages) {
+            this.pages = pages;
+            return this;
+        }
+
+        Scenario slowOutput(final long millis) {
+            this.outputAddMillis = millis;
+            return this;
+        }
+
+        void awaitHangingAttempts() {
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (this.hangingNow.get() < this.failingAfterHanging && System.nanoTime() < deadline) {
+                try {
+                    Thread.sleep(10);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        final Map<Integer, AtomicInteger> failures = new ConcurrentHashMap<>();
+        final Map<Integer, Integer> hangingAttempts = new ConcurrentHashMap<>();
+        final Map<Integer, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        final List<Integer> openedOutputs = Collections.synchronizedList(new ArrayList<>());
+        final Map<Integer, AtomicInteger> addedPages = new ConcurrentHashMap<>();
+        final Set<Integer> abortedOutputs = ConcurrentHashMap.newKeySet();
+        final Set<Integer> closedOutputs = ConcurrentHashMap.newKeySet();
+        final List<Integer> committedOutputs = Collections.synchronizedList(new ArrayList<>());
+        final Set<Integer> abortedWhileAdding = ConcurrentHashMap.newKeySet();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger hangingNow = new AtomicInteger();
+        volatile int failingAfterHanging = 0;
+        volatile int pages = 1;
+        volatile long outputAddMillis = 0;
+    }
+
+    private static volatile Scenario scenario;
+
+    public static class StubInputPlugin implements InputPlugin, IdempotentTaskHint {
+        @Override
+        public ConfigDiff transaction(final ConfigSource config, final InputPlugin.Control control) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ConfigDiff resume(final TaskSource taskSource, final Schema schema, final int taskCount, final InputPlugin.Control control) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void cleanup(final TaskSource taskSource, final Schema schema, final int taskCount, final List<TaskReport> successTaskReports) {
+        }
+
+        @Override
+        public TaskReport run(final TaskSource taskSource, final Schema schema, final int taskIndex, final PageOutput output) {
+            final Scenario scenario = TestLocalExecutorPlugin.scenario;
+            final int attempt = scenario.attempts.computeIfAbsent(taskIndex, i -> new AtomicInteger()).getAndIncrement();
+            scenario.running.incrementAndGet();
+            try {
+                for (int i = 0; i < scenario.pages; i++) {
+                    output.add(newPage());
+                }
+                if (attempt < scenario.hangingAttempts.getOrDefault(taskIndex, 0)) {
+                    scenario.hangingNow.incrementAndGet();
+                    try {
+                        Thread.sleep(Long.MAX_VALUE);
+                    } catch (final InterruptedException ex) {
+                        // Keeps the interrupt as well-behaved plugins do.
+                        Thread.currentThread().interrupt();
+                        throw new ExecutionInterruptedException(ex);
+                    }
+                }
+                final AtomicInteger failures = scenario.failures.get(taskIndex);
+                if (failures != null && failures.getAndDecrement() > 0) {
+                    scenario.awaitHangingAttempts();
+                    throw new StubException(taskIndex);
+                }
+                output.finish();
+                return Exec.newTaskReport().set("attempt", attempt);
+            } finally {
+                scenario.running.decrementAndGet();
+            }
+        }
+
+        @Override
+        public ConfigDiff guess(final ConfigSource config) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isTaskIdempotent(final TaskSource taskSource) {
+            return true;
+        }
+
+        private static Page newPage() {
+            // The record count in the header is 0.
+            return PageImpl.allocate(16);
+        }
+    }
+
+    public static class StubOutputPlugin implements OutputPlugin, IdempotentTaskHint {
+        @Override
+        public ConfigDiff transaction(final ConfigSource config, final Schema schema, final int taskCount, final OutputPlugin.Control control) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ConfigDiff resume(final TaskSource taskSource, final Schema schema, final int taskCount, final OutputPlugin.Control control) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void cleanup(final TaskSource taskSource, final Schema schema, final int taskCount, final List<TaskReport> successTaskReports) {
+        }
+
+        @Override
+        public TransactionalPageOutput open(final TaskSource taskSource, final Schema schema, final int taskIndex) {
+            final Scenario scenario = TestLocalExecutorPlugin.scenario;
+            scenario.openedOutputs.add(taskIndex);
+            return new TransactionalPageOutput() {
+                private volatile boolean adding;
+
+                @Override
+                public void add(final Page page) {
+                    this.adding = true;
+                    try {
+                        if (scenario.outputAddMillis > 0) {
+                            try {
+                                Thread.sleep(scenario.outputAddMillis);
+                            } catch (final InterruptedException ex) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                        page.release();
+                        scenario.addedPages.computeIfAbsent(taskIndex, i -> new AtomicInteger()).incrementAndGet();
+                    } finally {
+                        this.adding = false;
+                    }
+                }
+
+                @Override
+                public void finish() {
+                }
+
+                @Override
+                public void close() {
+                    scenario.closedOutputs.add(taskIndex);
+                }
+
+                @Override
+                public void abort() {
+                    if (this.adding) {
+                        scenario.abortedWhileAdding.add(taskIndex);
+                    }
+                    scenario.abortedOutputs.add(taskIndex);
+                }
+
+                @Override
+                public TaskReport commit() {
+                    scenario.committedOutputs.add(taskIndex);
+                    return Exec.newTaskReport();
+                }
+            };
+        }
+
+        @Override
+        public boolean isTaskIdempotent(final TaskSource taskSource) {
+            return true;
+        }
+    }
+
+    /**
+     * Keeps the task states once initialized so that a test can prepare the states of resumed tasks.
+     */
+    private static class SimpleProcessState implements ProcessState {
+        @Override
+        public void initialize(final int inputTaskCount, final int outputTaskCount) {
+            if (this.inputTaskStates == null) {
+                this.inputTaskStates = newTaskStates(inputTaskCount);
+                this.outputTaskStates = newTaskStates(outputTaskCount);
+            }
+        }
+
+        @Override
+        public TaskState getInputTaskState(final int inputTaskIndex) {
+            return this.inputTaskStates[inputTaskIndex];
+        }
+
+        @Override
+        public TaskState getOutputTaskState(final int outputTaskIndex) {
+            return this.outputTaskStates[outputTaskIndex];
+        }
+
+        private static TaskState[] newTaskStates(final int count) {
+            final TaskState[] states = new TaskState[count];
+            for (int i = 0; i < count; i++) {
+                states[i] = new TaskState();
+            }
+            return states;
+        }
+
+        private TaskState[] inputTaskStates;
+        private TaskState[] outputTaskStates;
+    }
+
+    private ExecSessionInternal exec;
+}
@@ -0,0 +1,233 @@
+package org.embulk.exec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.embulk.config.ConfigException;
+import org.embulk.config.ModelManager;
+import org.embulk.plugin.DefaultPluginType;
+import org.embulk.spi.DataException;
+import org.embulk.spi.Exec;
+import org.embulk.spi.ExecInternal;
+import org.embulk.spi.ExecSessionInternal;
+import org.embulk.spi.ProcessState;
+import org.embulk.spi.ProcessTask;
+import org.embulk.spi.Schema;
+import org.embulk.spi.TaskState;
+import org.embulk.spi.type.Types;
+import org.embulk.test.EmbulkTestRuntime;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestLocalProcessExecutorPlugin {
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Test
+    public void testTaskEvents() throws IOException {
+        final SimpleProcessState state = new SimpleProcessState(2);
+        final StringWriter written = new StringWriter();
+        runTasks(written, state, 0, 1,
+                "{\"event\":\"started\"}",
+                "{\"event\":\"input_committed\",\"report\":{\"records\":10}}",
+                "{\"event\":\"output_committed\",\"report\":{\"files\":1}}",
+                "{\"event\":\"finished\"}",
+                "{\"event\":\"started\"}",
+                "{\"event\":\"input_committed\",\"report\":{\"records\":20}}",
+                "{\"event\":\"output_committed\",\"report\":{\"files\":2}}",
+                "{\"event\":\"finished\"}");
+
+        assertEquals("0\n1\n", written.toString());
+        for (int i = 0; i < 2; i++) {
+            final TaskState input = state.getInputTaskState(i);
+            final TaskState output = state.getOutputTaskState(i);
+            assertTrue(input.isFinished());
+            assertTrue(output.isFinished());
+            assertFalse(input.getException().isPresent());
+            assertEquals((i + 1) * 10, (int) input.getTaskReport().get().get(Integer.class, "records"));
+            assertEquals(i + 1, (int) output.getTaskReport().get().get(Integer.class, "files"));
+        }
+    }
+
+    @Test
+    public void testFailedTaskKeepsExceptionType() throws IOException {
+        final SimpleProcessState state = new SimpleProcessState(2);
+        runTasks(new StringWriter(), state, 0, 1,
+                "{\"event\":\"started\"}",
+                "{\"event\":\"finished\",\"error\":\"stack trace\",\"exception\":\"" + serialize(new DataException("invalid")) + "\"}",
+                "{\"event\":\"started\"}",
+                "{\"event\":\"finished\",\"error\":\"stack trace\"}");
+
+        final Throwable restored = state.getInputTaskState(0).getException().get();
+        assertTrue(restored instanceof DataException);
+        assertEquals("invalid", restored.getMessage());
+        assertTrue(state.getInputTaskState(0).isFinished());
+        assertFalse(state.getOutputTaskState(0).isCommitted());
+
+        // The stack trace in text is kept if the exception is not given.
+        final Throwable wrapped = state.getInputTaskState(1).getException().get();
+        assertEquals(RuntimeException.class, wrapped.getClass());
+        assertTrue(wrapped.getMessage().contains("stack trace"));
+    }
+
+    @Test
+    public void testWorkerDied() {
+        final SimpleProcessState state = new SimpleProcessState(3);
+        final Queue<Integer> pending = new ConcurrentLinkedQueue<>(Arrays.asList(0, 1, 2));
+        try {
+            LocalProcessExecutorPlugin.runTasks(new StringWriter(), reader(
+                    "{\"event\":\"started\"}",
+                    "{\"event\":\"finished\"}",
+                    "{\"event\":\"started\"}",
+                    "{\"event\":\"input_committed\",\"report\":{}}"),
+                    pending, state, modelManager());
+            fail();
+        } catch (final IOException ex) {
+            assertTrue(ex.getMessage().contains("task 1"));
+        }
+
+        assertFalse(state.getInputTaskState(0).getException().isPresent());
+        assertTrue(state.getInputTaskState(1).isFinished());
+        assertTrue(state.getOutputTaskState(1).isFinished());
+        assertTrue(state.getInputTaskState(1).getException().get() instanceof IOException);
+        assertFalse(state.getOutputTaskState(1).isCommitted());
+
+        // The task not given to the dead worker is left for other workers.
+        assertEquals(Arrays.asList(2), Arrays.asList(pending.toArray()));
+        assertFalse(state.getInputTaskState(2).isStarted());
+    }
+
+    @Test
+    public void testWorkerReady() throws IOException {
+        LocalProcessExecutorPlugin.awaitWorkerReady(reader("{\"event\":\"ready\"}"), 0, modelManager());
+    }
+
+    @Test
+    public void testWorkerCannotLoadPlugins() throws IOException {
+        try {
+            LocalProcessExecutorPlugin.awaitWorkerReady(reader(
+                    "{\"event\":\"unavailable\",\"error\":\"org.embulk.config.ConfigException: InputPlugin 'stub' is not found.\"}"),
+                    1, modelManager());
+            fail();
+        } catch (final ConfigException ex) {
+            assertTrue(ex.getMessage().contains("Worker process 1"));
+            assertTrue(ex.getMessage().contains("InputPlugin 'stub' is not found."));
+        }
+    }
+
+    @Test
+    public void testWorkerExitedBeforeReady() {
+        try {
+            LocalProcessExecutorPlugin.awaitWorkerReady(new BufferedReader(new StringReader("")), 2, modelManager());
+            fail();
+        } catch (final IOException ex) {
+            assertTrue(ex.getMessage().contains("Worker process 2"));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1304
+    public void testBuiltinPluginsAreRejected() throws Exception {
+        final ExecSessionInternal exec = ExecSessionInternal
+                .builderInternal(PooledBufferAllocator.create(), new SimpleTempFileSpaceAllocator())
+                .setModelManager(new ModelManager())
+                .registerInputPlugin("stub", TestLocalExecutorPlugin.StubInputPlugin.class)
+                .build();
+        try {
+            ExecInternal.doWith(exec, () -> {
+                final Schema schema = Schema.builder().add("c0", Types.LONG).build();
+                final ProcessTask task = new ProcessTask(
+                        DefaultPluginType.create("stub"),
+                        DefaultPluginType.create("stdout"),
+                        Collections.emptyList(),
+                        Exec.newTaskSource(),
+                        Exec.newTaskSource(),
+                        Collections.emptyList(),
+                        Collections.singletonList(schema),
+                        schema,
+                        Exec.newTaskSource());
+                try {
+                    LocalProcessExecutorPlugin.checkPluginsNotBuiltin(exec, task);
+                    fail();
+                } catch (final ConfigException ex) {
+                    assertTrue(ex.getMessage().contains("input 'stub'"));
+                    assertFalse(ex.getMessage().contains("output"));
+                }
+                return null;
+            });
+        } finally {
+            exec.cleanup();
+        }
+    }
+
+    private static void runTasks(final StringWriter writer, final ProcessState state, final int firstTask, final int lastTask,
+            final String... events) throws IOException {
+        final Queue<Integer> pending = new ConcurrentLinkedQueue<>();
+        for (int i = firstTask; i <= lastTask; i++) {
+            pending.add(i);
+        }
+        LocalProcessExecutorPlugin.runTasks(writer, reader(events), pending, state, modelManager());
+        assertTrue(pending.isEmpty());
+    }
+
+    private static BufferedReader reader(final String... lines) {
+        return new BufferedReader(new StringReader(String.join("\n", lines) + "\n"));
+    }
+
+    @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/1304
+    private static ModelManager modelManager() {
+        return ExecInternal.getModelManager();
+    }
+
+    private static String serialize(final Throwable ex) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(ex);
+        }
+        return Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    private static class SimpleProcessState implements ProcessState {
+        SimpleProcessState(final int taskCount) {
+            this.initialize(taskCount, taskCount);
+        }
+
+        @Override
+        public void initialize(final int inputTaskCount, final int outputTaskCount) {
+            this.inputTaskStates = new TaskState[inputTaskCount];
+            this.outputTaskStates = new TaskState[outputTaskCount];
+            for (int i = 0; i < inputTaskCount; i++) {
+                this.inputTaskStates[i] = new TaskState();
+            }
+            for (int i = 0; i < outputTaskCount; i++) {
+                this.outputTaskStates[i] = new TaskState();
+            }
+        }
+
+        @Override
+        public TaskState getInputTaskState(final int inputTaskIndex) {
+            return this.inputTaskStates[inputTaskIndex];
+        }
+
+        @Override
+        public TaskState getOutputTaskState(final int outputTaskIndex) {
+            return this.outputTaskStates[outputTaskIndex];
+        }
+
+        private TaskState[] inputTaskStates;
+        private TaskState[] outputTaskStates;
+    }
+}
@@ -0,0 +1,59 @@
+package org.embulk.exec;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageImpl;
+import org.junit.Test;
+
+public class TestSpscPageQueue {
+    @Test
+    public void testTransferInOrder() throws Exception {
+        final SpscPageQueue queue = new SpscPageQueue(3);
+        final List<Page> pages = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            pages.add(PageImpl.allocate(0));
+        }
+
+        final Thread producer = new Thread(() -> {
+            try {
+                for (final Page page : pages) {
+                    assertTrue(queue.put(page));
+                }
+            } catch (final InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        producer.start();
+        for (final Page page : pages) {
+            assertSame(page, queue.take());
+        }
+        producer.join();
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testPutFailsAfterClosed() throws Exception {
+        final SpscPageQueue queue = new SpscPageQueue(1);
+        assertTrue(queue.put(PageImpl.allocate(0)));
+
+        final boolean[] put = new boolean[] { true };
+        final Thread producer = new Thread(() -> {
+            try {
+                put[0] = queue.put(PageImpl.allocate(0));
+            } catch (final InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        producer.start();
+        Thread.sleep(50);
+        queue.close();
+        producer.join();
+        assertFalse(put[0]);
+    }
+}
@@ -0,0 +1,220 @@
+package org.embulk.spi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.embulk.spi.util.FileInputInputStream;
+import org.embulk.spi.util.FileOutputOutputStream;
+import org.embulk.spi.util.InputStreamFileInput;
+import org.embulk.spi.util.OutputStreamFileOutput;
+import org.junit.Test;
+import sun.misc.Unsafe;
+
+/**
+ * Tests that core's stream adapters and {@link DirectBufferImpl} itself access off-heap {@link Buffer}s without falling
+ * back to {@link Buffer#array()}.
+ */
+@SuppressWarnings("deprecation")  // Testing the deprecated stream adapters.
+public class TestDirectBufferStreams {
+    @Test
+    public void testInputStreamFileInput() throws IOException {
+        final InputStreamFileInput input = new InputStreamFileInput(
+                new DirectAllocator(4), new ByteArrayInputStream("abcdefghij".getBytes(StandardCharsets.US_ASCII)));
+        assertTrue(input.nextFile());
+        final StringBuilder read = new StringBuilder();
+        Buffer buffer;
+        while ((buffer = input.poll()) != null) {
+            final byte[] bytes = new byte[buffer.limit()];
+            buffer.getBytes(0, bytes, 0, bytes.length);
+            read.append(new String(bytes, StandardCharsets.US_ASCII));
+            buffer.release();
+        }
+        assertEquals("abcdefghij", read.toString());
+        input.close();
+    }
+
+    @Test
+    public void testFileInputInputStream() throws IOException {
+        final DirectAllocator allocator = new DirectAllocator(4);
+        final List<Buffer> buffers = new ArrayList<>();
+        for (final String s : Arrays.asList("ab", "cde")) {
+            final Buffer buffer = allocator.allocate();
+            buffer.setBytes(0, s.getBytes(StandardCharsets.US_ASCII), 0, s.length());
+            buffer.limit(s.length());
+            buffers.add(buffer);
+        }
+        final FileInputInputStream stream = new FileInputInputStream(new SingleFileInput(buffers));
+        assertTrue(stream.nextFile());
+        assertEquals('a', stream.read());
+        final byte[] rest = new byte[4];
+        assertEquals(1, stream.read(rest, 0, 4));
+        assertEquals('b', rest[0]);
+        assertEquals('c', stream.read());
+        assertEquals('d', stream.read());
+        assertEquals('e', stream.read());
+        assertEquals(-1, stream.read());
+        stream.close();
+    }
+
+    @Test
+    public void testFileOutputStreams() throws IOException {
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        final OutputStreamFileOutput fileOutput = new OutputStreamFileOutput(new OutputStreamFileOutput.Provider() {
+                @Override
+                public OutputStream openNext() {
+                    return written;
+                }
+
+                @Override
+                public void finish() {
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+        final FileOutputOutputStream stream = new FileOutputOutputStream(
+                fileOutput, new DirectAllocator(4), FileOutputOutputStream.CloseMode.FLUSH_FINISH_CLOSE);
+        stream.nextFile();
+        stream.write('a');
+        stream.write("bcdef".getBytes(StandardCharsets.US_ASCII), 0, 5);
+        stream.write('g');
+        stream.close();
+        assertArrayEquals("abcdefg".getBytes(StandardCharsets.US_ASCII), written.toByteArray());
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        final DirectAllocator allocator = new DirectAllocator(32);
+        final byte[] content = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+        final Buffer buffer = allocator.allocate();
+        buffer.setBytes(0, content, 0, 13);
+        buffer.limit(13);
+        // The same content at another offset.
+        final Buffer shifted = allocator.allocate();
+        shifted.offset(3);
+        shifted.setBytes(0, content, 0, 13);
+        shifted.limit(13);
+        assertEquals(buffer, shifted);
+        assertEquals(buffer.hashCode(), shifted.hashCode());
+
+        // Differs in the first eight bytes, in the rest, and in the length.
+        shifted.setBytes(2, "X".getBytes(StandardCharsets.US_ASCII), 0, 1);
+        assertNotEqualBuffers(buffer, shifted);
+        shifted.setBytes(2, content, 2, 1);
+        shifted.setBytes(11, "X".getBytes(StandardCharsets.US_ASCII), 0, 1);
+        assertNotEqualBuffers(buffer, shifted);
+        shifted.setBytes(11, content, 11, 1);
+        assertEquals(buffer, shifted);
+        shifted.limit(12);
+        assertNotEqualBuffers(buffer, shifted);
+
+        buffer.release();
+        shifted.release();
+    }
+
+    private static void assertNotEqualBuffers(final Buffer buffer, final Buffer another) {
+        assertFalse(buffer.equals(another));
+        assertFalse(another.equals(buffer));
+    }
+
+    private static class DirectAllocator implements BufferAllocator {
+        DirectAllocator(final int size) {
+            this.size = size;
+        }
+
+        @Override
+        public Buffer allocate() {
+            return this.allocate(this.size);
+        }
+
+        @Override
+        public Buffer allocate(final int minimumCapacity) {
+            return new NoArrayDirectBuffer(minimumCapacity);
+        }
+
+        private final int size;
+    }
+
+    private static class NoArrayDirectBuffer extends DirectBufferImpl {
+        NoArrayDirectBuffer(final int capacity) {
+            this(UNSAFE.allocateMemory(capacity), capacity);
+        }
+
+        private NoArrayDirectBuffer(final long address, final int capacity) {
+            super(address, capacity);
+            this.address = address;
+        }
+
+        @Override
+        public byte[] array() {
+            throw new AssertionError("Buffer#array() is called for an off-heap Buffer.");
+        }
+
+        @Override
+        public void release() {
+            if (this.address != 0) {
+                this.detachMemory();
+                UNSAFE.freeMemory(this.address);
+                this.address = 0;
+            }
+        }
+
+        private long address;
+    }
+
+    private static class SingleFileInput implements FileInput {
+        SingleFileInput(final List<Buffer> buffers) {
+            this.buffers = buffers.iterator();
+            this.opened = false;
+        }
+
+        @Override
+        public boolean nextFile() {
+            if (this.opened) {
+                return false;
+            }
+            this.opened = true;
+            return true;
+        }
+
+        @Override
+        public Buffer poll() {
+            return this.buffers.hasNext() ? this.buffers.next() : null;
+        }
+
+        @Override
+        public void close() {
+            while (this.buffers.hasNext()) {
+                this.buffers.next().release();
+            }
+        }
+
+        private final Iterator<Buffer> buffers;
+        private boolean opened;
+    }
+
+    private static final Unsafe UNSAFE;
+
+    static {
+        try {
+            final Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            UNSAFE = (Unsafe) field.get(null);
+        } catch (final ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+}
@@ -9,13 +9,17 @@ import static org.embulk.spi.type.Types.TIMESTAMP;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.msgpack.value.ValueFactory.newBoolean;
 import static org.msgpack.value.ValueFactory.newInteger;
 import static org.msgpack.value.ValueFactory.newMap;
 import static org.msgpack.value.ValueFactory.newString;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.List;
+import org.embulk.exec.Slice;
 import org.embulk.test.EmbulkTestRuntime;
 import org.embulk.test.TestPageBuilderReader;
 import org.junit.After;
@@ -32,6 +36,8 @@ public class TestPageBuilderReaderImpl {
     private BufferAllocator bufferAllocator;
     private PageReader reader;
     private PageBuilder builder;
+    private boolean columnar;
+    private boolean strict;
 
     @Before
     public void setup() {
@@ -89,12 +95,229 @@ public class TestPageBuilderReaderImpl {
                 "test1", "test1");
     }
 
+    @Test
+    public void testNonAsciiStrings() {
+        for (final boolean columnar : new boolean[] { false, true }) {
+            this.columnar = columnar;
+            check(Schema.builder().add("col1", STRING).add("col2", STRING).build(),
+                    "\u3042\u3044\u3046", "",
+                    "\ud83d\ude00", null,
+                    "caf\u00e9", "test1");
+            this.reader.close();
+            this.reader = null;
+        }
+    }
+
+    @Test
+    public void testUnpairedSurrogates() {
+        // Encoded just as String#getBytes(UTF_8).
+        this.reader = new PageReader(Schema.builder().add("col1", STRING).build());
+        reader.setPage(buildPage(Schema.builder().add("col1", STRING).build(), "a\ud800b"));
+        assertTrue(reader.nextRecord());
+        assertEquals("a?b", reader.getString(0));
+    }
+
+    @Test
+    public void testStringUtf8() {
+        final Schema schema = Schema.builder().add("col1", STRING).build();
+        for (final boolean columnar : new boolean[] { false, true }) {
+            this.columnar = columnar;
+            this.reader = new PageReader(schema);
+            reader.setPage(buildPage(schema, "\u3042bc", "abc", null));
+
+            assertTrue(reader.nextRecord());
+            final byte[] bytes = new byte[8];
+            assertEquals(5, reader.getStringUtf8Length(0));
+            assertEquals(5, reader.getStringUtf8(0, bytes, 1));
+            assertEquals("\u3042bc", new String(bytes, 1, 5, StandardCharsets.UTF_8));
+            assertEquals("\u3042bc", reader.getStringCharSequence(0).toString());
+
+            assertTrue(reader.nextRecord());
+            final CharSequence ascii = reader.getStringCharSequence(0);
+            assertEquals(3, ascii.length());
+            assertEquals('b', ascii.charAt(1));
+            assertEquals("bc", ascii.subSequence(1, 3).toString());
+            assertEquals("abc", ascii.toString());
+
+            assertTrue(reader.nextRecord());
+            assertEquals(-1, reader.getStringUtf8Length(0));
+            assertEquals(-1, reader.getStringUtf8(0, bytes, 0));
+            assertEquals(null, reader.getStringCharSequence(0));
+            reader.close();
+            this.reader = null;
+        }
+    }
+
+    @Test
+    public void testStringLargerThanPage() {
+        final StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            large.append((char) ('a' + i % 26));
+        }
+        this.bufferAllocator = new BufferAllocator() {
+            @Override
+            public Buffer allocate() {
+                return BufferImpl.allocate(1024);
+            }
+
+            @Override
+            public Buffer allocate(int minimumCapacity) {
+                return BufferImpl.allocate(Math.max(1024, minimumCapacity));
+            }
+        };
+        final Schema schema = Schema.builder().add("col1", LONG).add("col2", STRING).build();
+        for (final boolean columnar : new boolean[] { false, true }) {
+            this.columnar = columnar;
+            final List<Page> pages = buildPages(schema, 0L, "small", 1L, large.toString(), 2L, "small");
+            assertEquals(3, pages.size());
+            checkPage(schema, pages.get(1), 1L, large.toString());
+            this.reader.close();
+            this.reader = null;
+        }
+    }
+
+    @Test
+    public void testDictionaryEncodedStrings() {
+        final Schema schema = Schema.builder().add("col1", STRING).add("col2", STRING).add("col3", LONG).build();
+        final Object[] objects = new Object[3 * 200];
+        for (int i = 0; i < 200; i++) {
+            objects[i * 3] = "status" + (i % 3);
+            objects[i * 3 + 1] = "unique" + i;
+            objects[i * 3 + 2] = (long) i;
+        }
+        for (final boolean columnar : new boolean[] { false, true }) {
+            this.columnar = columnar;
+            this.reader = new PageReader(schema);
+            reader.setPage(buildPage(schema, objects));
+            assertTrue(reader.isDictionaryEncoded(0));
+            assertFalse(reader.isDictionaryEncoded(1));  // gave up as most values are distinct
+            assertFalse(reader.isDictionaryEncoded(2));
+
+            final int[] ids = new int[3];
+            for (int i = 0; i < 200; i++) {
+                assertTrue(reader.nextRecord());
+                assertEquals("status" + (i % 3), reader.getString(0));
+                assertEquals("unique" + i, reader.getString(1));
+                if (i < 3) {
+                    ids[i] = reader.getStringDictionaryId(0);
+                } else {
+                    assertEquals(ids[i % 3], reader.getStringDictionaryId(0));
+                }
+            }
+            assertTrue(ids[0] != ids[1] && ids[1] != ids[2] && ids[2] != ids[0]);
+            reader.close();
+            this.reader = null;
+        }
+    }
+
+    @Test
+    public void testDictionaryEncodedSameStringsInRecord() {
+        final Schema schema = Schema.builder().add("col1", STRING).add("col2", STRING).build();
+        final Object[] objects = new Object[2 * 200];
+        for (int i = 0; i < 200; i++) {
+            objects[i * 2] = "value" + (i % 4);
+            objects[i * 2 + 1] = "value" + (i % 4);
+        }
+        for (final boolean strict : new boolean[] { false, true }) {
+            for (final boolean columnar : new boolean[] { false, true }) {
+                this.strict = strict;
+                this.columnar = columnar;
+                this.reader = new PageReader(schema);
+                reader.setPage(buildPage(schema, objects));
+                assertTrue(reader.isDictionaryEncoded(0));
+                assertTrue(reader.isDictionaryEncoded(1));
+
+                final int[] ids = new int[4];
+                for (int i = 0; i < 200; i++) {
+                    assertTrue(reader.nextRecord());
+                    assertEquals("value" + (i % 4), reader.getString(0));
+                    assertEquals("value" + (i % 4), reader.getString(1));
+                    assertEquals(reader.getStringDictionaryId(0), reader.getStringDictionaryId(1));
+                    if (i < 4) {
+                        ids[i] = reader.getStringDictionaryId(0);
+                    } else {
+                        assertEquals(ids[i % 4], reader.getStringDictionaryId(0));
+                    }
+                }
+                reader.close();
+                this.reader = null;
+            }
+        }
+    }
+
+    @Test
+    public void testStringReferences() {
+        // Pages built with Page#setStringReferences, such as by older versions, are still readable.
+        final Schema schema = Schema.builder().add("col1", STRING).build();
+        this.reader = new PageReader(schema);
+        reader.setPage(buildStringReferencesPage(schema));
+        assertTrue(reader.nextRecord());
+        assertEquals("referenced", reader.getString(0));
+        assertEquals(10, reader.getStringUtf8Length(0));
+        assertEquals("referenced", reader.getStringCharSequence(0));
+        assertEquals(1, reader.getStringDictionaryId(0));
+        assertFalse(reader.isDictionaryEncoded(0));
+    }
+
     @Test
     public void testTimestamp() {
         check(Schema.builder().add("col1", TIMESTAMP).build(),
                 Instant.ofEpochMilli(0), Instant.ofEpochMilli(10));
     }
 
+    @Test
+    public void testTimestampEpochSecondAndNano() {
+        final Schema schema = Schema.builder().add("col1", TIMESTAMP).add("col2", TIMESTAMP).build();
+        for (final boolean strict : new boolean[] { false, true }) {
+            for (final boolean columnar : new boolean[] { false, true }) {
+                final TestPageBuilderReader.MockPageOutput output = new TestPageBuilderReader.MockPageOutput();
+                this.builder = new PageBuilderImpl(bufferAllocator, schema, output, columnar, strict);
+                builder.setTimestamp(0, -2L, 500_000_000);
+                builder.setTimestamp(1, Instant.ofEpochSecond(1_600_000_000L, 123));
+                builder.addRecord();
+                builder.setTimestamp(0, Instant.MAX.getEpochSecond(), 999_999_999);
+                builder.setNull(1);
+                builder.addRecord();
+                builder.finish();
+                builder.close();
+                this.builder = null;
+
+                this.reader = new PageReader(schema);
+                reader.setPage(output.pages.get(0));
+                assertTrue(reader.nextRecord());
+                assertEquals(-2L, reader.getTimestampEpochSecond(0));
+                assertEquals(500_000_000, reader.getTimestampNano(0));
+                assertEquals(Instant.ofEpochMilli(-1500), reader.getTimestampInstant(0));
+                assertEquals(1_600_000_000L, reader.getTimestampEpochSecond(1));
+                assertEquals(123, reader.getTimestampNano(1));
+                assertTrue(reader.nextRecord());
+                assertEquals(Instant.MAX, reader.getTimestampInstant(0));
+                assertTrue(reader.isNull(1));
+                try {
+                    reader.getTimestampEpochSecond(1);
+                    fail();
+                } catch (final NullPointerException ex) {
+                    // Expected.
+                }
+                try {
+                    reader.getTimestampNano(1);
+                    fail();
+                } catch (final NullPointerException ex) {
+                    // Expected.
+                }
+                reader.close();
+                this.reader = null;
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTimestampNanoOutOfRange() {
+        this.builder = new PageBuilder(
+                bufferAllocator, Schema.builder().add("col1", TIMESTAMP).build(), new TestPageBuilderReader.MockPageOutput());
+        builder.setTimestamp(0, 0L, 1_000_000_000);
+    }
+
     @Test
     public void testJson() {
         check(Schema.builder().add("col1", JSON).build(), getJsonSampleData());
@@ -128,6 +351,441 @@ public class TestPageBuilderReaderImpl {
                 140.15, "val2", Long.MAX_VALUE, true, Instant.ofEpochMilli(10), getJsonSampleData());
     }
 
+    @Test
+    public void testColumnarMixedTypes() {
+        this.columnar = true;
+        check(Schema.builder()
+                    .add("col3", DOUBLE)
+                    .add("col1", STRING)
+                    .add("col3", LONG)
+                    .add("col3", BOOLEAN)
+                    .add("col2", TIMESTAMP)
+                    .add("col4", JSON)
+                    .build(),
+                8122.0, "val1", 3L, false, Instant.ofEpochMilli(0), getJsonSampleData(),
+                null, null, null, null, null, null,
+                140.15, "val2", Long.MAX_VALUE, true, Instant.ofEpochMilli(10), getJsonSampleData());
+    }
+
+    @Test
+    public void testReadColumns() {
+        final Schema schema = Schema.builder().add("col1", LONG).add("col2", DOUBLE).add("col3", BOOLEAN).build();
+        final Object[] objects = {
+            1L, 0.5, true,
+            null, null, null,
+            Long.MIN_VALUE, 2.5, false,
+        };
+        for (final boolean columnar : new boolean[] { false, true }) {
+            this.columnar = columnar;
+            this.reader = new PageReader(schema);
+            reader.setPage(buildPage(schema, objects));
+
+            final long[] longs = new long[3];
+            final double[] doubles = new double[3];
+            final boolean[] booleans = new boolean[3];
+            final boolean[] nulls = new boolean[3];
+            assertEquals(3, reader.readLongColumn(0, longs));
+            assertEquals(3, reader.readDoubleColumn(1, doubles));
+            assertEquals(3, reader.readBooleanColumn(2, booleans));
+            assertEquals(3, reader.readNullColumn(0, nulls));
+            assertEquals(1L, longs[0]);
+            assertEquals(Long.MIN_VALUE, longs[2]);
+            assertEquals(0.5, doubles[0], 0.0);
+            assertEquals(2.5, doubles[2], 0.0);
+            assertTrue(booleans[0]);
+            assertFalse(booleans[2]);
+            assertFalse(nulls[0]);
+            assertTrue(nulls[1]);
+            assertFalse(nulls[2]);
+
+            // Bulk reads do not move the current record.
+            assertTrue(reader.nextRecord());
+            assertEquals(1L, reader.getLong(0));
+            reader.close();
+            this.reader = null;
+        }
+    }
+
+    @Test
+    public void testReadColumnsOfWrongType() {
+        final Schema schema = Schema.builder().add("col1", LONG).add("col2", DOUBLE).add("col3", TIMESTAMP).build();
+        for (final boolean columnar : new boolean[] { false, true }) {
+            this.columnar = columnar;
+            this.reader = new PageReader(schema);
+            reader.setPage(buildPage(schema, 1L, 0.5, Instant.ofEpochSecond(1)));
+
+            try {
+                reader.readLongColumn(1, new long[1]);
+                fail();
+            } catch (final ClassCastException ex) {
+                // Expected.
+            }
+            try {
+                reader.readLongColumn(2, new long[1]);
+                fail();
+            } catch (final ClassCastException ex) {
+                // Expected.
+            }
+            try {
+                reader.readDoubleColumn(0, new double[1]);
+                fail();
+            } catch (final ClassCastException ex) {
+                // Expected.
+            }
+            try {
+                reader.readBooleanColumn(0, new boolean[1]);
+                fail();
+            } catch (final ClassCastException ex) {
+                // Expected.
+            }
+            reader.close();
+            this.reader = null;
+        }
+    }
+
+    @Test
+    public void testColumnarRenewPage() {
+        this.columnar = true;
+        this.bufferAllocator = new BufferAllocator() {
+            @Override
+            public Buffer allocate() {
+                return BufferImpl.allocate(1);
+            }
+
+            @Override
+            public Buffer allocate(int minimumCapacity) {
+                return BufferImpl.allocate(minimumCapacity);
+            }
+        };
+        assertEquals(
+                3,
+                buildPages(Schema.builder().add("col1", LONG).add("col2", STRING).build(),
+                        0L, "record0", 1L, "record1", 2L, "record2").size());
+    }
+
+    @Test
+    public void testAdaptivePageSize() {
+        this.bufferAllocator = new BufferAllocator() {
+            @Override
+            public Buffer allocate() {
+                return BufferImpl.allocate(1024);
+            }
+
+            @Override
+            public Buffer allocate(int minimumCapacity) {
+                return BufferImpl.allocate(Math.max(1024, minimumCapacity));
+            }
+        };
+        final Schema schema = Schema.builder().add("col1", LONG).add("col2", STRING).build();
+        final char[] chars = new char[400];
+        Arrays.fill(chars, 'a');
+        final String wide = new String(chars);
+
+        for (final boolean columnar : new boolean[] { false, true }) {
+            for (final boolean adaptive : new boolean[] { false, true }) {
+                final TestPageBuilderReader.MockPageOutput output = new TestPageBuilderReader.MockPageOutput();
+                this.builder = new PageBuilderImpl(bufferAllocator, schema, output, columnar, false, adaptive);
+                for (long i = 0; i < 256; i++) {
+                    builder.setLong(0, i);
+                    builder.setString(1, wide + i);  // not to be dictionary-encoded
+                    builder.addRecord();
+                }
+                builder.finish();
+                builder.close();
+                this.builder = null;
+
+                if (adaptive) {
+                    // Pages grow to hold 64 records after the first page.
+                    assertTrue(output.pages.size() <= 10);
+                    assertTrue(output.pages.get(output.pages.size() - 1).buffer().capacity() >= 64 * wide.length());
+                } else {
+                    assertTrue(output.pages.size() >= 100);
+                }
+
+                long expected = 0;
+                this.reader = new PageReader(schema);
+                for (final Page page : output.pages) {
+                    reader.setPage(page);
+                    while (reader.nextRecord()) {
+                        assertEquals(expected, reader.getLong(0));
+                        assertEquals(wide + expected, reader.getString(1));
+                        expected++;
+                    }
+                }
+                assertEquals(256, expected);
+                reader.close();
+                this.reader = null;
+            }
+        }
+    }
+
+    @Test
+    public void testStrictMixedTypes() {
+        this.strict = true;
+        for (final boolean columnar : new boolean[] { false, true }) {
+            this.columnar = columnar;
+            check(Schema.builder()
+                        .add("col3", DOUBLE)
+                        .add("col1", STRING)
+                        .add("col3", LONG)
+                        .add("col3", BOOLEAN)
+                        .add("col2", TIMESTAMP)
+                        .add("col4", JSON)
+                        .build(),
+                    8122.0, "val1", 3L, false, Instant.ofEpochMilli(0), getJsonSampleData(),
+                    null, null, null, null, null, null,
+                    140.15, "val2", Long.MAX_VALUE, true, Instant.ofEpochMilli(10), getJsonSampleData());
+            this.reader.close();
+            this.reader = null;
+        }
+    }
+
+    @Test
+    public void testStrictRenewPage() {
+        this.strict = true;
+        this.bufferAllocator = new BufferAllocator() {
+            @Override
+            public Buffer allocate() {
+                return BufferImpl.allocate(1);
+            }
+
+            @Override
+            public Buffer allocate(int minimumCapacity) {
+                return BufferImpl.allocate(minimumCapacity);
+            }
+        };
+        final Schema schema = Schema.builder().add("col1", LONG).add("col2", STRING).build();
+        for (final boolean columnar : new boolean[] { false, true }) {
+            this.columnar = columnar;
+            final List<Page> pages = buildPages(schema, 0L, "record0", null, "record1", 2L, null);
+            assertEquals(3, pages.size());
+            checkPage(schema, pages.get(0), 0L, "record0");
+            checkPage(schema, pages.get(1), null, "record1");
+            checkPage(schema, pages.get(2), 2L, null);
+            this.reader.close();
+            this.reader = null;
+        }
+    }
+
+    @Test
+    public void testStrictUnsetColumnsAreNull() {
+        final TestPageBuilderReader.MockPageOutput output = new TestPageBuilderReader.MockPageOutput();
+        final Schema schema = Schema.builder().add("col0", LONG).add("col1", STRING).build();
+        for (final boolean columnar : new boolean[] { false, true }) {
+            this.builder = new PageBuilderImpl(bufferAllocator, schema, output, columnar, true);
+            builder.setLong(0, 1L);
+            builder.setString(1, "v1");
+            builder.addRecord();
+            builder.setLong(0, 2L);
+            builder.flush();  // the values set so far stay in the record
+            builder.addRecord();
+            builder.finish();
+            builder.close();
+        }
+
+        assertEquals(4, output.pages.size());
+        checkPage(schema, output.pages.get(0), 1L, "v1");
+        checkPage(schema, output.pages.get(1), 2L, null);
+        checkPage(schema, output.pages.get(2), 1L, "v1");
+        checkPage(schema, output.pages.get(3), 2L, null);
+    }
+
+    @Test
+    public void testStrictDoubleWrite() {
+        final TestPageBuilderReader.MockPageOutput output = new TestPageBuilderReader.MockPageOutput();
+        final Schema schema = Schema.builder().add("col0", STRING).add("col1", LONG).build();
+        this.builder = new PageBuilderImpl(bufferAllocator, schema, output, false, true);
+        builder.setString(0, "v0");
+        try {
+            builder.setNull(0);
+            fail("Setting a value twice to a column in the strict mode must fail.");
+        } catch (final IllegalStateException ex) {
+            // Expected.
+        }
+        try {
+            builder.setString(1, "v1");
+            fail("Setting a STRING value to a LONG column must fail.");
+        } catch (final IllegalStateException ex) {
+            // Expected.
+        }
+        builder.setLong(1, 1L);
+        builder.addRecord();
+
+        // Columns can be set again after addRecord.
+        builder.setString(0, "v2");
+        builder.setLong(1, 2L);
+        builder.addRecord();
+        builder.finish();
+        assertEquals(1, output.pages.size());
+    }
+
+    @Test
+    public void testAddRecordFrom() {
+        final Schema schema = Schema.builder()
+                .add("col1", DOUBLE)
+                .add("col2", STRING)
+                .add("col3", LONG)
+                .add("col4", BOOLEAN)
+                .add("col5", TIMESTAMP)
+                .add("col6", JSON)
+                .build();
+        final Object[] objects = {
+            8122.0, "val1", 3L, false, Instant.ofEpochMilli(0), getJsonSampleData(),
+            null, null, null, null, null, null,
+            140.15, "\u3042", Long.MAX_VALUE, true, Instant.ofEpochMilli(10), getJsonSampleData(),
+        };
+        for (int mode = 0; mode < 8; mode++) {
+            this.columnar = (mode & 1) != 0;
+            final boolean columnarOutput = (mode & 2) != 0;
+            final boolean strictOutput = (mode & 4) != 0;
+            final Page source = buildPage(schema, objects);
+
+            final TestPageBuilderReader.MockPageOutput output = new TestPageBuilderReader.MockPageOutput();
+            this.reader = new PageReader(schema);
+            reader.setPage(source);
+            this.builder = new PageBuilderImpl(bufferAllocator, schema, output, columnarOutput, strictOutput);
+            while (reader.nextRecord()) {
+                builder.addRecordFrom(reader);
+            }
+            builder.finish();
+            builder.close();
+            this.builder = null;
+            reader.close();
+
+            assertEquals(1, output.pages.size());
+            checkPage(schema, output.pages.get(0), objects);
+            this.reader.close();
+            this.reader = null;
+        }
+    }
+
+    @Test
+    public void testSetRecordFromWithOverrides() {
+        final Schema schema = Schema.builder().add("col1", LONG).add("col2", STRING).add("col3", STRING).build();
+        for (final boolean columnar : new boolean[] { false, true }) {
+            this.columnar = columnar;
+            final Page source = buildPage(schema, 1L, "a", "b", 2L, "c", null);
+
+            final TestPageBuilderReader.MockPageOutput output = new TestPageBuilderReader.MockPageOutput();
+            this.reader = new PageReader(schema);
+            reader.setPage(source);
+            this.builder = new PageBuilderImpl(bufferAllocator, schema, output, columnar);
+            while (reader.nextRecord()) {
+                builder.setRecordFrom(reader);
+                builder.setString(1, reader.getString(1) + "!");
+                builder.addRecord();
+            }
+            builder.finish();
+            builder.close();
+            this.builder = null;
+            reader.close();
+
+            checkPage(schema, output.pages.get(0), 1L, "a!", "b", 2L, "c!", null);
+            this.reader.close();
+            this.reader = null;
+        }
+    }
+
+    @Test
+    public void testAddRecordFromStringReferences() {
+        final Schema schema = Schema.builder().add("col1", STRING).build();
+        final TestPageBuilderReader.MockPageOutput output = new TestPageBuilderReader.MockPageOutput();
+        this.reader = new PageReader(schema);
+        reader.setPage(buildStringReferencesPage(schema));
+        this.builder = new PageBuilder(bufferAllocator, schema, output);
+        assertTrue(reader.nextRecord());
+        builder.addRecordFrom(reader);
+        builder.finish();
+        reader.close();
+
+        checkPage(schema, output.pages.get(0), "referenced");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddRecordFromIncompatibleSchema() {
+        final Schema schema = Schema.builder().add("col1", LONG).build();
+        this.reader = new PageReader(schema);
+        reader.setPage(buildPage(schema, 1L));
+        assertTrue(reader.nextRecord());
+        this.builder = new PageBuilder(
+                bufferAllocator, Schema.builder().add("col1", STRING).build(), new TestPageBuilderReader.MockPageOutput());
+        builder.addRecordFrom(reader);
+    }
+
+    @Test
+    public void testProjectedPage() {
+        final Schema schema = Schema.builder()
+                .add("col1", DOUBLE)
+                .add("col2", STRING)
+                .add("col3", LONG)
+                .add("col4", BOOLEAN)
+                .add("col5", TIMESTAMP)
+                .build();
+        final Schema projected = Schema.builder()
+                .add("renamed5", TIMESTAMP)
+                .add("col2", STRING)
+                .add("renamed3", LONG)
+                .build();
+        for (final boolean columnar : new boolean[] { false, true }) {
+            this.columnar = columnar;
+            final Page source = buildPage(schema,
+                    8122.0, "val1", 3L, false, Instant.ofEpochMilli(0),
+                    null, null, null, null, null,
+                    140.15, "\u3042", Long.MAX_VALUE, true, Instant.ofEpochMilli(10));
+            final Page page = ProjectedPage.of(source, schema, new int[] { 4, 1, 2 });
+            checkPage(projected, page,
+                    Instant.ofEpochMilli(0), "val1", 3L,
+                    null, null, null,
+                    Instant.ofEpochMilli(10), "\u3042", Long.MAX_VALUE);
+
+            final long[] longs = new long[3];
+            final boolean[] nulls = new boolean[3];
+            assertEquals(3, reader.readLongColumn(2, longs));
+            assertEquals(3, reader.readNullColumn(1, nulls));
+            assertEquals(Long.MAX_VALUE, longs[2]);
+            assertTrue(nulls[1]);
+            assertFalse(nulls[2]);
+            this.reader.close();
+            this.reader = null;
+        }
+    }
+
+    @Test
+    public void testAddRecordFromProjectedPage() {
+        final Schema schema = Schema.builder().add("col1", LONG).add("col2", STRING).add("col3", DOUBLE).build();
+        final Schema projected = Schema.builder().add("col3", DOUBLE).add("col1", LONG).add("col2", STRING).build();
+        for (final boolean columnar : new boolean[] { false, true }) {
+            this.columnar = columnar;
+            final Page source = buildPage(schema, 1L, "a", 0.5, null, "b", null);
+
+            // A projection of a projected page is made over the original page.
+            final Page page = ProjectedPage.of(ProjectedPage.of(source, schema, new int[] { 1, 2, 0 }), schema, new int[] { 1, 2, 0 });
+            final TestPageBuilderReader.MockPageOutput output = new TestPageBuilderReader.MockPageOutput();
+            this.reader = new PageReader(projected);
+            reader.setPage(page);
+            this.builder = new PageBuilderImpl(bufferAllocator, projected, output, columnar);
+            while (reader.nextRecord()) {
+                builder.addRecordFrom(reader);
+            }
+            builder.finish();
+            builder.close();
+            this.builder = null;
+            reader.close();
+
+            checkPage(projected, output.pages.get(0), 0.5, 1L, "a", null, null, "b");
+            this.reader.close();
+            this.reader = null;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testProjectedPageIncompatibleSchema() {
+        final Schema schema = Schema.builder().add("col1", LONG).add("col2", STRING).build();
+        final Page page = ProjectedPage.of(buildPage(schema, 1L, "a"), schema, new int[] { 1 });
+        this.reader = new PageReader(Schema.builder().add("col1", LONG).build());
+        reader.setPage(page);
+    }
+
     private void check(Schema schema, Object... objects) {
         Page page = buildPage(schema, objects);
         checkPage(schema, page, objects);
@@ -141,7 +799,11 @@ public class TestPageBuilderReaderImpl {
 
     private List<Page> buildPages(Schema schema, final Object... objects) {
         final TestPageBuilderReader.MockPageOutput output = new TestPageBuilderReader.MockPageOutput();
-        this.builder = new PageBuilder(bufferAllocator, schema, output);
+        if (this.columnar || this.strict) {
+            this.builder = new PageBuilderImpl(bufferAllocator, schema, output, this.columnar, this.strict);
+        } else {
+            this.builder = new PageBuilder(bufferAllocator, schema, output);
+        }
         int idx = 0;
         while (idx < objects.length) {
             for (int column = 0; column < builder.getSchema().getColumnCount(); ++column) {
@@ -203,6 +865,18 @@ public class TestPageBuilderReaderImpl {
         }
     }
 
+    private static Page buildStringReferencesPage(final Schema schema) {
+        final int recordSize = PageFormat.recordHeaderSize(schema) + PageFormat.totalColumnSize(schema);
+        final Buffer buffer = BufferImpl.allocate(PageFormat.PAGE_HEADER_SIZE + recordSize);
+        final Slice slice = Slice.wrappedBuffer(buffer);
+        slice.setInt(0, 1);  // record count without flags
+        slice.setInt(PageFormat.PAGE_HEADER_SIZE, recordSize);
+        slice.setByte(PageFormat.PAGE_HEADER_SIZE + 4, 0);  // null bitset
+        slice.setInt(PageFormat.PAGE_HEADER_SIZE + PageFormat.columnOffsets(schema)[0], 1);  // index in the string references
+        buffer.limit(PageFormat.PAGE_HEADER_SIZE + recordSize);
+        return PageImpl.wrap(buffer).setStringReferences(Arrays.asList("unused", "referenced"));
+    }
+
     private ImmutableMapValue getJsonSampleData() {
         return newMap(
                 newString("_c1"), newBoolean(true),
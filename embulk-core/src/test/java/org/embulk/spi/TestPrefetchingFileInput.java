@@ -0,0 +1,157 @@
+package org.embulk.spi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import org.embulk.config.TaskReport;
+import org.junit.Test;
+
+public class TestPrefetchingFileInput {
+    @Test
+    public void testFiles() {
+        final ListTransactionalFileInput underlying = new ListTransactionalFileInput(Arrays.asList(
+                Arrays.asList(buffer(1), buffer(2), buffer(3)), Arrays.asList(), Arrays.asList(buffer(4))), null);
+        final PrefetchingFileInput input = new PrefetchingFileInput(underlying, 2, "test-prefetch");
+
+        final List<Integer> sizes = new ArrayList<>();
+        final List<Optional<String>> names = new ArrayList<>();
+        while (input.nextFile()) {
+            names.add(input.hintOfCurrentInputFileNameForLogging());
+            Buffer buffer;
+            while ((buffer = input.poll()) != null) {
+                sizes.add(buffer.limit());
+                buffer.release();
+            }
+        }
+        assertFalse(input.nextFile());
+        assertEquals(Arrays.asList(1, 2, 3, 4), sizes);
+        assertEquals(Arrays.asList(Optional.of("file0"), Optional.of("file1"), Optional.of("file2")), names);
+
+        input.commit();
+        input.close();
+        assertTrue(underlying.committed);
+        assertTrue(underlying.closed);
+    }
+
+    @Test
+    public void testSkipRestOfFile() {
+        final ListTransactionalFileInput underlying = new ListTransactionalFileInput(Arrays.asList(
+                Arrays.asList(buffer(1), buffer(2), buffer(3)), Arrays.asList(buffer(4))), null);
+        final PrefetchingFileInput input = new PrefetchingFileInput(underlying, 1, "test-prefetch");
+
+        assertTrue(input.nextFile());
+        assertEquals(1, input.poll().limit());
+        assertTrue(input.nextFile());
+        assertEquals(4, input.poll().limit());
+        assertNull(input.poll());
+        assertFalse(input.nextFile());
+        input.close();
+    }
+
+    @Test
+    public void testError() {
+        final RuntimeException error = new RuntimeException("failed");
+        final ListTransactionalFileInput underlying = new ListTransactionalFileInput(Arrays.asList(
+                Arrays.asList(buffer(1))), error);
+        final PrefetchingFileInput input = new PrefetchingFileInput(underlying, 4, "test-prefetch");
+
+        assertTrue(input.nextFile());
+        assertEquals(1, input.poll().limit());
+        try {
+            input.poll();
+            fail();
+        } catch (final RuntimeException ex) {
+            assertSame(error, ex);
+        }
+        input.abort();
+        input.close();
+        assertTrue(underlying.aborted);
+        assertTrue(underlying.closed);
+    }
+
+    @Test
+    public void testCloseWhileReading() {
+        final List<Buffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            buffers.add(buffer(1));
+        }
+        final ListTransactionalFileInput underlying = new ListTransactionalFileInput(Arrays.asList(buffers), null);
+        final PrefetchingFileInput input = new PrefetchingFileInput(underlying, 2, "test-prefetch");
+
+        assertTrue(input.nextFile());
+        input.poll().release();
+        input.close();
+        assertTrue(underlying.closed);
+    }
+
+    private static Buffer buffer(final int size) {
+        return BufferImpl.wrap(new byte[size]);
+    }
+
+    private static class ListTransactionalFileInput implements TransactionalFileInput {
+        ListTransactionalFileInput(final List<List<Buffer>> files, final RuntimeException errorAtEnd) {
+            this.files = files.iterator();
+            this.errorAtEnd = errorAtEnd;
+            this.index = -1;
+        }
+
+        @Override
+        public boolean nextFile() {
+            if (!this.files.hasNext()) {
+                return false;
+            }
+            this.buffers = this.files.next().iterator();
+            this.index++;
+            return true;
+        }
+
+        @Override
+        public Buffer poll() {
+            if (this.buffers.hasNext()) {
+                return this.buffers.next();
+            }
+            if (this.errorAtEnd != null) {
+                throw this.errorAtEnd;
+            }
+            return null;
+        }
+
+        @Override
+        public Optional<String> hintOfCurrentInputFileNameForLogging() {
+            return Optional.of("file" + this.index);
+        }
+
+        @Override
+        public TaskReport commit() {
+            this.committed = true;
+            return null;
+        }
+
+        @Override
+        public void abort() {
+            this.aborted = true;
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+
+        private final Iterator<List<Buffer>> files;
+        private final RuntimeException errorAtEnd;
+        private Iterator<Buffer> buffers;
+        private int index;
+        private volatile boolean committed;
+        private volatile boolean aborted;
+        private volatile boolean closed;
+    }
+}
@@ -0,0 +1,118 @@
+package org.embulk.spi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import org.embulk.exec.Slice;
+import org.junit.Test;
+
+public class TestTaskProgress {
+    @Test
+    public void testCountPages() {
+        final TaskProgress progress = new TaskProgress(3);
+        final List<Page> received = new ArrayList<>();
+        final PageOutput output = progress.countOutput(new ListPageOutput(received));
+        final PageOutput input = progress.countInput(output);
+
+        input.add(newPage(10));
+        input.add(newPage(5));
+        input.finish();
+        input.close();
+
+        assertEquals(2, received.size());
+        assertEquals(15, progress.getInputRecords());
+        assertEquals(2, progress.getInputPages());
+        assertEquals(15, progress.getOutputRecords());
+        assertEquals(2, progress.getOutputPages());
+        assertTrue(progress.describe().startsWith("task 3: in 15 records / 2 pages / 0 bytes, out 15 records / 2 pages"));
+    }
+
+    @Test
+    public void testDescribeSpeculativeAttempt() {
+        assertTrue(new TaskProgress(3, 0).describe().startsWith("task 3: in 0 records"));
+        assertTrue(new TaskProgress(3, 1).describe().startsWith("task 3 (attempt 1): in 0 records"));
+    }
+
+    @Test
+    public void testCountFileInput() {
+        final TaskProgress progress = new TaskProgress(0);
+        final FileInput input = progress.countFileInput(new ListFileInput(Arrays.asList(
+                BufferImpl.wrap(new byte[100]), BufferImpl.wrap(new byte[50]))));
+
+        assertFalse(progress.estimateRemainingSeconds().isPresent());
+        assertTrue(input.nextFile());
+        int buffers = 0;
+        while (input.poll() != null) {
+            buffers++;
+        }
+        assertEquals(2, buffers);
+        assertEquals(150, progress.getInputBytes());
+
+        assertFalse(progress.estimateRemainingSeconds().isPresent());
+        progress.setTotalInputBytes(300);
+        assertTrue(progress.estimateRemainingSeconds().isPresent());
+        progress.setTotalInputBytes(150);
+        assertEquals(Optional.of(0L), progress.estimateRemainingSeconds());
+    }
+
+    private static Page newPage(final int records) {
+        final Page page = PageImpl.allocate(16);
+        Slice.wrappedBuffer(page.buffer()).setInt(0, records);
+        return page;
+    }
+
+    private static class ListPageOutput implements PageOutput {
+        ListPageOutput(final List<Page> pages) {
+            this.pages = pages;
+        }
+
+        @Override
+        public void add(final Page page) {
+            this.pages.add(page);
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private final List<Page> pages;
+    }
+
+    private static class ListFileInput implements FileInput {
+        ListFileInput(final List<Buffer> buffers) {
+            this.buffers = buffers.iterator();
+            this.opened = false;
+        }
+
+        @Override
+        public boolean nextFile() {
+            if (this.opened) {
+                return false;
+            }
+            this.opened = true;
+            return true;
+        }
+
+        @Override
+        public Buffer poll() {
+            return this.buffers.hasNext() ? this.buffers.next() : null;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private final Iterator<Buffer> buffers;
+        private boolean opened;
+    }
+}
@@ -0,0 +1,145 @@
+package org.embulk.spi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.embulk.config.TaskReport;
+import org.junit.Test;
+
+public class TestWriteBehindFileOutput {
+    @Test
+    public void testOrder() {
+        final RecordingTransactionalFileOutput underlying = new RecordingTransactionalFileOutput(-1);
+        final WriteBehindFileOutput output = new WriteBehindFileOutput(underlying, 2, "test-write-behind");
+
+        output.nextFile();
+        output.add(buffer(1));
+        output.add(buffer(2));
+        output.nextFile();
+        output.add(buffer(3));
+        output.finish();
+        output.commit();
+        output.close();
+
+        assertEquals(Arrays.asList("nextFile", "add 1", "add 2", "nextFile", "add 3", "finish", "commit", "close"),
+                     underlying.calls);
+    }
+
+    @Test
+    public void testCommitWaitsForQueuedBuffers() {
+        final RecordingTransactionalFileOutput underlying = new RecordingTransactionalFileOutput(-1);
+        final WriteBehindFileOutput output = new WriteBehindFileOutput(underlying, 4, "test-write-behind");
+
+        output.nextFile();
+        for (int i = 1; i <= 10; i++) {
+            output.add(buffer(i));
+        }
+        output.commit();
+        assertEquals(12, underlying.calls.size());
+        assertEquals("commit", underlying.calls.get(11));
+        output.close();
+    }
+
+    @Test
+    public void testError() {
+        final RecordingTransactionalFileOutput underlying = new RecordingTransactionalFileOutput(2);
+        final WriteBehindFileOutput output = new WriteBehindFileOutput(underlying, 1, "test-write-behind");
+
+        output.nextFile();
+        output.add(buffer(1));
+        output.add(buffer(2));
+        try {
+            output.finish();
+            fail();
+        } catch (final RuntimeException ex) {
+            assertSame(underlying.error, ex);
+        }
+        try {
+            output.add(buffer(3));
+            fail();
+        } catch (final RuntimeException ex) {
+            assertSame(underlying.error, ex);
+        }
+        try {
+            output.commit();
+            fail();
+        } catch (final RuntimeException ex) {
+            assertSame(underlying.error, ex);
+        }
+        output.abort();
+        output.close();
+
+        assertEquals(Arrays.asList("nextFile", "add 1", "abort", "close"), underlying.calls);
+    }
+
+    @Test
+    public void testCloseWithoutFinish() {
+        final RecordingTransactionalFileOutput underlying = new RecordingTransactionalFileOutput(-1);
+        final WriteBehindFileOutput output = new WriteBehindFileOutput(underlying, 100, "test-write-behind");
+
+        output.nextFile();
+        for (int i = 1; i <= 50; i++) {
+            output.add(buffer(i));
+        }
+        output.close();
+        assertEquals("close", underlying.calls.get(underlying.calls.size() - 1));
+        assertFalse(underlying.calls.contains("finish"));
+    }
+
+    private static Buffer buffer(final int size) {
+        return BufferImpl.wrap(new byte[size]);
+    }
+
+    private static class RecordingTransactionalFileOutput implements TransactionalFileOutput {
+        RecordingTransactionalFileOutput(final int failingSize) {
+            this.failingSize = failingSize;
+            this.error = new RuntimeException("failed");
+        }
+
+        @Override
+        public void nextFile() {
+            this.calls.add("nextFile");
+        }
+
+        @Override
+        public void add(final Buffer buffer) {
+            final int size = buffer.limit();
+            buffer.release();
+            if (size == this.failingSize) {
+                throw this.error;
+            }
+            this.calls.add("add " + size);
+        }
+
+        @Override
+        public void finish() {
+            this.calls.add("finish");
+        }
+
+        @Override
+        public void close() {
+            this.calls.add("close");
+        }
+
+        @Override
+        public void abort() {
+            this.calls.add("abort");
+        }
+
+        @Override
+        public TaskReport commit() {
+            this.calls.add("commit");
+            return null;
+        }
+
+        private final int failingSize;
+        private final RuntimeException error;
+        private final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+    }
+}
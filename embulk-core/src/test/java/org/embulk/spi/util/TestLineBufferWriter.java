@@ -0,0 +1,145 @@
+package org.embulk.spi.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.BufferImpl;
+import org.embulk.spi.FileOutput;
+import org.junit.Test;
+
+public class TestLineBufferWriter {
+    @Test
+    public void testUtf8() {
+        final String text = "abc\n日本語(Japanese)\n😀\né\n";
+        final RecordingFileOutput output = new RecordingFileOutput();
+        try (LineBufferWriter writer = new LineBufferWriter(output, new SmallBufferAllocator(7), StandardCharsets.UTF_8, "\n")) {
+            writer.nextFile();
+            for (final String line : text.split("\n")) {
+                writer.addLine(line);
+            }
+        }
+        assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), output.getBytes());
+        assertTrue(output.getBufferCount() > 1);
+        assertTrue(output.isFinished());
+        assertTrue(output.isClosed());
+    }
+
+    @Test
+    public void testUnpairedSurrogate() {
+        final RecordingFileOutput output = new RecordingFileOutput();
+        try (LineBufferWriter writer = new LineBufferWriter(output, new SmallBufferAllocator(16), StandardCharsets.UTF_8, "\r\n")) {
+            writer.nextFile();
+            writer.addLine(new StringBuilder().append('a').append('\uD83D').append('b'));
+        }
+        assertArrayEquals("a?b\r\n".getBytes(StandardCharsets.UTF_8), output.getBytes());
+    }
+
+    @Test
+    public void testSingleByteCharsets() {
+        assertEncoded(StandardCharsets.US_ASCII, "abcé\n", "abc?\n".getBytes(StandardCharsets.US_ASCII));
+        assertEncoded(StandardCharsets.ISO_8859_1, "abcéあ\n", "abcé?\n".getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void testCharsetEncoder() {
+        final Charset ms932 = Charset.forName("ms932");
+        final String text = "てすと1\nテスト2\n";
+        assertEncoded(ms932, text, text.getBytes(ms932));
+    }
+
+    @Test
+    public void testAddBytes() {
+        final byte[] bytes = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+        final RecordingFileOutput output = new RecordingFileOutput();
+        try (LineBufferWriter writer = new LineBufferWriter(output, new SmallBufferAllocator(8), StandardCharsets.UTF_8, "\n")) {
+            writer.nextFile();
+            writer.addText("x");
+            writer.addBytes(bytes, 2, 15);
+            writer.addNewLine();
+        }
+        assertEquals("x23456789abcdefg\n", new String(output.getBytes(), StandardCharsets.US_ASCII));
+        assertEquals(3, output.getBufferCount());
+    }
+
+    private static void assertEncoded(final Charset charset, final String text, final byte[] expected) {
+        final RecordingFileOutput output = new RecordingFileOutput();
+        try (LineBufferWriter writer = new LineBufferWriter(output, new SmallBufferAllocator(5), charset, "\n")) {
+            writer.nextFile();
+            writer.addText(text);
+            writer.finish();
+        }
+        assertArrayEquals(expected, output.getBytes());
+    }
+
+    private static class SmallBufferAllocator implements BufferAllocator {
+        SmallBufferAllocator(final int size) {
+            this.size = size;
+        }
+
+        @Override
+        public Buffer allocate() {
+            return this.allocate(this.size);
+        }
+
+        @Override
+        public Buffer allocate(final int minimumCapacity) {
+            return BufferImpl.wrap(new byte[minimumCapacity + 2], 1, minimumCapacity);
+        }
+
+        private final int size;
+    }
+
+    private static class RecordingFileOutput implements FileOutput {
+        @Override
+        public void nextFile() {
+        }
+
+        @Override
+        public void add(final Buffer buffer) {
+            final byte[] bytes = new byte[buffer.limit()];
+            buffer.getBytes(0, bytes, 0, bytes.length);
+            this.written.write(bytes, 0, bytes.length);
+            this.buffers.add(buffer);
+            buffer.release();
+        }
+
+        @Override
+        public void finish() {
+            this.finished = true;
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+
+        byte[] getBytes() {
+            return this.written.toByteArray();
+        }
+
+        int getBufferCount() {
+            return this.buffers.size();
+        }
+
+        boolean isFinished() {
+            return this.finished;
+        }
+
+        boolean isClosed() {
+            return this.closed;
+        }
+
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        private final List<Buffer> buffers = new ArrayList<>();
+        private boolean finished;
+        private boolean closed;
+    }
+}
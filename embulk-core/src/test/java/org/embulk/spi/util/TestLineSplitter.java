@@ -0,0 +1,141 @@
+package org.embulk.spi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferImpl;
+import org.junit.Test;
+
+public class TestLineSplitter {
+    @Test
+    public void testSupportedCharsets() {
+        assertTrue(LineSplitter.isSupportedCharset(StandardCharsets.UTF_8));
+        assertTrue(LineSplitter.isSupportedCharset(StandardCharsets.US_ASCII));
+        assertTrue(LineSplitter.isSupportedCharset(Charset.forName("ms932")));
+        assertFalse(LineSplitter.isSupportedCharset(StandardCharsets.UTF_16LE));
+    }
+
+    @Test
+    public void testAnyDelimiter() {
+        assertEquals(Arrays.asList("a", "b", "c", "", "d"),
+                     split(StandardCharsets.UTF_8, null, "a\nb\r\nc\r\rd\n"));
+        assertEquals(Arrays.asList("a", "b"),
+                     split(StandardCharsets.UTF_8, null, "a\r", "\nb\r"));
+        assertEquals(Collections.emptyList(), split(StandardCharsets.UTF_8, null));
+    }
+
+    @Test
+    public void testLineDelimiterRecognized() {
+        assertEquals(Arrays.asList("test1\r\ntest2", "test3\ntest4"),
+                     split(StandardCharsets.UTF_8, LineDelimiter.CR, "test1\r\ntest2\rtest3\ntest4"));
+        assertEquals(Arrays.asList("test1\r\ntest2\rtest3", "test4"),
+                     split(StandardCharsets.UTF_8, LineDelimiter.LF, "test1\r\ntest2\rtest3\ntest4"));
+        assertEquals(Arrays.asList("test1", "test2\rtest3\ntest4"),
+                     split(StandardCharsets.UTF_8, LineDelimiter.CRLF, "test1\r\ntest2\rtest3\ntest4"));
+    }
+
+    @SuppressWarnings("checkstyle:AbbreviationAsWordInName")
+    @Test
+    public void testStraddlingCRLF() {
+        assertEquals(Arrays.asList("t1", "t2", "t3"),
+                     split(StandardCharsets.UTF_8, LineDelimiter.CRLF, "t", "1", "\r\n", "t", "2", "\r", "\n", "t3"));
+        assertEquals(Arrays.asList("t1\r\nt2", "t3"),
+                     split(StandardCharsets.UTF_8, LineDelimiter.CR, "t1\r", "\nt2\r", "t3"));
+    }
+
+    @SuppressWarnings("checkstyle:AbbreviationAsWordInName")
+    @Test
+    public void testStraddlingMultiByteCharacters() {
+        final byte[] bytes = "てすと1\nテスト2".getBytes(StandardCharsets.UTF_8);
+        final List<Buffer> buffers = new ArrayList<>();
+        for (int i = 0; i < bytes.length; i++) {
+            buffers.add(BufferImpl.wrap(bytes, i, 1));
+        }
+        assertEquals(Arrays.asList("てすと1", "テスト2"), split(StandardCharsets.UTF_8, null, buffers));
+
+        assertEquals(Arrays.asList("て1", "す2"), split(Charset.forName("ms932"), LineDelimiter.LF, "て", "1", "\n", "す", "2"));
+    }
+
+    @Test
+    public void testSkipBom() {
+        final byte[] bytes = "﻿a\nb".getBytes(StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList("a", "b"), split(StandardCharsets.UTF_8, null, Arrays.asList(
+                BufferImpl.wrap(bytes, 0, 1), BufferImpl.wrap(bytes, 1, bytes.length - 1))));
+    }
+
+    @Test
+    public void testLongLine() {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        final String line = builder.toString();
+        assertEquals(Arrays.asList(line, line), split(StandardCharsets.UTF_8, LineDelimiter.LF, line, "\n", line));
+    }
+
+    @Test
+    public void testNextLineWithBytes() {
+        final LineSplitter splitter = new LineSplitter(
+                newInput(buffers(StandardCharsets.UTF_8, "ab,c\nde")), StandardCharsets.UTF_8, null);
+        final List<Integer> lengths = new ArrayList<>();
+        assertTrue(splitter.nextFile());
+        while (splitter.nextLine((bytes, offset, length) -> lengths.add(length))) {
+            continue;
+        }
+        assertEquals(Arrays.asList(4, 2), lengths);
+        assertFalse(splitter.nextFile());
+    }
+
+    @Test
+    public void testMultipleFiles() {
+        final ListFileInput input = new ListFileInput(Arrays.asList(
+                buffers(StandardCharsets.UTF_8, "a\nb\r"), buffers(StandardCharsets.UTF_8, "\nc")));
+        final LineSplitter splitter = new LineSplitter(input, StandardCharsets.UTF_8, null);
+        final List<String> lines = new ArrayList<>();
+        while (splitter.nextFile()) {
+            String line;
+            while ((line = splitter.poll()) != null) {
+                lines.add(line);
+            }
+        }
+        assertEquals(Arrays.asList("a", "b", "", "c"), lines);
+    }
+
+    private static List<String> split(final Charset charset, final LineDelimiter lineDelimiter, final String... sources) {
+        return split(charset, lineDelimiter, buffers(charset, sources));
+    }
+
+    private static List<String> split(final Charset charset, final LineDelimiter lineDelimiter, final List<Buffer> buffers) {
+        final LineSplitter splitter = new LineSplitter(newInput(buffers), charset, lineDelimiter);
+        final List<String> lines = new ArrayList<>();
+        assertTrue(splitter.nextFile());
+        String line;
+        while ((line = splitter.poll()) != null) {
+            lines.add(line);
+        }
+        splitter.close();
+        return lines;
+    }
+
+    private static ListFileInput newInput(final List<Buffer> buffers) {
+        return new ListFileInput(Collections.singletonList(buffers));
+    }
+
+    private static List<Buffer> buffers(final Charset charset, final String... sources) {
+        final List<Buffer> buffers = new ArrayList<>();
+        for (final String source : sources) {
+            final ByteBuffer buffer = charset.encode(source);
+            buffers.add(BufferImpl.wrap(buffer.array(), 0, buffer.limit()));
+        }
+        return buffers;
+    }
+}
@@ -0,0 +1,144 @@
+package org.embulk.spi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferImpl;
+import org.embulk.spi.DecoderPlugin;
+import org.embulk.spi.FileInput;
+import org.junit.Test;
+
+public class TestPipelinedFileInput {
+    @Test
+    public void testPipelinedDecoders() {
+        final List<String> threads = new CopyOnWriteArrayList<>();
+        final ClosingFileInput source = new ClosingFileInput(Arrays.asList(
+                Arrays.asList(buffer(1), buffer(2)), Arrays.asList(buffer(3))));
+        final FileInput decoded = DecodersInternal.open(
+                Collections.singletonList(new RecordingDecoderPlugin(threads)), Collections.singletonList(null), source, true);
+
+        final List<Integer> sizes = new ArrayList<>();
+        int files = 0;
+        while (decoded.nextFile()) {
+            files++;
+            Buffer buffer;
+            while ((buffer = decoded.poll()) != null) {
+                sizes.add(buffer.limit());
+                buffer.release();
+            }
+        }
+        DecodersInternal.stopPipeline(decoded);
+        decoded.close();
+
+        assertEquals(2, files);
+        assertEquals(Arrays.asList(1, 2, 3), sizes);
+        assertFalse(threads.isEmpty());
+        for (final String thread : threads) {
+            assertFalse(Thread.currentThread().getName().equals(thread));
+        }
+        assertTrue(source.closed);
+    }
+
+    @Test
+    public void testNotPipelinedWithoutDecoders() {
+        final ClosingFileInput source = new ClosingFileInput(Collections.emptyList());
+        assertSame(source, DecodersInternal.open(Collections.emptyList(), Collections.emptyList(), source, true));
+    }
+
+    @Test
+    public void testStopWhileReading() {
+        final List<Buffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            buffers.add(buffer(1));
+        }
+        final ClosingFileInput source = new ClosingFileInput(Arrays.asList(buffers));
+        final PipelinedFileInput input = new PipelinedFileInput(source, 1, "test-pipeline");
+
+        assertTrue(input.nextFile());
+        input.poll().release();
+        input.stop();
+        input.stop();
+        assertFalse(source.closed);
+        input.close();
+        assertTrue(source.closed);
+    }
+
+    private static Buffer buffer(final int size) {
+        return BufferImpl.wrap(new byte[size]);
+    }
+
+    private static class RecordingDecoderPlugin implements DecoderPlugin {
+        RecordingDecoderPlugin(final List<String> threads) {
+            this.threads = threads;
+        }
+
+        @Override
+        public void transaction(final ConfigSource config, final DecoderPlugin.Control control) {
+            control.run(null);
+        }
+
+        @Override
+        public FileInput open(final TaskSource taskSource, final FileInput fileInput) {
+            return new FileInput() {
+                @Override
+                public boolean nextFile() {
+                    threads.add(Thread.currentThread().getName());
+                    return fileInput.nextFile();
+                }
+
+                @Override
+                public Buffer poll() {
+                    threads.add(Thread.currentThread().getName());
+                    return fileInput.poll();
+                }
+
+                @Override
+                public void close() {
+                    fileInput.close();
+                }
+            };
+        }
+
+        private final List<String> threads;
+    }
+
+    private static class ClosingFileInput implements FileInput {
+        ClosingFileInput(final List<List<Buffer>> files) {
+            this.files = new ArrayList<>(files);
+            this.current = Collections.emptyList();
+        }
+
+        @Override
+        public boolean nextFile() {
+            if (this.files.isEmpty()) {
+                return false;
+            }
+            this.current = new ArrayList<>(this.files.remove(0));
+            return true;
+        }
+
+        @Override
+        public Buffer poll() {
+            return this.current.isEmpty() ? null : this.current.remove(0);
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+
+        private final List<List<Buffer>> files;
+        private List<Buffer> current;
+        private volatile boolean closed;
+    }
+}
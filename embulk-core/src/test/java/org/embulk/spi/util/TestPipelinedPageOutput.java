@@ -0,0 +1,184 @@
+package org.embulk.spi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.FilterPlugin;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageImpl;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.Schema;
+import org.junit.Test;
+
+public class TestPipelinedPageOutput {
+    @Test
+    public void testKeepOrderAndFinish() {
+        final RecordingPageOutput next = new RecordingPageOutput(-1);
+        final List<Page> pages = new ArrayList<>();
+        try (final PageOutput output = new PipelinedPageOutput(next, "test-pipeline")) {
+            for (int i = 0; i < 100; i++) {
+                final Page page = PageImpl.allocate(0);
+                pages.add(page);
+                output.add(page);
+            }
+            output.finish();
+            assertEquals(pages, next.pages);
+            assertEquals(Collections.singletonList("finish"), next.events);
+        }
+        assertEquals(2, next.events.size());
+        assertEquals("close", next.events.get(1));
+    }
+
+    @Test
+    public void testPropagateException() {
+        final RecordingPageOutput next = new RecordingPageOutput(3);
+        final PipelinedPageOutput output = new PipelinedPageOutput(next, "test-pipeline");
+        try {
+            for (int i = 0; i < 100; i++) {
+                output.add(PageImpl.allocate(0));
+            }
+            output.finish();
+            fail("The exception in the worker thread must be rethrown.");
+        } catch (final IllegalStateException ex) {
+            assertSame(next.exception, ex);
+        } finally {
+            output.close();
+        }
+        assertEquals(3, next.pages.size());
+        assertTrue(next.events.contains("close"));
+        assertTrue(!next.events.contains("finish"));
+    }
+
+    @Test
+    public void testStopWhileOutputIsBlockedInAdd() throws InterruptedException {
+        final BlockingPageOutput output = new BlockingPageOutput();
+        final PageOutput filtered = FiltersInternal.open(
+                Arrays.asList(new PassThroughFilterPlugin(), new PassThroughFilterPlugin()),
+                Arrays.asList(null, null), Arrays.asList(null, null, null), output, true);
+        for (int i = 0; i < 5; i++) {
+            filtered.add(PageImpl.allocate(0));
+        }
+        assertTrue(output.entered.await(10, TimeUnit.SECONDS));
+
+        // The input fails here. The pipeline stops before the output is aborted.
+        final Thread unblocker = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (final InterruptedException ex) {
+                // Unblocks it anyway.
+            }
+            output.unblock.countDown();
+        });
+        unblocker.start();
+        FiltersInternal.stopPipeline(filtered);
+        output.events.add("abort");
+        filtered.close();
+        unblocker.join();
+
+        // The page being added has completed before the abort, and the other pages are released without being passed.
+        assertEquals(Arrays.asList("add", "abort", "close"), output.events);
+        assertFalse(output.adding);
+    }
+
+    @Test
+    public void testStopAfterFinish() {
+        final RecordingPageOutput next = new RecordingPageOutput(-1);
+        final PipelinedPageOutput output = new PipelinedPageOutput(next, "test-pipeline");
+        output.add(PageImpl.allocate(0));
+        output.finish();
+        output.stop();
+        output.stop();
+        assertEquals(1, next.pages.size());
+        assertEquals(Collections.singletonList("finish"), next.events);
+        output.close();
+        assertEquals(Arrays.asList("finish", "close"), next.events);
+    }
+
+    private static class BlockingPageOutput implements PageOutput {
+        @Override
+        public void add(final Page page) {
+            this.adding = true;
+            this.entered.countDown();
+            // Ignores interrupts as an output plugin in a blocking call may do.
+            while (true) {
+                try {
+                    this.unblock.await();
+                    break;
+                } catch (final InterruptedException ex) {
+                    // Keeps waiting.
+                }
+            }
+            this.events.add("add");
+            this.adding = false;
+            page.release();
+        }
+
+        @Override
+        public void finish() {
+            this.events.add("finish");
+        }
+
+        @Override
+        public void close() {
+            this.events.add("close");
+        }
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch unblock = new CountDownLatch(1);
+        private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean adding;
+    }
+
+    private static class PassThroughFilterPlugin implements FilterPlugin {
+        @Override
+        public void transaction(final ConfigSource config, final Schema inputSchema, final FilterPlugin.Control control) {
+            control.run(null, inputSchema);
+        }
+
+        @Override
+        public PageOutput open(final TaskSource taskSource, final Schema inputSchema, final Schema outputSchema, final PageOutput output) {
+            return output;
+        }
+    }
+
+    private static class RecordingPageOutput implements PageOutput {
+        RecordingPageOutput(final int failAt) {
+            this.failAt = failAt;
+            this.exception = new IllegalStateException("failed");
+        }
+
+        @Override
+        public void add(final Page page) {
+            if (this.pages.size() == this.failAt) {
+                throw this.exception;
+            }
+            this.pages.add(page);
+        }
+
+        @Override
+        public void finish() {
+            this.events.add("finish");
+        }
+
+        @Override
+        public void close() {
+            this.events.add("close");
+        }
+
+        private final int failAt;
+        private final IllegalStateException exception;
+        private final List<Page> pages = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+    }
+}
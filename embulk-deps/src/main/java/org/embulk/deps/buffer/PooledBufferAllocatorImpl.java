@@ -2,15 +2,46 @@ package org.embulk.deps.buffer;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.internal.PlatformDependent;
+import org.embulk.exec.BufferMemoryBudget;
 import org.embulk.spi.Buffer;
 import org.embulk.spi.BufferImpl;
+import org.embulk.spi.DirectBufferImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class PooledBufferAllocatorImpl extends org.embulk.exec.PooledBufferAllocator {
     public PooledBufferAllocatorImpl(final int pageSize) {
+        this(pageSize, false);
+    }
+
+    public PooledBufferAllocatorImpl(final int pageSize, final boolean direct) {
         this.pageSize = pageSize;
 
+        if (direct && !PlatformDependent.hasUnsafe()) {
+            // Off-heap memory cannot be addressed without sun.misc.Unsafe.
+            logger.warn("Off-heap (direct) Buffers are unavailable in this JVM. Buffers are allocated on Java heap instead.");
+            this.direct = false;
+        } else {
+            this.direct = direct;
+        }
+
         // PooledByteBufAllocator(preferDirect = false): buffers are allocated on Java heap.
-        this.nettyByteBufAllocator = new PooledByteBufAllocator(false);
+        // PooledByteBufAllocator(preferDirect = true): buffers are allocated on off-heap (direct) memory.
+        this.nettyByteBufAllocator = new PooledByteBufAllocator(this.direct);
+        this.budget = null;
+    }
+
+    private PooledBufferAllocatorImpl(final PooledBufferAllocatorImpl pool, final BufferMemoryBudget budget) {
+        this.pageSize = pool.pageSize;
+        this.direct = pool.direct;
+        this.nettyByteBufAllocator = pool.nettyByteBufAllocator;
+        this.budget = budget;
+    }
+
+    @Override
+    public PooledBufferAllocatorImpl withMemoryBudget(final BufferMemoryBudget budget) {
+        return new PooledBufferAllocatorImpl(this, budget);
     }
 
     @Override
@@ -24,15 +55,36 @@ public class PooledBufferAllocatorImpl extends org.embulk.exec.PooledBufferAlloc
         while (size < minimumCapacity) {
             size *= 2;
         }
-        return new BufferBasedOnNettyByteBuf(nettyByteBufAllocator.buffer(size));
+        if (this.budget != null) {
+            // It may wait for other Buffers to be released before allocating.
+            this.budget.acquire(size);
+        }
+        try {
+            if (this.direct) {
+                final ByteBuf directByteBuf = nettyByteBufAllocator.directBuffer(size);
+                if (directByteBuf.hasMemoryAddress()) {
+                    return new DirectBufferBasedOnNettyByteBuf(directByteBuf, this.budget, size);
+                }
+                directByteBuf.release();
+                return new BufferBasedOnNettyByteBuf(nettyByteBufAllocator.heapBuffer(size), this.budget, size);
+            }
+            return new BufferBasedOnNettyByteBuf(nettyByteBufAllocator.buffer(size), this.budget, size);
+        } catch (final RuntimeException | Error ex) {
+            if (this.budget != null) {
+                this.budget.release(size);
+            }
+            throw ex;
+        }
     }
 
     private static class BufferBasedOnNettyByteBuf extends BufferImpl {
-        private BufferBasedOnNettyByteBuf(final ByteBuf internalNettyByteBuf) {
+        private BufferBasedOnNettyByteBuf(final ByteBuf internalNettyByteBuf, final BufferMemoryBudget budget, final int budgeted) {
             super(internalNettyByteBuf.array(), internalNettyByteBuf.arrayOffset(), internalNettyByteBuf.capacity());
 
             this.internalNettyByteBuf = internalNettyByteBuf;
             this.alreadyReleasedAt = null;
+            this.budget = budget;
+            this.budgeted = budgeted;
         }
 
         @Override
@@ -44,11 +96,49 @@ public class PooledBufferAllocatorImpl extends org.embulk.exec.PooledBufferAlloc
                 this.internalNettyByteBuf.release();
                 this.internalNettyByteBuf = null;
                 this.alreadyReleasedAt = new Throwable();
+                if (this.budget != null) {
+                    this.budget.release(this.budgeted);
+                }
             }
         }
 
         private ByteBuf internalNettyByteBuf;
         private Throwable alreadyReleasedAt;
+        private final BufferMemoryBudget budget;
+        private final int budgeted;
+    }
+
+    private static class DirectBufferBasedOnNettyByteBuf extends DirectBufferImpl {
+        private DirectBufferBasedOnNettyByteBuf(final ByteBuf internalNettyByteBuf, final BufferMemoryBudget budget, final int budgeted) {
+            super(internalNettyByteBuf.memoryAddress(), internalNettyByteBuf.capacity());
+
+            this.internalNettyByteBuf = internalNettyByteBuf;
+            this.alreadyReleasedAt = null;
+            this.budget = budget;
+            this.budgeted = budgeted;
+        }
+
+        @Override
+        public void release() {
+            if (this.alreadyReleasedAt != null) {
+                new BufferDoubleReleasedException(this.alreadyReleasedAt).printStackTrace();
+            }
+            if (this.internalNettyByteBuf != null) {
+                // The off-heap memory must not be accessed once it is returned to the pool.
+                this.detachMemory();
+                this.internalNettyByteBuf.release();
+                this.internalNettyByteBuf = null;
+                this.alreadyReleasedAt = new Throwable();
+                if (this.budget != null) {
+                    this.budget.release(this.budgeted);
+                }
+            }
+        }
+
+        private ByteBuf internalNettyByteBuf;
+        private Throwable alreadyReleasedAt;
+        private final BufferMemoryBudget budget;
+        private final int budgeted;
     }
 
     private static class BufferDoubleReleasedException extends IllegalStateException {
@@ -57,6 +147,10 @@ public class PooledBufferAllocatorImpl extends org.embulk.exec.PooledBufferAlloc
         }
     }
 
+    private static final Logger logger = LoggerFactory.getLogger(PooledBufferAllocatorImpl.class);
+
     private final PooledByteBufAllocator nettyByteBufAllocator;
     private final int pageSize;
+    private final boolean direct;
+    private final BufferMemoryBudget budget;  // null if unbounded
 }
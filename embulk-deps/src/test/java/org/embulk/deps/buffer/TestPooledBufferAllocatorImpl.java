@@ -1,5 +1,6 @@
 package org.embulk.deps.buffer;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import org.embulk.spi.Buffer;
@@ -33,4 +34,54 @@ public class TestPooledBufferAllocatorImpl {
         buffer.release();
         buffer.release();  // To printStackTrace of the first release, but no errors.
     }
+
+    @Test
+    public void testDirect() throws Exception {
+        final PooledBufferAllocatorImpl allocator = new PooledBufferAllocatorImpl(4096, true);
+        final Buffer buffer = allocator.allocate(10000);
+        assertEquals(0, buffer.offset());
+        assertEquals(0, buffer.limit());
+        assertEquals(16384, buffer.capacity());
+
+        buffer.setBytes(100, new byte[] { 1, 2, 3, 4 }, 0, 4);
+        buffer.limit(104);
+        final byte[] read = new byte[4];
+        buffer.getBytes(100, read, 0, 4);
+        assertArrayEquals(new byte[] { 1, 2, 3, 4 }, read);
+        buffer.release();
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")  // Calling Buffer#array().
+    public void testDirectArrayFallback() throws Exception {
+        final PooledBufferAllocatorImpl allocator = new PooledBufferAllocatorImpl(4096, true);
+        final Buffer buffer = allocator.allocate();
+        buffer.setBytes(0, new byte[] { 5, 6, 7 }, 0, 3);
+        buffer.limit(3);
+
+        final byte[] array = buffer.array();
+        assertEquals(5, array[buffer.offset()]);
+        assertEquals(7, array[buffer.offset() + 2]);
+
+        array[buffer.offset() + 1] = 9;  // Writes into the array should be visible through the Buffer.
+        final byte[] read = new byte[3];
+        buffer.getBytes(0, read, 0, 3);
+        assertArrayEquals(new byte[] { 5, 9, 7 }, read);
+        buffer.release();
+    }
+
+    @Test
+    public void testCopyBetweenDirectAndHeap() throws Exception {
+        final Buffer direct = new PooledBufferAllocatorImpl(4096, true).allocate();
+        final Buffer heap = new PooledBufferAllocatorImpl(4096, false).allocate();
+        heap.setBytes(0, new byte[] { 1, 2, 3 }, 0, 3);
+        direct.setBytes(10, heap, 0, 3);
+        heap.setBytes(5, direct, 10, 3);
+
+        final byte[] read = new byte[3];
+        heap.getBytes(5, read, 0, 3);
+        assertArrayEquals(new byte[] { 1, 2, 3 }, read);
+        direct.release();
+        heap.release();
+    }
 }
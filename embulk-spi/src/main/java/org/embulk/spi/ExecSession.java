@@ -120,6 +120,25 @@ public abstract class ExecSession {
      */
     public abstract PageBuilder getPageBuilder(final BufferAllocator allocator, final Schema schema, final PageOutput output);
 
+    /**
+     * Returns a {@link PageBuilder} instance created for the parameters, optionally in the strict mode.
+     *
+     * <p>A {@link PageBuilder} in the strict mode writes fixed-size values into the {@link Page} directly when they
+     * are set, instead of staging them until {@link PageBuilder#addRecord()}. Each column accepts only one value per
+     * record. Setting a value twice to a column in a record throws {@link IllegalStateException}. Columns which are
+     * not set in a record are null, not the values of the previous record.
+     *
+     * @param allocator  the allocator for buffers of pages
+     * @param schema  the schema of records
+     * @param output  the output to add pages into
+     * @param strict  {@code true} to create a {@link PageBuilder} in the strict mode
+     * @return the {@link PageBuilder} instance
+     *
+     * @since 0.10.49
+     */
+    public abstract PageBuilder getPageBuilder(
+            final BufferAllocator allocator, final Schema schema, final PageOutput output, final boolean strict);
+
     /**
      * Returns a {@link PageReader} instance created for the parameter.
      *
@@ -127,6 +146,25 @@ public abstract class ExecSession {
      */
     public abstract PageReader getPageReader(final Schema schema);
 
+    /**
+     * Returns a view of a {@link Page} which consists of a subset or a permutation of its columns.
+     *
+     * <p>The view shares the buffer of {@code page} without copying records. Column {@code i} of the view is column
+     * {@code columnIndexes[i]} of {@code sourceSchema}. The view is read by a {@link PageReader} created with a
+     * {@link Schema} of the projected columns, whose names can be different from {@code sourceSchema}'s. It is useful
+     * for a {@link FilterPlugin} which only removes, reorders, or renames columns to forward pages as they are.
+     *
+     * <p>The view takes over {@code page}. Releasing the view releases {@code page}.
+     *
+     * @param page  the page to project
+     * @param sourceSchema  the schema of {@code page}
+     * @param columnIndexes  indexes of the columns of {@code sourceSchema} in the order of the projected schema
+     * @return the projected page
+     *
+     * @since 0.10.49
+     */
+    public abstract Page projectPage(final Page page, final Schema sourceSchema, final int[] columnIndexes);
+
     /**
      * Creates a new empty {@link org.embulk.config.TaskReport} instance.
      *
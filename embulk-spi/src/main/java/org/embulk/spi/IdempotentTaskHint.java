@@ -0,0 +1,44 @@
+/*
+ * Copyright 2022 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.spi;
+
+import org.embulk.config.TaskSource;
+
+/**
+ * An optional interface that an {@link InputPlugin}, an {@link OutputPlugin}, a {@link FileInputPlugin}, or a
+ * {@link FileOutputPlugin} implements to declare that its tasks are idempotent.
+ *
+ * <p>An executor may start a duplicate attempt of a slow task while the task is still running, and commit only the
+ * attempt which finishes first. The other attempt is aborted. A task of an Input Plugin is idempotent if it reads the
+ * same records in every attempt. A task of an Output Plugin is idempotent if two attempts of the same task can run at
+ * the same time, and an aborted attempt leaves nothing visible.
+ *
+ * @since 0.10.49
+ */
+public interface IdempotentTaskHint {
+    /**
+     * Returns true if the tasks of the transaction can run in duplicate attempts.
+     *
+     * <p>It is called before the tasks run, maybe from a thread different from the threads running the tasks.
+     *
+     * @param taskSource  {@link org.embulk.config.TaskSource} processed for tasks, as given to {@code run} or {@code open}
+     * @return true if the tasks are idempotent
+     *
+     * @since 0.10.49
+     */
+    boolean isTaskIdempotent(TaskSource taskSource);
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2022 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.spi;
+
+import org.embulk.config.TaskSource;
+
+/**
+ * An optional interface that an {@link InputPlugin} or a {@link FileInputPlugin} implements to hint the costs of its tasks.
+ *
+ * <p>An executor may start costly tasks first so that a large task does not start last and prolong the entire
+ * execution. The costs are relative to each other, for example, the byte sizes of files that the tasks read.
+ *
+ * <p>The costs of a {@link FileInputPlugin} are expected to be the byte sizes of its tasks. They are then used also to
+ * estimate the remaining time of the tasks in their progress.
+ *
+ * @since 0.10.49
+ */
+public interface InputTaskCostHint {
+    /**
+     * Estimates the cost of a task.
+     *
+     * <p>It is called before the task runs, maybe from a thread different from the thread running the task.
+     *
+     * @param taskSource  {@link org.embulk.config.TaskSource} processed for tasks, as given to {@code run} or {@code open}
+     * @param taskIndex  the index number of the task
+     * @return the relative cost of the task, or a negative value if unknown
+     *
+     * @since 0.10.49
+     */
+    long estimateTaskCost(TaskSource taskSource, int taskIndex);
+}
@@ -213,6 +213,38 @@ public class PageBuilder implements AutoCloseable {
         this.delegate.setTimestamp(columnIndex, value);
     }
 
+    /**
+     * Sets a Timestamp value from the seconds from the epoch of 1970-01-01T00:00:00Z and the nanoseconds within the second.
+     *
+     * <p>It does not require an {@link Instant} instance to be allocated for each value.
+     *
+     * @param column  the column to set the Timestamp value
+     * @param epochSecond  the seconds from the epoch, in the range of {@link Instant}
+     * @param nano  the nanoseconds within the second, from {@code 0} to {@code 999,999,999}
+     * @throws IllegalArgumentException  if {@code epochSecond} or {@code nano} is out of the range
+     *
+     * @since 0.10.49
+     */
+    public void setTimestamp(final Column column, final long epochSecond, final int nano) {
+        this.delegate.setTimestamp(column, epochSecond, nano);
+    }
+
+    /**
+     * Sets a Timestamp value from the seconds from the epoch of 1970-01-01T00:00:00Z and the nanoseconds within the second.
+     *
+     * <p>It does not require an {@link Instant} instance to be allocated for each value.
+     *
+     * @param columnIndex  the index of the column to set the Timestamp value
+     * @param epochSecond  the seconds from the epoch, in the range of {@link Instant}
+     * @param nano  the nanoseconds within the second, from {@code 0} to {@code 999,999,999}
+     * @throws IllegalArgumentException  if {@code epochSecond} or {@code nano} is out of the range
+     *
+     * @since 0.10.49
+     */
+    public void setTimestamp(final int columnIndex, final long epochSecond, final int nano) {
+        this.delegate.setTimestamp(columnIndex, epochSecond, nano);
+    }
+
     /**
      * @since 0.4.0
      */
@@ -220,6 +252,40 @@ public class PageBuilder implements AutoCloseable {
         this.delegate.addRecord();
     }
 
+    /**
+     * Sets all the values of the current record of a {@link PageReader} into the current record.
+     *
+     * <p>The {@link Schema} of the {@link PageReader} must have the same column types in the same order. Column names
+     * may be different. The values are copied without decoding them into Java objects where possible, so that
+     * filters which pass most columns through can avoid reading and setting them one by one. Some columns can be
+     * overwritten by the setters before {@link #addRecord()}.
+     *
+     * <p>The values are copied when this method is called. Moving the {@link PageReader} to the next record after that
+     * does not change the current record.
+     *
+     * @param reader  the {@link PageReader} which points a record to copy
+     * @throws IllegalArgumentException  if the {@link Schema} of the {@link PageReader} is not compatible
+     *
+     * @since 0.10.49
+     */
+    public void setRecordFrom(final PageReader reader) {
+        this.delegate.setRecordFrom(reader);
+    }
+
+    /**
+     * Adds a record copied from the current record of a {@link PageReader}.
+     *
+     * <p>It is equivalent to {@link #setRecordFrom(PageReader)} followed by {@link #addRecord()}.
+     *
+     * @param reader  the {@link PageReader} which points a record to copy
+     * @throws IllegalArgumentException  if the {@link Schema} of the {@link PageReader} is not compatible
+     *
+     * @since 0.10.49
+     */
+    public void addRecordFrom(final PageReader reader) {
+        this.delegate.addRecordFrom(reader);
+    }
+
     /**
      * @since 0.4.0
      */
@@ -37,6 +37,16 @@ public class PageReader implements AutoCloseable {
         this.delegate = delegate;
     }
 
+    /**
+     * Returns the implementation of this {@link PageReader} so that the core can access its internal states.
+     */
+    PageReader unwrapDelegate() {
+        if (this.delegate == null) {
+            return this;
+        }
+        return this.delegate.unwrapDelegate();
+    }
+
     /**
      * Constructs a {@link PageReader} instance.
      *
@@ -141,6 +151,160 @@ public class PageReader implements AutoCloseable {
         return this.delegate.getString(columnIndex);
     }
 
+    /**
+     * Returns {@code true} if String values of the column are dictionary-encoded in the current {@link Page}.
+     *
+     * <p>If dictionary-encoded, {@link #getStringDictionaryId(Column)} returns the same id for the same value, and
+     * different ids for different values in the current {@link Page}. Plugins can group or compare values by their
+     * ids without comparing {@link String}s. Whether a column is dictionary-encoded may change by {@link Page}.
+     *
+     * @param column  the column to check
+     * @return {@code true} if String values of the column are dictionary-encoded in the current {@link Page}
+     *
+     * @since 0.10.49
+     */
+    public boolean isDictionaryEncoded(final Column column) {
+        return this.delegate.isDictionaryEncoded(column);
+    }
+
+    /**
+     * Returns {@code true} if String values of the column are dictionary-encoded in the current {@link Page}.
+     *
+     * <p>If dictionary-encoded, {@link #getStringDictionaryId(int)} returns the same id for the same value, and
+     * different ids for different values in the current {@link Page}. Plugins can group or compare values by their
+     * ids without comparing {@link String}s. Whether a column is dictionary-encoded may change by {@link Page}.
+     *
+     * @param columnIndex  the index of the column to check
+     * @return {@code true} if String values of the column are dictionary-encoded in the current {@link Page}
+     *
+     * @since 0.10.49
+     */
+    public boolean isDictionaryEncoded(final int columnIndex) {
+        return this.delegate.isDictionaryEncoded(columnIndex);
+    }
+
+    /**
+     * Returns the dictionary id of a String value, which is valid only in the current {@link Page}.
+     *
+     * <p>Values with the same id are always equal. Values with different ids are different only if
+     * {@link #isDictionaryEncoded(Column)} is {@code true}.
+     *
+     * @param column  the column to get the id
+     * @return the non-negative dictionary id, or {@code -1} if the value is null
+     *
+     * @since 0.10.49
+     */
+    public int getStringDictionaryId(final Column column) {
+        return this.delegate.getStringDictionaryId(column);
+    }
+
+    /**
+     * Returns the dictionary id of a String value, which is valid only in the current {@link Page}.
+     *
+     * <p>Values with the same id are always equal. Values with different ids are different only if
+     * {@link #isDictionaryEncoded(int)} is {@code true}.
+     *
+     * @param columnIndex  the index of the column to get the id
+     * @return the non-negative dictionary id, or {@code -1} if the value is null
+     *
+     * @since 0.10.49
+     */
+    public int getStringDictionaryId(final int columnIndex) {
+        return this.delegate.getStringDictionaryId(columnIndex);
+    }
+
+    /**
+     * Returns the length of a String value in bytes encoded in UTF-8.
+     *
+     * @param column  the column to get the length
+     * @return the length in bytes, or {@code -1} if the value is null
+     *
+     * @since 0.10.49
+     */
+    public int getStringUtf8Length(final Column column) {
+        return this.delegate.getStringUtf8Length(column);
+    }
+
+    /**
+     * Returns the length of a String value in bytes encoded in UTF-8.
+     *
+     * @param columnIndex  the index of the column to get the length
+     * @return the length in bytes, or {@code -1} if the value is null
+     *
+     * @since 0.10.49
+     */
+    public int getStringUtf8Length(final int columnIndex) {
+        return this.delegate.getStringUtf8Length(columnIndex);
+    }
+
+    /**
+     * Copies a String value encoded in UTF-8 into a {@code byte} array.
+     *
+     * <p>The bytes are copied straight from the {@link Page} without decoding into a {@link String}, so that
+     * plugins which write UTF-8 can avoid the round trip. The destination must have as many bytes as
+     * {@link #getStringUtf8Length(Column)} from {@code destinationIndex}.
+     *
+     * @param column  the column to get the value
+     * @param destination  the array to copy the bytes into
+     * @param destinationIndex  the index in {@code destination} to start copying at
+     * @return the number of bytes copied, or {@code -1} if the value is null
+     *
+     * @since 0.10.49
+     */
+    public int getStringUtf8(final Column column, final byte[] destination, final int destinationIndex) {
+        return this.delegate.getStringUtf8(column, destination, destinationIndex);
+    }
+
+    /**
+     * Copies a String value encoded in UTF-8 into a {@code byte} array.
+     *
+     * <p>The bytes are copied straight from the {@link Page} without decoding into a {@link String}, so that
+     * plugins which write UTF-8 can avoid the round trip. The destination must have as many bytes as
+     * {@link #getStringUtf8Length(int)} from {@code destinationIndex}.
+     *
+     * @param columnIndex  the index of the column to get the value
+     * @param destination  the array to copy the bytes into
+     * @param destinationIndex  the index in {@code destination} to start copying at
+     * @return the number of bytes copied, or {@code -1} if the value is null
+     *
+     * @since 0.10.49
+     */
+    public int getStringUtf8(final int columnIndex, final byte[] destination, final int destinationIndex) {
+        return this.delegate.getStringUtf8(columnIndex, destination, destinationIndex);
+    }
+
+    /**
+     * Returns a String value as a {@link CharSequence} which may be a view of the {@link Page}.
+     *
+     * <p>It may avoid allocating a {@link String} for ASCII values. The returned {@link CharSequence} is valid only
+     * until the {@link Page} is switched or this {@link PageReader} is closed. Call {@link CharSequence#toString()}
+     * to keep the value longer.
+     *
+     * @param column  the column to get the value
+     * @return the value, or {@code null} if the value is null
+     *
+     * @since 0.10.49
+     */
+    public CharSequence getStringCharSequence(final Column column) {
+        return this.delegate.getStringCharSequence(column);
+    }
+
+    /**
+     * Returns a String value as a {@link CharSequence} which may be a view of the {@link Page}.
+     *
+     * <p>It may avoid allocating a {@link String} for ASCII values. The returned {@link CharSequence} is valid only
+     * until the {@link Page} is switched or this {@link PageReader} is closed. Call {@link CharSequence#toString()}
+     * to keep the value longer.
+     *
+     * @param columnIndex  the index of the column to get the value
+     * @return the value, or {@code null} if the value is null
+     *
+     * @since 0.10.49
+     */
+    public CharSequence getStringCharSequence(final int columnIndex) {
+        return this.delegate.getStringCharSequence(columnIndex);
+    }
+
     /**
      * Returns a Timestamp value.
      *
@@ -181,6 +345,68 @@ public class PageReader implements AutoCloseable {
         return this.delegate.getTimestampInstant(columnIndex);
     }
 
+    /**
+     * Returns the seconds from the epoch of 1970-01-01T00:00:00Z of a Timestamp value.
+     *
+     * <p>It does not allocate an {@link Instant} unlike {@link #getTimestampInstant(Column)}. Check
+     * {@link #isNull(Column)} in advance.
+     *
+     * @param column  the column to get the Timestamp value
+     * @return the seconds from the epoch
+     * @throws NullPointerException  if the value is null
+     *
+     * @since 0.10.49
+     */
+    public long getTimestampEpochSecond(final Column column) {
+        return this.delegate.getTimestampEpochSecond(column);
+    }
+
+    /**
+     * Returns the seconds from the epoch of 1970-01-01T00:00:00Z of a Timestamp value.
+     *
+     * <p>It does not allocate an {@link Instant} unlike {@link #getTimestampInstant(int)}. Check
+     * {@link #isNull(int)} in advance.
+     *
+     * @param columnIndex  the index of the column to get the Timestamp value
+     * @return the seconds from the epoch
+     * @throws NullPointerException  if the value is null
+     *
+     * @since 0.10.49
+     */
+    public long getTimestampEpochSecond(final int columnIndex) {
+        return this.delegate.getTimestampEpochSecond(columnIndex);
+    }
+
+    /**
+     * Returns the nanoseconds within the second of a Timestamp value, from {@code 0} to {@code 999,999,999}.
+     *
+     * <p>It is to be used with {@link #getTimestampEpochSecond(Column)}. Check {@link #isNull(Column)} in advance.
+     *
+     * @param column  the column to get the Timestamp value
+     * @return the nanoseconds within the second
+     * @throws NullPointerException  if the value is null
+     *
+     * @since 0.10.49
+     */
+    public int getTimestampNano(final Column column) {
+        return this.delegate.getTimestampNano(column);
+    }
+
+    /**
+     * Returns the nanoseconds within the second of a Timestamp value, from {@code 0} to {@code 999,999,999}.
+     *
+     * <p>It is to be used with {@link #getTimestampEpochSecond(int)}. Check {@link #isNull(int)} in advance.
+     *
+     * @param columnIndex  the index of the column to get the Timestamp value
+     * @return the nanoseconds within the second
+     * @throws NullPointerException  if the value is null
+     *
+     * @since 0.10.49
+     */
+    public int getTimestampNano(final int columnIndex) {
+        return this.delegate.getTimestampNano(columnIndex);
+    }
+
     /**
      * Returns a JSON value at the specified column in the {@code msgpack-java} representation.
      *
@@ -233,6 +459,150 @@ public class PageReader implements AutoCloseable {
         return this.delegate.getJsonValue(columnIndex);
     }
 
+    /**
+     * Reads BOOLEAN values of the column from all records in the current {@link Page} at once.
+     *
+     * <p>It does not move the current record. Values at records whose value is null are undefined. Check them with
+     * {@link #readNullColumn(Column, boolean[])}.
+     *
+     * @param column  the column to read
+     * @param destination  the array to store the values, which must be as long as the number of records in the page
+     * @return the number of records in the current {@link Page}
+     * @throws ClassCastException  if the column is not BOOLEAN
+     *
+     * @since 0.10.49
+     */
+    public int readBooleanColumn(final Column column, final boolean[] destination) {
+        return this.delegate.readBooleanColumn(column, destination);
+    }
+
+    /**
+     * Reads BOOLEAN values of the column from all records in the current {@link Page} at once.
+     *
+     * <p>It does not move the current record. Values at records whose value is null are undefined. Check them with
+     * {@link #readNullColumn(int, boolean[])}.
+     *
+     * @param columnIndex  the index of the column to read
+     * @param destination  the array to store the values, which must be as long as the number of records in the page
+     * @return the number of records in the current {@link Page}
+     * @throws ClassCastException  if the column is not BOOLEAN
+     *
+     * @since 0.10.49
+     */
+    public int readBooleanColumn(final int columnIndex, final boolean[] destination) {
+        return this.delegate.readBooleanColumn(columnIndex, destination);
+    }
+
+    /**
+     * Reads LONG values of the column from all records in the current {@link Page} at once.
+     *
+     * <p>It does not move the current record. Values at records whose value is null are undefined. Check them with
+     * {@link #readNullColumn(Column, boolean[])}.
+     *
+     * <p>It is a bulk memory copy if the {@link Page} is built in the columnar format, so that plugins can run tight
+     * loops over the values.
+     *
+     * @param column  the column to read
+     * @param destination  the array to store the values, which must be as long as the number of records in the page
+     * @return the number of records in the current {@link Page}
+     * @throws ClassCastException  if the column is not LONG
+     *
+     * @since 0.10.49
+     */
+    public int readLongColumn(final Column column, final long[] destination) {
+        return this.delegate.readLongColumn(column, destination);
+    }
+
+    /**
+     * Reads LONG values of the column from all records in the current {@link Page} at once.
+     *
+     * <p>It does not move the current record. Values at records whose value is null are undefined. Check them with
+     * {@link #readNullColumn(int, boolean[])}.
+     *
+     * <p>It is a bulk memory copy if the {@link Page} is built in the columnar format, so that plugins can run tight
+     * loops over the values.
+     *
+     * @param columnIndex  the index of the column to read
+     * @param destination  the array to store the values, which must be as long as the number of records in the page
+     * @return the number of records in the current {@link Page}
+     * @throws ClassCastException  if the column is not LONG
+     *
+     * @since 0.10.49
+     */
+    public int readLongColumn(final int columnIndex, final long[] destination) {
+        return this.delegate.readLongColumn(columnIndex, destination);
+    }
+
+    /**
+     * Reads DOUBLE values of the column from all records in the current {@link Page} at once.
+     *
+     * <p>It does not move the current record. Values at records whose value is null are undefined. Check them with
+     * {@link #readNullColumn(Column, boolean[])}.
+     *
+     * <p>It is a bulk memory copy if the {@link Page} is built in the columnar format, so that plugins can run tight
+     * loops over the values.
+     *
+     * @param column  the column to read
+     * @param destination  the array to store the values, which must be as long as the number of records in the page
+     * @return the number of records in the current {@link Page}
+     * @throws ClassCastException  if the column is not DOUBLE
+     *
+     * @since 0.10.49
+     */
+    public int readDoubleColumn(final Column column, final double[] destination) {
+        return this.delegate.readDoubleColumn(column, destination);
+    }
+
+    /**
+     * Reads DOUBLE values of the column from all records in the current {@link Page} at once.
+     *
+     * <p>It does not move the current record. Values at records whose value is null are undefined. Check them with
+     * {@link #readNullColumn(int, boolean[])}.
+     *
+     * <p>It is a bulk memory copy if the {@link Page} is built in the columnar format, so that plugins can run tight
+     * loops over the values.
+     *
+     * @param columnIndex  the index of the column to read
+     * @param destination  the array to store the values, which must be as long as the number of records in the page
+     * @return the number of records in the current {@link Page}
+     * @throws ClassCastException  if the column is not DOUBLE
+     *
+     * @since 0.10.49
+     */
+    public int readDoubleColumn(final int columnIndex, final double[] destination) {
+        return this.delegate.readDoubleColumn(columnIndex, destination);
+    }
+
+    /**
+     * Reads whether the column is null, or not, from all records in the current {@link Page} at once.
+     *
+     * <p>It does not move the current record.
+     *
+     * @param column  the column to read
+     * @param destination  the array to store {@code true} for null, which must be as long as the number of records in the page
+     * @return the number of records in the current {@link Page}
+     *
+     * @since 0.10.49
+     */
+    public int readNullColumn(final Column column, final boolean[] destination) {
+        return this.delegate.readNullColumn(column, destination);
+    }
+
+    /**
+     * Reads whether the column is null, or not, from all records in the current {@link Page} at once.
+     *
+     * <p>It does not move the current record.
+     *
+     * @param columnIndex  the index of the column to read
+     * @param destination  the array to store {@code true} for null, which must be as long as the number of records in the page
+     * @return the number of records in the current {@link Page}
+     *
+     * @since 0.10.49
+     */
+    public int readNullColumn(final int columnIndex, final boolean[] destination) {
+        return this.delegate.readNullColumn(columnIndex, destination);
+    }
+
     /**
      * @since 0.4.0
      */